@@ -17,9 +17,19 @@
  */
 package de.randi2.dao;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -31,6 +41,9 @@ import org.springframework.security.acls.model.AclService;
 import org.springframework.security.acls.model.NotFoundException;
 import org.springframework.security.acls.model.ObjectIdentity;
 import org.springframework.security.acls.model.Sid;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import de.randi2.model.AbstractDomainObject;
 import de.randi2.model.security.AclHibernate;
@@ -39,12 +52,84 @@ import de.randi2.model.security.PermissionHibernate;
 import de.randi2.model.security.SidHibernate;
 
 /**
- * The Class HibernateAclService.
+ * The Class HibernateAclService.<br />
+ * The acls read by {@link #readAclById(ObjectIdentity, List)} are cached per
+ * sid and object identity in a LRU cache, until their time to live is over.
+ * Only found acls are cached. The write methods clear the cache, within a
+ * transaction the cache is not used after a write and cleared again at the
+ * end of the transaction. An acl read before a clear of the cache is not put
+ * into the cache.<br />
+ * The ids of the sids and object identities are cached, too. They are never
+ * changed once saved, so the ids found or created in a transaction are
+ * published to the cache after the commit of the transaction.
  */
 public class HibernateAclService implements AclService {
 
+	/** The maximum amount of identifiers in one IN-list query. */
+	private static final int MAX_IN_LIST_SIZE = 500;
+
+	/**
+	 * The amount of acls after which the bulk operations flush, the same as
+	 * the JDBC batch size.
+	 */
+	private static final int FLUSH_SIZE = 50;
+
+	/** The default maximum amount of cached acls. */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	/** The default time to live of a cached acl in milliseconds. */
+	public static final long DEFAULT_CACHE_TIME_TO_LIVE = 5 * 60 * 1000;
+
 	private EntityManager entityManager;
 
+	private int cacheSize = DEFAULT_CACHE_SIZE;
+
+	private long cacheTimeToLive = DEFAULT_CACHE_TIME_TO_LIVE;
+
+	/** The cached acls in access order. */
+	private final Map<AclCacheKey, CachedAcl> cache = new LinkedHashMap<AclCacheKey, CachedAcl>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<AclCacheKey, CachedAcl> eldest) {
+			return size() > cacheSize;
+		}
+	};
+
+	/**
+	 * Counts the clears of the cache, guarded by the cache. A read captures
+	 * the generation before its query and puts the acls only into the cache,
+	 * if the cache is not cleared in the meantime.
+	 */
+	private long cacheGeneration = 0;
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	/** The ids of the saved sids by sidname. */
+	private final ConcurrentMap<String, Long> sidIds = new ConcurrentHashMap<String, Long>();
+
+	/** The ids of the saved object identities in access order. */
+	private final Map<ObjectIdentityKey, Long> objectIdentityIds = new LinkedHashMap<ObjectIdentityKey, Long>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<ObjectIdentityKey, Long> eldest) {
+			return size() > cacheSize;
+		}
+	};
+
+	/**
+	 * The key of the ids found or created in the current transaction, which
+	 * are not yet published to the caches.
+	 */
+	private final Object pendingIdsKey = new Object();
+
 	@PersistenceContext
 	public void setEntityManager(EntityManager entityManager) {
 		this.entityManager = entityManager;
@@ -87,30 +172,111 @@ public class HibernateAclService implements AclService {
 	 * org.springframework.security.acls.sid.Sid[])
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public Acl readAclById(ObjectIdentity object, List<Sid> sids)
 			throws NotFoundException {
-		String sidname = null;
 		for (Sid sid : sids) {
-			if (sid instanceof PrincipalSid) {
-				sidname = ((PrincipalSid) sid).getPrincipal();
-			} else if (sid instanceof GrantedAuthoritySid) {
-				sidname = ((GrantedAuthoritySid) sid).getGrantedAuthority();
-			}
+			String sidname = sidname(sid);
 			if (sidname != null) {
-				List<Acl> list = entityManager
-						.createNamedQuery("acl.findAclByObjectIdentityAndSid")
-						.setParameter(1, sidname)
-						.setParameter(2, object.getIdentifier())
-						.setParameter(3, object.getType()).getResultList();
-				if (list.size() == 1) {
-					return list.get(0);
+				AclHibernate acl = findAcl(sidname, object);
+				if (acl != null) {
+					return acl;
 				}
 			}
 		}
 		throw new NotFoundException("No Acl found");
 	}
 
+	private static String sidname(Sid sid) {
+		if (sid instanceof PrincipalSid) {
+			return ((PrincipalSid) sid).getPrincipal();
+		} else if (sid instanceof GrantedAuthoritySid) {
+			return ((GrantedAuthoritySid) sid).getGrantedAuthority();
+		}
+		return null;
+	}
+
+	/**
+	 * Looks the acl of the first sid for the object up in the cache and puts
+	 * it into the result. The acls of the further sids are not looked up,
+	 * because the first sid may have an acl which is not cached.
+	 * 
+	 * @return true, if the acl is found in the cache
+	 */
+	private boolean findCachedAcl(List<String> sidnames, ObjectIdentity object,
+			Map<ObjectIdentity, Acl> result) {
+		AclHibernate acl;
+		synchronized (cache) {
+			acl = cachedAcl(new AclCacheKey(sidnames.get(0), object));
+		}
+		if (acl == null) {
+			cacheMisses.incrementAndGet();
+			return false;
+		}
+		cacheHits.incrementAndGet();
+		result.put(object, acl);
+		return true;
+	}
+
+	/**
+	 * Returns the acl of the sid for the object from the cache or the database.
+	 */
+	@SuppressWarnings("unchecked")
+	private AclHibernate findAcl(String sidname, ObjectIdentity object) {
+		AclCacheKey key = new AclCacheKey(sidname, object);
+		boolean useCache = !TransactionSynchronizationManager.hasResource(this);
+		long generation = 0;
+		if (useCache) {
+			synchronized (cache) {
+				AclHibernate acl = cachedAcl(key);
+				if (acl != null) {
+					cacheHits.incrementAndGet();
+					return acl;
+				}
+				generation = cacheGeneration;
+			}
+			cacheMisses.incrementAndGet();
+		}
+		List<AclHibernate> list = entityManager
+				.createNamedQuery("acl.findAclByObjectIdentityAndSid")
+				.setParameter(1, sidname)
+				.setParameter(2, object.getIdentifier())
+				.setParameter(3, object.getType()).getResultList();
+		AclHibernate acl = list.size() == 1 ? list.get(0) : null;
+		if (useCache) {
+			synchronized (cache) {
+				cacheAcl(key, acl, generation);
+			}
+		}
+		return acl;
+	}
+
+	/**
+	 * Returns the cached acl or null, if no acl is cached or the cached acl
+	 * is expired. The caller holds the lock of the cache.
+	 */
+	private AclHibernate cachedAcl(AclCacheKey key) {
+		CachedAcl cached = cache.get(key);
+		if (cached == null) {
+			return null;
+		}
+		if (cached.expires <= System.currentTimeMillis()) {
+			cache.remove(key);
+			return null;
+		}
+		return cached.acl;
+	}
+
+	/**
+	 * Puts the found acl into the cache, if the cache is not cleared since the
+	 * passed generation. The caller holds the lock of the cache.
+	 */
+	private void cacheAcl(AclCacheKey key, AclHibernate acl, long generation) {
+		if (acl != null && generation == cacheGeneration) {
+			cache.put(key, new CachedAcl(acl, System.currentTimeMillis()
+					+ cacheTimeToLive));
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -133,9 +299,85 @@ public class HibernateAclService implements AclService {
 	 * org.springframework.security.acls.sid.Sid[])
 	 */
 	@Override
-	public Map<ObjectIdentity, Acl> readAclsById(List<ObjectIdentity> arg0,
-			List<Sid> arg1) throws NotFoundException {
-		return null;
+	@SuppressWarnings("unchecked")
+	public Map<ObjectIdentity, Acl> readAclsById(List<ObjectIdentity> objects,
+			List<Sid> sids) throws NotFoundException {
+		Map<ObjectIdentity, Acl> result = new HashMap<ObjectIdentity, Acl>();
+		List<String> sidnames = new ArrayList<String>();
+		for (Sid sid : sids) {
+			String sidname = sidname(sid);
+			if (sidname != null && !sidnames.contains(sidname)) {
+				sidnames.add(sidname);
+			}
+		}
+		if (sidnames.isEmpty()) {
+			throw new NotFoundException("No Acl found");
+		}
+		boolean useCache = !TransactionSynchronizationManager.hasResource(this);
+		long generation;
+		synchronized (cache) {
+			generation = cacheGeneration;
+		}
+
+		// the identifiers of the objects by type, which are not cached
+		Map<String, Set<Long>> identifiersByType = new HashMap<String, Set<Long>>();
+		for (ObjectIdentity object : objects) {
+			if (!(object.getIdentifier() instanceof Number)) {
+				continue;
+			}
+			if (useCache && findCachedAcl(sidnames, object, result)) {
+				continue;
+			}
+			Set<Long> identifiers = identifiersByType.get(object.getType());
+			if (identifiers == null) {
+				identifiers = new HashSet<Long>();
+				identifiersByType.put(object.getType(), identifiers);
+			}
+			identifiers.add(((Number) object.getIdentifier()).longValue());
+		}
+
+		// load the acls of all sids for the objects of each type
+		Map<AclCacheKey, AclHibernate> loaded = new HashMap<AclCacheKey, AclHibernate>();
+		for (Map.Entry<String, Set<Long>> entry : identifiersByType.entrySet()) {
+			List<Long> identifiers = new ArrayList<Long>(entry.getValue());
+			for (int i = 0; i < identifiers.size(); i += MAX_IN_LIST_SIZE) {
+				List<AclHibernate> acls = entityManager
+						.createNamedQuery("acl.findAclsByObjectIdentitiesAndSids")
+						.setParameter("sidnames", sidnames)
+						.setParameter("type", entry.getKey())
+						.setParameter("identifiers", identifiers.subList(i,
+								Math.min(i + MAX_IN_LIST_SIZE, identifiers.size())))
+						.getResultList();
+				for (AclHibernate acl : acls) {
+					loaded.put(new AclCacheKey(acl.getOwner().getSidname(), acl
+							.getObjectIdentity()), acl);
+				}
+			}
+		}
+
+		boolean complete = true;
+		for (ObjectIdentity object : objects) {
+			if (result.containsKey(object)) {
+				continue;
+			}
+			for (String sidname : sidnames) {
+				AclCacheKey key = new AclCacheKey(sidname, object);
+				AclHibernate acl = loaded.get(key);
+				if (useCache && identifiersByType.containsKey(object.getType())) {
+					synchronized (cache) {
+						cacheAcl(key, acl, generation);
+					}
+				}
+				if (acl != null && !result.containsKey(object)) {
+					result.put(object, acl);
+				}
+			}
+			complete &= result.containsKey(object);
+		}
+		if (!complete) {
+			throw new NotFoundException("No Acl found for all objects");
+		}
+		return result;
 	}
 
 	/**
@@ -149,6 +391,7 @@ public class HibernateAclService implements AclService {
 	 * @return the acl hibernate
 	 */
 	public AclHibernate createAcl(AbstractDomainObject object, String sidname) {
+		invalidateCache();
 		AclHibernate acl = new AclHibernate();
 		acl.setObjectIdentity(createObjectIdentityIfNotSaved(object));
 		acl.setOwner(createSidIfNotSaved(sidname));
@@ -173,14 +416,18 @@ public class HibernateAclService implements AclService {
 	@SuppressWarnings("unchecked")
 	public AclHibernate createAclwithPermissions(AbstractDomainObject object,
 			String sidname, PermissionHibernate[] permissions, String roleName) {
+		invalidateCache();
+		long objectIdentityId = objectIdentityId(object);
+		long ownerId = sidId(sidname);
 		AclHibernate acl = new AclHibernate();
-		acl.setObjectIdentity(createObjectIdentityIfNotSaved(object));
-		acl.setOwner(createSidIfNotSaved(sidname));
+		acl.setObjectIdentity(entityManager.getReference(
+				ObjectIdentityHibernate.class, objectIdentityId));
+		acl.setOwner(entityManager.getReference(SidHibernate.class, ownerId));
 		List<AclHibernate> list = entityManager
 				.createQuery(
 						"from AclHibernate acl where acl.owner.id = ? and acl.objectIdentity.id = ?")
-				.setParameter(1, acl.getOwner().getId())
-				.setParameter(2, acl.getObjectIdentity().getId())
+				.setParameter(1, ownerId)
+				.setParameter(2, objectIdentityId)
 				.getResultList();
 		if (list.size() == 1) {
 			acl = list.get(0);
@@ -193,6 +440,79 @@ public class HibernateAclService implements AclService {
 		return acl;
 	}
 
+	/**
+	 * Grants the permissions on the object to all sids, like
+	 * {@link #createAclwithPermissions(AbstractDomainObject, String, PermissionHibernate[], String)}
+	 * for each sid. The object identity is resolved once, the sids and the
+	 * existing acls are loaded with one query for all sids and the new acls
+	 * and aces are flushed in JDBC batches.
+	 * 
+	 * @param object
+	 *            the object
+	 * @param sidnames
+	 *            the sidnames
+	 * @param permissions
+	 *            the permissions
+	 * @param roleName
+	 *            the role name
+	 */
+	@SuppressWarnings("unchecked")
+	public void createAclsWithPermissions(AbstractDomainObject object,
+			Collection<String> sidnames, PermissionHibernate[] permissions,
+			String roleName) {
+		if (sidnames.isEmpty()) {
+			return;
+		}
+		invalidateCache();
+		List<String> distinctSidnames = new ArrayList<String>(
+				new LinkedHashSet<String>(sidnames));
+		long objectIdentityId = objectIdentityId(object);
+		ObjectIdentityHibernate objectIdentity = entityManager.getReference(
+				ObjectIdentityHibernate.class, objectIdentityId);
+		Map<String, SidHibernate> sids = createSidsIfNotSaved(distinctSidnames);
+
+		Map<String, AclHibernate> acls = new HashMap<String, AclHibernate>();
+		for (int i = 0; i < distinctSidnames.size(); i += MAX_IN_LIST_SIZE) {
+			List<AclHibernate> list = entityManager
+					.createQuery(
+							"select acl from AclHibernate acl where acl.objectIdentity.id = :objectIdentity and acl.owner.sidname in (:sidnames)")
+					.setParameter("objectIdentity", objectIdentityId)
+					.setParameter("sidnames", distinctSidnames.subList(i,
+							Math.min(i + MAX_IN_LIST_SIZE, distinctSidnames.size())))
+					.getResultList();
+			for (AclHibernate acl : list) {
+				// like createAclwithPermissions only a single acl is reused
+				if (acls.containsKey(acl.getOwner().getSidname())) {
+					acls.put(acl.getOwner().getSidname(), null);
+				} else {
+					acls.put(acl.getOwner().getSidname(), acl);
+				}
+			}
+		}
+
+		int count = 0;
+		for (String sidname : distinctSidnames) {
+			AclHibernate acl = acls.get(sidname);
+			if (acl == null) {
+				acl = new AclHibernate();
+				acl.setObjectIdentity(objectIdentity);
+				acl.setOwner(sids.get(sidname));
+				for (PermissionHibernate permission : permissions) {
+					acl.insertAce(permission, roleName);
+				}
+				entityManager.persist(acl);
+			} else {
+				// the loaded acl is managed, the new aces are cascaded
+				for (PermissionHibernate permission : permissions) {
+					acl.insertAce(permission, roleName);
+				}
+			}
+			if (++count % FLUSH_SIZE == 0) {
+				entityManager.flush();
+			}
+		}
+	}
+
 	/**
 	 * Creates the aclwith permissions.
 	 * 
@@ -218,18 +538,78 @@ public class HibernateAclService implements AclService {
 	 * 
 	 * @return the sid hibernate
 	 */
-	@SuppressWarnings("unchecked")
 	private SidHibernate createSidIfNotSaved(String sidname) {
+		return entityManager.getReference(SidHibernate.class, sidId(sidname));
+	}
+
+	/**
+	 * Returns the id of the sid, the sid is created if not saved.
+	 * 
+	 * @param sidname
+	 *            the sidname
+	 * 
+	 * @return the id of the sid
+	 */
+	@SuppressWarnings("unchecked")
+	private long sidId(String sidname) {
+		Long id = cachedSidId(sidname);
+		if (id != null) {
+			return id;
+		}
 		List<SidHibernate> list = entityManager
 				.createQuery("from SidHibernate sid where sidname = :sidname")
 				.setParameter("sidname", sidname).getResultList();
+		SidHibernate sid;
 		if (list.size() == 1) {
-			return list.get(0);
+			sid = list.get(0);
 		} else {
-			SidHibernate sid = new SidHibernate(sidname);
+			sid = new SidHibernate(sidname);
 			entityManager.persist(sid);
-			return sid;
 		}
+		cacheSidId(sidname, sid.getId());
+		return sid.getId();
+	}
+
+	/**
+	 * Creates the sids which are not saved and returns all sids by name.
+	 * 
+	 * @param sidnames
+	 *            the distinct sidnames
+	 * 
+	 * @return the sids by name
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, SidHibernate> createSidsIfNotSaved(List<String> sidnames) {
+		Map<String, SidHibernate> sids = new HashMap<String, SidHibernate>();
+		List<String> uncached = new ArrayList<String>();
+		for (String sidname : sidnames) {
+			Long id = cachedSidId(sidname);
+			if (id != null) {
+				sids.put(sidname, entityManager.getReference(SidHibernate.class, id));
+			} else {
+				uncached.add(sidname);
+			}
+		}
+		for (int i = 0; i < uncached.size(); i += MAX_IN_LIST_SIZE) {
+			List<SidHibernate> list = entityManager
+					.createQuery("from SidHibernate sid where sidname in (:sidnames)")
+					.setParameter("sidnames", uncached.subList(i,
+							Math.min(i + MAX_IN_LIST_SIZE, uncached.size())))
+					.getResultList();
+			for (SidHibernate sid : list) {
+				sids.put(sid.getSidname(), sid);
+			}
+		}
+		for (String sidname : uncached) {
+			SidHibernate sid = sids.get(sidname);
+			if (sid == null) {
+				sid = new SidHibernate(sidname);
+				entityManager.persist(sid);
+				sids.put(sidname, sid);
+			}
+			cacheSidId(sidname, sid.getId());
+		}
+		return sids;
 	}
 
 	/**
@@ -240,25 +620,126 @@ public class HibernateAclService implements AclService {
 	 * 
 	 * @return the object identity hibernate
 	 */
-	@SuppressWarnings("unchecked")
 	private ObjectIdentityHibernate createObjectIdentityIfNotSaved(
 			AbstractDomainObject object) {
+		return entityManager.getReference(ObjectIdentityHibernate.class,
+				objectIdentityId(object));
+	}
+
+	/**
+	 * Returns the id of the object identity of the object, the object identity
+	 * is created if not saved.
+	 * 
+	 * @param object
+	 *            the object
+	 * 
+	 * @return the id of the object identity
+	 */
+	@SuppressWarnings("unchecked")
+	private long objectIdentityId(AbstractDomainObject object) {
+		ObjectIdentityKey key = new ObjectIdentityKey(object.getClass()
+				.getCanonicalName(), object.getId());
+		Long id = cachedObjectIdentityId(key);
+		if (id != null) {
+			return id;
+		}
 		List<ObjectIdentityHibernate> list = entityManager
 				.createQuery(
 						"from ObjectIdentityHibernate where identifier = :identifier and type = :type")
 				.setParameter("identifier", object.getId())
 				.setParameter("type", object.getClass().getCanonicalName())
 				.getResultList();
+		ObjectIdentityHibernate oi;
 		if (list.size() == 1) {
-			return list.get(0);
+			oi = list.get(0);
 		} else {
-			ObjectIdentityHibernate oi = new ObjectIdentityHibernate(
-					object.getClass(), object.getId());
+			oi = new ObjectIdentityHibernate(object.getClass(), object.getId());
 			entityManager.persist(oi);
-			return oi;
+		}
+		cacheObjectIdentityId(key, oi.getId());
+		return oi.getId();
+	}
+
+	private Long cachedSidId(String sidname) {
+		Long id = sidIds.get(sidname);
+		if (id == null) {
+			PendingIds pending = pendingIds(false);
+			if (pending != null) {
+				id = pending.sidIds.get(sidname);
+			}
+		}
+		return id;
+	}
+
+	private void cacheSidId(String sidname, long id) {
+		PendingIds pending = pendingIds(true);
+		if (pending != null) {
+			pending.sidIds.put(sidname, id);
+		} else {
+			sidIds.put(sidname, id);
 		}
 	}
 
+	private Long cachedObjectIdentityId(ObjectIdentityKey key) {
+		Long id;
+		synchronized (objectIdentityIds) {
+			id = objectIdentityIds.get(key);
+		}
+		if (id == null) {
+			PendingIds pending = pendingIds(false);
+			if (pending != null) {
+				id = pending.objectIdentityIds.get(key);
+			}
+		}
+		return id;
+	}
+
+	private void cacheObjectIdentityId(ObjectIdentityKey key, long id) {
+		PendingIds pending = pendingIds(true);
+		if (pending != null) {
+			pending.objectIdentityIds.put(key, id);
+		} else {
+			synchronized (objectIdentityIds) {
+				objectIdentityIds.put(key, id);
+			}
+		}
+	}
+
+	/**
+	 * Returns the ids found or created in the current transaction, they are
+	 * published to the caches after the commit. Returns null without a
+	 * transaction.
+	 */
+	private PendingIds pendingIds(boolean create) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		PendingIds pending = (PendingIds) TransactionSynchronizationManager
+				.getResource(pendingIdsKey);
+		if (pending == null && create) {
+			final PendingIds newPending = new PendingIds();
+			TransactionSynchronizationManager.bindResource(pendingIdsKey,
+					newPending);
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+						@Override
+						public void afterCompletion(int status) {
+							TransactionSynchronizationManager
+									.unbindResourceIfPossible(pendingIdsKey);
+							if (status == TransactionSynchronization.STATUS_COMMITTED) {
+								sidIds.putAll(newPending.sidIds);
+								synchronized (objectIdentityIds) {
+									objectIdentityIds
+											.putAll(newPending.objectIdentityIds);
+								}
+							}
+						}
+					});
+			pending = newPending;
+		}
+		return pending;
+	}
+
 	/**
 	 * Update the acl.
 	 * 
@@ -266,11 +747,195 @@ public class HibernateAclService implements AclService {
 	 *            the acl
 	 */
 	public void update(AclHibernate acl) {
+		invalidateCache();
 		entityManager.merge(acl);
 	}
 
 	public void removeACEs(String sidName, String roleName){
-		SidHibernate sid = createSidIfNotSaved(sidName);
-		entityManager.createQuery("DELETE FROM AccessControlEntryHibernate ace where ace.roleName = ? and ace.sid = ?").setParameter(1, roleName).setParameter(2, sid).executeUpdate();
+		invalidateCache();
+		long sidId = sidId(sidName);
+		entityManager.createQuery("DELETE FROM AccessControlEntryHibernate ace where ace.roleName = ? and ace.sid.id = ?").setParameter(1, roleName).setParameter(2, sidId).executeUpdate();
+	}
+
+	/**
+	 * Clears the acl cache. Within a transaction the cache is not used for the
+	 * rest of the transaction and cleared again after its completion, so that
+	 * neither uncommitted nor rolled back acls are cached.
+	 */
+	public void invalidateCache() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()
+				&& !TransactionSynchronizationManager.hasResource(this)) {
+			TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+						@Override
+						public void afterCompletion(int status) {
+							TransactionSynchronizationManager
+									.unbindResourceIfPossible(HibernateAclService.this);
+							clearCache();
+						}
+					});
+		}
+		clearCache();
+	}
+
+	private void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+			cacheGeneration++;
+		}
+	}
+
+	/**
+	 * Clears the acl cache and the cached ids of the sids and object
+	 * identities, needed if the acl tables were changed without this service.
+	 */
+	public void clearCaches() {
+		clearCache();
+		sidIds.clear();
+		synchronized (objectIdentityIds) {
+			objectIdentityIds.clear();
+		}
+	}
+
+	/**
+	 * Sets the maximum amount of cached acls.
+	 */
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Sets the time in milliseconds a read acl is kept in the cache.
+	 */
+	public void setCacheTimeToLive(long cacheTimeToLive) {
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	/**
+	 * Returns the amount of cached acls.
+	 */
+	public int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Returns the amount of acl reads answered by the cache.
+	 */
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * Returns the amount of acl reads which had to query the database.
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * A cached acl with the time it expires.
+	 */
+	private static final class CachedAcl {
+
+		private final AclHibernate acl;
+
+		private final long expires;
+
+		private CachedAcl(AclHibernate acl, long expires) {
+			this.acl = acl;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * The ids of the sids and object identities found or created in a
+	 * transaction.
+	 */
+	private static final class PendingIds {
+
+		private final Map<String, Long> sidIds = new HashMap<String, Long>();
+
+		private final Map<ObjectIdentityKey, Long> objectIdentityIds = new HashMap<ObjectIdentityKey, Long>();
+	}
+
+	/**
+	 * The key of the cached object identity ids, the type and the identifier.
+	 */
+	private static final class ObjectIdentityKey {
+
+		private final String type;
+
+		private final long identifier;
+
+		private ObjectIdentityKey(String type, long identifier) {
+			this.type = type;
+			this.identifier = identifier;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode()
+					+ (int) (identifier ^ (identifier >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ObjectIdentityKey))
+				return false;
+			ObjectIdentityKey other = (ObjectIdentityKey) obj;
+			return identifier == other.identifier && type.equals(other.type);
+		}
+	}
+
+	/**
+	 * The key of the acl cache, the sid and the object identity.
+	 */
+	private static final class AclCacheKey {
+
+		private final String sidname;
+
+		private final String type;
+
+		private final Serializable identifier;
+
+		private AclCacheKey(String sidname, ObjectIdentity object) {
+			this.sidname = sidname;
+			this.type = object.getType();
+			// the identifiers of the domain objects are numbers, use the same
+			// type for all object identities
+			this.identifier = object.getIdentifier() instanceof Number ? Long
+					.valueOf(((Number) object.getIdentifier()).longValue())
+					: object.getIdentifier();
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result
+					+ ((identifier == null) ? 0 : identifier.hashCode());
+			result = prime * result + sidname.hashCode();
+			result = prime * result + ((type == null) ? 0 : type.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof AclCacheKey))
+				return false;
+			AclCacheKey other = (AclCacheKey) obj;
+			return sidname.equals(other.sidname)
+					&& (type == null ? other.type == null : type
+							.equals(other.type))
+					&& (identifier == null ? other.identifier == null
+							: identifier.equals(other.identifier));
+		}
 	}
 }
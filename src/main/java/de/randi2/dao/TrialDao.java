@@ -18,6 +18,7 @@
 package de.randi2.dao;
 
 import java.util.List;
+import java.util.Map;
 
 import de.randi2.model.Login;
 import de.randi2.model.Trial;
@@ -35,5 +36,68 @@ public interface TrialDao extends AbstractDao<Trial>{
 	 * @return
 	 */
 	public List<TrialSubject> getSubjects(Trial trial, Login investigator);
+
+	/**
+	 * @see TrialService
+	 * @param trial
+	 * @param firstResult
+	 * @param maxResults
+	 * @return
+	 */
+	public List<TrialSubject> getSubjects(Trial trial, int firstResult,
+			int maxResults);
+
+	/**
+	 * Counts the subjects of the trial with an aggregate query.
+	 * 
+	 * @param trial
+	 * @return
+	 */
+	public long countSubjects(Trial trial);
+
+	/**
+	 * Counts the subjects of the trial per month of their creation with one
+	 * aggregate query.
+	 * 
+	 * @param trial
+	 * @return The counts by the month, the key is
+	 *         <code>year * 12 + month</code> with the month of
+	 *         {@link java.util.GregorianCalendar#MONTH}.
+	 */
+	public Map<Integer, Long> countSubjectsPerMonth(Trial trial);
+
+	/**
+	 * Counts the subjects of the trial per trial site with one aggregate
+	 * query.
+	 * 
+	 * @param trial
+	 * @return The counts by the id of the trial site, trial sites without
+	 *         subjects are missing.
+	 */
+	public Map<Long, Long> countSubjectsPerTrialSite(Trial trial);
+
+	/**
+	 * Counts the subjects of the trial per treatment arm with one aggregate
+	 * query.
+	 * 
+	 * @param trial
+	 * @return The counts by the id of the treatment arm, treatment arms
+	 *         without subjects are missing.
+	 */
+	public Map<Long, Long> countSubjectsPerArm(Trial trial);
+
+	/**
+	 * Counts the subjects of the trial per stratum. Only the property values
+	 * of the subjects are read, the strata are computed with the criteria of
+	 * the trial.
+	 * 
+	 * @param trial
+	 * @return The counts by the stratum of
+	 *         {@link de.randi2.model.TrialSubject#getStratum()}, prefixed
+	 *         with the id of the trial site and <code>__</code> if the trial
+	 *         is stratified by trial sites. Strata without subjects are
+	 *         missing.
+	 */
+	public Map<String, Long> countSubjectsPerStratum(Trial trial);
 	
 }
@@ -17,7 +17,12 @@
  */
 package de.randi2.dao;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.stereotype.Service;
 
@@ -25,12 +30,15 @@ import de.randi2.model.AbstractDomainObject;
 import de.randi2.model.Login;
 import de.randi2.model.Trial;
 import de.randi2.model.TrialSubject;
+import de.randi2.model.criteria.AbstractCriterion;
+import de.randi2.model.criteria.constraints.AbstractConstraint;
 import de.randi2.model.randomization.Block;
 import de.randi2.model.randomization.BlockRandomizationConfig;
 import de.randi2.model.randomization.BlockRandomizationTempData;
 import de.randi2.model.randomization.Urn;
 import de.randi2.model.randomization.UrnDesignConfig;
 import de.randi2.model.randomization.UrnDesignTempData;
+import de.randi2.unsorted.ContraintViolatedException;
 
 /**
  * The Class TrialDaoHibernate.
@@ -106,4 +114,156 @@ public class TrialDaoHibernate extends AbstractDaoHibernate<Trial> implements
 				.getResultList();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.randi2.dao.TrialDao#getSubjects(de.randi2.model.Trial, int, int)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<TrialSubject> getSubjects(Trial trial, int firstResult,
+			int maxResults) {
+		return entityManager.createNamedQuery("trialSubject.subjectsOfTrial")
+				.setParameter(1, trial).setFirstResult(firstResult)
+				.setMaxResults(maxResults).getResultList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.randi2.dao.TrialDao#countSubjects(de.randi2.model.Trial)
+	 */
+	@Override
+	public long countSubjects(Trial trial) {
+		return (Long) entityManager.createNamedQuery(
+				"trialSubject.countSubjectsOfTrial").setParameter(1, trial)
+				.getSingleResult();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.randi2.dao.TrialDao#countSubjectsPerMonth(de.randi2.model.Trial)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<Integer, Long> countSubjectsPerMonth(Trial trial) {
+		List<Object[]> rows = entityManager.createNamedQuery(
+				"trialSubject.countSubjectsOfTrialPerMonth").setParameter(1,
+				trial).getResultList();
+		Map<Integer, Long> counts = new HashMap<Integer, Long>();
+		for (Object[] row : rows) {
+			if (row[0] == null || row[1] == null) {
+				continue;
+			}
+			// the month of the query starts with 1
+			int month = ((Number) row[0]).intValue() * 12
+					+ ((Number) row[1]).intValue() - 1;
+			counts.put(month, ((Number) row[2]).longValue());
+		}
+		return counts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.randi2.dao.TrialDao#countSubjectsPerTrialSite(de.randi2.model.Trial)
+	 */
+	@Override
+	public Map<Long, Long> countSubjectsPerTrialSite(Trial trial) {
+		return countsById("trialSubject.countSubjectsOfTrialPerTrialSite",
+				trial);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.randi2.dao.TrialDao#countSubjectsPerArm(de.randi2.model.Trial)
+	 */
+	@Override
+	public Map<Long, Long> countSubjectsPerArm(Trial trial) {
+		return countsById("trialSubject.countSubjectsOfTrialPerArm", trial);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.randi2.dao.TrialDao#countSubjectsPerStratum(de.randi2.model.Trial)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<String, Long> countSubjectsPerStratum(Trial trial) {
+		Map<Long, AbstractCriterion<?, ?>> criteria = new HashMap<Long, AbstractCriterion<?, ?>>();
+		for (AbstractCriterion<?, ?> criterion : trial.getCriteria()) {
+			criteria.put(criterion.getId(), criterion);
+		}
+		// one row per property, the rows of a subject follow each other
+		List<Object[]> rows = entityManager.createNamedQuery(
+				"trialSubject.propertyValuesOfTrial").setParameter(1, trial)
+				.getResultList();
+		Map<String, Long> counts = new HashMap<String, Long>();
+		List<String> parts = new ArrayList<String>();
+		for (int i = 0; i < rows.size(); i++) {
+			Object[] row = rows.get(i);
+			if (row[2] != null) {
+				String part = stratumPart(criteria.get(((Number) row[2])
+						.longValue()), (Serializable) row[3]);
+				if (part != null) {
+					parts.add(part);
+				}
+			}
+			if (i + 1 < rows.size() && rows.get(i + 1)[0].equals(row[0])) {
+				continue;
+			}
+			// the stratum as in TrialSubject#getStratum()
+			Collections.sort(parts);
+			StringBuilder stratum = new StringBuilder();
+			if (trial.isStratifyTrialSite()) {
+				stratum.append(row[1]).append("__");
+			}
+			for (String part : parts) {
+				stratum.append(part).append(';');
+			}
+			String key = stratum.toString();
+			Long count = counts.get(key);
+			counts.put(key, count == null ? 1 : count + 1);
+			parts.clear();
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the part of the stratum string for the value of the criterion,
+	 * or <code>null</code> if the value violates the constraints.
+	 */
+	@SuppressWarnings("unchecked")
+	private String stratumPart(AbstractCriterion criterion, Serializable value) {
+		if (criterion == null) {
+			return null;
+		}
+		try {
+			AbstractConstraint<?> constraint = criterion.stratify(value);
+			return criterion.getId() + "_"
+					+ (constraint == null ? -1 : constraint.getId());
+		} catch (ContraintViolatedException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the result of a named query, which selects an id and a count.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<Long, Long> countsById(String queryName, Trial trial) {
+		List<Object[]> rows = entityManager.createNamedQuery(queryName)
+				.setParameter(1, trial).getResultList();
+		Map<Long, Long> counts = new HashMap<Long, Long>();
+		for (Object[] row : rows) {
+			counts.put(((Number) row[0]).longValue(), ((Number) row[1])
+					.longValue());
+		}
+		return counts;
+	}
+
 }
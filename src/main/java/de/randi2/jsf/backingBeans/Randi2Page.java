@@ -269,7 +269,15 @@ public class Randi2Page {
 				.getApplication().getELResolver().getValue(
 						FacesContext.getCurrentInstance()
 								.getELContext(), null, "simulationHandler"));
-		simulationHandler.simTrial();
+		simulationHandler.startSimulation();
+	}
+	
+	public void cancelSimulation(ActionEvent event){
+		SimulationHandler simulationHandler = ((SimulationHandler) FacesContext.getCurrentInstance()
+				.getApplication().getELResolver().getValue(
+						FacesContext.getCurrentInstance()
+								.getELContext(), null, "simulationHandler"));
+		simulationHandler.cancelSimulation();
 	}
 	
 	public void showCurrentTrial(ActionEvent event){
@@ -28,8 +28,10 @@ import javax.faces.bean.ManagedBean;
 import javax.faces.bean.ManagedProperty;
 import javax.faces.bean.SessionScoped;
 import javax.faces.component.UIComponent;
+import javax.faces.component.UIViewRoot;
 import javax.faces.context.FacesContext;
 import javax.faces.event.ActionEvent;
+import javax.faces.model.DataModel;
 import javax.faces.model.SelectItem;
 import javax.servlet.http.HttpSession;
 import javax.validation.ConstraintViolation;
@@ -48,6 +50,7 @@ import de.randi2.jsf.exceptions.RegistrationException;
 import de.randi2.jsf.supportBeans.PermissionVerifier;
 import de.randi2.jsf.supportBeans.Popups;
 import de.randi2.jsf.supportBeans.Randi2;
+import de.randi2.jsf.wrappers.PagedLogEntriesDataModel;
 import de.randi2.model.AbstractDomainObject;
 import de.randi2.model.Login;
 import de.randi2.model.Person;
@@ -57,6 +60,7 @@ import de.randi2.services.TrialSiteService;
 import de.randi2.services.UserService;
 import de.randi2.utility.logging.LogEntry;
 import de.randi2.utility.logging.LogEntry.ActionType;
+import de.randi2.utility.logging.LogEntryFilter;
 import de.randi2.utility.logging.LogService;
 
 /**
@@ -86,6 +90,20 @@ public class LoginHandler extends AbstractHandler<Login> {
 	@Setter
 	private TrialSiteService siteService;
 
+	/**
+	 * The count of log entries which are loaded at once.
+	 */
+	private static final int LOG_ENTRIES_PAGE_SIZE = 100;
+
+	private PagedLogEntriesDataModel logEntriesDataModel;
+
+	private Login logEntriesObject;
+
+	/**
+	 * The view which shows the log entries, a new view reloads them.
+	 */
+	private transient UIViewRoot logEntriesView;
+
 	/*
 	 * Reference to the application popup logic.
 	 */
@@ -484,12 +502,24 @@ public class LoginHandler extends AbstractHandler<Login> {
 	}
 
 	/**
-	 * Provides the audit log entries for the showed object.
+	 * Provides the audit log entries for the showed object, the entries are
+	 * loaded page by page.
 	 * 
 	 * @return
 	 */
-	public List<LogEntry> getLogEntries() {
-		return logService.getLogEntries(currentObject.getUsername());
+	public DataModel<LogEntry> getLogEntries() {
+		UIViewRoot view = FacesContext.getCurrentInstance().getViewRoot();
+		if (logEntriesDataModel == null || logEntriesObject != currentObject) {
+			LogEntryFilter filter = new LogEntryFilter();
+			filter.setUsername(currentObject.getUsername());
+			logEntriesDataModel = new PagedLogEntriesDataModel(logService,
+					filter, LOG_ENTRIES_PAGE_SIZE);
+			logEntriesObject = currentObject;
+		} else if (logEntriesView != view) {
+			logEntriesDataModel.refresh();
+		}
+		logEntriesView = view;
+		return logEntriesDataModel;
 	}
 
 	/*
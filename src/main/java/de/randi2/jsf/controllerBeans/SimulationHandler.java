@@ -8,9 +8,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.el.ValueExpression;
 import javax.faces.bean.ManagedBean;
@@ -26,9 +29,9 @@ import lombok.Setter;
 import com.icesoft.faces.context.Resource;
 
 import de.randi2.jsf.backingBeans.AlgorithmConfig;
-import de.randi2.jsf.backingBeans.Randi2Page;
 import de.randi2.jsf.backingBeans.SimulationAlgorithm;
 import de.randi2.jsf.backingBeans.SimulationSubjectProperty;
+import de.randi2.jsf.supportBeans.Randi2;
 import de.randi2.jsf.wrappers.AlgorithmWrapper;
 import de.randi2.jsf.wrappers.CriterionWrapper;
 import de.randi2.jsf.wrappers.DistributedConstraintWrapper;
@@ -47,7 +50,7 @@ import de.randi2.model.randomization.MinimizationConfig;
 import de.randi2.model.randomization.TruncatedBinomialDesignConfig;
 import de.randi2.model.randomization.UrnDesignConfig;
 import de.randi2.simulation.model.DistributionSubjectProperty;
-import de.randi2.simulation.model.SimulationRawDataEntry;
+import de.randi2.simulation.model.SimulationRawData;
 import de.randi2.simulation.model.SimulationResult;
 import de.randi2.simulation.model.SimulationResultArm;
 import de.randi2.simulation.model.helper.StrataResultComperatorAST;
@@ -55,6 +58,7 @@ import de.randi2.simulation.model.helper.StrataResultComperatorATS;
 import de.randi2.simulation.model.helper.StrataResultComperatorSAT;
 import de.randi2.simulation.model.helper.StrataResultComperatorSTA;
 import de.randi2.simulation.model.helper.StrataResultWrapper;
+import de.randi2.simulation.service.SimulationJob;
 import de.randi2.simulation.service.SimulationService;
 
 /**
@@ -92,6 +96,21 @@ public class SimulationHandler extends AbstractTrialHandler {
 	@Setter
 	private long maxTime;
 
+	/**
+	 * The count of parallel simulation workers, by default one per available
+	 * processor.
+	 */
+	@Getter
+	private int simulationWorkers = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Sets the count of workers, limited to the available processors.
+	 */
+	public void setSimulationWorkers(int simulationWorkers) {
+		this.simulationWorkers = Math.max(1, Math.min(simulationWorkers,
+				Runtime.getRuntime().availableProcessors()));
+	}
+
 	@Getter
 	private SimulationResult simResult;
 
@@ -156,6 +175,13 @@ public class SimulationHandler extends AbstractTrialHandler {
 	@Setter
 	private boolean collectRawData = false;
 
+	/**
+	 * The jobs of the running asynchronous simulation, one job per algorithm.
+	 */
+	private List<SimulationJob> simulationJobs;
+
+	private List<String> simulationJobDescriptions;
+
 	private DistributionTrialSiteWrapper distributedTrialSites;
 
 	private List<DistributedCriterionWrapper<Serializable, AbstractConstraint<Serializable>>> distributedCriterions;
@@ -364,9 +390,153 @@ public class SimulationHandler extends AbstractTrialHandler {
 			return currentObject.isStratifyTrialSite();
 	}
 
-	public void simTrial() {
+	/**
+	 * Starts the simulation asynchronously, the progress and the result are
+	 * available with {@link #getSimulationProgress()} and
+	 * {@link #refreshSimulation()}.
+	 */
+	public void startSimulation() {
+		cancelSimulation();
+		disposeRawData();
 		simulationResults = null;
 		simResult = null;
+		List<DistributionSubjectProperty> properties = getSimulationProperties();
+		simulationJobs = new ArrayList<SimulationJob>();
+		simulationJobDescriptions = new ArrayList<String>();
+		try {
+			if (simOnly) {
+				for (AlgorithmWrapper alg : randomisationConfigs) {
+					prepareAlgorithm(alg);
+					simulationJobs.add(submit(properties));
+					simulationJobDescriptions.add(alg.getDescription());
+				}
+			} else {
+				simulationJobs.add(submit(properties));
+				simulationJobDescriptions.add(null);
+			}
+		} catch (RejectedExecutionException e) {
+			cancelSimulation();
+			Randi2.showMessage(e);
+		}
+	}
+
+	/**
+	 * Takes the results of the asynchronous simulation, if all jobs are done.
+	 */
+	public void refreshSimulation() {
+		if (simulationJobs == null || isSimulationRunning()) {
+			return;
+		}
+		List<SimulationResult> results = new ArrayList<SimulationResult>();
+		try {
+			for (int i = 0; i < simulationJobs.size(); i++) {
+				SimulationResult result = simulationJobs.get(i).getResult();
+				if (result != null) {
+					if (simulationJobDescriptions.get(i) != null) {
+						result.setAlgorithmDescription(simulationJobDescriptions
+								.get(i));
+					}
+					results.add(result);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			Randi2.showMessage(e);
+		} finally {
+			simulationJobs = null;
+			simulationJobDescriptions = null;
+		}
+		if (simOnly) {
+			simulationResults = results;
+		} else if (!results.isEmpty()) {
+			simResult = results.get(0);
+		}
+	}
+
+	/**
+	 * Cancels the asynchronous simulation.
+	 */
+	public void cancelSimulation() {
+		if (simulationJobs != null) {
+			for (SimulationJob job : simulationJobs) {
+				if (job != null) {
+					job.cancel();
+				}
+			}
+			simulationJobs = null;
+			simulationJobDescriptions = null;
+		}
+	}
+
+	public boolean isSimulationRunning() {
+		if (simulationJobs != null) {
+			for (SimulationJob job : simulationJobs) {
+				if (job != null && !job.isDone()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the progress of the asynchronous simulation in percent.
+	 */
+	public int getSimulationProgress() {
+		if (simulationJobs == null || simulationJobs.isEmpty()) {
+			return 0;
+		}
+		int progress = 0;
+		for (SimulationJob job : simulationJobs) {
+			progress += job == null || job.isDone() ? 100 : job.getProgress();
+		}
+		return progress / simulationJobs.size();
+	}
+
+	/**
+	 * @return the estimated remaining time of the asynchronous simulation in
+	 *         seconds or -1, if the time can not be estimated.
+	 */
+	public long getSimulationRemainingTime() {
+		long remaining = 0;
+		if (simulationJobs != null) {
+			for (SimulationJob job : simulationJobs) {
+				if (job == null) {
+					continue;
+				}
+				long time = job.getEstimatedRemainingTime();
+				if (time < 0) {
+					return -1;
+				}
+				remaining = Math.max(remaining, time);
+			}
+		}
+		return remaining / 1000;
+	}
+
+	/**
+	 * @return the results of the completed runs of the asynchronous
+	 *         simulation.
+	 */
+	public List<SimulationResult> getSimulationSnapshots() {
+		List<SimulationResult> snapshots = new ArrayList<SimulationResult>();
+		if (simulationJobs != null) {
+			for (int i = 0; i < simulationJobs.size(); i++) {
+				SimulationResult snapshot = simulationJobs.get(i) == null ? null
+						: simulationJobs.get(i).getSnapshot();
+				if (snapshot != null) {
+					snapshot.setAlgorithmDescription(simulationJobDescriptions
+							.get(i));
+					snapshots.add(snapshot);
+				}
+			}
+		}
+		return snapshots;
+	}
+
+	private List<DistributionSubjectProperty> getSimulationProperties() {
 		currentObject.setTreatmentArms(getTreatmentArms());
 		List<DistributionSubjectProperty> properties = new ArrayList<DistributionSubjectProperty>();
 		if (distributedCriterions != null) {
@@ -374,39 +544,39 @@ public class SimulationHandler extends AbstractTrialHandler {
 				properties.add(dcw.getDistributionSubjectProperty());
 			}
 		}
+		return properties;
+	}
 
-		if (simOnly) {
-			simulationResults = new ArrayList<SimulationResult>();
-			for (AlgorithmWrapper alg : randomisationConfigs) {
-				currentObject.setRandomizationConfiguration(alg.getConf());
-				alg.getConf().setTempData(null);
-				alg.getConf().setTrial(currentObject);
-				if (seedRandomisationAlgorithmB) {
-					alg.getConf().resetAlgorithm(seedRandomisationAlgorithm);
-				} else {
-					alg.getConf().resetAlgorithm();
+	private void prepareAlgorithm(AlgorithmWrapper alg) {
+		currentObject.setRandomizationConfiguration(alg.getConf());
+		alg.getConf().setTempData(null);
+		alg.getConf().setTrial(currentObject);
+		if (seedRandomisationAlgorithmB) {
+			alg.getConf().resetAlgorithm(seedRandomisationAlgorithm);
+		} else {
+			alg.getConf().resetAlgorithm();
+		}
+	}
+
+	private SimulationJob submit(List<DistributionSubjectProperty> properties) {
+		return simulationService.submitSimulation(currentObject, properties,
+				distributedTrialSites.getDistributionTrialSites(), runs,
+				maxTime, collectRawData, simulationWorkers);
+	}
+
+	/**
+	 * Deletes the raw data of the last simulation.
+	 */
+	private void disposeRawData() {
+		if (simulationResults != null) {
+			for (SimulationResult result : simulationResults) {
+				if (result != null) {
+					result.getRawData().dispose();
 				}
-				SimulationResult result = simulationService.simulateTrial(
-						currentObject, properties,
-						distributedTrialSites.getDistributionTrialSites(),
-						runs, maxTime, collectRawData);
-				result.setAlgorithmDescription(alg.getDescription());
-				simulationResults.add(result);
 			}
-
-		} else {
-			SimulationResult result = simulationService.simulateTrial(
-					currentObject, properties,
-					distributedTrialSites.getDistributionTrialSites(), runs,
-					maxTime, collectRawData);
-			simResult = result;
-			Randi2Page rPage = ((Randi2Page) FacesContext
-					.getCurrentInstance()
-					.getApplication()
-					.getELResolver()
-					.getValue(FacesContext.getCurrentInstance().getELContext(),
-							null, "randi2Page"));
-			rPage.simulationResult(null);
+		}
+		if (simResult != null) {
+			simResult.getRawData().dispose();
 		}
 	}
 
@@ -419,6 +589,7 @@ public class SimulationHandler extends AbstractTrialHandler {
 	}
 
 	public boolean isSimulationComplete() {
+		refreshSimulation();
 		return isResultComplete() || isResultsComplete();
 	}
 
@@ -576,23 +747,7 @@ public class SimulationHandler extends AbstractTrialHandler {
 	}
 
 	public Resource getExportSimulationRawData() {
-		StringBuffer sb = new StringBuffer();
-		for (SimulationResult simRes : simulationResults) {
-			sb.append(simRes.getAlgorithmDescription() + ":\n");
-			for (SimulationRawDataEntry entry : simRes.getRawData()) {
-				sb.append(entry.getRun() + ";");
-				sb.append(entry.getCount() + ";");
-				sb.append(entry.getTreatmentArm() + ";");
-				sb.append(entry.getTrialSite() + ";");
-				String stratumNameComp = simRes.getStrataIdNames().get(
-						entry.getStratum());
-				String stratumName = stratumNameComp.substring((stratumNameComp
-						.lastIndexOf("|") + 1));
-				sb.append(stratumName + "\n");
-			}
-			sb.append("-------------------------------------------\n");
-		}
-		return new MyStringResource("rawData.csv", sb.toString());
+		return new RawDataResource("rawData.csv", simulationResults);
 	}
 
 	public List<StrataResultWrapper> getAllStrataResults() {
@@ -676,4 +831,119 @@ public class SimulationHandler extends AbstractTrialHandler {
 		}
 
 	}
+
+	/**
+	 * Exports the raw data of the simulation results as csv. The lines are
+	 * created while the stream is read, so the export reads the raw data
+	 * directly from its temporary file and does not need a copy of the whole
+	 * raw data.
+	 */
+	private class RawDataResource implements Resource, Serializable {
+
+		private static final long serialVersionUID = -3473386328513706826L;
+		private String resourceName;
+		private transient List<SimulationResult> results;
+		private final Date lastModified;
+
+		@Override
+		public String calculateDigest() {
+			return resourceName;
+		}
+
+		@Override
+		public Date lastModified() {
+			return lastModified;
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			if (results == null) {
+				return new RawDataInputStream(Collections
+						.<SimulationResult> emptyList().iterator());
+			}
+			return new RawDataInputStream(results.iterator());
+		}
+
+		@Override
+		public void withOptions(Options arg0) throws IOException {
+		}
+
+		public RawDataResource(String resourceName,
+				List<SimulationResult> results) {
+			this.resourceName = resourceName;
+			this.results = results;
+			this.lastModified = new Date();
+		}
+
+	}
+
+	/**
+	 * Creates the csv lines of the raw data one after another while the
+	 * stream is read.
+	 */
+	private static class RawDataInputStream extends InputStream {
+
+		private final Iterator<SimulationResult> results;
+		private SimulationResult result;
+		private SimulationRawData.Cursor cursor;
+		private byte[] line = new byte[0];
+		private int linePosition = 0;
+
+		RawDataInputStream(Iterator<SimulationResult> results) {
+			this.results = results;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (linePosition == line.length && !nextLine()) {
+				return -1;
+			}
+			return line[linePosition++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int read = 0;
+			while (read < len) {
+				if (linePosition == line.length && !nextLine()) {
+					break;
+				}
+				int size = Math.min(len - read, line.length - linePosition);
+				System.arraycopy(line, linePosition, b, off + read, size);
+				linePosition += size;
+				read += size;
+			}
+			return read == 0 ? -1 : read;
+		}
+
+		private boolean nextLine() throws IOException {
+			String text;
+			if (cursor != null) {
+				if (cursor.next()) {
+					String stratumNameComp = result.getStrataIdNames().get(
+							cursor.getStratum());
+					String stratumName = stratumNameComp
+							.substring((stratumNameComp.lastIndexOf("|") + 1));
+					text = cursor.getRun() + ";" + cursor.getCount() + ";"
+							+ cursor.getTreatmentArm() + ";"
+							+ cursor.getTrialSite() + ";" + stratumName + "\n";
+				} else {
+					cursor = null;
+					text = "-------------------------------------------\n";
+				}
+			} else if (results.hasNext()) {
+				result = results.next();
+				cursor = result.getRawData().cursor();
+				text = result.getAlgorithmDescription() + ":\n";
+			} else {
+				return false;
+			}
+			line = text.getBytes();
+			linePosition = 0;
+			return true;
+		}
+	}
 }
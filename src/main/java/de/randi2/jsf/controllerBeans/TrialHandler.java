@@ -28,8 +28,10 @@ import javax.faces.bean.ManagedBean;
 import javax.faces.bean.ManagedProperty;
 import javax.faces.bean.SessionScoped;
 import javax.faces.component.UIComponent;
+import javax.faces.component.UIViewRoot;
 import javax.faces.context.FacesContext;
 import javax.faces.event.ActionEvent;
+import javax.faces.model.DataModel;
 import javax.faces.model.SelectItem;
 
 import lombok.Getter;
@@ -38,6 +40,8 @@ import de.randi2.jsf.backingBeans.AlgorithmConfig;
 import de.randi2.jsf.backingBeans.SubjectPropertiesConfig;
 import de.randi2.jsf.converters.LoginConverter;
 import de.randi2.jsf.supportBeans.Randi2;
+import de.randi2.jsf.wrappers.PagedLogEntriesDataModel;
+import de.randi2.jsf.wrappers.PagedSubjectsDataModel;
 import de.randi2.model.Login;
 import de.randi2.model.Role;
 import de.randi2.model.Trial;
@@ -48,6 +52,7 @@ import de.randi2.model.exceptions.TrialStateException;
 import de.randi2.services.TrialService;
 import de.randi2.services.TrialSiteService;
 import de.randi2.utility.logging.LogEntry;
+import de.randi2.utility.logging.LogEntryFilter;
 import de.randi2.utility.logging.LogService;
 
 /**
@@ -75,6 +80,27 @@ public class TrialHandler extends AbstractTrialHandler {
 	@Setter
 	private LogService logService;
 
+	/**
+	 * The count of subjects which are loaded at once.
+	 */
+	private static final int SUBJECTS_PAGE_SIZE = 50;
+
+	private PagedSubjectsDataModel subjectsDataModel;
+
+	/**
+	 * The count of log entries which are loaded at once.
+	 */
+	private static final int LOG_ENTRIES_PAGE_SIZE = 100;
+
+	private PagedLogEntriesDataModel logEntriesDataModel;
+
+	private Trial logEntriesObject;
+
+	/**
+	 * The view which shows the log entries, a new view reloads them.
+	 */
+	private transient UIViewRoot logEntriesView;
+
 	@Setter
 	/**
 	 * Defindes if the randomization is possible or not.
@@ -299,13 +325,25 @@ public class TrialHandler extends AbstractTrialHandler {
 	}
 
 	/**
-	 * Provieds the audit log entries for the current trial object.
+	 * Provieds the audit log entries for the current trial object, the
+	 * entries are loaded page by page.
 	 * 
 	 * @return
 	 */
-	public List<LogEntry> getLogEntries() {
-		return logService.getLogEntries(currentObject.getClass(),
-				currentObject.getId());
+	public DataModel<LogEntry> getLogEntries() {
+		UIViewRoot view = FacesContext.getCurrentInstance().getViewRoot();
+		if (logEntriesDataModel == null || logEntriesObject != currentObject) {
+			LogEntryFilter filter = new LogEntryFilter();
+			filter.setClazz(currentObject.getClass());
+			filter.setIdentifier(currentObject.getId());
+			logEntriesDataModel = new PagedLogEntriesDataModel(logService,
+					filter, LOG_ENTRIES_PAGE_SIZE);
+			logEntriesObject = currentObject;
+		} else if (logEntriesView != view) {
+			logEntriesDataModel.refresh();
+		}
+		logEntriesView = view;
+		return logEntriesDataModel;
 	}
 
 	public List<TrialSubject> getSubjectsList() {
@@ -322,11 +360,27 @@ public class TrialHandler extends AbstractTrialHandler {
 		return null;
 	}
 
+	/**
+	 * Provides the subjects of the current trial, the subjects are loaded
+	 * page by page.
+	 * 
+	 * @return
+	 */
+	public DataModel<TrialSubject> getSubjectsDataModel() {
+		if (subjectsDataModel == null
+				|| subjectsDataModel.getWrappedData() != currentObject) {
+			subjectsDataModel = new PagedSubjectsDataModel(trialService,
+					currentObject, SUBJECTS_PAGE_SIZE);
+		}
+		return subjectsDataModel;
+	}
+
 	@Override
 	public void setCurrentObject(Trial _currentObject) {
 		if (_currentObject != null && _currentObject.getId() > 0)
 			_currentObject = trialService.getObject(_currentObject.getId());
 		super.setCurrentObject(_currentObject);
+		subjectsDataModel = null;
 	}
 
 	private void clean() {
@@ -0,0 +1,142 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.jsf.wrappers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.faces.model.DataModel;
+
+import de.randi2.utility.logging.LogEntry;
+import de.randi2.utility.logging.LogEntryFilter;
+import de.randi2.utility.logging.LogService;
+
+/**
+ * Data model of the audit log entries, which loads the entries page by page,
+ * the newest entries first. A page is read after the last entry of the
+ * previous page, so the pages before a requested page are read once to find
+ * their last entries.
+ */
+public class PagedLogEntriesDataModel extends DataModel<LogEntry> {
+
+	private final LogService logService;
+
+	private final int pageSize;
+
+	private LogEntryFilter filter;
+
+	private int rowCount = -1;
+
+	private int rowIndex = -1;
+
+	private int pageNumber = -1;
+
+	private List<LogEntry> page;
+
+	/** The last entries of the read pages. */
+	private final List<LogEntry> lastEntries = new ArrayList<LogEntry>();
+
+	public PagedLogEntriesDataModel(LogService logService,
+			LogEntryFilter filter, int pageSize) {
+		this.logService = logService;
+		this.pageSize = pageSize;
+		setWrappedData(filter);
+	}
+
+	@Override
+	public int getRowCount() {
+		if (rowCount < 0) {
+			rowCount = (int) logService.countLogEntries(filter);
+		}
+		return rowCount;
+	}
+
+	@Override
+	public LogEntry getRowData() {
+		if (!isRowAvailable()) {
+			return null;
+		}
+		int number = rowIndex / pageSize;
+		if (number != pageNumber) {
+			loadPage(number);
+		}
+		int index = rowIndex - number * pageSize;
+		return index < page.size() ? page.get(index) : null;
+	}
+
+	private void loadPage(int number) {
+		// read the pages before the requested page, if their last entries
+		// are unknown
+		while (lastEntries.size() < number) {
+			List<LogEntry> previous = readPage(lastEntries.size());
+			if (previous.isEmpty()) {
+				break;
+			}
+			lastEntries.add(previous.get(previous.size() - 1));
+		}
+		page = number <= lastEntries.size() ? readPage(number)
+				: new ArrayList<LogEntry>();
+		pageNumber = number;
+		if (number == lastEntries.size() && !page.isEmpty()) {
+			lastEntries.add(page.get(page.size() - 1));
+		}
+	}
+
+	private List<LogEntry> readPage(int number) {
+		return logService.getLogEntries(filter, number == 0 ? null
+				: lastEntries.get(number - 1), pageSize);
+	}
+
+	@Override
+	public int getRowIndex() {
+		return rowIndex;
+	}
+
+	@Override
+	public Object getWrappedData() {
+		return filter;
+	}
+
+	@Override
+	public boolean isRowAvailable() {
+		return rowIndex >= 0 && rowIndex < getRowCount();
+	}
+
+	@Override
+	public void setRowIndex(int rowIndex) {
+		this.rowIndex = rowIndex;
+	}
+
+	/**
+	 * Discards the loaded pages and the count, so the entries which are
+	 * logged in the meantime are read with the next request.
+	 */
+	public void refresh() {
+		setWrappedData(filter);
+	}
+
+	@Override
+	public void setWrappedData(Object data) {
+		filter = (LogEntryFilter) data;
+		rowCount = -1;
+		pageNumber = -1;
+		page = null;
+		lastEntries.clear();
+	}
+
+}
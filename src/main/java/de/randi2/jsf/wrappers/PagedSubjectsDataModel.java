@@ -0,0 +1,107 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.jsf.wrappers;
+
+import java.util.List;
+
+import javax.faces.model.DataModel;
+
+import de.randi2.model.Trial;
+import de.randi2.model.TrialSubject;
+import de.randi2.services.TrialService;
+
+/**
+ * Data model of the subjects of a trial, which loads the subjects page by
+ * page. The count of the subjects is queried once, a page is loaded when a row
+ * of the page is requested.
+ */
+public class PagedSubjectsDataModel extends DataModel<TrialSubject> {
+
+	private final TrialService trialService;
+
+	private final int pageSize;
+
+	private Trial trial;
+
+	private int rowCount = -1;
+
+	private int rowIndex = -1;
+
+	private int pageStart = -1;
+
+	private List<TrialSubject> page;
+
+	public PagedSubjectsDataModel(TrialService trialService, Trial trial,
+			int pageSize) {
+		this.trialService = trialService;
+		this.pageSize = pageSize;
+		setWrappedData(trial);
+	}
+
+	@Override
+	public int getRowCount() {
+		if (rowCount < 0) {
+			rowCount = trial == null ? 0 : (int) trialService
+					.countSubjects(trial);
+		}
+		return rowCount;
+	}
+
+	@Override
+	public TrialSubject getRowData() {
+		if (!isRowAvailable()) {
+			return null;
+		}
+		int start = (rowIndex / pageSize) * pageSize;
+		if (start != pageStart) {
+			page = trialService.getSubjects(trial, start, pageSize);
+			pageStart = start;
+		}
+		int index = rowIndex - start;
+		return index < page.size() ? page.get(index) : null;
+	}
+
+	@Override
+	public int getRowIndex() {
+		return rowIndex;
+	}
+
+	@Override
+	public Object getWrappedData() {
+		return trial;
+	}
+
+	@Override
+	public boolean isRowAvailable() {
+		return rowIndex >= 0 && rowIndex < getRowCount();
+	}
+
+	@Override
+	public void setRowIndex(int rowIndex) {
+		this.rowIndex = rowIndex;
+	}
+
+	@Override
+	public void setWrappedData(Object data) {
+		trial = (Trial) data;
+		rowCount = -1;
+		pageStart = -1;
+		page = null;
+	}
+
+}
@@ -57,6 +57,7 @@ import de.randi2.utility.validations.Password;
 		@NamedQuery(name = "login.LoginsWithPermission", query = "from Login as login where login.username in (select ace.sid.sidname from AccessControlEntryHibernate as ace where ace.acl.objectIdentity.type = ? and ace.acl.objectIdentity.identifier = ? and ace.permission.code = ?)"),
 		@NamedQuery(name = "login.AllLoginsWithSpecificRole" ,query= "select l from Login as l join l.roles role where role.id = ?" ),
 		@NamedQuery(name = "login.AllLoginsWithSpecificRoleAndTrialSite" ,query= "select l from Login as l join l.roles role where role.id = ? and l in (select p.login from TrialSite as site join site.members p where site.id = ?)"),
+		@NamedQuery(name = "login.AllLoginsWithSpecificRoleAndTrialSites" ,query= "select distinct l from Login as l join l.roles role where role.id = :role and l.person in (select p from TrialSite as site join site.members p where site.id in (:sites))"),
 		@NamedQuery(name = "login.AllLoginsWithSpecificTrialSite" ,query= "select l from Login as l where l in (select p.login from TrialSite as site join site.members p where site.id = ?)")
 })
 @EqualsAndHashCode(callSuper = true)
@@ -31,6 +31,8 @@ import javax.validation.constraints.NotNull;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.hibernate.validator.constraints.Range;
@@ -65,19 +67,61 @@ public class TreatmentArm extends AbstractDomainObject{
 	@ManyToOne
 	private Trial trial = null;
 
-	/** The subjects. */
+	/**
+	 * The subjects, they are loaded only if the list is iterated, the size
+	 * and single elements are queried without loading the whole list.
+	 */
 	@OneToMany(mappedBy="arm")
 	@OrderBy("createdAt ASC")
+	@LazyCollection(LazyCollectionOption.EXTRA)
 	private List<TrialSubject> subjects = new ArrayList<TrialSubject>();
 
 	/**
-	 * Adds the subject.
+	 * The count of the subjects, it is updated together with the subjects and
+	 * stored, so the count is available without loading the subjects.
+	 */
+	private int subjectsCount = 0;
+
+	/**
+	 * Adds the subject and increments the subject counters of the arm and
+	 * the trial.
 	 * 
 	 * @param subject
 	 *            the subject
 	 */
 	public void addSubject(TrialSubject subject){
 		this.subjects.add(subject);
+		changeSubjectsCount(1);
+	}
+
+	/**
+	 * Sets the subjects and the subject counters of the arm and the trial.
+	 * 
+	 * @param subjects
+	 *            the subjects
+	 */
+	public void setSubjects(List<TrialSubject> subjects) {
+		this.subjects = subjects;
+		changeSubjectsCount((subjects == null ? 0 : subjects.size())
+				- subjectsCount);
+	}
+
+	/**
+	 * Removes all subjects and resets the subject counters of the arm and the
+	 * trial.
+	 */
+	public void clearSubjects() {
+		if (subjects != null) {
+			subjects.clear();
+		}
+		changeSubjectsCount(-subjectsCount);
+	}
+
+	private void changeSubjectsCount(int difference) {
+		subjectsCount += difference;
+		if (trial != null) {
+			trial.changeSubjectsCount(difference);
+		}
 	}
 	
 	/**
@@ -87,7 +131,7 @@ public class TreatmentArm extends AbstractDomainObject{
 	 */
 	@Transient
 	public int getCurrentSubjectsAmount(){
-		return getSubjects().size();
+		return subjectsCount;
 	}
 	
 	/**
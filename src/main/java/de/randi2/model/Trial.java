@@ -68,7 +68,8 @@ import de.randi2.utility.validations.DateDependence;
 @Configurable
 @DateDependence(firstDate = "startDate", secondDate = "endDate")
 @EqualsAndHashCode(callSuper = true, exclude = { "randomConf",
-		"participatingSites", "sponsorInvestigator", "subjectCriteria" })
+		"participatingSites", "sponsorInvestigator", "subjectCriteria",
+		"subjectsCount" })
 @NamedQuery(name = "trial.AllTrialsWithSpecificParticipatingTrialSite", query = "select trial from Trial as trial join trial.participatingSites site where site.id = ?")
 @ToString(callSuper=true, of={"name", "abbreviation", "status", "startDate", "endDate"})
 public class Trial extends AbstractDomainObject {
@@ -158,9 +159,16 @@ public class Trial extends AbstractDomainObject {
 	/** The treatment arms. */
 	@OneToMany(cascade = CascadeType.ALL, mappedBy = "trial", fetch=FetchType.EAGER)
 	@Getter
-	@Setter
 	private Set<TreatmentArm> treatmentArms = new HashSet<TreatmentArm>();
 
+	/**
+	 * The count of the subjects of all treatment arms, it is updated by the
+	 * treatment arms and stored, so the count is available without loading the
+	 * subjects.
+	 */
+	@Getter
+	private int subjectsCount = 0;
+
 	/** The subject criteria. */
 	@OneToMany(cascade = CascadeType.ALL)
 	private List<AbstractCriterion<? extends Serializable, ? extends AbstractConstraint<? extends Serializable>>> subjectCriteria = new ArrayList<AbstractCriterion<? extends Serializable, ? extends AbstractConstraint<? extends Serializable>>>();
@@ -251,6 +259,33 @@ public class Trial extends AbstractDomainObject {
 		}
 	}
 
+	/**
+	 * Sets the treatment arms of this trial and the subject counter to the sum
+	 * of the counters of the arms, the arms count their subjects for this
+	 * trial.
+	 * 
+	 * @param treatmentArms
+	 *            the treatment arms
+	 */
+	public void setTreatmentArms(Set<TreatmentArm> treatmentArms) {
+		this.treatmentArms = treatmentArms;
+		subjectsCount = 0;
+		if (treatmentArms != null) {
+			for (TreatmentArm arm : treatmentArms) {
+				arm.setTrial(this);
+				subjectsCount += arm.getCurrentSubjectsAmount();
+			}
+		}
+	}
+
+	/**
+	 * Changes the subject counter, it is called by the treatment arms of this
+	 * trial.
+	 */
+	void changeSubjectsCount(int difference) {
+		subjectsCount += difference;
+	}
+
 	/**
 	 * Gets all subjects from this trial.
 	 * 
@@ -273,7 +308,7 @@ public class Trial extends AbstractDomainObject {
 	 */
 	@Transient
 	public int getTotalSubjectAmount() {
-		return getSubjects().size();
+		return subjectsCount;
 	}
 
 	@Transient
@@ -17,6 +17,7 @@
  */
 package de.randi2.model;
 
+import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -29,6 +30,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Transient;
@@ -38,6 +40,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
+import org.apache.log4j.Logger;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
 
@@ -55,9 +58,17 @@ import de.randi2.unsorted.ContraintViolatedException;
  *            the new properties
  */
 @Data
-@EqualsAndHashCode(callSuper=true)
-@ToString(exclude={"arm"})
-@NamedQuery(name = "trialSubject.specificInvestigator", query = "select ts from TrialSubject as ts join ts.arm arm where arm.trial = ? and ts.investigator = ? order by ts.arm")
+@EqualsAndHashCode(callSuper=true, exclude={"stratumCache"})
+@ToString(exclude={"arm", "stratumCache"})
+@NamedQueries( {
+		@NamedQuery(name = "trialSubject.specificInvestigator", query = "select ts from TrialSubject as ts join ts.arm arm where arm.trial = ? and ts.investigator = ? order by ts.arm"),
+		@NamedQuery(name = "trialSubject.subjectsOfTrial", query = "select ts from TrialSubject as ts join ts.arm arm where arm.trial = ? order by ts.counter"),
+		@NamedQuery(name = "trialSubject.countSubjectsOfTrial", query = "select count(ts) from TrialSubject as ts join ts.arm arm where arm.trial = ?"),
+		@NamedQuery(name = "trialSubject.countSubjectsOfTrialPerMonth", query = "select year(ts.createdAt), month(ts.createdAt), count(ts) from TrialSubject as ts join ts.arm arm where arm.trial = ? group by year(ts.createdAt), month(ts.createdAt)"),
+		@NamedQuery(name = "trialSubject.countSubjectsOfTrialPerTrialSite", query = "select ts.trialSite.id, count(ts) from TrialSubject as ts join ts.arm arm where arm.trial = ? group by ts.trialSite.id"),
+		@NamedQuery(name = "trialSubject.countSubjectsOfTrialPerArm", query = "select arm.id, count(ts) from TrialSubject as ts join ts.arm arm where arm.trial = ? group by arm.id"),
+		@NamedQuery(name = "trialSubject.propertyValuesOfTrial", query = "select ts.id, site.id, criterion.id, property.value from TrialSubject as ts join ts.arm arm left join ts.trialSite site left join ts.properties property left join property.criterion criterion where arm.trial = ? order by ts.id")
+})
 public class TrialSubject extends AbstractDomainObject {
 
 	/** The Constant serialVersionUID. */
@@ -114,31 +125,120 @@ public class TrialSubject extends AbstractDomainObject {
 	@OneToMany(cascade = CascadeType.PERSIST, fetch=FetchType.EAGER)
 	private Set<SubjectProperty<?>> properties = new HashSet<SubjectProperty<?>>();
 
+	/**
+	 * The stratum of the properties, computed with the first call of
+	 * {@link #getStratum()} and computed again if the properties, their
+	 * criteria or values are changed.
+	 */
+	@Transient
+	private final StratumCache stratumCache = new StratumCache();
+
+	/**
+	 * Sets the properties and resets the cached stratum.
+	 * 
+	 * @param properties
+	 *            the new properties
+	 */
+	public void setProperties(Set<SubjectProperty<?>> properties) {
+		this.properties = properties;
+		stratumCache.reset();
+	}
 
 	/**
 	 * Gets the stratum.<br />
 	 * Generate the stratum identification string for the actual trial subject.
 	 * [criterion_id]_[constraint_id];[criterion_id]_[constraint_id];...
+	 * The string is cached as long as the properties are not changed.
 	 * 
 	 * @return the stratum
 	 */
-	@SuppressWarnings("unchecked")
 	@Transient
 	public String getStratum() {
-		List<String> stratum = new ArrayList<String>();
-		for (SubjectProperty p : properties) {
-			try {
-				stratum.add(p.getCriterion().getId() + "_" + p.getStratum());
-			} catch (ContraintViolatedException e) {
-				e.printStackTrace();
+		return stratumCache.get(properties);
+	}
+
+	/**
+	 * Holds the stratum string of the properties together with the
+	 * properties, criteria and values it is computed of.
+	 */
+	private static final class StratumCache implements Serializable {
+
+		private static final long serialVersionUID = -2398512480227648394L;
+
+		private static final Logger logger = Logger.getLogger(TrialSubject.class);
+
+		private String stratum;
+
+		private Set<SubjectProperty<?>> source;
+
+		/**
+		 * The property, its criterion and its value for every property in
+		 * the iteration order of the set.
+		 */
+		private Object[] snapshot;
+
+		private void reset() {
+			stratum = null;
+			source = null;
+			snapshot = null;
+		}
+
+		private String get(Set<SubjectProperty<?>> properties) {
+			if (!isValid(properties)) {
+				compute(properties);
+			}
+			return stratum;
+		}
+
+		private boolean isValid(Set<SubjectProperty<?>> properties) {
+			if (stratum == null || properties != source) {
+				return false;
+			}
+			if (properties == null) {
+				return true;
+			}
+			if (properties.size() * 3 != snapshot.length) {
+				return false;
+			}
+			int i = 0;
+			for (SubjectProperty<?> p : properties) {
+				if (snapshot[i++] != p || snapshot[i++] != p.getCriterion()
+						|| snapshot[i++] != p.getValue()) {
+					return false;
+				}
 			}
+			return true;
 		}
-		Collections.sort(stratum);
-		StringBuffer result = new StringBuffer();
-		for (String l : stratum) {
-			result.append(l + ";");
+
+		private void compute(Set<SubjectProperty<?>> properties) {
+			List<String> parts = new ArrayList<String>();
+			Object[] values = new Object[properties == null ? 0
+					: properties.size() * 3];
+			if (properties != null) {
+				int i = 0;
+				for (SubjectProperty<?> p : properties) {
+					values[i++] = p;
+					values[i++] = p.getCriterion();
+					values[i++] = p.getValue();
+					try {
+						parts.add(p.getCriterion().getId() + "_"
+								+ p.getStratum());
+					} catch (ContraintViolatedException e) {
+						logger.warn("The value of the property "
+								+ p.getCriterion().getName()
+								+ " violates the constraints of the criterion", e);
+					}
+				}
+			}
+			Collections.sort(parts);
+			StringBuilder result = new StringBuilder();
+			for (String part : parts) {
+				result.append(part).append(';');
+			}
+			stratum = result.toString().intern();
+			source = properties;
+			snapshot = values;
 		}
-		return result.toString();
 	}
 
 	/* (non-Javadoc)
@@ -78,6 +78,13 @@ public abstract class AbstractCriterion<V extends Serializable, C extends Abstra
 	@OneToMany(targetEntity=AbstractConstraint.class, cascade=CascadeType.ALL)
 	protected List<C> strata;
 
+	/**
+	 * Index of the strata, built with the first stratification and rebuilt if
+	 * the strata were changed.
+	 */
+	@Transient
+	private transient volatile StrataIndex<V, C> strataIndex;
+
 	@Transient
 	public C getInclusionConstraint(){
 		return inclusionConstraint;
@@ -100,6 +107,7 @@ public abstract class AbstractCriterion<V extends Serializable, C extends Abstra
 
 	public void setStrata(List<C> strata){
 		this.strata = strata;
+		this.strataIndex = null;
 	}
 	
 	public void addStrata(AbstractConstraint<?> abstractConstraint){
@@ -108,6 +116,7 @@ public abstract class AbstractCriterion<V extends Serializable, C extends Abstra
 		}
 		if(abstractConstraint != null){
 			this.strata.add((C) abstractConstraint);
+			this.strataIndex = null;
 		}
 	}
 	
@@ -115,14 +124,27 @@ public abstract class AbstractCriterion<V extends Serializable, C extends Abstra
 		this.isValueCorrect(value);
 		if(strata==null || strata.isEmpty())
 			return null;
-		for(C stratum : strata){
-			if(stratum.checkValue(value))
-				return stratum;
+		StrataIndex<V, C> index = strataIndex;
+		if(index == null || !index.isIndexOf(strata)){
+			index = createStrataIndex(strata);
+			strataIndex = index;
 		}
+		C stratum = index.find(value);
+		if(stratum != null)
+			return stratum;
 		throw new ContraintViolatedException();
 //		throw new Randi2Error("Valid value could not be assigned to any stratum.");
 	}
 
+	/**
+	 * Creates the index used by {@link #stratify(Serializable)} to find the
+	 * stratum of a value. The default index checks the strata one after
+	 * another.
+	 */
+	StrataIndex<V, C> createStrataIndex(List<C> strata){
+		return new StrataIndex<V, C>(strata);
+	}
+
 
 	@Transient
 	public  boolean isInclusionCriterion(){
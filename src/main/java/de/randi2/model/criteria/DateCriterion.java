@@ -65,6 +65,12 @@ public class DateCriterion extends
 		return list;
 	}
 
+	@Override
+	StrataIndex<GregorianCalendar, DateConstraint> createStrataIndex(
+			List<DateConstraint> strata) {
+		return new DateStrataIndex(strata);
+	}
+
 	@Override
 	public Class<DateConstraint> getContstraintType() {
 		return DateConstraint.class;
@@ -0,0 +1,107 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.model.criteria;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import de.randi2.model.criteria.constraints.DateConstraint;
+
+/**
+ * Index of the strata of a date criterion, the date ranges are sorted by their
+ * first date and the range of a value is found with a binary search. If the
+ * ranges overlap, the strata are checked one after another, so that the first
+ * matching stratum is returned like before.
+ */
+class DateStrataIndex extends StrataIndex<GregorianCalendar, DateConstraint> {
+
+	private static final Comparator<DateConstraint> FIRST_DATE_ORDER = new Comparator<DateConstraint>() {
+		@Override
+		public int compare(DateConstraint c1, DateConstraint c2) {
+			long first1 = firstMillis(c1);
+			long first2 = firstMillis(c2);
+			return first1 < first2 ? -1 : (first1 == first2 ? 0 : 1);
+		}
+	};
+
+	private DateConstraint[] sortedStrata;
+
+	private long[] firstDates;
+
+	private long[] secondDates;
+
+	DateStrataIndex(List<DateConstraint> strata) {
+		super(strata);
+		List<DateConstraint> sorted = new ArrayList<DateConstraint>(strata);
+		Collections.sort(sorted, FIRST_DATE_ORDER);
+		sortedStrata = sorted.toArray(new DateConstraint[sorted.size()]);
+		firstDates = new long[sortedStrata.length];
+		secondDates = new long[sortedStrata.length];
+		for (int i = 0; i < sortedStrata.length; i++) {
+			firstDates[i] = firstMillis(sortedStrata[i]);
+			secondDates[i] = secondMillis(sortedStrata[i]);
+			if (secondDates[i] < firstDates[i]
+					|| (i > 0 && firstDates[i] <= secondDates[i - 1])) {
+				// empty or overlapping ranges
+				sortedStrata = null;
+				return;
+			}
+		}
+	}
+
+	@Override
+	DateConstraint find(GregorianCalendar value) {
+		if (sortedStrata == null) {
+			return super.find(value);
+		}
+		if (value == null) {
+			return null;
+		}
+		long time = value.getTimeInMillis();
+		int low = 0;
+		int high = firstDates.length - 1;
+		// the last range with a first date before or equal to the value
+		int found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (firstDates[mid] <= time) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (found >= 0 && time <= secondDates[found]) {
+			return sortedStrata[found];
+		}
+		return null;
+	}
+
+	private static long firstMillis(DateConstraint constraint) {
+		return constraint.getFirstDate() == null ? Long.MIN_VALUE
+				: constraint.getFirstDate().getTimeInMillis();
+	}
+
+	private static long secondMillis(DateConstraint constraint) {
+		return constraint.getSecondDate() == null ? Long.MAX_VALUE
+				: constraint.getSecondDate().getTimeInMillis();
+	}
+}
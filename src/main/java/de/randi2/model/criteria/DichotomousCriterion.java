@@ -75,6 +75,12 @@ public class DichotomousCriterion extends AbstractCriterion<String, DichotomousC
 		}
 	}
 
+	@Override
+	StrataIndex<String, DichotomousConstraint> createStrataIndex(
+			List<DichotomousConstraint> strata) {
+		return new ValueStrataIndex<String, DichotomousConstraint>(strata, getConfiguredValues());
+	}
+
 	@Override
 	public Class<DichotomousConstraint> getContstraintType() {
 		return DichotomousConstraint.class;
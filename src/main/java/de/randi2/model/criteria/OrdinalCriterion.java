@@ -82,6 +82,12 @@ public class OrdinalCriterion extends
 		}		
 	}
 	
+	@Override
+	StrataIndex<String, OrdinalConstraint> createStrataIndex(
+			List<OrdinalConstraint> strata) {
+		return new ValueStrataIndex<String, OrdinalConstraint>(strata, elements);
+	}
+
 	@Override
 	public Class<OrdinalConstraint> getContstraintType() {
 		return OrdinalConstraint.class;
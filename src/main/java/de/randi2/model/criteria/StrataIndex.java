@@ -0,0 +1,66 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.model.criteria;
+
+import java.io.Serializable;
+import java.util.List;
+
+import de.randi2.model.criteria.constraints.AbstractConstraint;
+
+/**
+ * Finds the stratum of a value for {@link AbstractCriterion#stratify}. This
+ * implementation checks the strata one after another and returns the first
+ * matching one, subclasses look the stratum up in an index built from the
+ * strata.
+ * 
+ * @param <V>
+ *            the value type of the criterion
+ * @param <C>
+ *            the constraint type of the criterion
+ */
+class StrataIndex<V extends Serializable, C extends AbstractConstraint<V>> {
+
+	protected final List<C> strata;
+
+	private final int size;
+
+	StrataIndex(List<C> strata) {
+		this.strata = strata;
+		this.size = strata.size();
+	}
+
+	/**
+	 * Checks if the index was built for the passed strata and the strata were
+	 * not changed since.
+	 */
+	boolean isIndexOf(List<C> strata) {
+		return this.strata == strata && size == strata.size();
+	}
+
+	/**
+	 * Returns the first stratum which accepts the value or null, if no stratum
+	 * accepts it.
+	 */
+	C find(V value) {
+		for (C stratum : strata) {
+			if (stratum.checkValue(value))
+				return stratum;
+		}
+		return null;
+	}
+}
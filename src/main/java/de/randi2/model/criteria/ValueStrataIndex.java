@@ -0,0 +1,58 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.model.criteria;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.randi2.model.criteria.constraints.AbstractConstraint;
+
+/**
+ * Index of the strata of a criterion with a finite set of values, maps every
+ * value to its first matching stratum.
+ */
+class ValueStrataIndex<V extends Serializable, C extends AbstractConstraint<V>>
+		extends StrataIndex<V, C> {
+
+	private final Map<V, C> stratumOfValue = new HashMap<V, C>();
+
+	ValueStrataIndex(List<C> strata, List<V> values) {
+		super(strata);
+		if (values != null) {
+			for (V value : values) {
+				C stratum = super.find(value);
+				if (value != null && stratum != null
+						&& !stratumOfValue.containsKey(value)) {
+					stratumOfValue.put(value, stratum);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Values, which are not configured while the index is built, are checked
+	 * against all strata.
+	 */
+	@Override
+	C find(V value) {
+		C stratum = stratumOfValue.get(value);
+		return stratum != null ? stratum : super.find(value);
+	}
+}
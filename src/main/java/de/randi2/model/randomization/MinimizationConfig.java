@@ -1,9 +1,23 @@
 package de.randi2.model.randomization;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
 
 import lombok.Getter;
 import lombok.Setter;
+
+import org.hibernate.annotations.CollectionOfElements;
+import org.hibernate.annotations.MapKeyManyToMany;
+
+import de.randi2.model.criteria.AbstractCriterion;
 import de.randi2.randomization.Minimization;
 import de.randi2.randomization.RandomizationAlgorithm;
 
@@ -11,6 +25,27 @@ import de.randi2.randomization.RandomizationAlgorithm;
 public class MinimizationConfig extends AbstractRandomizationConfig {
 
 	private static final long serialVersionUID = -7118660260283369544L;
+
+	/**
+	 * The imbalance of the counts of one factor level, summed up over the
+	 * factors to the imbalance score of an arm.
+	 */
+	public enum ImbalanceFunction {
+
+		/**
+		 * The marginal balance from "Randomization by minimization for
+		 * unbalanced treatment allocation" Baoguang Han, et al.
+		 */
+		MARGINAL_BALANCE,
+		/**
+		 * The maximal minus the minimal adjusted count.
+		 */
+		RANGE,
+		/**
+		 * The sample standard deviation of the adjusted counts.
+		 */
+		STANDARD_DEVIATION;
+	}
 	
 	@Getter
 	@Setter
@@ -21,6 +56,27 @@ public class MinimizationConfig extends AbstractRandomizationConfig {
 	@Getter
 	@Setter
 	private boolean biasedCoinMinimization = true;
+	@Getter
+	@Setter
+	@Enumerated(EnumType.STRING)
+	private ImbalanceFunction imbalanceFunction = ImbalanceFunction.MARGINAL_BALANCE;
+	/**
+	 * The weight of the trial site factor in the imbalance score.
+	 */
+	@Getter
+	@Setter
+	private double trialSiteWeight = 1.0;
+	/**
+	 * The weights of the criteria in the imbalance score, a criterion without
+	 * weight has the weight 1.
+	 */
+	@Getter
+	@Setter
+	@CollectionOfElements(targetElement = Double.class, fetch = FetchType.EAGER)
+	@JoinTable(name = "MinimizationConfig_CriterionWeights", joinColumns = @JoinColumn(name = "minimizationConfig_id"))
+	@MapKeyManyToMany(joinColumns = @JoinColumn(name = "criterion_id"))
+	@Column(name = "weight")
+	private Map<AbstractCriterion<?, ?>, Double> criterionWeights = new HashMap<AbstractCriterion<?, ?>, Double>();
 	
 	public MinimizationConfig(long seed){
 		super(seed);
@@ -41,6 +97,14 @@ public class MinimizationConfig extends AbstractRandomizationConfig {
 		return new Minimization(super.getTrial(), seed);
 		}
 	
+	/**
+	 * Returns the weight of the criterion in the imbalance score.
+	 */
+	public double getCriterionWeight(AbstractCriterion<?, ?> criterion) {
+		Double weight = criterionWeights.get(criterion);
+		return weight == null ? 1.0 : weight;
+	}
+
 	@Override
 		public AbstractRandomizationTempData getTempData() {
 			if (tempData == null) {
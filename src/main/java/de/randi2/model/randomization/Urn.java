@@ -17,51 +17,170 @@
  */
 package de.randi2.model.randomization;
 
-import static de.randi2.utility.IntegerIterator.upto;
-
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
-import javax.persistence.ManyToMany;
+import javax.persistence.Transient;
 
-import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import org.hibernate.annotations.CollectionOfElements;
+import org.hibernate.annotations.MapKeyManyToMany;
+
 import de.randi2.model.AbstractDomainObject;
 import de.randi2.model.TreatmentArm;
+import de.randi2.utility.FenwickTree;
 
+/**
+ * An urn of the urn design. The urn keeps the count of balls per treatment arm
+ * instead of the single balls, a ball is drawn with a Fenwick tree over the
+ * counts in the order of the arm ids.
+ */
 @Entity
-@Data
 @EqualsAndHashCode(callSuper=true)
 public class Urn  extends AbstractDomainObject{
 	private static final long serialVersionUID = -7375855875576682823L;
+
+	/**
+	 * Orders the treatment arms by id and name, the draws depend on this order.
+	 */
+	public static final Comparator<TreatmentArm> ARM_ORDER = new Comparator<TreatmentArm>() {
+		@Override
+		public int compare(TreatmentArm o1, TreatmentArm o2) {
+			if (o1.getId() != o2.getId()) {
+				return o1.getId() < o2.getId() ? -1 : 1;
+			}
+			if (o1.getName() == null || o2.getName() == null) {
+				return o1.getName() == null ? (o2.getName() == null ? 0 : -1) : 1;
+			}
+			return o1.getName().compareTo(o2.getName());
+		}
+	};
 	
 	public static Urn generate(UrnDesignConfig config){
 		Urn urn = new Urn();
-		Set<TreatmentArm> arms = config.getTrial().getTreatmentArms();
-		for(int i : upto(config.getInitializeCountBalls())){
-			for (TreatmentArm arm : arms){
-				urn.add(arm);
-			}
+		for (TreatmentArm arm : config.getTrial().getTreatmentArms()){
+			urn.add(arm, config.getInitializeCountBalls());
 		}
 		return urn;
 	}
 	
-	@ManyToMany
-	@JoinTable(name = "Urn_Treatmentarm", 
-			joinColumns = {	@JoinColumn(name = "Urn_id") }, 
-			inverseJoinColumns = { @JoinColumn(name = "Treatmentarm_id") })
-	private List<TreatmentArm> urn = new ArrayList<TreatmentArm>();
+	/**
+	 * The count of balls per treatment arm, one row per arm.
+	 */
+	@Getter
+	@CollectionOfElements(targetElement = Integer.class)
+	@JoinTable(name = "Urn_Balls", joinColumns = @JoinColumn(name = "urn_id"))
+	@MapKeyManyToMany(joinColumns = @JoinColumn(name = "treatmentarm_id"))
+	@Column(name = "balls")
+	private Map<TreatmentArm, Integer> balls = new HashMap<TreatmentArm, Integer>();
+
+	/**
+	 * The arms of the Fenwick tree, they are rebuilt if the ball map changes.
+	 */
+	@Transient
+	private transient TreatmentArm[] arms;
+	@Transient
+	private transient FenwickTree tree;
+	@Transient
+	private transient Map<TreatmentArm, Integer> indexedBalls;
+
+	public void setBalls(Map<TreatmentArm, Integer> balls) {
+		this.balls = balls;
+		indexedBalls = null;
+	}
 	
 	public void add(TreatmentArm arm){
-		urn.add(arm);
+		add(arm, 1);
+	}
+
+	/**
+	 * Adds the count of balls of the treatment arm to the urn.
+	 */
+	public void add(TreatmentArm arm, int count) {
+		Integer current = balls.get(arm);
+		balls.put(arm, (current == null ? 0 : current) + count);
+		int position = isIndexed() ? position(arm) : -1;
+		if (position >= 0) {
+			tree.add(position, count);
+		} else {
+			indexedBalls = null;
+		}
+	}
+
+	/**
+	 * Adds the count of balls of every other treatment arm of the urn, all
+	 * arms except the given one, in O(K).
+	 */
+	public void addToOtherArms(TreatmentArm arm, int count) {
+		index();
+		int position = position(arm);
+		if (position < 0) {
+			throw new IllegalArgumentException("The treatment arm is not in the urn");
+		}
+		tree.addToAll(count);
+		tree.add(position, -count);
+		for (int i = 0; i < arms.length; i++) {
+			if (i != position) {
+				balls.put(arms[i], tree.get(i));
+			}
+		}
+	}
+
+	/**
+	 * @return The count of balls of the treatment arm.
+	 */
+	public int getCount(TreatmentArm arm) {
+		Integer count = balls.get(arm);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * @return The count of all balls in the urn.
+	 */
+	public int size() {
+		index();
+		return tree.total();
 	}
 	
 	public TreatmentArm drawFromUrn(Random rand) {
-		return urn.remove(rand.nextInt(urn.size()));
+		index();
+		int drawn = tree.find(rand.nextInt(tree.total()));
+		tree.add(drawn, -1);
+		balls.put(arms[drawn], tree.get(drawn));
+		return arms[drawn];
+	}
+
+	/**
+	 * @return The position of the treatment arm in the indexed arms or -1.
+	 */
+	private int position(TreatmentArm arm) {
+		int position = Arrays.binarySearch(arms, arm, ARM_ORDER);
+		return position >= 0 && arms[position].equals(arm) ? position : -1;
+	}
+
+	private boolean isIndexed() {
+		return indexedBalls == balls && tree != null;
+	}
+
+	private void index() {
+		if (isIndexed()) {
+			return;
+		}
+		arms = balls.keySet().toArray(new TreatmentArm[balls.size()]);
+		Arrays.sort(arms, ARM_ORDER);
+		tree = new FenwickTree(arms.length);
+		for (int i = 0; i < arms.length; i++) {
+			tree.add(i, balls.get(arms[i]));
+		}
+		indexedBalls = balls;
 	}
 }
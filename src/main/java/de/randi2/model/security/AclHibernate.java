@@ -19,8 +19,10 @@ package de.randi2.model.security;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
@@ -29,12 +31,17 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Transient;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
+import org.springframework.security.acls.domain.GrantedAuthoritySid;
+import org.springframework.security.acls.domain.PrincipalSid;
 import org.springframework.security.acls.model.AccessControlEntry;
 import org.springframework.security.acls.model.Acl;
 import org.springframework.security.acls.model.NotFoundException;
@@ -46,13 +53,21 @@ import org.springframework.util.Assert;
 import edu.umd.cs.findbugs.annotations.SuppressWarnings;
 
 @Entity
-@NamedQuery(name = "acl.findAclByObjectIdentityAndSid", query = "select acl from AclHibernate acl where acl.owner.sidname = ? and acl.objectIdentity.identifier = ? and acl.objectIdentity.type = ?")
+@NamedQueries( {
+		@NamedQuery(name = "acl.findAclByObjectIdentityAndSid", query = "select acl from AclHibernate acl where acl.owner.sidname = ? and acl.objectIdentity.identifier = ? and acl.objectIdentity.type = ?"),
+		@NamedQuery(name = "acl.findAclsByObjectIdentitiesAndSids", query = "select distinct acl from AclHibernate acl join fetch acl.owner join fetch acl.objectIdentity left join fetch acl.aces where acl.owner.sidname in (:sidnames) and acl.objectIdentity.type = :type and acl.objectIdentity.identifier in (:identifiers)")
+})
 @Data
+@EqualsAndHashCode(exclude = { "aceMasks" })
+@ToString(exclude = { "aceMasks" })
 @SuppressWarnings
 public class AclHibernate implements Acl, Serializable {
 
 	private static final long serialVersionUID = 253176536526673664L;
 
+	private static final int GRANTED = 0;
+	private static final int DENIED = 1;
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.TABLE)
 	private long id;
@@ -68,6 +83,12 @@ public class AclHibernate implements Acl, Serializable {
 	//private String roleName;
 	@Transient
 	private Sid[] loadedSids = null;
+	/**
+	 * The granted and denied permissions of the aces per sid, used by
+	 * {@link #isGranted(List, List, boolean)}.
+	 */
+	@Transient
+	private final AceMasks aceMasks = new AceMasks();
 
 	@Override
 	public List<AccessControlEntry> getEntries() {
@@ -85,6 +106,63 @@ public class AclHibernate implements Acl, Serializable {
 			throw new UnloadedSidException("ACL was not loaded for one or more SID");
 		}
 
+		Map<String, int[]> masks = aceMasks.get(aces);
+		boolean rejected;
+		if (masks != null) {
+			rejected = false;
+			for (int i = 0; i < permission.size(); i++) {
+				int mask = permission.get(i).getMask();
+				if (Integer.bitCount(mask) != 1) {
+					// the aces have single bit masks
+					continue;
+				}
+				for (int x = 0; x < sids.size(); x++) {
+					// the granted and denied bits of the first aces of this SID
+					int[] sidMasks = masks.get(sidname(sids.get(x)));
+					if (sidMasks == null) {
+						continue;
+					}
+					if ((sidMasks[GRANTED] & mask) != 0) {
+						return true;
+					} else if ((sidMasks[DENIED] & mask) != 0) {
+						// this permission is 100% rejected for this SID
+						rejected = true;
+						break;
+					}
+				}
+			}
+		} else {
+			// aces with combined masks, compare the masks one by one
+			Boolean granted = scanAces(permission, sids);
+			if (granted != null) {
+				return granted;
+			}
+			rejected = false;
+		}
+
+		if (rejected) {
+			// We found an ACE to reject the request at this point, as no
+			// other ACEs were found that granted a different permission
+			return false;
+		}
+
+		// No matches have been found so far
+		if (isEntriesInheriting() && (parentAcl != null)) {
+			// We have a parent, so let them try to find a matching ACE
+			return parentAcl.isGranted(permission, sids, false);
+		} else {
+			// We either have no parent, or we're the uppermost parent
+			throw new NotFoundException("Unable to locate a matching ACE for passed permissions and SIDs");
+		}
+	}
+
+	/**
+	 * Searches the aces for each permission and SID.
+	 * 
+	 * @return true, if an ace grants a permission, false, if no permission is
+	 *         granted but one is rejected, and null, if no ace matches
+	 */
+	private Boolean scanAces(List<Permission> permission, List<Sid> sids) {
 		AccessControlEntry firstRejection = null;
 
 		for (int i = 0; i < permission.size(); i++) {
@@ -98,10 +176,6 @@ public class AclHibernate implements Acl, Serializable {
 						// Found a matching ACE, so its authorization decision will prevail
 						if (ace.isGranting()) {
 							// Success
-							//if (!administrativeMode) {
-							//   auditLogger.logIfNeeded(true, ace);
-							//}
-
 							return true;
 						} else {
 							// Failure for this permission, so stop search
@@ -124,25 +198,7 @@ public class AclHibernate implements Acl, Serializable {
 				}
 			}
 		}
-
-		if (firstRejection != null) {
-			// We found an ACE to reject the request at this point, as no
-			// other ACEs were found that granted a different permission
-			//if (!administrativeMode) {
-			//  auditLogger.logIfNeeded(false, firstRejection);
-			//}
-
-			return false;
-		}
-
-		// No matches have been found so far
-		if (isEntriesInheriting() && (parentAcl != null)) {
-			// We have a parent, so let them try to find a matching ACE
-			return parentAcl.isGranted(permission, sids, false);
-		} else {
-			// We either have no parent, or we're the uppermost parent
-			throw new NotFoundException("Unable to locate a matching ACE for passed permissions and SIDs");
-		}
+		return firstRejection != null ? Boolean.FALSE : null;
 	}
 
 	@Override
@@ -181,5 +237,87 @@ public class AclHibernate implements Acl, Serializable {
 		ace.setSid(owner);
 		ace.setRoleName(roleName);
 		aces.add(ace);
+		aceMasks.reset();
+	}
+
+	public void setAces(List<AccessControlEntryHibernate> aces) {
+		this.aces = aces;
+		aceMasks.reset();
+	}
+
+	/**
+	 * The name of the SID, SidHibernate compares itself with the SIDs of the
+	 * security framework by this name.
+	 */
+	private static String sidname(Sid sid) {
+		if (sid instanceof SidHibernate) {
+			return ((SidHibernate) sid).getSidname();
+		} else if (sid instanceof PrincipalSid) {
+			return ((PrincipalSid) sid).getPrincipal();
+		} else if (sid instanceof GrantedAuthoritySid) {
+			return ((GrantedAuthoritySid) sid).getGrantedAuthority();
+		}
+		return null;
+	}
+
+	/**
+	 * Holds the granted and denied permission bits of the aces per SID name.
+	 * Only the first ace for a SID and permission decides, like the scan of the
+	 * aces. The masks are rebuilt if the aces were changed, if an ace has a
+	 * combined mask no masks are built.
+	 */
+	private static final class AceMasks implements Serializable {
+
+		private static final long serialVersionUID = 5148374023461389371L;
+
+		private transient volatile Index index;
+
+		private void reset() {
+			index = null;
+		}
+
+		private Map<String, int[]> get(List<AccessControlEntryHibernate> aces) {
+			Index current = index;
+			if (current == null || current.aces != aces
+					|| current.size != aces.size()) {
+				current = new Index(aces);
+				index = current;
+			}
+			return current.masks;
+		}
+
+		private static final class Index {
+
+			private final List<AccessControlEntryHibernate> aces;
+
+			private final int size;
+
+			private final Map<String, int[]> masks;
+
+			private Index(List<AccessControlEntryHibernate> aces) {
+				this.aces = aces;
+				this.size = aces.size();
+				Map<String, int[]> masks = new HashMap<String, int[]>();
+				for (AccessControlEntryHibernate ace : aces) {
+					if (ace.getSid() == null) {
+						continue;
+					}
+					int mask = ace.getPermission().getMask();
+					if (Integer.bitCount(mask) != 1) {
+						masks = null;
+						break;
+					}
+					int[] sidMasks = masks.get(ace.getSid().getSidname());
+					if (sidMasks == null) {
+						sidMasks = new int[2];
+						masks.put(ace.getSid().getSidname(), sidMasks);
+					}
+					if (((sidMasks[GRANTED] | sidMasks[DENIED]) & mask) == 0) {
+						sidMasks[ace.isGranting() ? GRANTED : DENIED] |= mask;
+					}
+				}
+				this.masks = masks;
+			}
+		}
 	}
 }
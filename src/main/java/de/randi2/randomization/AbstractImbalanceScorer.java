@@ -0,0 +1,165 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.randomization;
+
+import de.randi2.model.randomization.MinimizationConfig.ImbalanceFunction;
+
+/**
+ * Scores the imbalance of the counts of one factor level for every possible
+ * assignment of the next subject. The counts are adjusted by the planned
+ * subjects of the arms. A scorer keeps its working arrays, so that scoring
+ * allocates nothing.
+ * <br />
+ * The scores are computed incrementally and rounded differently than the
+ * direct formula of {@link #imbalance(double[])}. Arms, whose scores differ
+ * less than the tolerance of the scorer from the minimum, are returned by
+ * {@link #nearMinimum(double[], int[])} and must be compared with the direct
+ * formula, which decides ties.
+ */
+public abstract class AbstractImbalanceScorer {
+
+	protected final int[] plannedSubjects;
+
+	/**
+	 * The counts of the level per arm index.
+	 */
+	protected final double[] counts;
+
+	/**
+	 * The counts of the level divided by the planned subjects per arm index.
+	 */
+	protected final double[] adjustedCounts;
+
+	/**
+	 * @param plannedSubjects
+	 *            The planned subjects per arm index.
+	 */
+	protected AbstractImbalanceScorer(int[] plannedSubjects) {
+		this.plannedSubjects = plannedSubjects.clone();
+		counts = new double[plannedSubjects.length];
+		adjustedCounts = new double[plannedSubjects.length];
+	}
+
+	/**
+	 * Creates the scorer of the imbalance function.
+	 * 
+	 * @param function
+	 *            The imbalance function, null for the marginal balance.
+	 * @param plannedSubjects
+	 *            The planned subjects per arm index.
+	 */
+	public static AbstractImbalanceScorer create(ImbalanceFunction function,
+			int[] plannedSubjects) {
+		if (function == ImbalanceFunction.RANGE) {
+			return new RangeScorer(plannedSubjects);
+		} else if (function == ImbalanceFunction.STANDARD_DEVIATION) {
+			return new StandardDeviationScorer(plannedSubjects);
+		}
+		return new MarginalBalanceScorer(plannedSubjects);
+	}
+
+	/**
+	 * Adds the weighted imbalance of the level to the score of every arm, as
+	 * if the next subject is assigned to the arm.
+	 * 
+	 * @param counts
+	 *            The subjects of the level per arm index.
+	 * @param weight
+	 *            The weight of the factor.
+	 * @param scores
+	 *            The imbalance scores per arm index.
+	 */
+	public void addScores(double[] counts, double weight, double[] scores) {
+		System.arraycopy(counts, 0, this.counts, 0, this.counts.length);
+		adjust();
+		addScores(weight, scores);
+	}
+
+	/**
+	 * @see #addScores(double[], double, double[])
+	 */
+	public void addScores(int[] counts, double weight, double[] scores) {
+		for (int i = 0; i < this.counts.length; i++) {
+			this.counts[i] = counts[i];
+		}
+		adjust();
+		addScores(weight, scores);
+	}
+
+	private void adjust() {
+		for (int i = 0; i < adjustedCounts.length; i++) {
+			adjustedCounts[i] = counts[i] / plannedSubjects[i];
+		}
+	}
+
+	/**
+	 * Collects the arms, whose scores are not farther than the tolerance from
+	 * the minimal score. An arm with an undefined score is collected as well.
+	 * 
+	 * @param scores
+	 *            The imbalance scores per arm index.
+	 * @param candidates
+	 *            The collected arm indices in ascending order.
+	 * @return The number of collected arms.
+	 */
+	public int nearMinimum(double[] scores, int[] candidates) {
+		double minimum = Double.MAX_VALUE;
+		for (double score : scores) {
+			if (score < minimum) {
+				minimum = score;
+			}
+		}
+		int count = 0;
+		for (int arm = 0; arm < scores.length; arm++) {
+			if (!(scores[arm] > minimum + getTolerance())) {
+				candidates[count++] = arm;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The maximal distance of a score to the minimal score, for which the arm
+	 * is compared with the direct formula. It is larger than the rounding
+	 * errors of the incremental scores.
+	 */
+	protected abstract double getTolerance();
+
+	/**
+	 * The imbalance of the adjusted counts, computed directly.
+	 * 
+	 * @param adjustedCounts
+	 *            The counts including the assigned subject, divided by the
+	 *            planned subjects, in the order in which they are summed up.
+	 */
+	public abstract double imbalance(double[] adjustedCounts);
+
+	/**
+	 * The adjusted count of the arm after the assignment of the next subject.
+	 */
+	protected double assigned(int arm) {
+		return (counts[arm] + 1.0) / plannedSubjects[arm];
+	}
+
+	/**
+	 * Adds the weighted imbalance of the current {@link #adjustedCounts} to
+	 * the scores.
+	 */
+	protected abstract void addScores(double weight, double[] scores);
+
+}
@@ -0,0 +1,135 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.randomization;
+
+/**
+ * Calculates the marginal balance of the counts of one factor level for every
+ * possible assignment of the next subject. The adjusted counts (count divided
+ * by the planned subjects) are sorted once, the sum of their pairwise
+ * differences is then updated with prefix sums for each hypothetical
+ * assignment, so that all arms are scored in O(K log K) instead of O(K^3).
+ * Ties are decided by the pairwise formula of
+ * {@link #marginalBalance(double[])}.
+ */
+public class MarginalBalanceScorer extends AbstractImbalanceScorer {
+
+	/**
+	 * The rounding errors of both formulas are many orders of magnitude
+	 * smaller.
+	 */
+	public static final double TIE_TOLERANCE = 1e-9;
+
+	private final double[] sorted;
+	private final double[] prefixSums;
+
+	/**
+	 * @param plannedSubjects
+	 *            The planned subjects per arm index.
+	 */
+	public MarginalBalanceScorer(int[] plannedSubjects) {
+		super(plannedSubjects);
+		sorted = new double[plannedSubjects.length];
+		prefixSums = new double[plannedSubjects.length + 1];
+	}
+
+	@Override
+	protected void addScores(double weight, double[] scores) {
+		int length = adjustedCounts.length;
+		// insertion sort, the arrays hold one value per arm
+		for (int i = 0; i < length; i++) {
+			double value = adjustedCounts[i];
+			int j = i - 1;
+			while (j >= 0 && sorted[j] > value) {
+				sorted[j + 1] = sorted[j];
+				j--;
+			}
+			sorted[j + 1] = value;
+		}
+		// the sum of all pairwise differences of the sorted values
+		double differences = 0.0;
+		for (int i = 0; i < length; i++) {
+			prefixSums[i + 1] = prefixSums[i] + sorted[i];
+			differences += sorted[i] * (2 * i - length + 1);
+		}
+		double total = prefixSums[length];
+		for (int arm = 0; arm < length; arm++) {
+			double before = adjustedCounts[arm];
+			double after = assigned(arm);
+			// replace the differences to the value of the arm, the
+			// difference to itself is included in distance(after)
+			double armDifferences = differences - distance(before)
+					+ distance(after) - (after - before);
+			scores[arm] += weight * armDifferences
+					/ ((length - 1.0) * (total - before + after));
+		}
+	}
+
+	/**
+	 * The sum of the distances of the value to all adjusted counts.
+	 */
+	private double distance(double value) {
+		int length = sorted.length;
+		int low = 0;
+		int high = length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return value * low - prefixSums[low]
+				+ (prefixSums[length] - prefixSums[low]) - value
+				* (length - low);
+	}
+
+	@Override
+	protected double getTolerance() {
+		return TIE_TOLERANCE;
+	}
+
+	@Override
+	public double imbalance(double[] adjustedCounts) {
+		return marginalBalance(adjustedCounts);
+	}
+
+	/**
+	 * The marginal balance of the adjusted counts with the pairwise formula
+	 * from "Randomization by minimization for unbalanced treatment
+	 * allocation" Baoguang Han, et al.
+	 * 
+	 * @param adjustedCounts
+	 *            The counts including the assigned subject, divided by the
+	 *            planned subjects, in the order in which they are summed up.
+	 */
+	public static double marginalBalance(double[] adjustedCounts) {
+		double marginalBalance = 0.0;
+		double numerator = 0.0;
+		for (int i = 0; i < adjustedCounts.length - 1; i++) {
+			for (int j = i + 1; j < adjustedCounts.length; j++) {
+				marginalBalance += Math.abs(adjustedCounts[i]
+						- adjustedCounts[j]);
+			}
+			numerator += adjustedCounts[i];
+		}
+		numerator += adjustedCounts[adjustedCounts.length - 1];
+		numerator = (adjustedCounts.length - 1.0) * numerator;
+		return marginalBalance / numerator;
+	}
+}
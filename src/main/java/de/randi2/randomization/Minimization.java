@@ -1,6 +1,7 @@
 package de.randi2.randomization;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -13,16 +14,54 @@ import de.randi2.model.TreatmentArm;
 import de.randi2.model.Trial;
 import de.randi2.model.TrialSite;
 import de.randi2.model.TrialSubject;
+import de.randi2.model.criteria.AbstractCriterion;
 import de.randi2.model.criteria.constraints.AbstractConstraint;
 import de.randi2.model.randomization.MinimizationConfig;
+import de.randi2.model.randomization.MinimizationConfig.ImbalanceFunction;
 import de.randi2.model.randomization.MinimizationMapElementWrapper;
 import de.randi2.model.randomization.MinimizationTempData;
 import de.randi2.unsorted.ContraintViolatedException;
 
+/**
+ * Minimization algorithm. The counts per trial site and per constraint are
+ * stored in the temp data of the configuration, the algorithm mirrors them in
+ * one array per counter and addresses the arms by their index in the arms
+ * sorted by id. The probabilities per preferred treatment arm are read into a
+ * table once. The imbalance scores are calculated by the scorer of the
+ * configured {@link ImbalanceFunction} and weighted per factor. The arms next
+ * to the minimal score are compared with the direct formula in the order of
+ * the stored maps, so that ties of the marginal balance are decided as before.
+ */
 public class Minimization extends RandomizationAlgorithm<MinimizationConfig>{
 
 	private Random randomEqualScore = new Random();
 
+	/**
+	 * The treatment arms sorted by their ids.
+	 */
+	private TreatmentArm[] arms;
+	private long[] armIds;
+	private int[] plannedSubjects;
+	private double[] ratioProbabilities;
+
+	/**
+	 * The probabilities per preferred treatment arm, both dimensions are
+	 * indexed like {@link #arms}.
+	 */
+	private double[][] probabilities;
+	private Map<TreatmentArm, MinimizationMapElementWrapper> probabilitiesSource;
+
+	private final Map<AbstractConstraint<?>, Counter> constraintCounters = new HashMap<AbstractConstraint<?>, Counter>();
+	private Map<AbstractConstraint<?>, MinimizationMapElementWrapper> constraintCountersSource;
+	private final Map<TrialSite, Counter> trialSiteCounters = new HashMap<TrialSite, Counter>();
+	private Map<TrialSite, MinimizationMapElementWrapper> trialSiteCountersSource;
+
+	private Counter[] relevantCounters;
+	private double[] adjustedCounts;
+	private AbstractImbalanceScorer scorer;
+	private double[] scores;
+	private int[] candidates;
+
 	
 	public Minimization(Trial _trial) {
 		super(_trial);
@@ -51,38 +90,29 @@ public class Minimization extends RandomizationAlgorithm<MinimizationConfig>{
 	}
 	
 	private TreatmentArm doRandomizeNaiveMinimization(TrialSubject subject, Random random){
-		//calculate the p-values for this allocation
-		List<TreatmentArm> arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
-		ArrayList<Double> a = new ArrayList<Double>();
-		for(TreatmentArm arm : arms){
-			double plannedSubjects = configuration.isWithRandomizedSubjects() ? (arm.getPlannedSubjects()-arm.getCurrentSubjectsAmount()):arm.getPlannedSubjects();
-			double sum = 0;
-			double totalPlannedSubjects = 0;
-			for(TreatmentArm arm1 :arms){
-				if(!arm.equals(arm1)){
-					sum+=configuration.isWithRandomizedSubjects() ? (arm1.getPlannedSubjects()-arm1.getCurrentSubjectsAmount()) :arm1.getPlannedSubjects();
-				}
-				totalPlannedSubjects +=arm1.getPlannedSubjects();
-			}
-			//Formula from: "Randomization by minimization for unbalanced treatment allocation" Baoguang Han, et al. 
-				double value = plannedSubjects*configuration.getP() + (1.0-configuration.getP())/(arms.size() -1.0)*sum;
-				value = value / (configuration.isWithRandomizedSubjects() ? totalPlannedSubjects-trial.getTotalSubjectAmount(): totalPlannedSubjects);
-				a.add(value);
-		
+		// the sums are sums of subject counts and therefore exact
+		int armCount = trial.getTreatmentArms().size();
+		double totalPlannedSubjects = 0;
+		double totalSubjects = 0;
+		for(TreatmentArm arm : trial.getTreatmentArms()){
+			totalPlannedSubjects += arm.getPlannedSubjects();
+			totalSubjects += configuration.isWithRandomizedSubjects() ? (arm.getPlannedSubjects()-arm.getCurrentSubjectsAmount()):arm.getPlannedSubjects();
 		}
+		double denominator = configuration.isWithRandomizedSubjects() ? totalPlannedSubjects-trial.getTotalSubjectAmount(): totalPlannedSubjects;
 		//get Treatment arm with calculated p-values
 		double randomNumber = random.nextDouble();
 		double sum = 0;
-		int i = 0;
-		TreatmentArm arm = null;
-		while(i<a.size() && arm == null){
-			sum+=a.get(i);
+		for(TreatmentArm arm : trial.getTreatmentArms()){
+			double plannedSubjects = configuration.isWithRandomizedSubjects() ? (arm.getPlannedSubjects()-arm.getCurrentSubjectsAmount()):arm.getPlannedSubjects();
+			//Formula from: "Randomization by minimization for unbalanced treatment allocation" Baoguang Han, et al. 
+			double value = plannedSubjects*configuration.getP() + (1.0-configuration.getP())/(armCount -1.0)*(totalSubjects-plannedSubjects);
+			value = value / denominator;
+			sum+=value;
 			if(randomNumber <sum){
-				arm = arms.get(i);
+				return arm;
 			}
-			i++;
 		}
-		return arm;
+		return null;
 	}
 	
 	
@@ -90,151 +120,243 @@ public class Minimization extends RandomizationAlgorithm<MinimizationConfig>{
 	@SuppressWarnings("unchecked")
 	private TreatmentArm doRandomizeBiasedCoinMinimization(TrialSubject subject, Random random){
 		MinimizationTempData tempData = (MinimizationTempData) configuration.getTempData();
-	
-		HashMap<AbstractConstraint<?>, MinimizationMapElementWrapper> relevantConstraints =new HashMap<AbstractConstraint<?>, MinimizationMapElementWrapper>();;
-		MinimizationMapElementWrapper relevantTrialSite = null;
-		
 		if(tempData.getProbabilitiesPerPreferredTreatment()== null) initProbabilitiesPerPreferredTreatment();
-		//Counter for trial sites
+		initArms(tempData);
+
+		//the counters in the order of the former score calculation: the trial site first, then the constraints in the order of a hash map
+		int relevant = 0;
 		if(trial.isStratifyTrialSite()){
-			if(tempData.getCountTrialSites()== null) tempData.setCountTrialSites(new HashMap<TrialSite, MinimizationMapElementWrapper>());
-			MinimizationMapElementWrapper actMap = tempData.getCountTrialSites().get(subject.getTrialSite());
-			if(actMap == null){
-				actMap = new MinimizationMapElementWrapper(new HashMap<TreatmentArm, Double>());
-				for(TreatmentArm arm : trial.getTreatmentArms()){
-					actMap.getMap().put(arm, 0.0);							
-				}
-				tempData.getCountTrialSites().put(subject.getTrialSite(), actMap);
-			}
-			relevantTrialSite = actMap;
+			relevantCounters[relevant++] = trialSiteCounter(tempData, subject.getTrialSite());
 		}
-		
-		if(tempData.getCountConstraints() == null) tempData.setCountConstraints(new HashMap<AbstractConstraint<?>, MinimizationMapElementWrapper>());
-		
-		
-		//Get relevant constraints and if necessary create a new counter 
+		HashMap<AbstractConstraint<?>, Counter> relevantConstraints = new HashMap<AbstractConstraint<?>, Counter>();
 		for(SubjectProperty prop : subject.getProperties()){
 				try {
-					MinimizationMapElementWrapper actMap = tempData.getCountConstraints().get(prop.getCriterion().stratify(prop.getValue()));
-					if(actMap == null){
-						actMap = new MinimizationMapElementWrapper(new HashMap<TreatmentArm, Double>());
-						for(TreatmentArm arm : trial.getTreatmentArms()){
-							actMap.getMap().put(arm, 0.0);							
-						}
-						tempData.getCountConstraints().put(prop.getCriterion().stratify(prop.getValue()), actMap);
-					}
-					relevantConstraints.put(prop.getCriterion().stratify(prop.getValue()), actMap);
+					AbstractConstraint<?> constraint = prop.getCriterion().stratify(prop.getValue());
+					relevantConstraints.put(constraint, constraintCounter(tempData, constraint, prop.getCriterion()));
 				} catch (ContraintViolatedException e) {	}
 		}
-		
-		//calculate imbalance scores
-		MinimizationMapElementWrapper imbalacedScores = new MinimizationMapElementWrapper(new HashMap<TreatmentArm, Double>());		
-		
-		for(TreatmentArm arm :trial.getTreatmentArms()){
-			double imbalacedScore = 0.0;
-			ArrayList<MinimizationMapElementWrapper> listAllRelevantValues = new ArrayList<MinimizationMapElementWrapper>();
-			if(trial.isStratifyTrialSite()){
-				listAllRelevantValues.add(relevantTrialSite);
-			}
-			listAllRelevantValues.addAll(relevantConstraints.values());
-			for(MinimizationMapElementWrapper mapW : listAllRelevantValues){
-				double[] adjustetCountsPerArm = new double[trial.getTreatmentArms().size()];
-				int i = 0;
-				for(TreatmentArm actArm : mapW.getMap().keySet()){
-					double adjustetCount = 0.0;
-					if(actArm.getId() == arm.getId()){
-						adjustetCount  = mapW.getMap().get(actArm) + 1.0;
-					}else{
-						adjustetCount  =mapW.getMap().get(actArm);
-					}
-					//calculate adjusted counts
-					adjustetCount = adjustetCount / actArm.getPlannedSubjects();
-					adjustetCountsPerArm[i] = adjustetCount;
-					i++;
+		if(relevantCounters.length < relevant + relevantConstraints.size()){
+			Counter[] counters = new Counter[relevant + relevantConstraints.size()];
+			System.arraycopy(relevantCounters, 0, counters, 0, relevant);
+			relevantCounters = counters;
+		}
+		for(Counter counter : relevantConstraints.values()){
+			relevantCounters[relevant++] = counter;
+		}
+
+		//calculate imbalance scores, the arms next to the minimal score are compared with the direct formula
+		Arrays.fill(scores, 0.0);
+		for(int r = 0; r < relevant; r++){
+			scorer.addScores(relevantCounters[r].counts, relevantCounters[r].weight, scores);
+		}
+		int candidateCount = scorer.nearMinimum(scores, candidates);
+		int preferredArm = -1;
+		int armsWithSameScore = 0;
+		if(candidateCount == 1){
+			preferredArm = candidates[0];
+			armsWithSameScore = 1;
+		}else{
+			//find preferred treatment
+			double tmpMinValue = Double.MAX_VALUE;
+			for(int c = 0; c < candidateCount; c++){
+				int arm = candidates[c];
+				double imbalacedScore = 0.0;
+				for(int r = 0; r < relevant; r++){
+					imbalacedScore += relevantCounters[r].weight * imbalance(relevantCounters[r], arm);
 				}
-				//calculate marginal balance
-				double marginalBalance = 0.0;
-				double numerator = 0.0;	
-				for(i=0;i<adjustetCountsPerArm.length-1;i++){
-					for(int j = i+1;j<adjustetCountsPerArm.length;j++){
-						marginalBalance += Math.abs(adjustetCountsPerArm[i]-adjustetCountsPerArm[j]);
-					}
-					numerator += adjustetCountsPerArm[i];
+				if(imbalacedScore<tmpMinValue){
+					armsWithSameScore = 1;
+					tmpMinValue = imbalacedScore;
+					preferredArm = arm;
+				}else if (imbalacedScore==tmpMinValue){
+					armsWithSameScore++;
 				}
-				numerator+=adjustetCountsPerArm[adjustetCountsPerArm.length-1];
-				numerator =(adjustetCountsPerArm.length-1.0) * numerator;
-				marginalBalance = marginalBalance/numerator;
-				
-				imbalacedScore+= marginalBalance;
 			}
-			imbalacedScores.getMap().put(arm, imbalacedScore);
 		}
 
-		//find preferred treatment
-		double tmpMinValue = Double.MAX_VALUE;
-		ArrayList<TreatmentArm> armsWithSameScore = new ArrayList<TreatmentArm>();
-		
-		for(TreatmentArm arm : imbalacedScores.getMap().keySet()){
-			if(imbalacedScores.getMap().get(arm)<tmpMinValue){
-				armsWithSameScore.clear();
-				tmpMinValue = imbalacedScores.getMap().get(arm);
-				armsWithSameScore.add(arm);
-			}else if (imbalacedScores.getMap().get(arm)==tmpMinValue){
-				armsWithSameScore.add(arm);
-			}
-		}
-		
-		List<TreatmentArm> arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
-		Collections.sort(arms, new Comparator<TreatmentArm>() {
-			@Override
-			public int compare(TreatmentArm o1, TreatmentArm o2) {
-				return (o1.getId()<o2.getId() ? -1 : (o1.getId()==o2.getId() ? 0 : 1));
-			}
-			
-		});
-		//get all with min value
-		ArrayList<Double> a = new ArrayList<Double>();
-		
 		//==1 Default case one treatment arm with smallest imbalance score
 		//all treatment with same score, calculate probability with ratio
 		//other cases take randomly one treatment	
-		if(armsWithSameScore.size()==1){
-			for(TreatmentArm arm : arms){
-				a.add(tempData.getProbabilitiesPerPreferredTreatment().get(armsWithSameScore.get(0)).getMap().get(arm));
-			}
-		}else if(armsWithSameScore.size()==arms.size()){
-			for(TreatmentArm arm : arms){
-				a.add(((arm.getPlannedSubjects()*1.0)/(trial.getPlannedSubjectAmount()*1.0)));
-			}
+		double[] a;
+		if(armsWithSameScore==1){
+			a = probabilities[preferredArm];
+		}else if(armsWithSameScore==arms.length){
+			a = ratioProbabilities;
 		}else{
-			//List<TreatmentArm> arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
-			TreatmentArm preferredArm = arms.get(randomEqualScore.nextInt(arms.size()));
-			for(TreatmentArm arm : arms){
-				a.add(tempData.getProbabilitiesPerPreferredTreatment().get(preferredArm).getMap().get(arm));
-			}
+			a = probabilities[randomEqualScore.nextInt(arms.length)];
 		}
 			
 		//get Treatment arm with calculated p-values
 		double randomNumber = random.nextDouble();
 		double sum = 0;
-		int i = 0;
-		
-		TreatmentArm arm = null;
-		while(i<a.size() && arm == null){
-			sum+=a.get(i);
+		int arm = -1;
+		for(int i = 0; i < a.length; i++){
+			sum+=a[i];
 			if(randomNumber <sum){
-				arm = arms.get(i);
+				arm = i;
+				break;
 			}
-			i++;
+		}
+		if(arm < 0){
+			return null;
 		}
 		//increase the count for the relevant constraints
-		for(AbstractConstraint<?> constraint : relevantConstraints.keySet()){
-			tempData.getCountConstraints().get(constraint).getMap().put(arm, (tempData.getCountConstraints().get(constraint).getMap().get(arm) +1.0));
+		for(int r = 0; r < relevant; r++){
+			relevantCounters[r].increment(arms[arm], arm);
+			relevantCounters[r] = null;
 		}
-		if(trial.isStratifyTrialSite()){
-			tempData.getCountTrialSites().get(subject.getTrialSite()).getMap().put(arm, tempData.getCountTrialSites().get(subject.getTrialSite()).getMap().get(arm)+1.0);
+		return arms[arm];
+	}
+
+	/**
+	 * The imbalance of the counter, if the subject is assigned to the arm.
+	 * The counts are summed up in the order of the stored map.
+	 */
+	private double imbalance(Counter counter, int arm){
+		int[] order = counter.order;
+		for(int i = 0; i < order.length; i++){
+			int actArm = order[i];
+			double adjustetCount = counter.counts[actArm];
+			if(armIds[actArm] == armIds[arm]){
+				adjustetCount += 1.0;
+			}
+			//calculate adjusted counts
+			adjustedCounts[i] = adjustetCount / plannedSubjects[actArm];
+		}
+		return scorer.imbalance(adjustedCounts);
+	}
+
+	/**
+	 * Sorts the arms by id and reads the probability table, if the arms or
+	 * the probabilities of the temp data changed.
+	 */
+	private void initArms(MinimizationTempData tempData){
+		if(arms == null || arms.length != trial.getTreatmentArms().size()){
+			List<TreatmentArm> sortedArms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
+			Collections.sort(sortedArms, new Comparator<TreatmentArm>() {
+				@Override
+				public int compare(TreatmentArm o1, TreatmentArm o2) {
+					return (o1.getId()<o2.getId() ? -1 : (o1.getId()==o2.getId() ? 0 : 1));
+				}
+				
+			});
+			arms = sortedArms.toArray(new TreatmentArm[sortedArms.size()]);
+			armIds = new long[arms.length];
+			plannedSubjects = new int[arms.length];
+			ratioProbabilities = new double[arms.length];
+			for(int i = 0; i < arms.length; i++){
+				armIds[i] = arms[i].getId();
+				plannedSubjects[i] = arms[i].getPlannedSubjects();
+				ratioProbabilities[i] = ((arms[i].getPlannedSubjects()*1.0)/(trial.getPlannedSubjectAmount()*1.0));
+			}
+			adjustedCounts = new double[arms.length];
+			scorer = AbstractImbalanceScorer.create(configuration.getImbalanceFunction(), plannedSubjects);
+			scores = new double[arms.length];
+			candidates = new int[arms.length];
+			relevantCounters = new Counter[trial.getCriteria().size() + 1];
+			probabilitiesSource = null;
+			resetCounters();
+		}
+		if(probabilitiesSource != tempData.getProbabilitiesPerPreferredTreatment()){
+			probabilitiesSource = tempData.getProbabilitiesPerPreferredTreatment();
+			probabilities = new double[arms.length][arms.length];
+			for(int pref = 0; pref < arms.length; pref++){
+				Map<TreatmentArm, Double> map = probabilitiesSource.get(arms[pref]).getMap();
+				for(int arm = 0; arm < arms.length; arm++){
+					probabilities[pref][arm] = map.get(arms[arm]);
+				}
+			}
+		}
+	}
+
+	private Counter constraintCounter(MinimizationTempData tempData, AbstractConstraint<?> constraint, AbstractCriterion<?, ?> criterion){
+		if(tempData.getCountConstraints() == null) tempData.setCountConstraints(new HashMap<AbstractConstraint<?>, MinimizationMapElementWrapper>());
+		if(constraintCountersSource != tempData.getCountConstraints()){
+			constraintCounters.clear();
+			constraintCountersSource = tempData.getCountConstraints();
+		}
+		Counter counter = constraintCounters.get(constraint);
+		if(counter == null){
+			MinimizationMapElementWrapper actMap = constraintCountersSource.get(constraint);
+			if(actMap == null){
+				actMap = newCountMap();
+				constraintCountersSource.put(constraint, actMap);
+			}
+			counter = new Counter(actMap.getMap(), constraint == null ? 1.0 : configuration.getCriterionWeight(criterion));
+			constraintCounters.put(constraint, counter);
+		}
+		return counter;
+	}
+
+	private Counter trialSiteCounter(MinimizationTempData tempData, TrialSite trialSite){
+		if(tempData.getCountTrialSites() == null) tempData.setCountTrialSites(new HashMap<TrialSite, MinimizationMapElementWrapper>());
+		if(trialSiteCountersSource != tempData.getCountTrialSites()){
+			trialSiteCounters.clear();
+			trialSiteCountersSource = tempData.getCountTrialSites();
+		}
+		Counter counter = trialSiteCounters.get(trialSite);
+		if(counter == null){
+			MinimizationMapElementWrapper actMap = trialSiteCountersSource.get(trialSite);
+			if(actMap == null){
+				actMap = newCountMap();
+				trialSiteCountersSource.put(trialSite, actMap);
+			}
+			counter = new Counter(actMap.getMap(), configuration.getTrialSiteWeight());
+			trialSiteCounters.put(trialSite, counter);
+		}
+		return counter;
+	}
+
+	private MinimizationMapElementWrapper newCountMap(){
+		MinimizationMapElementWrapper actMap = new MinimizationMapElementWrapper(new HashMap<TreatmentArm, Double>());
+		for(TreatmentArm arm : trial.getTreatmentArms()){
+			actMap.getMap().put(arm, 0.0);							
+		}
+		return actMap;
+	}
+
+	private void resetCounters(){
+		constraintCounters.clear();
+		constraintCountersSource = null;
+		trialSiteCounters.clear();
+		trialSiteCountersSource = null;
+	}
+
+	/**
+	 * The counts of one stored counter map per arm index. The order keeps the
+	 * iteration order of the map, in which the adjusted counts are summed up.
+	 * The weight is the weight of the factor of the counter.
+	 */
+	private class Counter {
+		private final Map<TreatmentArm, Double> map;
+		private final double[] counts = new double[arms.length];
+		private final int[] order = new int[arms.length];
+		private final double weight;
+
+		private Counter(Map<TreatmentArm, Double> map, double weight){
+			this.map = map;
+			this.weight = weight;
+			int i = 0;
+			for(Map.Entry<TreatmentArm, Double> entry : map.entrySet()){
+				int arm = indexOf(entry.getKey());
+				counts[arm] = entry.getValue();
+				order[i++] = arm;
+			}
+		}
+
+		private void increment(TreatmentArm arm, int index){
+			counts[index] += 1.0;
+			map.put(arm, counts[index]);
+		}
+	}
+
+	private int indexOf(TreatmentArm arm){
+		for(int i = 0; i < arms.length; i++){
+			if(arms[i].equals(arm)){
+				return i;
+			}
 		}
-		return arm;
+		throw new IllegalArgumentException("Unknown treatment arm " + arm);
 	}
 	
 
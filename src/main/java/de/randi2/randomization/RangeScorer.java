@@ -0,0 +1,96 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.randomization;
+
+/**
+ * Scores the range (maximum minus minimum) of the adjusted counts of a level.
+ * The two largest and the two smallest adjusted counts are found once, the
+ * range of every hypothetical assignment follows from them in O(1). The
+ * incremental and the direct range are the same value.
+ */
+public class RangeScorer extends AbstractImbalanceScorer {
+
+	/**
+	 * @param plannedSubjects
+	 *            The planned subjects per arm index.
+	 */
+	public RangeScorer(int[] plannedSubjects) {
+		super(plannedSubjects);
+	}
+
+	@Override
+	protected void addScores(double weight, double[] scores) {
+		int length = adjustedCounts.length;
+		int maxArm = 0;
+		int minArm = 0;
+		for (int i = 1; i < length; i++) {
+			if (adjustedCounts[i] > adjustedCounts[maxArm]) {
+				maxArm = i;
+			}
+			if (adjustedCounts[i] < adjustedCounts[minArm]) {
+				minArm = i;
+			}
+		}
+		// the extremes without the arm holding the extreme
+		double secondMax = Double.NEGATIVE_INFINITY;
+		double secondMin = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < length; i++) {
+			if (i != maxArm && adjustedCounts[i] > secondMax) {
+				secondMax = adjustedCounts[i];
+			}
+			if (i != minArm && adjustedCounts[i] < secondMin) {
+				secondMin = adjustedCounts[i];
+			}
+		}
+		for (int arm = 0; arm < length; arm++) {
+			double after = assigned(arm);
+			double max = Math.max(after, arm == maxArm ? secondMax
+					: adjustedCounts[maxArm]);
+			double min = Math.min(after, arm == minArm ? secondMin
+					: adjustedCounts[minArm]);
+			scores[arm] += weight * (max - min);
+		}
+	}
+
+	@Override
+	protected double getTolerance() {
+		return 0.0;
+	}
+
+	@Override
+	public double imbalance(double[] adjustedCounts) {
+		return range(adjustedCounts);
+	}
+
+	/**
+	 * The range of the adjusted counts, computed directly.
+	 * 
+	 * @param adjustedCounts
+	 *            The counts including the assigned subject, divided by the
+	 *            planned subjects.
+	 */
+	public static double range(double[] adjustedCounts) {
+		double max = adjustedCounts[0];
+		double min = adjustedCounts[0];
+		for (double adjustedCount : adjustedCounts) {
+			max = Math.max(max, adjustedCount);
+			min = Math.min(min, adjustedCount);
+		}
+		return max - min;
+	}
+}
@@ -0,0 +1,103 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.randomization;
+
+/**
+ * Scores the sample standard deviation of the adjusted counts of a level. The
+ * mean and the sum of squared deviations are computed once, the assignment
+ * to an arm moves one value by delta, which changes the sum of squared
+ * deviations by 2 delta (value - mean) + delta^2 (K - 1) / K.
+ * <br />
+ * The incremental sum of squared deviations cancels out, if the deviation is
+ * close to 0, and the square root raises its rounding error to about the
+ * square root of the machine precision. The tolerance for the comparison with
+ * the direct formula is chosen accordingly.
+ */
+public class StandardDeviationScorer extends AbstractImbalanceScorer {
+
+	public static final double TIE_TOLERANCE = 1e-6;
+
+	/**
+	 * @param plannedSubjects
+	 *            The planned subjects per arm index.
+	 */
+	public StandardDeviationScorer(int[] plannedSubjects) {
+		super(plannedSubjects);
+	}
+
+	@Override
+	protected void addScores(double weight, double[] scores) {
+		int length = adjustedCounts.length;
+		if (length < 2) {
+			return;
+		}
+		double sum = 0.0;
+		for (int i = 0; i < length; i++) {
+			sum += adjustedCounts[i];
+		}
+		double mean = sum / length;
+		double squares = 0.0;
+		for (int i = 0; i < length; i++) {
+			double deviation = adjustedCounts[i] - mean;
+			squares += deviation * deviation;
+		}
+		for (int arm = 0; arm < length; arm++) {
+			double delta = assigned(arm) - adjustedCounts[arm];
+			double armSquares = squares + 2.0 * delta
+					* (adjustedCounts[arm] - mean) + delta * delta
+					* (length - 1.0) / length;
+			scores[arm] += weight
+					* Math.sqrt(Math.max(armSquares, 0.0) / (length - 1.0));
+		}
+	}
+
+	@Override
+	protected double getTolerance() {
+		return TIE_TOLERANCE;
+	}
+
+	@Override
+	public double imbalance(double[] adjustedCounts) {
+		return standardDeviation(adjustedCounts);
+	}
+
+	/**
+	 * The sample standard deviation of the adjusted counts, computed
+	 * directly.
+	 * 
+	 * @param adjustedCounts
+	 *            The counts including the assigned subject, divided by the
+	 *            planned subjects.
+	 */
+	public static double standardDeviation(double[] adjustedCounts) {
+		int length = adjustedCounts.length;
+		if (length < 2) {
+			return 0.0;
+		}
+		double mean = 0.0;
+		for (double adjustedCount : adjustedCounts) {
+			mean += adjustedCount;
+		}
+		mean = mean / length;
+		double squares = 0.0;
+		for (double adjustedCount : adjustedCounts) {
+			squares += (adjustedCount - mean) * (adjustedCount - mean);
+		}
+		return Math.sqrt(squares / (length - 1.0));
+	}
+}
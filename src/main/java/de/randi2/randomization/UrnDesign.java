@@ -17,10 +17,6 @@
  */
 package de.randi2.randomization;
 
-import static de.randi2.utility.IntegerIterator.upto;
-
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import de.randi2.model.TreatmentArm;
@@ -31,7 +27,9 @@ import de.randi2.model.randomization.UrnDesignConfig;
 import de.randi2.model.randomization.UrnDesignTempData;
 
 /**
- * Implementation of wei's urn design (replace a drawn ball with k balls of the other color)
+ * Implementation of wei's urn design for K treatment arms (remove a drawn ball
+ * and add k balls of each other arm). The urn keeps the ball counts per arm, so
+ * a draw and its update are O(K) and independent of the urn size.
  * 
  * @author dschrimpf
  */
@@ -58,17 +56,7 @@ public class UrnDesign extends RandomizationAlgorithm<UrnDesignConfig> {
 			tempData.setUrn(stratum, urn);
 		}
 		TreatmentArm drawnArm = urn.drawFromUrn(random);
-		List<TreatmentArm> arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
-		//TODO now only for two arms
-		if(drawnArm.getName().equals(arms.get(0).getName())){
-			for(int i : upto(configuration.getCountReplacedBalls())){
-				urn.add(arms.get(1));
-			}
-		}else{
-			for(int i : upto(configuration.getCountReplacedBalls())){
-				urn.add(arms.get(0));
-			}
-		}
+		urn.addToOtherArms(drawnArm, configuration.getCountReplacedBalls());
 		return drawnArm;
 	}
 
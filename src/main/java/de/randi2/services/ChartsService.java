@@ -18,6 +18,7 @@
 package de.randi2.services;
 
 import de.randi2.model.Trial;
+import de.randi2.model.TrialSubject;
 
 public interface ChartsService {
 	
@@ -29,4 +30,16 @@ public interface ChartsService {
 	
 	public ChartData generateRecruitmentChartFactors(Trial trial);
 
+	/**
+	 * Counts the randomized subject in the cached charts of the trial, after
+	 * the commit of the current transaction.
+	 */
+	public void subjectRandomized(Trial trial, TrialSubject subject);
+
+	/**
+	 * Removes the cached charts of the trial, e.g. after a change of the
+	 * trial.
+	 */
+	public void evict(Trial trial);
+
 }
@@ -17,180 +17,162 @@
  */
 package de.randi2.services;
 
-import java.util.ArrayList;
-import java.util.GregorianCalendar;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import de.randi2.dao.TrialDao;
-import de.randi2.model.TreatmentArm;
+import de.randi2.model.AbstractDomainObject;
 import de.randi2.model.Trial;
-import de.randi2.model.TrialSite;
 import de.randi2.model.TrialSubject;
-import de.randi2.utility.Pair;
 
+/**
+ * Generates the charts of a trial. The subject counters of the most recently
+ * viewed trials are cached and updated after the commit of every
+ * randomization, so that a chart view reads only the amount of subjects from
+ * the database.
+ */
 @Service("chartsService")
 public class ChartsServiceImpl implements ChartsService {
 
+	public static final int DEFAULT_CACHE_SIZE = 100;
+
 	@Autowired
 	private TrialDao trialDao;
-	
-	@Override
-	@Transactional(propagation=Propagation.REQUIRED)
-	public ChartData generateRecruitmentChart(Trial trial) {
-		trial = trialDao.refresh(trial);
-		ChartData tempD = new ChartData();
 
-		int plannedSubjects = 0;
-		for (TreatmentArm arm : trial.getTreatmentArms()) {
-			plannedSubjects += arm.getPlannedSubjects();
-		}
-
-		List<double[]> data = new ArrayList<double[]>();
-		GregorianCalendar startDate = trial.getStartDate();
-		GregorianCalendar endDate = trial.getEndDate();
-		int monthStart = startDate.get(GregorianCalendar.MONTH);
-		int monthEnd = endDate.get(GregorianCalendar.MONTH);
-		ArrayList<String> xL = new ArrayList<String>();
+	private int cacheSize = DEFAULT_CACHE_SIZE;
 
-		for (int year = startDate.get(GregorianCalendar.YEAR); year <= endDate
-				.get(GregorianCalendar.YEAR); year++) {
+	private final Map<Long, TrialChartCounters> counters = new LinkedHashMap<Long, TrialChartCounters>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
 
-			if (year != endDate.get(GregorianCalendar.YEAR)) {
-				monthEnd = startDate.getMaximum(GregorianCalendar.MONTH);
-			} else {
-				monthEnd = endDate.get(GregorianCalendar.MONTH);
-			}
-			for (int month = monthStart; month <= monthEnd; month++) {
-				double[] values = new double[2];
-				values[0] = 0;
-				if (data.size() > 0) {
-					values[1] = data.get(data.size() - 1)[1];
-				} else
-					values[1] = 0;
-
-				for (TrialSubject subject : trial.getSubjects()) {
-					if (subject.getCreatedAt().get(GregorianCalendar.MONTH) == month
-							&& subject.getCreatedAt().get(
-									GregorianCalendar.YEAR) == year) {
-						values[1] = values[1] + 1.0;
-					}
-				}
-				xL.add((month + 1) + "." + year);
-				data.add(values);
-			}
-			monthStart = startDate.getMinimum(GregorianCalendar.MONTH);
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<Long, TrialChartCounters> eldest) {
+			return size() > cacheSize;
 		}
+	};
 
-		for (int i = 1; i <= data.size(); i++) {
-			data.get(i - 1)[0] = i * (plannedSubjects / data.size());
-		}
+	/**
+	 * Sets the maximal number of trials, whose counters are cached.
+	 */
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
 
-		tempD.setXLabels(xL);
-		tempD.setData(data);
-		return tempD;
+	@Override
+	@Transactional(propagation=Propagation.REQUIRED)
+	public ChartData generateRecruitmentChart(Trial trial) {
+		return counters(trial).recruitmentChart();
 	}
 
 	@Override
 	@Transactional(propagation=Propagation.REQUIRED)
 	public ChartData generateArmChart(Trial trial) {
-		ChartData chData = new ChartData();
-		int i = 1;
-		ArrayList<String> xL = new ArrayList<String>();
-		ArrayList<double[]> data = new ArrayList<double[]>();
-		for (TreatmentArm t : trial.getTreatmentArms()) {
-			data.add(new double[] { t.getSubjects().size() });
-			xL.add(Integer.toString(i));
-			i++;
-		}
-		chData.setData(data);
-		chData.setXLabels(xL);
-		return chData;
+		return counters(trial).armChart();
 	}
 
 	@Override
 	@Transactional(propagation=Propagation.REQUIRED)
 	public ChartData generateRecruitmentChartTrialSite(Trial trial) {
-		trial = trialDao.refresh(trial);
-		ChartData chData = new ChartData();
-		ArrayList<String> xL = new ArrayList<String>();
-		ArrayList<double[]> data = new ArrayList<double[]>();
-
-		ArrayList<TrialSubject> subjects1 = new ArrayList<TrialSubject>(trial
-				.getSubjects());
-		double[] count = new double[trial.getParticipatingSites().size()];
-		int i = 0;
-		for (TrialSite site : trial.getParticipatingSites()) {
-			ArrayList<TrialSubject> subjects = new ArrayList<TrialSubject>(
-					subjects1);
-			xL.add(site.getName());
-
-			count[i] = 0;
-			for (TrialSubject subject : subjects) {
-				if (subject.getTrialSite().getName().equals(site.getName())) {
-					count[i]++;
-					subjects1.remove(subject);
-				}
-			}
-			i++;
-		}
-		for (double j : count) {
-			data.add(new double[] { j });
-		}
-		chData.setData(data);
-		chData.setXLabels(xL);
-		return chData;
+		return counters(trial).trialSiteChart();
 	}
 
 	@Override
 	@Transactional(propagation=Propagation.REQUIRED)
 	public ChartData generateRecruitmentChartFactors(Trial trial) {
-		trial = trialDao.refresh(trial);
-		ChartData chData = new ChartData();
-		ArrayList<String> xL = new ArrayList<String>();
-		ArrayList<double[]> data = new ArrayList<double[]>();
-		HashMap<String, Double> strataCountMap = new HashMap<String, Double>();
-		HashMap<String, String> strataNameMap = new HashMap<String, String>();
-
-		Pair<List<String>,List<String>> pair = trial.getAllStrataIdsAndNames();
-		for(int i = 0;i<pair.first().size();i++){
-			strataCountMap.put(pair.first().get(i), new Double(0));
-			strataNameMap.put(pair.first().get(i), pair.last().get(i));
+		return counters(trial).strataChart();
+	}
+
+	@Override
+	public void subjectRandomized(Trial trial, TrialSubject subject) {
+		final long trialId = trial.getId();
+		final TrialChartCounters.Randomization randomization = new TrialChartCounters.Randomization(
+				trial, subject);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+						@Override
+						public void afterCommit() {
+							add(trialId, randomization);
+						}
+					});
+		} else {
+			add(trialId, randomization);
 		}
-			
-		for (TrialSubject subject : trial.getSubjects()) {
-			String stratum = "";
-			if (trial.isStratifyTrialSite()) {
-				stratum = subject.getTrialSite().getId() + "__";
-			}
-			stratum += subject.getStratum();
-			Double count = strataCountMap.get(stratum);
-			count++;
-			strataCountMap.put(stratum, count);
+	}
+
+	@Override
+	public void evict(Trial trial) {
+		final long trialId = trial.getId();
+		remove(trialId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+						@Override
+						public void afterCompletion(int status) {
+							remove(trialId);
+						}
+					});
 		}
+	}
 
-		double[] dataTable;
-		int i = 0;
-		for (String s : strataCountMap.keySet()) {
-			dataTable = new double[strataCountMap.size()];
-			for (int j = 0; j < dataTable.length; j++) {
-				if (j != i) {
-					dataTable[j] = 0;
-				}
+	/**
+	 * Returns the cached counters of the trial or reads them from the
+	 * database. The cached counters are read again, if the amount of subjects
+	 * in the database differs, e.g. after a change of the subjects, which was
+	 * not reported by {@link #subjectRandomized(Trial, TrialSubject)}.
+	 */
+	private TrialChartCounters counters(Trial trial) {
+		TrialChartCounters trialCounters = get(trial.getId());
+		if (trialCounters != null) {
+			if (trialCounters.getSubjectCount() == trialDao
+					.countSubjects(trial)) {
+				return trialCounters;
+			}
+			remove(trial.getId());
+		}
+		trial = trialDao.refresh(trial);
+		trialCounters = new TrialChartCounters(trial, trialDao
+				.countSubjectsPerMonth(trial), trialDao
+				.countSubjectsPerArm(trial), trialDao
+				.countSubjectsPerTrialSite(trial), trialDao
+				.countSubjectsPerStratum(trial));
+		// a randomization committed while the counters were read is missing
+		if (trial.getId() != AbstractDomainObject.NOT_YET_SAVED_ID
+				&& trialCounters.isConsistent()) {
+			synchronized (counters) {
+				counters.put(trial.getId(), trialCounters);
 			}
-			dataTable[i] = strataCountMap.get(s);
-			xL.add(strataNameMap.get(s));
-			i++;
-			data.add(dataTable);
 		}
-		chData.setData(data);
-		chData.setXLabels(xL);
-		return chData;
+		return trialCounters;
+	}
+
+	private TrialChartCounters get(long trialId) {
+		synchronized (counters) {
+			return counters.get(trialId);
+		}
+	}
+
+	private void remove(long trialId) {
+		synchronized (counters) {
+			counters.remove(trialId);
+		}
+	}
+
+	private void add(long trialId,
+			TrialChartCounters.Randomization randomization) {
+		TrialChartCounters trialCounters = get(trialId);
+		if (trialCounters != null && !trialCounters.add(randomization)) {
+			// a randomization is missing, the counters are read again
+			remove(trialId);
+		}
 	}
 
 }
@@ -0,0 +1,278 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.services;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.randi2.model.TreatmentArm;
+import de.randi2.model.Trial;
+import de.randi2.model.TrialSite;
+import de.randi2.model.TrialSubject;
+import de.randi2.utility.Pair;
+
+/**
+ * The subject counters of a trial, from which the charts are built. The
+ * counters are read once with aggregate queries and updated with every
+ * randomization. The subjects are counted in the order of their counter, a
+ * randomization, which does not follow the last counted subject, can not be
+ * applied.
+ */
+class TrialChartCounters {
+
+	private final GregorianCalendar startDate;
+
+	private final GregorianCalendar endDate;
+
+	private final int plannedSubjects;
+
+	private final List<Long> armIds = new ArrayList<Long>();
+
+	private final List<Long> siteIds = new ArrayList<Long>();
+
+	private final List<String> siteNames = new ArrayList<String>();
+
+	private final boolean stratifyTrialSite;
+
+	private final Map<String, String> strataNames = new HashMap<String, String>();
+
+	private final Map<Integer, Long> subjectsPerMonth;
+
+	private final Map<Long, Long> subjectsPerArm;
+
+	private final Map<Long, Long> subjectsPerSite;
+
+	private final Map<String, Long> subjectsPerStratum = new HashMap<String, Long>();
+
+	/** The counter of the last counted subject. */
+	private int lastCounter;
+
+	/**
+	 * Creates the counters of the trial from the results of the aggregate
+	 * queries.
+	 * 
+	 * @param trial
+	 *            The refreshed trial.
+	 */
+	TrialChartCounters(Trial trial, Map<Integer, Long> subjectsPerMonth,
+			Map<Long, Long> subjectsPerArm, Map<Long, Long> subjectsPerSite,
+			Map<String, Long> stratumCounts) {
+		startDate = (GregorianCalendar) trial.getStartDate().clone();
+		endDate = (GregorianCalendar) trial.getEndDate().clone();
+		int planned = 0;
+		for (TreatmentArm arm : trial.getTreatmentArms()) {
+			planned += arm.getPlannedSubjects();
+			armIds.add(arm.getId());
+		}
+		plannedSubjects = planned;
+		for (TrialSite site : trial.getParticipatingSites()) {
+			siteIds.add(site.getId());
+			siteNames.add(site.getName());
+		}
+		stratifyTrialSite = trial.isStratifyTrialSite();
+		Pair<List<String>, List<String>> pair = trial.getAllStrataIdsAndNames();
+		for (int i = 0; i < pair.first().size(); i++) {
+			subjectsPerStratum.put(pair.first().get(i), 0L);
+			strataNames.put(pair.first().get(i), pair.last().get(i));
+		}
+		subjectsPerStratum.putAll(stratumCounts);
+		this.subjectsPerMonth = subjectsPerMonth;
+		this.subjectsPerArm = subjectsPerArm;
+		this.subjectsPerSite = subjectsPerSite;
+		lastCounter = trial.getTotalSubjectAmount();
+	}
+
+	/**
+	 * Returns if the counted subjects match the subject counter of the trial,
+	 * otherwise a randomization was committed while the counters were read.
+	 */
+	synchronized boolean isConsistent() {
+		long subjects = 0;
+		for (Long count : subjectsPerArm.values()) {
+			subjects += count;
+		}
+		return subjects == lastCounter;
+	}
+
+	/**
+	 * Returns the amount of the counted subjects.
+	 */
+	synchronized int getSubjectCount() {
+		return lastCounter;
+	}
+
+	/**
+	 * Counts the randomized subject.
+	 * 
+	 * @return False if the subject does not follow the last counted subject.
+	 */
+	synchronized boolean add(Randomization randomization) {
+		if (randomization.counter <= lastCounter) {
+			// already counted
+			return true;
+		} else if (randomization.counter != lastCounter + 1) {
+			return false;
+		}
+		lastCounter = randomization.counter;
+		if (randomization.month != null) {
+			increment(subjectsPerMonth, randomization.month);
+		}
+		increment(subjectsPerArm, randomization.armId);
+		if (randomization.siteId != null) {
+			increment(subjectsPerSite, randomization.siteId);
+		}
+		increment(subjectsPerStratum, randomization.stratum);
+		return true;
+	}
+
+	synchronized ChartData recruitmentChart() {
+		List<double[]> data = new ArrayList<double[]>();
+		int monthStart = startDate.get(GregorianCalendar.MONTH);
+		int monthEnd;
+		ArrayList<String> xL = new ArrayList<String>();
+
+		for (int year = startDate.get(GregorianCalendar.YEAR); year <= endDate
+				.get(GregorianCalendar.YEAR); year++) {
+
+			if (year != endDate.get(GregorianCalendar.YEAR)) {
+				monthEnd = startDate.getMaximum(GregorianCalendar.MONTH);
+			} else {
+				monthEnd = endDate.get(GregorianCalendar.MONTH);
+			}
+			for (int month = monthStart; month <= monthEnd; month++) {
+				double[] values = new double[2];
+				values[0] = 0;
+				if (data.size() > 0) {
+					values[1] = data.get(data.size() - 1)[1];
+				} else
+					values[1] = 0;
+
+				Long subjects = subjectsPerMonth.get(year * 12 + month);
+				if (subjects != null) {
+					values[1] = values[1] + subjects;
+				}
+				xL.add((month + 1) + "." + year);
+				data.add(values);
+			}
+			monthStart = startDate.getMinimum(GregorianCalendar.MONTH);
+		}
+
+		for (int i = 1; i <= data.size(); i++) {
+			data.get(i - 1)[0] = i * (plannedSubjects / data.size());
+		}
+
+		ChartData chData = new ChartData();
+		chData.setXLabels(xL);
+		chData.setData(data);
+		return chData;
+	}
+
+	synchronized ChartData armChart() {
+		ArrayList<String> xL = new ArrayList<String>();
+		ArrayList<double[]> data = new ArrayList<double[]>();
+		for (int i = 0; i < armIds.size(); i++) {
+			data.add(new double[] { count(subjectsPerArm, armIds.get(i)) });
+			xL.add(Integer.toString(i + 1));
+		}
+		ChartData chData = new ChartData();
+		chData.setData(data);
+		chData.setXLabels(xL);
+		return chData;
+	}
+
+	synchronized ChartData trialSiteChart() {
+		ArrayList<String> xL = new ArrayList<String>();
+		ArrayList<double[]> data = new ArrayList<double[]>();
+		for (int i = 0; i < siteIds.size(); i++) {
+			xL.add(siteNames.get(i));
+			data.add(new double[] { count(subjectsPerSite, siteIds.get(i)) });
+		}
+		ChartData chData = new ChartData();
+		chData.setData(data);
+		chData.setXLabels(xL);
+		return chData;
+	}
+
+	synchronized ChartData strataChart() {
+		ArrayList<String> xL = new ArrayList<String>();
+		ArrayList<double[]> data = new ArrayList<double[]>();
+		int i = 0;
+		for (Map.Entry<String, Long> entry : subjectsPerStratum.entrySet()) {
+			double[] dataTable = new double[subjectsPerStratum.size()];
+			dataTable[i] = entry.getValue();
+			xL.add(strataNames.get(entry.getKey()));
+			i++;
+			data.add(dataTable);
+		}
+		ChartData chData = new ChartData();
+		chData.setData(data);
+		chData.setXLabels(xL);
+		return chData;
+	}
+
+	private static <K> void increment(Map<K, Long> counts, K key) {
+		Long count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+
+	private static <K> double count(Map<K, Long> counts, K key) {
+		Long count = counts.get(key);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * The stratum of the subject as used by the strata chart.
+	 */
+	static String stratum(Trial trial, TrialSubject subject) {
+		String stratum = "";
+		if (trial.isStratifyTrialSite()) {
+			stratum = subject.getTrialSite().getId() + "__";
+		}
+		return stratum + subject.getStratum();
+	}
+
+	/**
+	 * The values of a randomized subject, which are counted.
+	 */
+	static class Randomization {
+
+		private final int counter;
+
+		private final Integer month;
+
+		private final long armId;
+
+		private final Long siteId;
+
+		private final String stratum;
+
+		Randomization(Trial trial, TrialSubject subject) {
+			counter = subject.getCounter();
+			month = subject.getCreatedAt() == null ? null : subject
+					.getCreatedAt().get(GregorianCalendar.YEAR)
+					* 12 + subject.getCreatedAt().get(GregorianCalendar.MONTH);
+			armId = subject.getArm().getId();
+			siteId = subject.getTrialSite() == null ? null : subject
+					.getTrialSite().getId();
+			stratum = stratum(trial, subject);
+		}
+	}
+}
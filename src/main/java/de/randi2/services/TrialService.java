@@ -68,4 +68,29 @@ public interface TrialService extends AbstractService<Trial> {
 	 */
 	public List<TrialSubject> getSubjects(Trial trial, Login investigator);
 
+	/**
+	 * Method for the retrieval of one page of the subjects of a trial in the
+	 * order of their randomization. The subjects of the trial are not loaded
+	 * at once.
+	 * 
+	 * @param trial
+	 *            specific trial
+	 * @param firstResult
+	 *            The position of the first subject.
+	 * @param maxResults
+	 *            The maximal count of subjects.
+	 * @return The subjects of the page.
+	 */
+	public List<TrialSubject> getSubjects(Trial trial, int firstResult,
+			int maxResults);
+
+	/**
+	 * Counts the subjects of a trial without loading them.
+	 * 
+	 * @param trial
+	 *            specific trial
+	 * @return The count of the subjects.
+	 */
+	public long countSubjects(Trial trial);
+
 }
@@ -74,6 +74,9 @@ public class TrialServiceImpl implements TrialService {
 	@Autowired
 	private MailServiceInterface mailService;
 
+	@Autowired
+	private ChartsService chartsService;
+
 	@Override
 	@Secured({ "ACL_TRIAL_CREATE" })
 	@Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -107,8 +110,8 @@ public class TrialServiceImpl implements TrialService {
 		// TODO Internal Subject's Identification
 		subject.setRandNumber(subject.getTrialSite().getName() + "_"
 				+ trial.getAbbreviation() + "_" + assignedArm.getName() + "_"
-				+ (assignedArm.getSubjects().size() + 1));
-		subject.setCounter((trial.getSubjects().size() + 1));
+				+ (assignedArm.getCurrentSubjectsAmount() + 1));
+		subject.setCounter((trial.getTotalSubjectAmount() + 1));
 		if (subject.getIdentification() == null)
 			subject.setIdentification(subject.getRandNumber());
 		entityManager.persist(subject);
@@ -121,6 +124,7 @@ public class TrialServiceImpl implements TrialService {
 		}
 		Trial t = trialDao.update(trial);
 		entityManager.flush();
+		chartsService.subjectRandomized(t, subject);
 		return t;
 	}
 
@@ -226,6 +230,7 @@ public class TrialServiceImpl implements TrialService {
 				+ trial.getName() + "(id: " + trial.getId() + ")");
 		logService.logTrialChange(ActionType.UPDATE, SecurityContextHolder.getContext().getAuthentication()
 				.getName(), oldObject, trial);
+		chartsService.evict(trial);
 		return trialDao.update(trial);
 	}
 
@@ -257,10 +262,8 @@ public class TrialServiceImpl implements TrialService {
 					crit.getStrata().get(0);
 			}
 		}
-		for (TreatmentArm arm : trial.getTreatmentArms()) {
-			if (arm.getSubjects().size() > 0)
-				arm.getSubjects().get(0);
-		}
+		// the subjects are not loaded, the counts are stored in the trial and
+		// the arms and the subjects are available page by page
 		return trial;
 	}
 
@@ -277,7 +280,7 @@ public class TrialServiceImpl implements TrialService {
 
 		Locale language = user.getPrefLocale();
 
-		mailService.sendMail(user.getPerson().getEmail(), "Randomize",
+		mailService.queueMail(user.getPerson().getEmail(), "Randomize",
 				language, newUserMessageFields, newUserSubjectFields);
 
 		newUserMessageFields = new HashMap<String, Object>();
@@ -295,7 +298,7 @@ public class TrialServiceImpl implements TrialService {
 			language = Locale.getDefault();
 		}
 
-		mailService.sendMail(trial.getSponsorInvestigator().getEmail(),
+		mailService.queueMail(trial.getSponsorInvestigator().getEmail(),
 				"Randomize", language, newUserMessageFields,
 				newUserSubjectFields);
 
@@ -311,6 +314,25 @@ public class TrialServiceImpl implements TrialService {
 			return new ArrayList<TrialSubject>();
 	}
 
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED)
+	public List<TrialSubject> getSubjects(Trial trial, int firstResult,
+			int maxResults) {
+		if (trial.getId() > 0) {
+			return trialDao.getSubjects(trial, firstResult, maxResults);
+		} else
+			return new ArrayList<TrialSubject>();
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED)
+	public long countSubjects(Trial trial) {
+		if (trial.getId() > 0) {
+			return trialDao.countSubjects(trial);
+		} else
+			return 0;
+	}
+
 	/**
 	 * Util method for cloning objects
 	 */
@@ -35,24 +35,55 @@ public abstract class AbstractDistribution<E extends Serializable> {
 
 	protected Random random;
 
+	private final Long seed;
+
 	public AbstractDistribution(List<E> elements, long seed) {
 		this.elements = elements;
+		this.seed = seed;
 		random = new Random(seed);
 	}
 
 	public AbstractDistribution(List<E> elements) {
 		this.elements = elements;
+		this.seed = null;
 		random = new Random();
 	}
 
 	public AbstractDistribution() {
+		this.seed = null;
 		random = new Random();
 	}
 
 	public AbstractDistribution(long seed) {
+		this.seed = seed;
 		random = new Random(seed);
 	}
 
+	/**
+	 * Returns the seed value of this distribution.
+	 * @return The seed value or null, if the distribution is unseeded.
+	 */
+	public Long getSeed() {
+		return seed;
+	}
+
+	public boolean isSeeded() {
+		return seed != null;
+	}
+
+	/**
+	 * Restarts the random number sequence of a seeded distribution with the
+	 * passed seed value, an unseeded distribution is not changed.
+	 * 
+	 * @param newSeed
+	 *            The new seed value.
+	 */
+	public void reseed(long newSeed) {
+		if (isSeeded()) {
+			random.setSeed(newSeed);
+		}
+	}
+
 	/**
 	 * Returns all possible elements.
 	 * @return All possible elements.
@@ -67,5 +98,23 @@ public abstract class AbstractDistribution<E extends Serializable> {
 	 * 
 	 * @return a element in a special distribution
 	 */
-	public abstract E getNextValue();
+	public E getNextValue() {
+		return elements.get(getNextIndex());
+	}
+
+	/**
+	 * Returns the position of the next element in the list of all elements,
+	 * it draws the same random numbers as {@link #getNextValue()}.
+	 * 
+	 * @return The index of an element in a special distribution.
+	 */
+	public abstract int getNextIndex();
+
+	/**
+	 * Returns a new distribution with the same configuration and seed, but its
+	 * own list of elements and its own random number generator.
+	 * 
+	 * @return The copy of this distribution.
+	 */
+	public abstract AbstractDistribution<E> copy();
 }
@@ -109,7 +109,7 @@ public class ConcreteDistribution<E extends Serializable> extends
 	}
 
 	@Override
-	public E getNextValue() {
+	public int getNextIndex() {
 		double number = random.nextDouble();
 		boolean found = false;
 		int i = 0;
@@ -123,7 +123,17 @@ public class ConcreteDistribution<E extends Serializable> extends
 			}
 		}
 
-		return elements.get(i);
+		return i;
+	}
+
+	@Override
+	public ConcreteDistribution<E> copy() {
+		if (isSeeded()) {
+			return new ConcreteDistribution<E>(getSeed(), new ArrayList<E>(
+					elements), ratio.clone());
+		}
+		return new ConcreteDistribution<E>(new ArrayList<E>(elements), ratio
+				.clone());
 	}
 
 }
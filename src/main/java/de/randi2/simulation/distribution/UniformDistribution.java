@@ -18,6 +18,7 @@
 package de.randi2.simulation.distribution;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -41,8 +42,17 @@ public  class  UniformDistribution<E extends Serializable> extends AbstractDistr
 
 
 	@Override
-	public E getNextValue() {
-		return elements.get(random.nextInt(elements.size()));
+	public int getNextIndex() {
+		return random.nextInt(elements.size());
+	}
+
+	@Override
+	public UniformDistribution<E> copy() {
+		if (isSeeded()) {
+			return new UniformDistribution<E>(new ArrayList<E>(elements),
+					getSeed());
+		}
+		return new UniformDistribution<E>(new ArrayList<E>(elements));
 	}
 
 	
@@ -0,0 +1,66 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+/**
+ * A list of arm indices with the remove semantic of an {@link java.util.ArrayList},
+ * it is used for the blocks of the simulation kernel.
+ */
+class ArmList {
+
+	private int[] arms;
+	private int size;
+
+	ArmList(int capacity) {
+		arms = new int[Math.max(capacity, 1)];
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	void add(int arm) {
+		if (size == arms.length) {
+			int[] newArms = new int[arms.length * 2];
+			System.arraycopy(arms, 0, newArms, 0, size);
+			arms = newArms;
+		}
+		arms[size++] = arm;
+	}
+
+	void addAll(int[] newArms) {
+		for (int arm : newArms) {
+			add(arm);
+		}
+	}
+
+	int remove(int index) {
+		int arm = arms[index];
+		System.arraycopy(arms, index + 1, arms, index, size - index - 1);
+		size--;
+		return arm;
+	}
+}
@@ -0,0 +1,91 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+import de.randi2.model.randomization.BlockRandomizationConfig;
+
+/**
+ * Kernel version of {@link de.randi2.randomization.BlockRandomization}, the
+ * blocks are kept per stratum index.
+ */
+public class BlockRandomizationKernel extends KernelAlgorithm {
+
+	private final int minimum;
+	private final int maximum;
+	private final BlockRandomizationConfig.TYPE type;
+	private final int[] rawBlock;
+	private final ArmList raw;
+	private final ArmList[] blocks;
+
+	public BlockRandomizationKernel(CompiledTrial trial,
+			BlockRandomizationConfig configuration) {
+		super(trial);
+		minimum = configuration.getMinimum();
+		maximum = configuration.getMaximum();
+		type = configuration.getType();
+		rawBlock = rawBlock(trial.getPlannedSubjects());
+		raw = new ArmList(rawBlock.length);
+		blocks = new ArmList[trial.getStrataCount()];
+	}
+
+	@Override
+	protected void init(Long seed) {
+		for (ArmList block : blocks) {
+			if (block != null) {
+				block.clear();
+			}
+		}
+	}
+
+	@Override
+	protected int doRandomize(int site, int[] levels, int stratum) {
+		ArmList block = blocks[stratum];
+		if (block == null || block.isEmpty()) {
+			block = generateBlock(block);
+			blocks[stratum] = block;
+		}
+		return block.remove(random.nextInt(block.size()));
+	}
+
+	private ArmList generateBlock(ArmList emptyBlock) {
+		int blockSize = generateBlockSize();
+		ArmList block = emptyBlock == null ? new ArmList(blockSize)
+				: emptyBlock;
+		raw.clear();
+		raw.addAll(rawBlock);
+		for (int i = 0; i < blockSize; i++) {
+			if (raw.isEmpty()) {
+				raw.addAll(rawBlock);
+			}
+			block.add(raw.remove(random.nextInt(raw.size())));
+		}
+		return block;
+	}
+
+	private int generateBlockSize() {
+		int range = maximum - minimum + 1;
+		if (maximum <= 0) range = 0;
+		int size = random.nextInt(range) + minimum;
+		if (type == BlockRandomizationConfig.TYPE.MULTIPLY) {
+			while (size % rawBlock.length != 0) {
+				size = random.nextInt(range) + minimum;
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,282 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+import de.randi2.model.SubjectProperty;
+import de.randi2.model.TreatmentArm;
+import de.randi2.model.Trial;
+import de.randi2.model.TrialSite;
+import de.randi2.model.criteria.AbstractCriterion;
+import de.randi2.model.criteria.constraints.AbstractConstraint;
+import de.randi2.simulation.distribution.AbstractDistribution;
+import de.randi2.simulation.model.DistributionSubjectProperty;
+import de.randi2.unsorted.ContraintViolatedException;
+
+/**
+ * The compiled form of a simulation trial. The treatment arms, the trial sites
+ * and the strata of the trial are numbered once, so the simulation kernel can
+ * work with int indices instead of the domain objects.
+ * 
+ * The stratum of a subject is a mixed radix number with one digit for the trial
+ * site (only if the trial is stratified by trial site) and one digit per
+ * subject property. A property digit is the index of the constraint in the
+ * strata of the criterion, the last digit value marks a value without a
+ * matching constraint.
+ */
+public class CompiledTrial {
+
+	/**
+	 * The level of a property value which matches no constraint.
+	 */
+	public static final int UNMATCHED = -1;
+
+	@Getter
+	private final int armCount;
+
+	/**
+	 * The planned subjects per arm, the arms are in the order of the
+	 * treatment arm list.
+	 */
+	@Getter
+	private final int[] plannedSubjects;
+
+	@Getter
+	private final int plannedSubjectAmount;
+
+	@Getter
+	private final String[] armNames;
+
+	@Getter
+	private final long[] armIds;
+
+	@Getter
+	private final int siteCount;
+
+	@Getter
+	private final String[] siteNames;
+
+	@Getter
+	private final boolean stratifyTrialSite;
+
+	@Getter
+	private final int propertyCount;
+
+	/**
+	 * The criterion per property.
+	 */
+	@Getter
+	private final AbstractCriterion<?, ?>[] criteria;
+
+	/**
+	 * The count of constraints per property, 0 for a criterion without strata.
+	 */
+	@Getter
+	private final int[] constraintCounts;
+
+	/**
+	 * The level of every element of a property distribution.
+	 */
+	private final int[][] elementLevels;
+
+	private final AbstractDistribution<TrialSite> siteDistribution;
+
+	private final AbstractDistribution<?>[] propertyDistributions;
+
+	private final int[] radix;
+
+	@Getter
+	private final int strataCount;
+
+	/**
+	 * The stratum ids in the string format of the simulation result per
+	 * stratum index.
+	 */
+	@Getter
+	private final String[] stratumIds;
+
+	/**
+	 * Compiles the passed trial copy.
+	 * 
+	 * @param trial
+	 *            The prepared trial copy.
+	 * @param arms
+	 *            The treatment arms of the trial in the order of the
+	 *            simulation result.
+	 * @param properties
+	 *            The subject properties of the trial copy.
+	 * @param siteDistribution
+	 *            The distribution of the trial sites of the trial copy.
+	 */
+	public CompiledTrial(Trial trial, List<TreatmentArm> arms,
+			List<DistributionSubjectProperty> properties,
+			AbstractDistribution<TrialSite> siteDistribution) {
+		armCount = arms.size();
+		plannedSubjects = new int[armCount];
+		armNames = new String[armCount];
+		armIds = new long[armCount];
+		int amount = 0;
+		for (int i = 0; i < armCount; i++) {
+			plannedSubjects[i] = arms.get(i).getPlannedSubjects();
+			armNames[i] = arms.get(i).getName();
+			armIds[i] = arms.get(i).getId();
+			amount += plannedSubjects[i];
+		}
+		plannedSubjectAmount = amount;
+
+		this.siteDistribution = siteDistribution;
+		List<TrialSite> sites = siteDistribution.getElements();
+		siteCount = sites.size();
+		siteNames = new String[siteCount];
+		for (int i = 0; i < siteCount; i++) {
+			siteNames[i] = sites.get(i).getName();
+		}
+		stratifyTrialSite = trial.isStratifyTrialSite();
+
+		propertyCount = properties.size();
+		criteria = new AbstractCriterion<?, ?>[propertyCount];
+		constraintCounts = new int[propertyCount];
+		elementLevels = new int[propertyCount][];
+		propertyDistributions = new AbstractDistribution<?>[propertyCount];
+		for (int p = 0; p < propertyCount; p++) {
+			DistributionSubjectProperty dsp = properties.get(p);
+			propertyDistributions[p] = dsp.getDistribution();
+			criteria[p] = dsp.getCriterion();
+			constraintCounts[p] = dsp.getCriterion().getStrata() == null ? 0
+					: dsp.getCriterion().getStrata().size();
+			List<?> elements = dsp.getDistribution().getElements();
+			elementLevels[p] = new int[elements.size()];
+			for (int e = 0; e < elements.size(); e++) {
+				elementLevels[p][e] = level(dsp.getCriterion(),
+						(Serializable) elements.get(e));
+			}
+		}
+
+		// one digit for the trial site and one digit per property
+		int offset = stratifyTrialSite ? 1 : 0;
+		radix = new int[offset + propertyCount];
+		if (stratifyTrialSite) {
+			radix[0] = siteCount;
+		}
+		int count = 1;
+		for (int p = 0; p < propertyCount; p++) {
+			radix[offset + p] = Math.max(constraintCounts[p], 1) + 1;
+		}
+		for (int r : radix) {
+			count *= r;
+		}
+		strataCount = count;
+
+		stratumIds = new String[strataCount];
+		int[] digits = new int[radix.length];
+		for (int stratum = 0; stratum < strataCount; stratum++) {
+			int rest = stratum;
+			for (int d = radix.length - 1; d >= 0; d--) {
+				digits[d] = rest % radix[d];
+				rest = rest / radix[d];
+			}
+			List<String> ids = new ArrayList<String>();
+			for (int p = 0; p < propertyCount; p++) {
+				int level = digits[offset + p];
+				AbstractCriterion<?, ?> criterion = properties.get(p)
+						.getCriterion();
+				if (constraintCounts[p] == 0 && level == 0) {
+					ids.add(criterion.getId() + "_" + -1);
+				} else if (level < constraintCounts[p]) {
+					ids.add(criterion.getId() + "_"
+							+ criterion.getStrata().get(level).getId());
+				}
+			}
+			// the same format as TrialSubject.getStratum()
+			Collections.sort(ids);
+			StringBuffer id = new StringBuffer();
+			if (stratifyTrialSite) {
+				id.append(sites.get(digits[0]).getId() + "__");
+			}
+			for (String l : ids) {
+				id.append(l + ";");
+			}
+			stratumIds[stratum] = id.toString();
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int level(AbstractCriterion criterion, Serializable value) {
+		try {
+			SubjectProperty property = new SubjectProperty(criterion);
+			property.setValue(value);
+			AbstractConstraint<?> constraint = criterion.stratify(value);
+			if (constraint == null) {
+				return 0;
+			}
+			return criterion.getStrata().indexOf(constraint);
+		} catch (ContraintViolatedException e) {
+			return UNMATCHED;
+		}
+	}
+
+	/**
+	 * Draws the next trial site.
+	 * 
+	 * @return The index of the trial site.
+	 */
+	public int nextSite() {
+		return siteDistribution.getNextIndex();
+	}
+
+	/**
+	 * Draws the next value of the property and returns its level.
+	 * 
+	 * @param property
+	 *            The index of the property.
+	 * @return The index of the constraint, 0 for a criterion without strata or
+	 *         {@link #UNMATCHED}.
+	 */
+	public int nextLevel(int property) {
+		return elementLevels[property][propertyDistributions[property]
+				.getNextIndex()];
+	}
+
+	/**
+	 * Returns the stratum index of a subject.
+	 * 
+	 * @param site
+	 *            The index of the trial site.
+	 * @param levels
+	 *            The levels of the subject properties.
+	 * @return The stratum index.
+	 */
+	public int stratum(int site, int[] levels) {
+		int stratum = 0;
+		int d = 0;
+		if (stratifyTrialSite) {
+			stratum = site;
+			d++;
+		}
+		for (int p = 0; p < propertyCount; p++, d++) {
+			stratum = stratum * radix[d]
+					+ (levels[p] == UNMATCHED ? radix[d] - 1 : levels[p]);
+		}
+		return stratum;
+	}
+}
@@ -0,0 +1,37 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+/**
+ * Kernel version of {@link de.randi2.randomization.CompleteRandomization}.
+ */
+public class CompleteRandomizationKernel extends KernelAlgorithm {
+
+	public CompleteRandomizationKernel(CompiledTrial trial) {
+		super(trial);
+	}
+
+	@Override
+	protected void init(Long seed) {
+	}
+
+	@Override
+	protected int doRandomize(int site, int[] levels, int stratum) {
+		return random.nextInt(trial.getArmCount());
+	}
+}
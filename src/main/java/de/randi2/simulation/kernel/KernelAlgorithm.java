@@ -0,0 +1,153 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.randi2.model.randomization.AbstractRandomizationConfig;
+import de.randi2.model.randomization.BiasedCoinRandomizationConfig;
+import de.randi2.model.randomization.BlockRandomizationConfig;
+import de.randi2.model.randomization.CompleteRandomizationConfig;
+import de.randi2.model.randomization.MinimizationConfig;
+import de.randi2.model.randomization.TruncatedBinomialDesignConfig;
+import de.randi2.model.randomization.UrnDesignConfig;
+import de.randi2.utility.ArithmeticUtil;
+
+/**
+ * A randomization algorithm of the simulation kernel. It works on the arm,
+ * site and stratum indices of a {@link CompiledTrial} and draws the same random
+ * numbers as the corresponding {@link de.randi2.randomization.RandomizationAlgorithm},
+ * but it does not allocate objects per subject.
+ */
+public abstract class KernelAlgorithm {
+
+	protected final CompiledTrial trial;
+
+	/**
+	 * The randomized subjects per arm in the current run.
+	 */
+	protected final int[] subjectsPerArm;
+
+	/**
+	 * The randomized subjects in the current run.
+	 */
+	protected int subjectAmount;
+
+	protected Random random;
+
+	protected KernelAlgorithm(CompiledTrial trial) {
+		this.trial = trial;
+		this.subjectsPerArm = new int[trial.getArmCount()];
+	}
+
+	/**
+	 * Creates the kernel algorithm for the passed randomization configuration.
+	 * 
+	 * @param trial
+	 *            The compiled trial.
+	 * @param configuration
+	 *            The randomization configuration of the trial.
+	 * @return The kernel algorithm or null, if the kernel does not support
+	 *         the algorithm.
+	 */
+	public static KernelAlgorithm create(CompiledTrial trial,
+			AbstractRandomizationConfig configuration) {
+		if (CompleteRandomizationConfig.class.isInstance(configuration)) {
+			return new CompleteRandomizationKernel(trial);
+		} else if (BiasedCoinRandomizationConfig.class.isInstance(configuration)) {
+			return new BiasedCoinRandomizationKernel(trial);
+		} else if (BlockRandomizationConfig.class.isInstance(configuration)) {
+			return new BlockRandomizationKernel(trial,
+					(BlockRandomizationConfig) configuration);
+		} else if (TruncatedBinomialDesignConfig.class.isInstance(configuration)) {
+			return new TruncatedBinomialDesignKernel(trial);
+		} else if (UrnDesignConfig.class.isInstance(configuration)) {
+			return new UrnDesignKernel(trial, (UrnDesignConfig) configuration);
+		} else if (MinimizationConfig.class.isInstance(configuration)) {
+			return new MinimizationKernel(trial,
+					(MinimizationConfig) configuration);
+		}
+		return null;
+	}
+
+	/**
+	 * Resets the algorithm for the next simulation run.
+	 * 
+	 * @param seed
+	 *            The seed of the run or null for an unseeded run.
+	 */
+	public void reset(Long seed) {
+		Arrays.fill(subjectsPerArm, 0);
+		subjectAmount = 0;
+		random = seed == null ? new Random() : new Random(seed);
+		init(seed);
+	}
+
+	/**
+	 * Randomizes one subject.
+	 * 
+	 * @param site
+	 *            The index of the trial site.
+	 * @param levels
+	 *            The levels of the subject properties.
+	 * @param stratum
+	 *            The stratum index of the subject.
+	 * @return The index of the assigned treatment arm.
+	 */
+	public final int randomize(int site, int[] levels, int stratum) {
+		int arm = doRandomize(site, levels, stratum);
+		subjectsPerArm[arm]++;
+		subjectAmount++;
+		return arm;
+	}
+
+	public int[] getSubjectsPerArm() {
+		return subjectsPerArm;
+	}
+
+	/**
+	 * Resets the state of the algorithm, called at the beginning of each run.
+	 */
+	protected abstract void init(Long seed);
+
+	protected abstract int doRandomize(int site, int[] levels, int stratum);
+
+	/**
+	 * Returns the arms of a raw block (like
+	 * {@link de.randi2.model.randomization.Block#generate(de.randi2.model.Trial)}).
+	 */
+	protected static int[] rawBlock(int[] plannedSubjects) {
+		int divide = plannedSubjects[0];
+		for (int i = 1; i < plannedSubjects.length; i++) {
+			divide = ArithmeticUtil.ggt(divide, plannedSubjects[i]);
+		}
+		int size = 0;
+		for (int planned : plannedSubjects) {
+			size += planned / divide;
+		}
+		int[] block = new int[size];
+		int i = 0;
+		for (int arm = 0; arm < plannedSubjects.length; arm++) {
+			for (int j = 0; j < plannedSubjects[arm] / divide; j++) {
+				block[i++] = arm;
+			}
+		}
+		return block;
+	}
+}
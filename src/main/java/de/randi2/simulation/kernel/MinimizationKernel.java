@@ -0,0 +1,392 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.randi2.model.TreatmentArm;
+import de.randi2.model.criteria.AbstractCriterion;
+import de.randi2.model.criteria.constraints.AbstractConstraint;
+import de.randi2.model.randomization.MinimizationConfig;
+import de.randi2.randomization.AbstractImbalanceScorer;
+
+/**
+ * Kernel version of {@link de.randi2.randomization.Minimization}. The counts
+ * per trial site and per constraint are kept in one int array per factor
+ * level, the arms are addressed by their index.
+ */
+public class MinimizationKernel extends KernelAlgorithm {
+
+	private final double p;
+	private final boolean withRandomizedSubjects;
+	private final boolean biasedCoinMinimization;
+
+	/**
+	 * The counter per property and constraint. Equal constraints share one
+	 * counter like in the count map of the algorithm, all criteria without
+	 * strata share the counter of the constraint <code>null</code>.
+	 */
+	private final int[][] constraintLevels;
+	/**
+	 * The constraint of every counter, <code>null</code> for the trial sites
+	 * and the criteria without strata.
+	 */
+	private final AbstractConstraint<?>[] levelConstraints;
+	private final int[][] counts;
+	/**
+	 * The counters of the constraints per stratum in the iteration order of
+	 * the hash map, in which the algorithm collects the constraints of a
+	 * subject, computed with the first subject of the stratum.
+	 */
+	private final int[][] constraintOrders;
+
+	/**
+	 * The arm indices sorted by the arm ids.
+	 */
+	private final int[] armsById;
+	/**
+	 * The arm indices in the iteration order of the count maps of the
+	 * minimization algorithm, in which the adjusted counts are summed up.
+	 */
+	private final int[] armsInMapOrder;
+	/**
+	 * The probabilities per preferred arm, the columns are sorted like
+	 * {@link #armsById}.
+	 */
+	private final double[][] probabilities;
+	private final double[] ratioProbabilities;
+
+	private final int[] relevantLevels;
+	private final int[] armsWithSameScore;
+	private final double[] adjustedCounts;
+	private final AbstractImbalanceScorer scorer;
+	/**
+	 * The weight of the factor of every counter.
+	 */
+	private final double[] weights;
+	private final double[] scores;
+	private final int[] candidates;
+
+	private Random randomEqualScore;
+
+	public MinimizationKernel(CompiledTrial trial,
+			MinimizationConfig configuration) {
+		super(trial);
+		p = configuration.getP();
+		withRandomizedSubjects = configuration.isWithRandomizedSubjects();
+		biasedCoinMinimization = configuration.isBiasedCoinMinimization();
+		int armCount = trial.getArmCount();
+
+		int siteLevels = trial.isStratifyTrialSite() ? trial.getSiteCount()
+				: 0;
+		List<AbstractConstraint<?>> constraints = new ArrayList<AbstractConstraint<?>>();
+		List<Double> constraintWeights = new ArrayList<Double>();
+		Map<AbstractConstraint<?>, Integer> levelsByConstraint = new HashMap<AbstractConstraint<?>, Integer>();
+		constraintLevels = new int[trial.getPropertyCount()][];
+		for (int i = 0; i < constraintLevels.length; i++) {
+			AbstractCriterion<?, ?> criterion = trial.getCriteria()[i];
+			int constraintCount = trial.getConstraintCounts()[i];
+			constraintLevels[i] = new int[Math.max(constraintCount, 1)];
+			for (int c = 0; c < constraintLevels[i].length; c++) {
+				AbstractConstraint<?> constraint = constraintCount == 0 ? null
+						: criterion.getStrata().get(c);
+				Integer level = levelsByConstraint.get(constraint);
+				if (level == null) {
+					level = siteLevels + constraints.size();
+					levelsByConstraint.put(constraint, level);
+					constraints.add(constraint);
+					constraintWeights.add(constraint == null ? 1.0
+							: configuration.getCriterionWeight(criterion));
+				}
+				constraintLevels[i][c] = level;
+			}
+		}
+		int levels = siteLevels + constraints.size();
+		levelConstraints = new AbstractConstraint<?>[levels];
+		counts = new int[levels][armCount];
+		weights = new double[levels];
+		Arrays.fill(weights, 0, siteLevels, configuration.getTrialSiteWeight());
+		for (int i = 0; i < constraints.size(); i++) {
+			levelConstraints[siteLevels + i] = constraints.get(i);
+			weights[siteLevels + i] = constraintWeights.get(i);
+		}
+		constraintOrders = new int[trial.getStrataCount()][];
+		relevantLevels = new int[constraintLevels.length + 1];
+		armsWithSameScore = new int[armCount];
+		adjustedCounts = new double[armCount];
+		scorer = AbstractImbalanceScorer.create(configuration
+				.getImbalanceFunction(), trial.getPlannedSubjects());
+		scores = new double[armCount];
+		candidates = new int[armCount];
+
+		armsById = new int[armCount];
+		for (int i = 0; i < armCount; i++) {
+			armsById[i] = i;
+		}
+		long[] ids = trial.getArmIds();
+		for (int i = 1; i < armCount; i++) {
+			int arm = armsById[i];
+			int j = i - 1;
+			while (j >= 0 && ids[armsById[j]] > ids[arm]) {
+				armsById[j + 1] = armsById[j];
+				j--;
+			}
+			armsById[j + 1] = arm;
+		}
+		// the count maps of the algorithm are filled in the order of the arms
+		// of the trial
+		Map<TreatmentArm, Double> countMap = new HashMap<TreatmentArm, Double>();
+		for (TreatmentArm arm : configuration.getTrial().getTreatmentArms()) {
+			countMap.put(arm, 0.0);
+		}
+		armsInMapOrder = new int[armCount];
+		int position = 0;
+		for (TreatmentArm arm : countMap.keySet()) {
+			for (int index = 0; index < armCount; index++) {
+				if (ids[index] == arm.getId()) {
+					armsInMapOrder[position++] = index;
+				}
+			}
+		}
+		probabilities = initProbabilitiesPerPreferredTreatment();
+		ratioProbabilities = new double[armCount];
+		for (int i = 0; i < armCount; i++) {
+			ratioProbabilities[i] = (trial.getPlannedSubjects()[armsById[i]] * 1.0)
+					/ (trial.getPlannedSubjectAmount() * 1.0);
+		}
+	}
+
+	@Override
+	protected void init(Long seed) {
+		for (int[] count : counts) {
+			Arrays.fill(count, 0);
+		}
+		randomEqualScore = seed == null ? new Random() : new Random(seed);
+	}
+
+	@Override
+	protected int doRandomize(int site, int[] levels, int stratum) {
+		if (biasedCoinMinimization) {
+			return doRandomizeBiasedCoinMinimization(site, levels, stratum);
+		} else {
+			return doRandomizeNaiveMinimization();
+		}
+	}
+
+	private int doRandomizeNaiveMinimization() {
+		int[] planned = trial.getPlannedSubjects();
+		int armCount = planned.length;
+		double totalPlannedSubjects = 0;
+		for (int arm = 0; arm < armCount; arm++) {
+			totalPlannedSubjects += planned[arm];
+		}
+		double randomNumber = random.nextDouble();
+		double sum = 0;
+		for (int arm = 0; arm < armCount; arm++) {
+			double plannedSubjects = withRandomizedSubjects ? (planned[arm] - subjectsPerArm[arm])
+					: planned[arm];
+			double sumOther = 0;
+			for (int arm1 = 0; arm1 < armCount; arm1++) {
+				if (arm1 != arm) {
+					sumOther += withRandomizedSubjects ? (planned[arm1] - subjectsPerArm[arm1])
+							: planned[arm1];
+				}
+			}
+			double value = plannedSubjects * p + (1.0 - p)
+					/ (armCount - 1.0) * sumOther;
+			value = value
+					/ (withRandomizedSubjects ? totalPlannedSubjects
+							- subjectAmount : totalPlannedSubjects);
+			sum += value;
+			if (randomNumber < sum) {
+				return arm;
+			}
+		}
+		return armCount - 1;
+	}
+
+	private int doRandomizeBiasedCoinMinimization(int site, int[] levels,
+			int stratum) {
+		int armCount = trial.getArmCount();
+		int relevant = 0;
+		if (trial.isStratifyTrialSite()) {
+			relevantLevels[relevant++] = site;
+		}
+		int[] constraintOrder = constraintOrders[stratum];
+		if (constraintOrder == null) {
+			constraintOrder = constraintOrder(levels);
+			constraintOrders[stratum] = constraintOrder;
+		}
+		for (int level : constraintOrder) {
+			relevantLevels[relevant++] = level;
+		}
+
+		// calculate imbalance scores, the arms next to the minimal score are
+		// compared with the direct formula, the levels are summed up in the
+		// order of the algorithm
+		Arrays.fill(scores, 0.0);
+		for (int r = 0; r < relevant; r++) {
+			scorer.addScores(counts[relevantLevels[r]],
+					weights[relevantLevels[r]], scores);
+		}
+		int candidateCount = scorer.nearMinimum(scores, candidates);
+		int sameScore = 0;
+		if (candidateCount == 1) {
+			armsWithSameScore[sameScore++] = candidates[0];
+		} else {
+			// find the preferred treatment
+			double tmpMinValue = Double.MAX_VALUE;
+			for (int c = 0; c < candidateCount; c++) {
+				int arm = candidates[c];
+				double imbalancedScore = 0.0;
+				for (int r = 0; r < relevant; r++) {
+					imbalancedScore += weights[relevantLevels[r]]
+							* imbalance(counts[relevantLevels[r]], arm);
+				}
+				if (imbalancedScore < tmpMinValue) {
+					sameScore = 0;
+					tmpMinValue = imbalancedScore;
+					armsWithSameScore[sameScore++] = arm;
+				} else if (imbalancedScore == tmpMinValue) {
+					armsWithSameScore[sameScore++] = arm;
+				}
+			}
+		}
+
+		double[] a;
+		if (sameScore == 1) {
+			a = probabilities[armsWithSameScore[0]];
+		} else if (sameScore == armCount) {
+			a = ratioProbabilities;
+		} else {
+			a = probabilities[armsById[randomEqualScore.nextInt(armCount)]];
+		}
+
+		// get treatment arm with calculated p-values
+		double randomNumber = random.nextDouble();
+		double sum = 0;
+		int arm = armsById[armCount - 1];
+		for (int i = 0; i < armCount; i++) {
+			sum += a[i];
+			if (randomNumber < sum) {
+				arm = armsById[i];
+				break;
+			}
+		}
+		// increase the count for the relevant levels
+		for (int r = 0; r < relevant; r++) {
+			counts[relevantLevels[r]][arm]++;
+		}
+		return arm;
+	}
+
+	/**
+	 * Returns the counters of the constraints of a subject in the iteration
+	 * order of the hash map, in which the minimization algorithm collects
+	 * them. The constraints are put in the order of the properties, so only
+	 * the order of constraints in the same bucket of the map can differ from
+	 * the algorithm, which puts them in the order of the property set.
+	 */
+	private int[] constraintOrder(int[] levels) {
+		Map<AbstractConstraint<?>, Integer> relevantConstraints = new HashMap<AbstractConstraint<?>, Integer>();
+		for (int i = 0; i < levels.length; i++) {
+			if (levels[i] == CompiledTrial.UNMATCHED) {
+				continue;
+			}
+			int level = constraintLevels[i][levels[i]];
+			relevantConstraints.put(levelConstraints[level], level);
+		}
+		int[] order = new int[relevantConstraints.size()];
+		int position = 0;
+		for (Integer level : relevantConstraints.values()) {
+			order[position++] = level;
+		}
+		return order;
+	}
+
+	/**
+	 * The imbalance of the level, if the subject is assigned to the arm. The
+	 * adjusted counts are summed up in the order of the count maps, so that
+	 * ties are decided like in the minimization algorithm.
+	 */
+	private double imbalance(int[] count, int arm) {
+		int[] planned = trial.getPlannedSubjects();
+		for (int i = 0; i < adjustedCounts.length; i++) {
+			int actArm = armsInMapOrder[i];
+			adjustedCounts[i] = (actArm == arm ? count[actArm] + 1.0
+					: count[actArm])
+					/ planned[actArm];
+		}
+		return scorer.imbalance(adjustedCounts);
+	}
+
+	/**
+	 * Calculate the probabilities per preferred treatment arm (Biased Coin
+	 * Minimization), the same formula as in the minimization algorithm.
+	 */
+	private double[][] initProbabilitiesPerPreferredTreatment() {
+		int[] planned = trial.getPlannedSubjects();
+		int armCount = planned.length;
+		double[][] result = new double[armCount][armCount];
+		int minArm = 0;
+		for (int arm = 0; arm < armCount; arm++) {
+			if (planned[arm] < planned[minArm]) {
+				minArm = arm;
+			}
+		}
+		for (int prefArm = 0; prefArm < armCount; prefArm++) {
+			double pH_pref = 0.0;
+			double denuminator = 0.0;
+			double numinator = 0.0;
+			for (int arm = 0; arm < armCount; arm++) {
+				if (arm != prefArm) {
+					denuminator += planned[arm];
+				}
+				if (arm != minArm) {
+					numinator += planned[arm];
+				}
+			}
+			if (prefArm == minArm) {
+				pH_pref = p;
+			} else {
+				pH_pref = 1.0 - (denuminator / numinator) * (1 - p);
+			}
+			numinator = 0.0;
+			for (int arm = 0; arm < armCount; arm++) {
+				if (arm != prefArm) {
+					numinator += planned[arm];
+				}
+			}
+			double pL_without_ri = (1 - pH_pref) / numinator;
+			for (int i = 0; i < armCount; i++) {
+				int arm = armsById[i];
+				if (arm == prefArm) {
+					result[prefArm][i] = pH_pref;
+				} else {
+					result[prefArm][i] = pL_without_ri * planned[arm];
+				}
+			}
+		}
+		return result;
+	}
+}
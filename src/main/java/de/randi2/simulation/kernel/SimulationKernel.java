@@ -0,0 +1,133 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import de.randi2.model.TreatmentArm;
+import de.randi2.model.Trial;
+import de.randi2.model.TrialSite;
+import de.randi2.simulation.distribution.AbstractDistribution;
+import de.randi2.simulation.model.DistributionSubjectProperty;
+import de.randi2.simulation.model.SimulationRawData;
+import de.randi2.simulation.model.SimulationRun;
+
+/**
+ * The simulation kernel simulates the runs of a compiled trial. It draws the
+ * subject properties and trial sites as indices and randomizes them with a
+ * {@link KernelAlgorithm}, so no trial subjects, subject properties or stratum
+ * strings are created per subject.
+ */
+public class SimulationKernel {
+
+	private final CompiledTrial trial;
+	private final KernelAlgorithm algorithm;
+	private final List<TreatmentArm> arms;
+	private final int[] levels;
+	private final int[][] strataCounts;
+
+	private SimulationKernel(CompiledTrial trial, KernelAlgorithm algorithm,
+			List<TreatmentArm> arms) {
+		this.trial = trial;
+		this.algorithm = algorithm;
+		this.arms = arms;
+		this.levels = new int[trial.getPropertyCount()];
+		this.strataCounts = new int[trial.getArmCount()][trial
+				.getStrataCount()];
+	}
+
+	/**
+	 * Compiles the passed trial copy for the simulation kernel.
+	 * 
+	 * @param trial
+	 *            The prepared trial copy.
+	 * @param arms
+	 *            The treatment arms of the trial copy in the order of the
+	 *            simulation result.
+	 * @param properties
+	 *            The subject properties of the trial copy.
+	 * @param distributionTrialSites
+	 *            The trial site distribution of the trial copy.
+	 * @return The kernel or null, if the randomization algorithm of the trial
+	 *         is not supported by the kernel.
+	 */
+	public static SimulationKernel compile(Trial trial,
+			List<TreatmentArm> arms,
+			List<DistributionSubjectProperty> properties,
+			AbstractDistribution<TrialSite> distributionTrialSites) {
+		CompiledTrial compiledTrial = new CompiledTrial(trial, arms,
+				properties, distributionTrialSites);
+		KernelAlgorithm algorithm = KernelAlgorithm.create(compiledTrial,
+				trial.getRandomizationConfiguration());
+		if (algorithm == null) {
+			return null;
+		}
+		return new SimulationKernel(compiledTrial, algorithm, arms);
+	}
+
+	/**
+	 * Simulates one run and writes the subjects and strata counts per arm to
+	 * the simulation run.
+	 * 
+	 * @param seed
+	 *            The seed of the algorithm for this run or null.
+	 * @param run
+	 *            The number of the run.
+	 * @param simRun
+	 *            The empty simulation run.
+	 * @param rawData
+	 *            The raw data or null, if no raw data should be
+	 *            collected.
+	 */
+	public void simulateRun(Long seed, int run, SimulationRun simRun,
+			SimulationRawData rawData) {
+		algorithm.reset(seed);
+		for (int[] counts : strataCounts) {
+			Arrays.fill(counts, 0);
+		}
+		int propertyCount = levels.length;
+		for (int i = 0; i < trial.getPlannedSubjectAmount(); i++) {
+			for (int p = 0; p < propertyCount; p++) {
+				levels[p] = trial.nextLevel(p);
+			}
+			int site = trial.nextSite();
+			int stratum = trial.stratum(site, levels);
+			int arm = algorithm.randomize(site, levels, stratum);
+			strataCounts[arm][stratum]++;
+			if (rawData != null) {
+				rawData.add(run, i, trial.getArmNames()[arm], trial
+						.getSiteNames()[site], trial.getStratumIds()[stratum]);
+			}
+		}
+		System.arraycopy(algorithm.getSubjectsPerArm(), 0, simRun
+				.getSubjectsPerArms(), 0, trial.getArmCount());
+		String[] stratumIds = trial.getStratumIds();
+		for (int arm = 0; arm < strataCounts.length; arm++) {
+			Map<String, Integer> counts = simRun.getStrataCountsPerArm().get(
+					arms.get(arm));
+			for (int stratum = 0; stratum < stratumIds.length; stratum++) {
+				if (strataCounts[arm][stratum] > 0
+						&& counts.containsKey(stratumIds[stratum])) {
+					counts.put(stratumIds[stratum], strataCounts[arm][stratum]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+import de.randi2.utility.ArithmeticUtil;
+
+/**
+ * Kernel version of {@link de.randi2.randomization.TruncatedBinomialDesign}.
+ * Instead of building the block of the open arms it picks the position in the
+ * block directly.
+ */
+public class TruncatedBinomialDesignKernel extends KernelAlgorithm {
+
+	public TruncatedBinomialDesignKernel(CompiledTrial trial) {
+		super(trial);
+	}
+
+	@Override
+	protected void init(Long seed) {
+	}
+
+	@Override
+	protected int doRandomize(int site, int[] levels, int stratum) {
+		int[] planned = trial.getPlannedSubjects();
+		int divide = -1;
+		for (int arm = 0; arm < planned.length; arm++) {
+			if (subjectsPerArm[arm] < planned[arm]) {
+				divide = divide < 0 ? planned[arm] : ArithmeticUtil.ggt(
+						divide, planned[arm]);
+			}
+		}
+		if (divide < 0) {
+			throw new IllegalStateException("All treatment arms are full.");
+		}
+		int size = 0;
+		for (int arm = 0; arm < planned.length; arm++) {
+			if (subjectsPerArm[arm] < planned[arm]) {
+				size += planned[arm] / divide;
+			}
+		}
+		int position = random.nextInt(size);
+		for (int arm = 0; arm < planned.length; arm++) {
+			if (subjectsPerArm[arm] < planned[arm]) {
+				position -= planned[arm] / divide;
+				if (position < 0) {
+					return arm;
+				}
+			}
+		}
+		throw new IllegalStateException();
+	}
+}
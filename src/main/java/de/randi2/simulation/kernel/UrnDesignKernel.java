@@ -0,0 +1,101 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.kernel;
+
+import java.util.Arrays;
+
+import de.randi2.model.randomization.UrnDesignConfig;
+import de.randi2.utility.FenwickTree;
+
+/**
+ * Kernel version of {@link de.randi2.randomization.UrnDesign}, the urns are
+ * kept per stratum index as ball counts in the arm order of
+ * {@link de.randi2.model.randomization.Urn#ARM_ORDER}.
+ */
+public class UrnDesignKernel extends KernelAlgorithm {
+
+	private final int initializeCountBalls;
+	private final int countReplacedBalls;
+	/**
+	 * The arm indices in the order of the urn positions.
+	 */
+	private final int[] order;
+	private final FenwickTree[] urns;
+	private final boolean[] generated;
+
+	public UrnDesignKernel(CompiledTrial trial, UrnDesignConfig configuration) {
+		super(trial);
+		initializeCountBalls = configuration.getInitializeCountBalls();
+		countReplacedBalls = configuration.getCountReplacedBalls();
+		order = armOrder(trial.getArmIds(), trial.getArmNames());
+		urns = new FenwickTree[trial.getStrataCount()];
+		generated = new boolean[trial.getStrataCount()];
+	}
+
+	/**
+	 * Sorts the arm indices by id and name like the urn of the randomization
+	 * algorithm.
+	 */
+	private static int[] armOrder(long[] ids, String[] names) {
+		int[] order = new int[ids.length];
+		for (int arm = 0; arm < order.length; arm++) {
+			int j = arm;
+			for (; j > 0 && compare(ids, names, order[j - 1], arm) > 0; j--) {
+				order[j] = order[j - 1];
+			}
+			order[j] = arm;
+		}
+		return order;
+	}
+
+	private static int compare(long[] ids, String[] names, int arm1, int arm2) {
+		if (ids[arm1] != ids[arm2]) {
+			return ids[arm1] < ids[arm2] ? -1 : 1;
+		}
+		if (names[arm1] == null || names[arm2] == null) {
+			return names[arm1] == null ? (names[arm2] == null ? 0 : -1) : 1;
+		}
+		return names[arm1].compareTo(names[arm2]);
+	}
+
+	@Override
+	protected void init(Long seed) {
+		Arrays.fill(generated, false);
+	}
+
+	@Override
+	protected int doRandomize(int site, int[] levels, int stratum) {
+		FenwickTree urn = urns[stratum];
+		if (urn == null) {
+			urn = new FenwickTree(order.length);
+			urns[stratum] = urn;
+		}
+		if (!generated[stratum]) {
+			for (int position = 0; position < order.length; position++) {
+				urn.set(position, initializeCountBalls);
+			}
+			generated[stratum] = true;
+		}
+		int position = urn.find(random.nextInt(urn.total()));
+		urn.add(position, -1);
+		urn.addToAll(countReplacedBalls);
+		urn.add(position, -countReplacedBalls);
+		return order[position];
+	}
+
+}
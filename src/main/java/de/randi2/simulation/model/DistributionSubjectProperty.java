@@ -58,6 +58,10 @@ public class DistributionSubjectProperty {
 		return criterion;
 	}
 
+	public AbstractDistribution<?> getDistribution() {
+		return distribution;
+	}
+
 	public void setCriterion(
 			AbstractCriterion<? extends Serializable, ? extends AbstractConstraint<? extends Serializable>> criterion) {
 		this.criterion = criterion;
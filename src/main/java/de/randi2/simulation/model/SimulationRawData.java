@@ -0,0 +1,455 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.model;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+import org.apache.log4j.Logger;
+
+/**
+ * This class contains the raw data of a simulation, one entry per randomized
+ * subject. The entries are stored in columns, the run and the count as int,
+ * the treatment arm and the trial site as short codes and the stratum as int
+ * code of a dictionary, a trial with many criteria can have more strata than
+ * short codes. If the count of entries in memory exceeds the limit, the
+ * columns are written as one block to a temporary file and the memory is
+ * reused for the next entries. The temporary file is deleted by
+ * {@link #dispose()}.
+ */
+public class SimulationRawData {
+
+	/**
+	 * Callback for the entries of the raw data, see
+	 * {@link SimulationRawData#forEach(EntryHandler)}.
+	 */
+	public interface EntryHandler {
+		public void handle(int run, int count, String treatmentArm,
+				String trialSite, String stratum) throws IOException;
+	}
+
+	/**
+	 * The default count of entries which are hold in memory.
+	 */
+	public static final int DEFAULT_MEMORY_ENTRIES = 1000000;
+
+	/**
+	 * The size of one entry in the temporary file (three int and two short
+	 * values).
+	 */
+	private static final int ENTRY_BYTES = 3 * 4 + 2 * 2;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The count of entries which are transferred at once between the columns
+	 * and the temporary file.
+	 */
+	private static final int CHUNK_ENTRIES = 8192;
+
+	private final Logger logger = Logger.getLogger(SimulationRawData.class);
+
+	@Getter
+	private final int memoryEntries;
+
+	private final Dictionary arms = new Dictionary(Short.MAX_VALUE);
+	private final Dictionary sites = new Dictionary(Short.MAX_VALUE);
+	private final Dictionary strata = new Dictionary(Integer.MAX_VALUE);
+
+	private int[] runColumn = new int[0];
+	private int[] countColumn = new int[0];
+	private short[] armColumn = new short[0];
+	private short[] siteColumn = new short[0];
+	private int[] stratumColumn = new int[0];
+	private int memorySize = 0;
+
+	private File file;
+	private FileChannel channel;
+	private long filePosition = 0;
+	/**
+	 * The count of entries of every block in the temporary file.
+	 */
+	private List<Integer> blocks = new ArrayList<Integer>();
+	private long fileSize = 0;
+	private ByteBuffer transferBuffer;
+
+	public SimulationRawData() {
+		this(DEFAULT_MEMORY_ENTRIES);
+	}
+
+	/**
+	 * @param memoryEntries
+	 *            The count of entries which are hold in memory before they
+	 *            are written to the temporary file.
+	 */
+	public SimulationRawData(int memoryEntries) {
+		if (memoryEntries < 1) {
+			throw new IllegalArgumentException(
+					"The count of memory entries must be positive");
+		}
+		this.memoryEntries = memoryEntries;
+	}
+
+	/**
+	 * Adds one entry to the raw data.
+	 */
+	public void add(int run, int count, String treatmentArm, String trialSite,
+			String stratum) {
+		if (memorySize == memoryEntries) {
+			spill();
+		}
+		if (memorySize == runColumn.length) {
+			grow();
+		}
+		runColumn[memorySize] = run;
+		countColumn[memorySize] = count;
+		armColumn[memorySize] = (short) arms.code(treatmentArm);
+		siteColumn[memorySize] = (short) sites.code(trialSite);
+		stratumColumn[memorySize] = strata.code(stratum);
+		memorySize++;
+	}
+
+	/**
+	 * Adds all entries of the passed raw data in their order.
+	 */
+	public void addAll(SimulationRawData rawData) {
+		try {
+			rawData.forEach(new EntryHandler() {
+				@Override
+				public void handle(int run, int count, String treatmentArm,
+						String trialSite, String stratum) {
+					add(run, count, treatmentArm, trialSite, stratum);
+				}
+			});
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"Can't read the simulation raw data", e);
+		}
+	}
+
+	/**
+	 * @return the count of all entries.
+	 */
+	public long size() {
+		return fileSize + memorySize;
+	}
+
+	/**
+	 * @return true, if a part of the entries is stored in the temporary file.
+	 */
+	public boolean isSpilled() {
+		return file != null;
+	}
+
+	/**
+	 * Passes all entries in the order they are added to the handler.
+	 */
+	public void forEach(EntryHandler handler) throws IOException {
+		Cursor cursor = cursor();
+		while (cursor.next()) {
+			handler.handle(cursor.getRun(), cursor.getCount(), cursor
+					.getTreatmentArm(), cursor.getTrialSite(), cursor
+					.getStratum());
+		}
+	}
+
+	/**
+	 * @return a new cursor over all entries in the order they are added.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Releases the memory and deletes the temporary file.
+	 */
+	public void dispose() {
+		runColumn = new int[0];
+		countColumn = new int[0];
+		armColumn = new short[0];
+		siteColumn = new short[0];
+		stratumColumn = new int[0];
+		memorySize = 0;
+		blocks.clear();
+		fileSize = 0;
+		filePosition = 0;
+		transferBuffer = null;
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.warn("Can't close the simulation raw data file", e);
+			}
+			channel = null;
+		}
+		if (file != null) {
+			if (!file.delete()) {
+				logger.warn("Can't delete the simulation raw data file "
+						+ file.getAbsolutePath());
+			}
+			file = null;
+		}
+	}
+
+	private void grow() {
+		int capacity = Math.min(memoryEntries, Math.max(INITIAL_CAPACITY,
+				runColumn.length * 2));
+		int[] runs = new int[capacity];
+		int[] counts = new int[capacity];
+		short[] armCodes = new short[capacity];
+		short[] siteCodes = new short[capacity];
+		int[] stratumCodes = new int[capacity];
+		System.arraycopy(runColumn, 0, runs, 0, memorySize);
+		System.arraycopy(countColumn, 0, counts, 0, memorySize);
+		System.arraycopy(armColumn, 0, armCodes, 0, memorySize);
+		System.arraycopy(siteColumn, 0, siteCodes, 0, memorySize);
+		System.arraycopy(stratumColumn, 0, stratumCodes, 0, memorySize);
+		runColumn = runs;
+		countColumn = counts;
+		armColumn = armCodes;
+		siteColumn = siteCodes;
+		stratumColumn = stratumCodes;
+	}
+
+	/**
+	 * Writes the entries in memory as one block to the temporary file. The
+	 * block contains the columns one after another.
+	 */
+	private void spill() {
+		try {
+			if (file == null) {
+				file = File.createTempFile("randi2-simulation", ".raw");
+				channel = new RandomAccessFile(file, "rw").getChannel();
+				logger.debug("Write the simulation raw data to "
+						+ file.getAbsolutePath());
+			}
+			if (transferBuffer == null) {
+				transferBuffer = ByteBuffer.allocate(CHUNK_ENTRIES * 4);
+			}
+			long position = filePosition;
+			position = write(runColumn, position);
+			position = write(countColumn, position);
+			position = write(armColumn, position);
+			position = write(siteColumn, position);
+			write(stratumColumn, position);
+			filePosition += (long) memorySize * ENTRY_BYTES;
+			blocks.add(memorySize);
+			fileSize += memorySize;
+			memorySize = 0;
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"Can't write the simulation raw data", e);
+		}
+	}
+
+	private long write(int[] column, long position) throws IOException {
+		for (int offset = 0; offset < memorySize; offset += CHUNK_ENTRIES) {
+			int size = Math.min(CHUNK_ENTRIES, memorySize - offset);
+			transferBuffer.clear();
+			transferBuffer.asIntBuffer().put(column, offset, size);
+			transferBuffer.limit(size * 4);
+			position = write(transferBuffer, position);
+		}
+		return position;
+	}
+
+	private long write(short[] column, long position) throws IOException {
+		for (int offset = 0; offset < memorySize; offset += CHUNK_ENTRIES) {
+			int size = Math.min(CHUNK_ENTRIES, memorySize - offset);
+			transferBuffer.clear();
+			transferBuffer.asShortBuffer().put(column, offset, size);
+			transferBuffer.limit(size * 2);
+			position = write(transferBuffer, position);
+		}
+		return position;
+	}
+
+	private long write(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		return position;
+	}
+
+	private void read(ByteBuffer buffer, int bytes, long position)
+			throws IOException {
+		buffer.clear();
+		buffer.limit(bytes);
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException(
+						"The simulation raw data file is truncated");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Reads the entries in the order they are added. The blocks of the
+	 * temporary file are read in chunks, so only a small part of the file is
+	 * in memory at a time. The entries in memory must not be changed while
+	 * the cursor is used.
+	 */
+	public class Cursor {
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(Math.min(
+				CHUNK_ENTRIES, memoryEntries) * 4);
+		private int[] runs = new int[0];
+		private int[] counts = new int[0];
+		private short[] armCodes = new short[0];
+		private short[] siteCodes = new short[0];
+		private int[] stratumCodes = new int[0];
+		private int chunkSize = 0;
+		private int index = -1;
+
+		private int block = 0;
+		private long blockPosition = 0;
+		private int blockOffset = 0;
+		private boolean inMemory = false;
+
+		private Cursor() {
+		}
+
+		/**
+		 * Moves the cursor to the next entry.
+		 * 
+		 * @return false, if there are no further entries.
+		 */
+		public boolean next() throws IOException {
+			index++;
+			if (index < chunkSize) {
+				return true;
+			}
+			if (inMemory) {
+				return false;
+			}
+			while (block < blocks.size() && blockOffset == blocks.get(block)) {
+				blockPosition += (long) blocks.get(block) * ENTRY_BYTES;
+				block++;
+				blockOffset = 0;
+			}
+			if (block < blocks.size()) {
+				readChunk(blocks.get(block));
+			} else {
+				inMemory = true;
+				runs = runColumn;
+				counts = countColumn;
+				armCodes = armColumn;
+				siteCodes = siteColumn;
+				stratumCodes = stratumColumn;
+				chunkSize = memorySize;
+			}
+			index = 0;
+			return index < chunkSize;
+		}
+
+		private void readChunk(int entries) throws IOException {
+			int size = Math.min(CHUNK_ENTRIES, entries - blockOffset);
+			if (runs.length < size) {
+				int capacity = Math.min(CHUNK_ENTRIES, memoryEntries);
+				runs = new int[capacity];
+				counts = new int[capacity];
+				armCodes = new short[capacity];
+				siteCodes = new short[capacity];
+				stratumCodes = new int[capacity];
+			}
+			long shorts = blockPosition + (long) entries * 2 * 4;
+			long stratumInts = shorts + (long) entries * 2 * 2;
+			read(buffer, size * 4, blockPosition + (long) blockOffset * 4);
+			buffer.asIntBuffer().get(runs, 0, size);
+			read(buffer, size * 4, blockPosition
+					+ ((long) entries + blockOffset) * 4);
+			buffer.asIntBuffer().get(counts, 0, size);
+			read(buffer, size * 2, shorts + (long) blockOffset * 2);
+			buffer.asShortBuffer().get(armCodes, 0, size);
+			read(buffer, size * 2, shorts + ((long) entries + blockOffset) * 2);
+			buffer.asShortBuffer().get(siteCodes, 0, size);
+			read(buffer, size * 4, stratumInts + (long) blockOffset * 4);
+			buffer.asIntBuffer().get(stratumCodes, 0, size);
+			blockOffset += size;
+			chunkSize = size;
+		}
+
+		public int getRun() {
+			return runs[index];
+		}
+
+		public int getCount() {
+			return counts[index];
+		}
+
+		public String getTreatmentArm() {
+			return arms.value(armCodes[index]);
+		}
+
+		public String getTrialSite() {
+			return sites.value(siteCodes[index]);
+		}
+
+		public String getStratum() {
+			return strata.value(stratumCodes[index]);
+		}
+	}
+
+	/**
+	 * Maps the values of a column to codes.
+	 */
+	private static class Dictionary {
+
+		private final int maxCode;
+		private final List<String> values = new ArrayList<String>();
+		private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+		/**
+		 * @param maxCode
+		 *            The largest code of the column.
+		 */
+		Dictionary(int maxCode) {
+			this.maxCode = maxCode;
+		}
+
+		int code(String value) {
+			Integer code = codes.get(value);
+			if (code == null) {
+				if (values.size() > maxCode) {
+					throw new IllegalStateException(
+							"Too many different values in the simulation raw data");
+				}
+				code = values.size();
+				values.add(value);
+				codes.put(value, code);
+			}
+			return code;
+		}
+
+		String value(int code) {
+			return values.get(code);
+		}
+	}
+}
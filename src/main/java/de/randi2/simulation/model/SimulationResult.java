@@ -26,12 +26,15 @@ import lombok.Getter;
 import lombok.Setter;
 import de.randi2.model.TreatmentArm;
 import de.randi2.model.randomization.AbstractRandomizationConfig;
-import java.util.Collections;
 
 /**
  * This class represented the results of a simulation. It contains the
- * simulation runs, different measures and the functionality to analyze the
- * simulation.
+ * different measures and the functionality to analyze the simulation. The
+ * simulation runs are not stored, every run is folded into running minima,
+ * maxima, means and count histograms when it is added, so the memory depends
+ * only on the count of arms and strata and not on the count of runs.
+ * The runs can be added by the simulation while other threads read the
+ * measures or take a {@link #snapshot()} of the result.
  * 
  * @author Daniel Schrimpf <ds@randi2.de>
  * 
@@ -39,7 +42,7 @@ import java.util.Collections;
 public class SimulationResult {
 
 	@Getter
-	private int amountRuns;
+	private volatile int amountRuns;
 
 	@Getter
 	private List<TreatmentArm> arms = new ArrayList<TreatmentArm>();
@@ -58,11 +61,6 @@ public class SimulationResult {
 
 	private double[] medians;
 
-	private long duration = Long.MIN_VALUE;
-
-	@Getter
-	private List<SimulationRun> runs = new ArrayList<SimulationRun>();
-
 	@Getter
 	private AbstractRandomizationConfig algConf;
 
@@ -77,7 +75,26 @@ public class SimulationResult {
 	private Map<String,String> strataIdNames;
 	
 	@Getter @Setter
-	private List<SimulationRawDataEntry> rawData = new ArrayList<SimulationRawDataEntry>();
+	private SimulationRawData rawData = new SimulationRawData();
+
+	/*
+	 * The running values of all added simulation runs.
+	 */
+	private int[] runMins;
+	private int[] runMaxs;
+	private double[] runMeans;
+	/**
+	 * Per arm the count of runs with a given subject count.
+	 */
+	private int[][] countHistograms;
+	private double runMarginalBalanceMin = Double.MAX_VALUE;
+	private double runMarginalBalanceMax = Double.MIN_VALUE;
+	private double runMarginalBalanceMean = 0.0;
+	private long runDuration = 0;
+	private List<String> strataIds;
+	private int[][] strataMins;
+	private int[][] strataMaxs;
+	private double[][] strataMeans;
 	
 	/**
 	 * 
@@ -94,14 +111,83 @@ public class SimulationResult {
 	}
 
 	/**
-	 * Add one Simulation run to the list of the simulation runs.
+	 * Add one Simulation run to the simulation result. The run is folded into
+	 * the running measures and is not stored.
 	 * 
 	 * @param run
 	 *            The simulation run.
 	 */
-	public void addSimulationRun(SimulationRun run) {
+	public synchronized void addSimulationRun(SimulationRun run) {
+		if (runMins == null) {
+			initRunningValues();
+		}
 		amountRuns++;
-		runs.add(run);
+		for (int j = 0; j < arms.size(); j++) {
+			int count = run.getSubjectsPerArms()[j];
+			if (count < runMins[j])
+				runMins[j] = count;
+			if (count > runMaxs[j])
+				runMaxs[j] = count;
+			// Welford's running mean
+			runMeans[j] += (count - runMeans[j]) / amountRuns;
+			if (count >= countHistograms[j].length) {
+				int[] histogram = new int[Math.max(count + 1,
+						countHistograms[j].length * 2)];
+				System.arraycopy(countHistograms[j], 0, histogram, 0,
+						countHistograms[j].length);
+				countHistograms[j] = histogram;
+			}
+			countHistograms[j][count]++;
+			Map<String, Integer> strataCounts = run.getStrataCountsPerArm()
+					.get(arms.get(j));
+			for (int s = 0; s < strataIds.size(); s++) {
+				Integer strataCount = strataCounts == null ? null
+						: strataCounts.get(strataIds.get(s));
+				int value = strataCount == null ? 0 : strataCount;
+				if (value < strataMins[j][s])
+					strataMins[j][s] = value;
+				if (value > strataMaxs[j][s])
+					strataMaxs[j][s] = value;
+				strataMeans[j][s] += (value - strataMeans[j][s]) / amountRuns;
+			}
+		}
+		double marginalBalance = run.getMarginalBalace();
+		if (marginalBalance < runMarginalBalanceMin)
+			runMarginalBalanceMin = marginalBalance;
+		if (marginalBalance > runMarginalBalanceMax)
+			runMarginalBalanceMax = marginalBalance;
+		runMarginalBalanceMean += (marginalBalance - runMarginalBalanceMean)
+				/ amountRuns;
+		runDuration += run.getTime();
+		// the measures have to be analyzed again
+		mins = null;
+		maxs = null;
+		means = null;
+		medians = null;
+		marginalBalanceMin = Double.NaN;
+		marginalBalanceMax = Double.NaN;
+		marginalBalanceMean = Double.NaN;
+	}
+
+	private void initRunningValues() {
+		runMins = new int[arms.size()];
+		runMaxs = new int[arms.size()];
+		runMeans = new double[arms.size()];
+		countHistograms = new int[arms.size()][];
+		strataIds = new ArrayList<String>();
+		if (strataIdNames != null) {
+			strataIds.addAll(strataIdNames.keySet());
+		}
+		strataMins = new int[arms.size()][strataIds.size()];
+		strataMaxs = new int[arms.size()][strataIds.size()];
+		strataMeans = new double[arms.size()][strataIds.size()];
+		for (int i = 0; i < arms.size(); i++) {
+			runMins[i] = Integer.MAX_VALUE;
+			countHistograms[i] = new int[arms.get(i).getPlannedSubjects() * 2 + 1];
+			for (int s = 0; s < strataIds.size(); s++) {
+				strataMins[i][s] = Integer.MAX_VALUE;
+			}
+		}
 	}
 
 	/**
@@ -109,7 +195,7 @@ public class SimulationResult {
 	 * 
 	 * @return The initialized simulation run.
 	 */
-	public SimulationRun getEmptyRun() {
+	public synchronized SimulationRun getEmptyRun() {
 		if (plannedSubjectsPerArm == null) {
 			plannedSubjectsPerArm = new int[arms.size()];
 			for (int i = 0; i < arms.size(); i++) {
@@ -125,7 +211,7 @@ public class SimulationResult {
 	 * 
 	 * @return The array with the results per arm.
 	 */
-	public double[] getMeans() {
+	public synchronized double[] getMeans() {
 		if (means == null) {
 			analyze();
 		}
@@ -138,7 +224,7 @@ public class SimulationResult {
 	 * 
 	 * @return The array with the results per arm.
 	 */
-	public int[] getMins() {
+	public synchronized int[] getMins() {
 		if (mins == null) {
 			analyze();
 		}
@@ -151,7 +237,7 @@ public class SimulationResult {
 	 * 
 	 * @return The array with the results per arm.
 	 */
-	public int[] getMaxs() {
+	public synchronized int[] getMaxs() {
 		if (maxs == null) {
 			analyze();
 		}
@@ -164,7 +250,7 @@ public class SimulationResult {
 	 * 
 	 * @return The array with the results per arm.
 	 */
-	public double[] getMedians() {
+	public synchronized double[] getMedians() {
 		if (medians == null) {
 			analyze();
 		}
@@ -177,7 +263,7 @@ public class SimulationResult {
 	 * 
 	 * @return The minimum marginal balance.
 	 */
-	public double getMarginalBalanceMin() {
+	public synchronized double getMarginalBalanceMin() {
 		if (Double.isNaN(marginalBalanceMin)) {
 			analyze();
 		}
@@ -190,7 +276,7 @@ public class SimulationResult {
 	 * 
 	 * @return The maximal marginal balance.
 	 */
-	public double getMarginalBalanceMax() {
+	public synchronized double getMarginalBalanceMax() {
 		if (Double.isNaN(marginalBalanceMax)) {
 			analyze();
 		}
@@ -203,7 +289,7 @@ public class SimulationResult {
 	 * 
 	 * @return The mean of the marginal balances.
 	 */
-	public double getMarginalBalanceMean() {
+	public synchronized double getMarginalBalanceMean() {
 		if (Double.isNaN(marginalBalanceMean)) {
 			analyze();
 		}
@@ -215,96 +301,40 @@ public class SimulationResult {
 	 * 
 	 * @return the
 	 */
-	public long getDuration() {
-		if (duration == Long.MIN_VALUE) {
-			analyze();
-			duration = duration / 1000;
-		}
-		return duration;
+	public synchronized long getDuration() {
+		return runDuration / 1000;
 	}
 
 	/**
 	 * This method analyze the simulation and set the measures, the method is
 	 * called automatic if the measures are not initialized.
 	 */
-	public void analyze() {
-		if (runs.size() >= 2) {
-			// initialize the variables
-			duration = 0;
+	public synchronized void analyze() {
+		if (amountRuns >= 2) {
 			simResultArms = new ArrayList<SimulationResultArm>();
-			mins = new int[arms.size()];
-			for (int i = 0; i < mins.length; i++) {
-				mins[i] = Integer.MAX_VALUE;
-			}
-			maxs = new int[arms.size()];
-			means = new double[arms.size()];
+			mins = runMins.clone();
+			maxs = runMaxs.clone();
+			means = runMeans.clone();
 			medians = new double[arms.size()];
 
-			marginalBalanceMax = Double.MIN_VALUE;
-			marginalBalanceMin = Double.MAX_VALUE;
-			marginalBalanceMean = 0.0;
-			Map<TreatmentArm, Map<String, Integer>> strataCountsPerArmMin = new HashMap<TreatmentArm, Map<String,Integer>>();
-			Map<TreatmentArm, Map<String, Integer>> strataCountsPerArmMax = new HashMap<TreatmentArm, Map<String,Integer>>();
-			Map<TreatmentArm, Map<String, Double>> strataCountsPerArmMean = new HashMap<TreatmentArm, Map<String,Double>>();
-			
-			// HashMap to calculate the median per arm.
-			HashMap<Integer, ArrayList<Integer>> tempMedian = new HashMap<Integer, ArrayList<Integer>>();
-			for (int i = 0; i < arms.size(); i++) {
-				tempMedian.put(i, new ArrayList<Integer>());
-				strataCountsPerArmMin.put(arms.get(i), new HashMap<String, Integer>());
-				strataCountsPerArmMax.put(arms.get(i), new HashMap<String, Integer>());
-				strataCountsPerArmMean.put(arms.get(i), new HashMap<String, Double>());
-				for(String strataId : strataIdNames.keySet()){
-					strataCountsPerArmMax.get(arms.get(i)).put(strataId, 0);
-					strataCountsPerArmMin.get(arms.get(i)).put(strataId, Integer.MAX_VALUE);
-					strataCountsPerArmMean.get(arms.get(i)).put(strataId, 0.0);
-				}
-			}
+			marginalBalanceMax = runMarginalBalanceMax;
+			marginalBalanceMin = runMarginalBalanceMin;
+			marginalBalanceMean = runMarginalBalanceMean;
 
-			// first loop over all simulation runs to calculate the
-			// minimal/maximal
-			// values, duration and marginal balances
-			for (int i = 0; i < runs.size(); i++) {
-				for (int j = 0; j < arms.size(); j++) {
-					if (runs.get(i).getSubjectsPerArms()[j] < mins[j])
-						mins[j] = runs.get(i).getSubjectsPerArms()[j];
-					if (runs.get(i).getSubjectsPerArms()[j] > maxs[j])
-						maxs[j] = runs.get(i).getSubjectsPerArms()[j];
-					tempMedian.get(j).add(runs.get(i).getSubjectsPerArms()[j]);
-					means[j] += runs.get(i).getSubjectsPerArms()[j];
-					for(String strataId : runs.get(i).getStrataCountsPerArm().get(arms.get(j)).keySet()){
-						if(strataCountsPerArmMax.get(arms.get(j)).get(strataId) < runs.get(i).getStrataCountsPerArm().get(arms.get(j)).get(strataId)){
-							strataCountsPerArmMax.get(arms.get(j)).put(strataId, runs.get(i).getStrataCountsPerArm().get(arms.get(j)).get(strataId));
-						}
-						if(strataCountsPerArmMin.get(arms.get(j)).get(strataId) > runs.get(i).getStrataCountsPerArm().get(arms.get(j)).get(strataId)){
-							strataCountsPerArmMin.get(arms.get(j)).put(strataId, runs.get(i).getStrataCountsPerArm().get(arms.get(j)).get(strataId));
-						}
-						strataCountsPerArmMean.get(arms.get(j)).put(strataId, strataCountsPerArmMean.get(arms.get(j)).get(strataId) + runs.get(i).getStrataCountsPerArm().get(arms.get(j)).get(strataId));
-					}
-				}
-
-				if (runs.get(i).getMarginalBalace() < marginalBalanceMin)
-					marginalBalanceMin = runs.get(i).getMarginalBalace();
-				if (runs.get(i).getMarginalBalace() > marginalBalanceMax)
-					marginalBalanceMax = runs.get(i).getMarginalBalace();
-				marginalBalanceMean += runs.get(i).getMarginalBalace();
-				duration += runs.get(i).getTime();
-			}
-
-			// second loop over all treatment arms to calculate the mean and the
-			// median and create the reslut per arm
+			// loop over all treatment arms to calculate the median and create
+			// the result per arm
 			for (int i = 0; i < arms.size(); i++) {
-				means[i] = means[i] / amountRuns;
-				ArrayList<Integer> listMedian = tempMedian.get(i);
-				Collections.sort(listMedian);
-				if (listMedian.size() % 2 == 0) {
-					medians[i] = (listMedian.get((listMedian.size() / 2)) + listMedian
-							.get((listMedian.size() / 2) + 1)) / 2;
-				} else {
-					medians[i] = listMedian.get((listMedian.size() / 2) + 1);
-				}
-				for(String strataId : strataCountsPerArmMean.get(arms.get(i)).keySet()){
-					strataCountsPerArmMean.get(arms.get(i)).put(strataId, ( strataCountsPerArmMean.get(arms.get(i)).get(strataId) / amountRuns));
+				// the middle positions of the sorted counts, they are equal
+				// for an odd amount of runs
+				medians[i] = (orderStatistic(i, (amountRuns - 1) / 2) + orderStatistic(
+						i, amountRuns / 2)) / 2.0;
+				Map<String, Integer> strataCountsPerArmMin = new HashMap<String, Integer>();
+				Map<String, Integer> strataCountsPerArmMax = new HashMap<String, Integer>();
+				Map<String, Double> strataCountsPerArmMean = new HashMap<String, Double>();
+				for (int s = 0; s < strataIds.size(); s++) {
+					strataCountsPerArmMin.put(strataIds.get(s), strataMins[i][s]);
+					strataCountsPerArmMax.put(strataIds.get(s), strataMaxs[i][s]);
+					strataCountsPerArmMean.put(strataIds.get(s), strataMeans[i][s]);
 				}
 				
 				SimulationResultArm rArm = new SimulationResultArm(algorithmDescription, strataIdNames);
@@ -313,15 +343,71 @@ public class SimulationResult {
 				rArm.setMedian(medians[i]);
 				rArm.setMin(mins[i]);
 				rArm.setMax(maxs[i]);
-				rArm.setStrataCountsPerArmMin(strataCountsPerArmMin.get(arms.get(i)));
-				rArm.setStrataCountsPerArmMax(strataCountsPerArmMax.get(arms.get(i)));
-				rArm.setStrataCountsPerArmMean(strataCountsPerArmMean.get(arms.get(i)));
+				rArm.setStrataCountsPerArmMin(strataCountsPerArmMin);
+				rArm.setStrataCountsPerArmMax(strataCountsPerArmMax);
+				rArm.setStrataCountsPerArmMean(strataCountsPerArmMean);
 				simResultArms.add(rArm);
 			}
-			marginalBalanceMean = marginalBalanceMean / amountRuns;
 		}
 	}
 
+	/**
+	 * Returns the subject count of the arm at the passed zero based position
+	 * of the sorted counts of all runs.
+	 */
+	private int orderStatistic(int arm, int position) {
+		int[] histogram = countHistograms[arm];
+		int seen = 0;
+		for (int count = 0; count < histogram.length; count++) {
+			seen += histogram[count];
+			if (seen > position) {
+				return count;
+			}
+		}
+		return histogram.length - 1;
+	}
+
+	/**
+	 * Creates a copy of the current state of this result. The copy contains
+	 * the measures of all runs which are added until now and is not changed by
+	 * further runs. The raw data is not part of the snapshot.
+	 * 
+	 * @return The copy of this result.
+	 */
+	public synchronized SimulationResult snapshot() {
+		SimulationResult snapshot = new SimulationResult(arms, algConf,
+				strataIdNames);
+		snapshot.algorithmDescription = algorithmDescription;
+		snapshot.plannedSubjectsPerArm = plannedSubjectsPerArm;
+		snapshot.amountRuns = amountRuns;
+		snapshot.runMarginalBalanceMin = runMarginalBalanceMin;
+		snapshot.runMarginalBalanceMax = runMarginalBalanceMax;
+		snapshot.runMarginalBalanceMean = runMarginalBalanceMean;
+		snapshot.runDuration = runDuration;
+		if (runMins != null) {
+			snapshot.runMins = runMins.clone();
+			snapshot.runMaxs = runMaxs.clone();
+			snapshot.runMeans = runMeans.clone();
+			snapshot.countHistograms = copy(countHistograms);
+			snapshot.strataIds = strataIds;
+			snapshot.strataMins = copy(strataMins);
+			snapshot.strataMaxs = copy(strataMaxs);
+			snapshot.strataMeans = new double[strataMeans.length][];
+			for (int i = 0; i < strataMeans.length; i++) {
+				snapshot.strataMeans[i] = strataMeans[i].clone();
+			}
+		}
+		return snapshot;
+	}
+
+	private static int[][] copy(int[][] values) {
+		int[][] copy = new int[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			copy[i] = values[i].clone();
+		}
+		return copy;
+	}
+
 	@Override
 	public String toString() {
 		return getAmountRuns() + " " + getMarginalBalanceMax();
@@ -0,0 +1,167 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.simulation.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+import de.randi2.simulation.model.SimulationResult;
+
+/**
+ * The handle of an asynchronous simulation, see
+ * {@link SimulationService#submitSimulation}. The job reports the count of
+ * completed runs and the estimated remaining time, and it returns snapshots of
+ * the result while the simulation is running.
+ */
+public class SimulationJob {
+
+	/**
+	 * The count of planned simulation runs.
+	 */
+	@Getter
+	private final int runs;
+
+	/**
+	 * The maximal duration of the simulation in milliseconds.
+	 */
+	@Getter
+	private final long maxTime;
+
+	private final AtomicInteger completedRuns = new AtomicInteger();
+
+	private volatile long startTime = 0;
+
+	private volatile SimulationResult result;
+
+	private volatile Future<SimulationResult> future;
+
+	SimulationJob(int runs, long maxTime) {
+		this.runs = runs;
+		this.maxTime = maxTime;
+	}
+
+	void setFuture(Future<SimulationResult> future) {
+		this.future = future;
+	}
+
+	/**
+	 * Called by the simulation with the result, when the first run starts.
+	 */
+	void started(SimulationResult result) {
+		this.result = result;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Called by the simulation after a run is added to the result.
+	 */
+	void runCompleted() {
+		completedRuns.incrementAndGet();
+	}
+
+	/**
+	 * @return true, if the job waits in the queue.
+	 */
+	public boolean isQueued() {
+		return startTime == 0 && !isDone();
+	}
+
+	/**
+	 * @return the count of runs which are added to the result.
+	 */
+	public int getCompletedRuns() {
+		return completedRuns.get();
+	}
+
+	/**
+	 * @return the completed runs in percent.
+	 */
+	public int getProgress() {
+		return runs == 0 ? 100 : (int) (getCompletedRuns() * 100L / runs);
+	}
+
+	/**
+	 * Estimates the remaining time of the simulation with the mean duration
+	 * of the completed runs, the estimation is limited by the maximal time.
+	 * 
+	 * @return the remaining time in milliseconds or -1, if the time can not
+	 *         be estimated until now.
+	 */
+	public long getEstimatedRemainingTime() {
+		if (isDone()) {
+			return 0;
+		}
+		int completed = getCompletedRuns();
+		long start = startTime;
+		if (start == 0 || completed == 0) {
+			return -1;
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		long estimation = elapsed * (runs - completed) / completed;
+		return Math.max(0, Math.min(estimation, maxTime - elapsed));
+	}
+
+	/**
+	 * Returns a copy of the result with all runs which are completed until
+	 * now.
+	 * 
+	 * @return the snapshot or null, if the simulation is not started.
+	 */
+	public SimulationResult getSnapshot() {
+		SimulationResult current = result;
+		return current == null ? null : current.snapshot();
+	}
+
+	/**
+	 * Waits for the end of the simulation and returns the result. The result
+	 * of a cancelled simulation contains the runs which are completed before
+	 * the cancellation.
+	 * 
+	 * @return the result of the simulation or null, if the configuration of
+	 *         the trial is not valid or the job is cancelled in the queue.
+	 */
+	public SimulationResult getResult() throws InterruptedException,
+			ExecutionException {
+		try {
+			return future.get();
+		} catch (CancellationException e) {
+			return result;
+		}
+	}
+
+	/**
+	 * Cancels the simulation. A queued job is not started, a running
+	 * simulation stops after the current run.
+	 * 
+	 * @return false, if the simulation is already done.
+	 */
+	public boolean cancel() {
+		return future.cancel(true);
+	}
+
+	public boolean isCancelled() {
+		return future.isCancelled();
+	}
+
+	public boolean isDone() {
+		return future != null && future.isDone();
+	}
+}
@@ -1,6 +1,7 @@
 package de.randi2.simulation.service;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import de.randi2.model.Trial;
 import de.randi2.model.TrialSite;
@@ -20,6 +21,36 @@ public interface SimulationService {
 	 * @return The simulation result.
 	 */
 	public SimulationResult simulateTrial(Trial trial,List<DistributionSubjectProperty> properties,AbstractDistribution<TrialSite> distributionTrialSites, int runs, long maxTime, boolean collectRawData);
+
+	/**
+	 * The method simulates a trial like {@link #simulateTrial(Trial, List, AbstractDistribution, int, long, boolean)},
+	 * but splits the simulation runs across several worker threads. Every worker uses its own copy of the trial, the algorithm
+	 * and the distributions. The algorithm and the distributions are seeded per run, so a seeded simulation returns the same
+	 * result for every count of workers.
+	 * @param trial The simulation trial. 
+	 * @param properties The patient properties with their specified distribution.
+	 * @param distributionTrialSites The trial sites with their specified distribution.
+	 * @param runs The count of the simulation runs.
+	 * @param maxTime The maximal time for the simulation.
+	 * @param workers The count of the workers, a value lower than one or higher than the available processors uses all available processors.
+	 * @return The simulation result.
+	 */
+	public SimulationResult simulateTrial(Trial trial,List<DistributionSubjectProperty> properties,AbstractDistribution<TrialSite> distributionTrialSites, int runs, long maxTime, boolean collectRawData, int workers);
+
+	/**
+	 * The method starts an asynchronous simulation of the trial and returns the handle of the simulation job. The inputs
+	 * are copied, so they can be changed after the submission. The count of concurrent simulations is limited, further
+	 * simulations wait in a bounded queue.
+	 * @param trial The simulation trial. 
+	 * @param properties The patient properties with their specified distribution.
+	 * @param distributionTrialSites The trial sites with their specified distribution.
+	 * @param runs The count of the simulation runs.
+	 * @param maxTime The maximal time for the simulation.
+	 * @param workers The count of the workers, see {@link #simulateTrial(Trial, List, AbstractDistribution, int, long, boolean, int)}. The available processors are divided between the jobs, which can run at the same time.
+	 * @return The simulation job.
+	 * @throws RejectedExecutionException if the queue of the simulation jobs is full.
+	 */
+	public SimulationJob submitSimulation(Trial trial,List<DistributionSubjectProperty> properties,AbstractDistribution<TrialSite> distributionTrialSites, int runs, long maxTime, boolean collectRawData, int workers);
 	
 //	public long estimateSimulationDuration(Trial trial, List<DistributionSubjectProperty> properties, AbstractDistribution<TrialSite> distributionTrialSites, int runs, long maxTime);
 }
@@ -6,7 +6,20 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import de.randi2.model.SubjectProperty;
@@ -21,11 +34,13 @@ import de.randi2.model.criteria.OrdinalCriterion;
 import de.randi2.model.criteria.constraints.DateConstraint;
 import de.randi2.model.criteria.constraints.DichotomousConstraint;
 import de.randi2.model.criteria.constraints.OrdinalConstraint;
-import de.randi2.model.randomization.MinimizationConfig;
-import de.randi2.randomization.Minimization;
+import de.randi2.model.randomization.AbstractRandomizationConfig;
+import de.randi2.randomization.RandomizationAlgorithm;
+import de.randi2.services.TrialServiceImpl;
 import de.randi2.simulation.distribution.AbstractDistribution;
+import de.randi2.simulation.kernel.SimulationKernel;
 import de.randi2.simulation.model.DistributionSubjectProperty;
-import de.randi2.simulation.model.SimulationRawDataEntry;
+import de.randi2.simulation.model.SimulationRawData;
 import de.randi2.simulation.model.SimulationResult;
 import de.randi2.simulation.model.SimulationRun;
 import de.randi2.unsorted.ContraintViolatedException;
@@ -34,94 +49,485 @@ import de.randi2.utility.Pair;
 @Service("simulationService")
 public class SimulationServiceImpl implements SimulationService {
 
+	/**
+	 * The seed offset between two simulation runs, it is the same as in
+	 * {@link AbstractRandomizationConfig#resetAlgorithmWithNextSeed()}.
+	 */
+	private static final long SEED_OFFSET = 10000;
+
+	private ExecutorService executor;
+
+	private ExecutorService jobExecutor;
+
+	/**
+	 * The count of simulation jobs which are running at the same time.
+	 */
+	private int concurrentJobs = 2;
+
+	/**
+	 * The count of simulation jobs which can wait for a free slot.
+	 */
+	private int jobQueueSize = 10;
+
+	/**
+	 * The count of raw data entries of a simulation result which are hold in
+	 * memory, further entries are written to a temporary file.
+	 */
+	private int rawDataMemoryEntries = SimulationRawData.DEFAULT_MEMORY_ENTRIES;
+
+	@Value("${simulation.rawData.memoryEntries}")
+	public void setRawDataMemoryEntries(int rawDataMemoryEntries) {
+		this.rawDataMemoryEntries = rawDataMemoryEntries;
+	}
+
+	@Value("${simulation.jobs.concurrent}")
+	public void setConcurrentJobs(int concurrentJobs) {
+		this.concurrentJobs = concurrentJobs;
+	}
+
+	@Value("${simulation.jobs.queueSize}")
+	public void setJobQueueSize(int jobQueueSize) {
+		this.jobQueueSize = jobQueueSize;
+	}
+
 	@Override
 	public SimulationResult simulateTrial(Trial trial,
 			List<DistributionSubjectProperty> properties,
 			AbstractDistribution<TrialSite> distributionTrialSites, int runs,
 			long maxTime, boolean collectRawData) {
-		// copy the trial to avoid side effects
-		Trial copyTrial;
+		// one worker, the runs are seeded like the runs of the parallel
+		// simulation
+		return simulateParallel(trial, properties, distributionTrialSites,
+				runs, maxTime, collectRawData, 1, null);
+	}
+
+	@Override
+	public SimulationResult simulateTrial(Trial trial,
+			List<DistributionSubjectProperty> properties,
+			AbstractDistribution<TrialSite> distributionTrialSites, int runs,
+			long maxTime, boolean collectRawData, int workers) {
+		return simulateParallel(trial, properties, distributionTrialSites,
+				runs, maxTime, collectRawData, workers, null);
+	}
+
+	private SimulationResult simulateParallel(Trial trial,
+			List<DistributionSubjectProperty> properties,
+			AbstractDistribution<TrialSite> distributionTrialSites, int runs,
+			long maxTime, boolean collectRawData, int workers,
+			SimulationJob job) {
+		// every worker holds its own trial copy, more workers than threads
+		// of the shared pool only wait for a free thread
+		int maxWorkers = Runtime.getRuntime().availableProcessors();
+		if (workers < 1 || workers > maxWorkers) {
+			workers = maxWorkers;
+		}
+		workers = Math.max(1, Math.min(workers, runs));
+		// the base seed, every run is seeded with its number
+		RandomizationAlgorithm<?> algorithm = trial
+				.getRandomizationConfiguration().getAlgorithm();
+		Long seed = algorithm.isSeeded() ? algorithm.getSeed() : null;
+
+		SimulationWorker[] simulationWorkers = new SimulationWorker[workers + 1];
+		RunBuffer runBuffer = new RunBuffer(runs, workers, collectRawData);
+		AtomicInteger nextRun = new AtomicInteger();
+		long endTime = System.currentTimeMillis() + maxTime;
+		try {
+			// the first copy only describes the arms and strata of the result
+			for (int i = 0; i < simulationWorkers.length; i++) {
+				simulationWorkers[i] = new SimulationWorker(trial, properties,
+						distributionTrialSites, seed, nextRun, runBuffer,
+						endTime);
+			}
+		} catch (ContraintViolatedException e) {
+			return null;
+		}
+		Trial resultTrial = simulationWorkers[0].simTrial;
+		SimulationResult simResult = new SimulationResult(
+				new ArrayList<TreatmentArm>(resultTrial.getTreatmentArms()),
+				trial.getRandomizationConfiguration(),
+				getStrataIdsNames(resultTrial));
+		simResult.setRawData(new SimulationRawData(rawDataMemoryEntries));
+		// initialize the planned subjects before the workers use the result
+		simResult.getEmptyRun();
+		if (job != null) {
+			job.started(simResult);
+		}
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 1; i < simulationWorkers.length; i++) {
+			simulationWorkers[i].simResult = simResult;
+			futures.add(getExecutor().submit(simulationWorkers[i]));
+		}
+		try {
+			// merge the runs in their order as soon as they are finished,
+			// runs after the first missing run (time limit) are discarded to
+			// keep the result reproducible
+			for (int run = 0; run < runs; run++) {
+				SimulationRun simRun = runBuffer.take(run);
+				if (simRun == null) {
+					break;
+				}
+				if (collectRawData) {
+					simResult.getRawData().addAll(runBuffer.takeRawData(run));
+				}
+				simResult.addSimulationRun(simRun);
+				if (job != null) {
+					job.runCompleted();
+				}
+			}
+			cancel(futures);
+			for (Future<Void> future : futures) {
+				if (!future.isCancelled()) {
+					future.get();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel(futures);
+		} catch (ExecutionException e) {
+			cancel(futures);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return simResult;
+	}
+
+	@Override
+	public SimulationJob submitSimulation(Trial trial,
+			List<DistributionSubjectProperty> properties,
+			AbstractDistribution<TrialSite> distributionTrialSites,
+			final int runs, final long maxTime, final boolean collectRawData,
+			final int workers) {
+		// copy the inputs, the caller can change them while the job is queued
+		final List<DistributionSubjectProperty> jobProperties = new ArrayList<DistributionSubjectProperty>();
+		for (DistributionSubjectProperty dsp : properties) {
+			jobProperties.add(new DistributionSubjectProperty(dsp
+					.getCriterion(), dsp.getDistribution().copy()));
+		}
+		final AbstractDistribution<TrialSite> jobTrialSites = distributionTrialSites
+				.copy();
+		AbstractRandomizationConfig configuration = TrialServiceImpl
+				.clone(trial.getRandomizationConfiguration());
+		configuration.setTempData(null);
+		RandomizationAlgorithm<?> algorithm = trial
+				.getRandomizationConfiguration().getAlgorithm();
+		final Trial jobTrial;
 		try {
-			copyTrial = copyAndPrepareTrial(trial, properties,
-					distributionTrialSites);
+			jobTrial = copyAndPrepareTrial(trial, jobProperties,
+					jobTrialSites, configuration, algorithm.isSeeded() ? algorithm
+							.getSeed() : null);
 		} catch (ContraintViolatedException e) {
 			return null;
 		}
+		// the running jobs share the pool of the workers, so that they keep
+		// at most one trial copy per processor
+		int maxWorkers = Math.max(1, Runtime.getRuntime().availableProcessors()
+				/ concurrentJobs);
+		final int jobWorkers = workers < 1 || workers > maxWorkers ? maxWorkers
+				: workers;
+		final SimulationJob job = new SimulationJob(runs, maxTime);
+		job.setFuture(getJobExecutor().submit(
+				new Callable<SimulationResult>() {
+					@Override
+					public SimulationResult call() {
+						return simulateParallel(jobTrial, jobProperties,
+								jobTrialSites, runs, maxTime, collectRawData,
+								jobWorkers, job);
+					}
+				}));
+		return job;
+	}
+
+	/**
+	 * Simulates one run with the passed trial and algorithm. The treatment arms
+	 * of the trial have to be empty.
+	 */
+	private static void simulateRun(Trial simTrial,
+			RandomizationAlgorithm<?> algorithm,
+			List<DistributionSubjectProperty> properties,
+			AbstractDistribution<TrialSite> distributionTrialSites,
+			TrialSubject subject, int run, SimulationRun simRun,
+			boolean stratifyTrialSite, SimulationRawData rawData) {
+		TreatmentArm assignedArm;
+		// loop over all trial subjects to randomize
+		for (int i = 0; i < simTrial.getPlannedSubjectAmount(); i++) {
+			// generate the subject properties
+			subject = generateTrialSubject(properties, subject);
+			subject.setTrialSite(distributionTrialSites.getNextValue());
+
+			// randomize the subject an add it to the treatment arm
+			assignedArm = algorithm.randomize(subject);
+			subject.setArm(assignedArm);
+			subject.setRandNumber(i + "_" + assignedArm.getName());
+			subject.setCounter(i);
+			subject.setIdentification(subject.getRandNumber());
+
+			String stratum = "";
+			if (stratifyTrialSite) {
+				stratum = subject.getTrialSite().getId() + "__";
+			}
+			stratum += subject.getStratum();
+			if(rawData != null){
+				rawData.add(run, i, assignedArm.getName(), subject
+						.getTrialSite().getName(), stratum);
+			}
+			if(!stratum.equals("")){
+				Integer count = simRun.getStrataCountsPerArm().get(assignedArm).get(stratum);
+				count++;
+				simRun.getStrataCountsPerArm().get(assignedArm).put(stratum, count);
+			}
+			
+			
+			assignedArm.addSubject(subject);
+		}
+	}
+
+	/**
+	 * Returns the seed of the algorithm for the passed run, it is the seed of
+	 * a sequential simulation after {@link AbstractRandomizationConfig#resetAlgorithmWithNextSeed()}.
+	 */
+	private static Long runSeed(Long seed, int run) {
+		return seed == null ? null : seed + (run + 1) * SEED_OFFSET;
+	}
+
+	private static Map<String, String> getStrataIdsNames(Trial copyTrial) {
 		Map<String, String> strataIdsNames = new HashMap<String, String>();
 		Pair<List<String>, List<String>> pair = copyTrial.getAllStrataIdsAndNames();
 		for(int i =0;i< pair.first().size();i++){
 			strataIdsNames.put(pair.first().get(i), pair.last().get(i));
 		}
-		// initialize the simulation result
-		SimulationResult simResult = new SimulationResult(new ArrayList<TreatmentArm>(copyTrial.getTreatmentArms()), copyTrial.getRandomizationConfiguration(), strataIdsNames);
-		long startTime;
-		TreatmentArm assignedArm;
-		TrialSubject subject = new TrialSubject();
-		long endTime = System.currentTimeMillis() + maxTime;
-		// loop over all simulation runs
-		for (int run = 0; run < runs; run++) {
-			if (System.currentTimeMillis() < endTime) {
-				startTime = System.currentTimeMillis();
-				Trial simTrial = resetTrial(copyTrial);
-				SimulationRun simRun = simResult.getEmptyRun();
-				// loop over all trial subjects to randomize
-				for (int i = 0; i < simTrial.getPlannedSubjectAmount(); i++) {
-					// generate the subject properties
-					subject = generateTrialSubject(properties, subject);
-					subject.setTrialSite(distributionTrialSites.getNextValue());
-
-					// randomize the subject an add it to the treatment arm
-					assignedArm = simTrial.getRandomizationConfiguration()
-							.getAlgorithm().randomize(subject);
-					subject.setArm(assignedArm);
-					subject.setRandNumber(i + "_" + assignedArm.getName());
-					subject.setCounter(i);
-					subject.setIdentification(subject.getRandNumber());
-
-					if(collectRawData){
-						SimulationRawDataEntry entry = new SimulationRawDataEntry();
-						entry.setRun(run);
-						entry.setCount(i);
-						entry.setTreatmentArm(assignedArm.getName());
-						entry.setTrialSite(subject.getTrialSite().getName());
-						String stratum = "";
-						if (trial.isStratifyTrialSite()) {
-							stratum = subject.getTrialSite().getId() + "__";
-						}
-						stratum += subject.getStratum();
-						entry.setStratum(stratum);
-						simResult.getRawData().add(entry);
+		return strataIdsNames;
+	}
+
+	private static void cancel(List<Future<Void>> futures) {
+		for (Future<Void> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors(), daemonThreads("simulation-worker-"));
+		}
+		return executor;
+	}
+
+	/**
+	 * The simulation jobs are executed by a fixed count of threads, further
+	 * jobs wait in a bounded queue and are rejected if the queue is full.
+	 */
+	private synchronized ExecutorService getJobExecutor() {
+		if (jobExecutor == null) {
+			jobExecutor = new ThreadPoolExecutor(concurrentJobs,
+					concurrentJobs, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(jobQueueSize),
+					daemonThreads("simulation-job-"));
+		}
+		return jobExecutor;
+	}
+
+	private static ThreadFactory daemonThreads(final String name) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (jobExecutor != null) {
+			jobExecutor.shutdownNow();
+			jobExecutor = null;
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * The finished runs of a parallel simulation. The workers put the runs in
+	 * any order, the simulation takes them in the order of the runs and waits
+	 * until the next run is finished or all workers are finished. A taken run
+	 * is removed, so only the runs which are finished before the next run to
+	 * merge are hold in memory.
+	 */
+	private static class RunBuffer {
+
+		private final SimulationRun[] simRuns;
+		private final SimulationRawData[] rawData;
+		private int activeWorkers;
+
+		RunBuffer(int runs, int workers, boolean collectRawData) {
+			simRuns = new SimulationRun[runs];
+			rawData = collectRawData ? new SimulationRawData[runs] : null;
+			activeWorkers = workers;
+		}
+
+		int getRuns() {
+			return simRuns.length;
+		}
+
+		boolean isCollectRawData() {
+			return rawData != null;
+		}
+
+		synchronized void put(int run, SimulationRun simRun,
+				SimulationRawData runRawData) {
+			simRuns[run] = simRun;
+			if (rawData != null) {
+				rawData[run] = runRawData;
+			}
+			notifyAll();
+		}
+
+		synchronized void workerFinished() {
+			activeWorkers--;
+			notifyAll();
+		}
+
+		/**
+		 * @return the finished run or null, if the run is not simulated by
+		 *         any worker.
+		 */
+		synchronized SimulationRun take(int run) throws InterruptedException {
+			while (simRuns[run] == null && activeWorkers > 0) {
+				wait();
+			}
+			SimulationRun simRun = simRuns[run];
+			simRuns[run] = null;
+			return simRun;
+		}
+
+		synchronized SimulationRawData takeRawData(int run) {
+			SimulationRawData runRawData = rawData[run];
+			rawData[run] = null;
+			return runRawData;
+		}
+	}
+
+	/**
+	 * One worker of a parallel simulation. Every worker owns a copy of the
+	 * trial, the randomization configuration and the distributions. The
+	 * workers take the next run from a shared counter and seed the algorithm
+	 * and the distributions only with the number of the run, so the result of
+	 * a run does not depend on the worker which simulates it.
+	 */
+	private static class SimulationWorker implements Callable<Void> {
+
+		private final Trial simTrial;
+		private final List<DistributionSubjectProperty> properties;
+		private final AbstractDistribution<TrialSite> distributionTrialSites;
+		private final Long seed;
+		private final AtomicInteger nextRun;
+		private final RunBuffer runBuffer;
+		private final long endTime;
+		private SimulationResult simResult;
+
+		SimulationWorker(Trial trial,
+				List<DistributionSubjectProperty> properties,
+				AbstractDistribution<TrialSite> distributionTrialSites,
+				Long seed, AtomicInteger nextRun, RunBuffer runBuffer,
+				long endTime)
+				throws ContraintViolatedException {
+			this.properties = new ArrayList<DistributionSubjectProperty>();
+			for (DistributionSubjectProperty dsp : properties) {
+				this.properties.add(new DistributionSubjectProperty(dsp
+						.getCriterion(), dsp.getDistribution().copy()));
+			}
+			this.distributionTrialSites = distributionTrialSites.copy();
+			AbstractRandomizationConfig configuration = TrialServiceImpl
+					.clone(trial.getRandomizationConfiguration());
+			configuration.setTempData(null);
+			this.simTrial = copyAndPrepareTrial(trial, this.properties,
+					this.distributionTrialSites, configuration, seed);
+			this.seed = seed;
+			this.nextRun = nextRun;
+			this.runBuffer = runBuffer;
+			this.endTime = endTime;
+		}
+
+		@Override
+		public Void call() {
+			List<TreatmentArm> arms = new ArrayList<TreatmentArm>();
+			// the arms of this copy in the order of the result arms
+			for (TreatmentArm resultArm : simResult.getArms()) {
+				for (TreatmentArm arm : simTrial.getTreatmentArms()) {
+					if (arm.equals(resultArm)) {
+						arms.add(arm);
 					}
-					String stratum = "";
-					if (trial.isStratifyTrialSite()) {
-						stratum = subject.getTrialSite().getId() + "__";
+				}
+			}
+			AbstractRandomizationConfig configuration = simTrial
+					.getRandomizationConfiguration();
+			SimulationKernel kernel = SimulationKernel.compile(simTrial, arms,
+					properties, distributionTrialSites);
+			TrialSubject subject = new TrialSubject();
+			try {
+				simulateRuns(arms, configuration, kernel, subject);
+			} finally {
+				runBuffer.workerFinished();
+			}
+			return null;
+		}
+
+		private void simulateRuns(List<TreatmentArm> arms,
+				AbstractRandomizationConfig configuration,
+				SimulationKernel kernel, TrialSubject subject) {
+			int run;
+			while ((run = nextRun.getAndIncrement()) < runBuffer.getRuns()
+					&& System.currentTimeMillis() < endTime
+					&& !Thread.currentThread().isInterrupted()) {
+				long startTime = System.currentTimeMillis();
+				reseed(distributionTrialSites, run);
+				for (DistributionSubjectProperty dsp : properties) {
+					reseed(dsp.getDistribution(), run);
+				}
+				SimulationRun simRun = simResult.getEmptyRun();
+				SimulationRawData runRawData = null;
+				if (runBuffer.isCollectRawData()) {
+					runRawData = new SimulationRawData(Math.max(1, simTrial
+							.getPlannedSubjectAmount()));
+				}
+				if (kernel != null) {
+					kernel.simulateRun(runSeed(seed, run), run, simRun,
+							runRawData);
+				} else {
+					for (TreatmentArm arm : arms) {
+						arm.clearSubjects();
 					}
-					stratum += subject.getStratum();
-					if(!stratum.equals("")){
-						Integer count = simRun.getStrataCountsPerArm().get(assignedArm).get(stratum);
-						count++;
-						simRun.getStrataCountsPerArm().get(assignedArm).put(stratum, count);
+					configuration.setTempData(null);
+					Long runSeed = runSeed(seed, run);
+					RandomizationAlgorithm<?> algorithm = runSeed == null ? configuration
+							.createAlgorithm()
+							: configuration.createAlgorithm(runSeed);
+					simulateRun(simTrial, algorithm, properties,
+							distributionTrialSites, subject, run, simRun,
+							simTrial.isStratifyTrialSite(), runRawData);
+					for (int i = 0; i < arms.size(); i++) {
+						simRun.getSubjectsPerArms()[i] = arms.get(i)
+								.getCurrentSubjectsAmount();
 					}
-					
-					
-					assignedArm.addSubject(subject);
-				}
-				// set data for this simulation run and add it to the simulation
-				// result
-				List<TreatmentArm> arms = new ArrayList<TreatmentArm>(simTrial.getTreatmentArms());
-				for (int i = 0; i < simTrial.getTreatmentArms().size(); i++) {
-					simRun.getSubjectsPerArms()[i] = arms.get(i)
-							.getCurrentSubjectsAmount();
 				}
 				simRun.setTime((System.currentTimeMillis() - startTime));
-				simResult.addSimulationRun(simRun);
-			} else {
-				break;
+				runBuffer.put(run, simRun, runRawData);
+			}
+		}
+
+		private static void reseed(AbstractDistribution<?> distribution,
+				int run) {
+			if (distribution.isSeeded()) {
+				distribution.reseed(distribution.getSeed() + run * SEED_OFFSET);
 			}
 		}
-			// Analyze the simulation result
-//			simResult.analyze();
-			return simResult;
 	}
 
 	/**
@@ -130,11 +536,15 @@ public class SimulationServiceImpl implements SimulationService {
 	 * @param trial
 	 * @param properties
 	 * @param distributionTrialSites
+	 * @param configuration the randomization configuration of the copy
+	 * @param seed the seed of the algorithm of the copy or null, if the
+	 *            algorithm is not seeded
 	 * @return
 	 */
 	private static Trial copyAndPrepareTrial(Trial trial,
 			List<DistributionSubjectProperty> properties,
-			AbstractDistribution<TrialSite> distributionTrialSites) throws ContraintViolatedException{
+			AbstractDistribution<TrialSite> distributionTrialSites,
+			AbstractRandomizationConfig configuration, Long seed) throws ContraintViolatedException{
 		long id = 0;
 		// copy plain trail data
 		Trial cTrial = new Trial();
@@ -228,10 +638,13 @@ public class SimulationServiceImpl implements SimulationService {
 
 		}
 		// reset the randomization configuration
-		cTrial.setRandomizationConfiguration(trial
-				.getRandomizationConfiguration());
+		cTrial.setRandomizationConfiguration(configuration);
 		cTrial.getRandomizationConfiguration().setTrial(cTrial);
-		cTrial.getRandomizationConfiguration().resetAlgorithm();
+		if (seed == null) {
+			cTrial.getRandomizationConfiguration().resetAlgorithm();
+		} else {
+			cTrial.getRandomizationConfiguration().resetAlgorithm(seed);
+		}
 		return cTrial;
 	}
 
@@ -250,24 +663,6 @@ public class SimulationServiceImpl implements SimulationService {
 	// return time;
 	// }
 
-	/**
-	 * Reset the passed trial.
-	 */
-	private static Trial resetTrial(Trial trial) {
-		for (TreatmentArm arm : trial.getTreatmentArms()) {
-			arm.getSubjects().clear();
-		}
-		trial.getRandomizationConfiguration().setTrial(trial);
-		trial.getRandomizationConfiguration().setTempData(null);
-		trial.getRandomizationConfiguration().resetAlgorithmWithNextSeed();
-		if (MinimizationConfig.class.isInstance(trial
-				.getRandomizationConfiguration())) {
-			((Minimization) trial.getRandomizationConfiguration()
-					.getAlgorithm()).clear();
-		}
-		return trial;
-	}
-
 	/**
 	 * Generate a trial subject with the distribution of the subject properties.
 	 * 
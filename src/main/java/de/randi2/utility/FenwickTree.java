@@ -0,0 +1,136 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.utility;
+
+import java.util.Arrays;
+
+/**
+ * A Fenwick tree (binary indexed tree) over non negative integer weights. It
+ * updates a weight and finds the index of a cumulative weight in O(log n), it
+ * is used to draw weighted indices, e.g. the arms of an urn.
+ */
+public class FenwickTree {
+
+	private final int[] weights;
+	private final int[] tree;
+	private final int highestBit;
+	private int total;
+
+	public FenwickTree(int size) {
+		weights = new int[size];
+		tree = new int[size + 1];
+		highestBit = size == 0 ? 0 : Integer.highestOneBit(size);
+	}
+
+	public int size() {
+		return weights.length;
+	}
+
+	/**
+	 * @return The sum of all weights.
+	 */
+	public int total() {
+		return total;
+	}
+
+	public int get(int index) {
+		return weights[index];
+	}
+
+	/**
+	 * Adds the delta to the weight of the index, the weight must not become
+	 * negative.
+	 */
+	public void add(int index, int delta) {
+		if (weights[index] + delta < 0) {
+			throw new IllegalArgumentException("Negative weight at index "
+					+ index);
+		}
+		weights[index] += delta;
+		total += delta;
+		for (int i = index + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	/**
+	 * Adds the delta to the weights of all indices in O(n).
+	 */
+	public void addToAll(int delta) {
+		for (int weight : weights) {
+			if (weight + delta < 0) {
+				throw new IllegalArgumentException("Negative weight");
+			}
+		}
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] += delta;
+		}
+		for (int i = 1; i < tree.length; i++) {
+			tree[i] += delta * (i & -i);
+		}
+		total += delta * weights.length;
+	}
+
+	public void set(int index, int weight) {
+		add(index, weight - weights[index]);
+	}
+
+	/**
+	 * Sets all weights to zero.
+	 */
+	public void clear() {
+		Arrays.fill(weights, 0);
+		Arrays.fill(tree, 0);
+		total = 0;
+	}
+
+	/**
+	 * @return The sum of the weights of the indices lower than the index.
+	 */
+	public int prefixSum(int index) {
+		int sum = 0;
+		for (int i = index; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Finds the index which covers the cumulative weight, that is the lowest
+	 * index with prefixSum(index + 1) > value. A uniform value in [0, total)
+	 * draws the indices proportional to their weights.
+	 * 
+	 * @param value
+	 *            A value in [0, total).
+	 */
+	public int find(int value) {
+		if (value < 0 || value >= total) {
+			throw new IllegalArgumentException("Value " + value
+					+ " is not in [0, " + total + ")");
+		}
+		int position = 0;
+		for (int bit = highestBit; bit > 0; bit >>= 1) {
+			int next = position + bit;
+			if (next < tree.length && tree[next] <= value) {
+				position = next;
+				value -= tree[next];
+			}
+		}
+		return position;
+	}
+}
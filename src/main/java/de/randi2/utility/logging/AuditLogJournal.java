@@ -0,0 +1,226 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.utility.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.randi2.model.AbstractDomainObject;
+import de.randi2.utility.logging.LogEntry.ActionType;
+
+/**
+ * Append-only journal of the log entries, which are not yet written to the
+ * database. Every entry gets a sequence number, after the entries are written
+ * their sequence numbers are appended as committed. The journal is truncated
+ * as soon as all entries are committed.
+ */
+class AuditLogJournal {
+
+	private static final byte ENTRY = 'E';
+
+	private static final byte COMMIT = 'C';
+
+	private final File file;
+
+	private DataOutputStream out;
+
+	private long nextSequence = 1;
+
+	private int uncommitted = 0;
+
+	AuditLogJournal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens the journal, a partially written record at the end of the file is
+	 * removed.
+	 * 
+	 * @return The uncommitted entries by their sequence number.
+	 */
+	synchronized Map<Long, LogEntry> open() throws IOException {
+		Map<Long, LogEntry> entries = new LinkedHashMap<Long, LogEntry>();
+		if (file.exists()) {
+			RandomAccessFile in = new RandomAccessFile(file, "rw");
+			try {
+				long position = 0;
+				try {
+					while (true) {
+						byte type = in.readByte();
+						if (type == ENTRY) {
+							long sequence = in.readLong();
+							entries.put(sequence, readEntry(in));
+							nextSequence = Math.max(nextSequence, sequence + 1);
+						} else if (type == COMMIT) {
+							long first = in.readLong();
+							long last = in.readLong();
+							for (Iterator<Long> it = entries.keySet().iterator(); it
+									.hasNext();) {
+								long sequence = it.next();
+								if (sequence >= first && sequence <= last) {
+									it.remove();
+								}
+							}
+						} else {
+							break;
+						}
+						position = in.getFilePointer();
+					}
+				} catch (EOFException e) {
+					// the last record was not completely written
+				}
+				in.setLength(position);
+			} finally {
+				in.close();
+			}
+		}
+		out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file, true)));
+		uncommitted = entries.size();
+		return entries;
+	}
+
+	/**
+	 * Appends the entry to the journal.
+	 * 
+	 * @return The sequence number of the entry.
+	 */
+	synchronized long append(LogEntry entry) throws IOException {
+		checkOpen();
+		long sequence = nextSequence++;
+		out.writeByte(ENTRY);
+		out.writeLong(sequence);
+		writeEntry(entry);
+		out.flush();
+		uncommitted++;
+		return sequence;
+	}
+
+	/**
+	 * Marks the entries as committed, the journal is truncated if all entries
+	 * are committed.
+	 * 
+	 * @param sequences
+	 *            The sequence numbers of the written entries in ascending
+	 *            order.
+	 */
+	synchronized void committed(long[] sequences) throws IOException {
+		if (sequences.length == 0) {
+			return;
+		}
+		checkOpen();
+		uncommitted -= sequences.length;
+		if (uncommitted <= 0) {
+			uncommitted = 0;
+			out.close();
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file, false)));
+			return;
+		}
+		int first = 0;
+		for (int i = 1; i <= sequences.length; i++) {
+			if (i == sequences.length || sequences[i] != sequences[i - 1] + 1) {
+				out.writeByte(COMMIT);
+				out.writeLong(sequences[first]);
+				out.writeLong(sequences[i - 1]);
+				first = i;
+			}
+		}
+		out.flush();
+	}
+
+	private void checkOpen() throws IOException {
+		if (out == null) {
+			throw new IOException("the journal " + file + " is closed");
+		}
+	}
+
+	synchronized void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	private void writeEntry(LogEntry entry) throws IOException {
+		out.writeLong(entry.getTime().getTimeInMillis());
+		writeString(entry.getUsername());
+		writeString(entry.getAction() == null ? null : entry.getAction()
+				.name());
+		writeString(entry.getClazz() == null ? null : entry.getClazz()
+				.getName());
+		out.writeLong(entry.getIdentifier());
+		writeString(entry.getValue());
+		writeString(entry.getUiName());
+	}
+
+	private void writeString(String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static LogEntry readEntry(DataInput in) throws IOException {
+		LogEntry entry = new LogEntry();
+		GregorianCalendar time = new GregorianCalendar();
+		time.setTimeInMillis(in.readLong());
+		entry.setTime(time);
+		entry.setUsername(readString(in));
+		String action = readString(in);
+		if (action != null) {
+			entry.setAction(ActionType.valueOf(action));
+		}
+		String clazz = readString(in);
+		if (clazz != null) {
+			try {
+				entry.setClazz(Class.forName(clazz).asSubclass(
+						AbstractDomainObject.class));
+			} catch (ClassNotFoundException e) {
+				throw new IOException("unknown class " + clazz);
+			}
+		}
+		entry.setIdentifier(in.readLong());
+		entry.setValue(readString(in));
+		entry.setUiName(readString(in));
+		return entry;
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
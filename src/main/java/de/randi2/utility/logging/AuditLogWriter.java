@@ -0,0 +1,404 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.utility.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Writes the log entries in the background. The writer needs a journal file:
+ * an entry added within a transaction is appended to the journal before the
+ * commit of the transaction, queued after the commit and marked as done in
+ * the journal on a rollback. A worker thread writes the queued entries in
+ * batches, every batch in one transaction, so that the inserts are sent as
+ * JDBC batches. The entries of the journal, which were not written before
+ * the application stopped or the database failed, are written by
+ * {@link #start()}.
+ */
+public class AuditLogWriter {
+
+	private Logger logger = Logger.getLogger(AuditLogWriter.class);
+
+	private EntityManagerFactory entityManagerFactory;
+
+	private int capacity = 10000;
+
+	private int batchSize = 50;
+
+	private int maxAttempts = 5;
+
+	private long retryDelay = 10000;
+
+	private String journalFile;
+
+	private AuditLogJournal journal;
+
+	private BlockingDeque<QueuedEntry> queue;
+
+	private Thread worker;
+
+	/**
+	 * Opens the journal and writes its unwritten entries.
+	 */
+	public void start() {
+		if (journalFile == null || journalFile.trim().length() == 0) {
+			return;
+		}
+		AuditLogJournal newJournal = new AuditLogJournal(new File(
+				journalFile.trim()));
+		Map<Long, LogEntry> unwritten;
+		try {
+			unwritten = newJournal.open();
+		} catch (IOException e) {
+			logger.error("audit log journal " + journalFile
+					+ " could not be opened", e);
+			return;
+		}
+		synchronized (this) {
+			journal = newJournal;
+		}
+		if (!unwritten.isEmpty()) {
+			logger.info("writing " + unwritten.size()
+					+ " log entries of the journal");
+			List<QueuedEntry> batch = new ArrayList<QueuedEntry>(batchSize);
+			for (Map.Entry<Long, LogEntry> entry : unwritten.entrySet()) {
+				batch.add(new QueuedEntry(entry.getValue(), entry.getKey()));
+				if (batch.size() == batchSize) {
+					write(batch);
+					batch.clear();
+				}
+			}
+			if (!batch.isEmpty()) {
+				write(batch);
+			}
+		}
+	}
+
+	/**
+	 * Returns if the journal is open, without a journal no entries can be
+	 * added.
+	 */
+	public synchronized boolean isJournaled() {
+		return journal != null;
+	}
+
+	/**
+	 * Appends the entry to the journal and adds it to the queue. Within a
+	 * transaction the entry is appended before the commit, a failure of the
+	 * journal rolls the transaction back. The entry is queued after the
+	 * commit. If the queue is full an error is logged and the entry is
+	 * written from the journal on the next start.
+	 * 
+	 * @param entry
+	 *            The log entry.
+	 * @throws IllegalStateException
+	 *             if the writer has no journal or the entry could not be
+	 *             appended to the journal.
+	 */
+	public void add(final LogEntry entry) {
+		final AuditLogJournal currentJournal;
+		synchronized (this) {
+			currentJournal = journal;
+		}
+		if (currentJournal == null) {
+			throw new IllegalStateException(
+					"the audit log writer has no journal");
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+						private long sequence = -1;
+
+						@Override
+						public void beforeCommit(boolean readOnly) {
+							sequence = append(currentJournal, entry);
+						}
+
+						@Override
+						public void afterCompletion(int status) {
+							if (sequence < 0) {
+								return;
+							}
+							if (status == STATUS_COMMITTED) {
+								offer(entry, sequence);
+							} else {
+								discard(currentJournal, sequence);
+							}
+						}
+					});
+		} else {
+			offer(entry, append(currentJournal, entry));
+		}
+	}
+
+	/**
+	 * Returns the amount of entries waiting in the queue.
+	 */
+	public int size() {
+		return getQueue().size();
+	}
+
+	private long append(AuditLogJournal currentJournal, LogEntry entry) {
+		try {
+			return currentJournal.append(entry);
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"log entry could not be appended to the journal", e);
+		}
+	}
+
+	/**
+	 * Marks the entry of a rolled back transaction as done in the journal.
+	 */
+	private void discard(AuditLogJournal currentJournal, long sequence) {
+		try {
+			currentJournal.committed(new long[] { sequence });
+		} catch (IOException e) {
+			logger.error("log entry of a rolled back transaction could not be removed from the journal",
+					e);
+		}
+	}
+
+	private void offer(LogEntry entry, long sequence) {
+		if (!getQueue().offer(new QueuedEntry(entry, sequence))) {
+			logger.error("audit log queue is full, the entry is written from the journal on the next start: "
+					+ entry);
+			return;
+		}
+		startWorker();
+	}
+
+	private synchronized BlockingDeque<QueuedEntry> getQueue() {
+		if (queue == null) {
+			queue = new LinkedBlockingDeque<QueuedEntry>(capacity);
+		}
+		return queue;
+	}
+
+	private synchronized void startWorker() {
+		if (worker == null) {
+			worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			}, "audit-log-writer");
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Stops the worker and tries to write the queued entries one last time.
+	 */
+	public void shutdown() {
+		Thread thread;
+		synchronized (this) {
+			thread = worker;
+			worker = null;
+		}
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(retryDelay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		List<QueuedEntry> remaining = new ArrayList<QueuedEntry>();
+		getQueue().drainTo(remaining);
+		for (int i = 0; i < remaining.size(); i += batchSize) {
+			write(remaining.subList(i, Math.min(i + batchSize, remaining
+					.size())));
+		}
+		synchronized (this) {
+			if (journal != null) {
+				try {
+					journal.close();
+				} catch (IOException e) {
+					logger.error("audit log journal could not be closed", e);
+				}
+				journal = null;
+			}
+		}
+	}
+
+	/**
+	 * The loop of the worker thread. A failed batch is written again after a
+	 * delay, the following entries wait, so that the entries are written in
+	 * their order.
+	 */
+	private void drain() {
+		BlockingDeque<QueuedEntry> entries = getQueue();
+		while (!Thread.currentThread().isInterrupted()) {
+			List<QueuedEntry> batch = new ArrayList<QueuedEntry>(batchSize);
+			try {
+				batch.add(entries.take());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			entries.drainTo(batch, batchSize - 1);
+			int attempts = 0;
+			while (!write(batch)) {
+				if (++attempts >= maxAttempts) {
+					logger.error("log entries could not be written after "
+							+ maxAttempts
+							+ " attempts, the entries are written from the journal on the next start: "
+							+ batch);
+					break;
+				}
+				try {
+					Thread.sleep(retryDelay * attempts);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					// keep the batch for the last attempt on shutdown
+					for (int i = batch.size() - 1; i >= 0; i--) {
+						if (!entries.offerFirst(batch.get(i))) {
+							logger.error("audit log queue is full, the entry is dropped: "
+									+ batch.get(i).entry);
+						}
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the batch in one transaction and marks the entries as committed
+	 * in the journal.
+	 * 
+	 * @return If the batch was written.
+	 */
+	private boolean write(List<QueuedEntry> batch) {
+		EntityManager entityManager = null;
+		try {
+			entityManager = entityManagerFactory.createEntityManager();
+			entityManager.getTransaction().begin();
+			for (QueuedEntry queued : batch) {
+				entityManager.persist(queued.entry);
+			}
+			entityManager.getTransaction().commit();
+		} catch (RuntimeException e) {
+			logger.warn("error while writing " + batch.size()
+					+ " log entries", e);
+			try {
+				if (entityManager != null
+						&& entityManager.getTransaction().isActive()) {
+					entityManager.getTransaction().rollback();
+				}
+			} catch (RuntimeException e1) {
+				logger.warn("error while rolling back the log entries", e1);
+			}
+			// the entries are persisted again with new ids
+			for (QueuedEntry queued : batch) {
+				queued.entry.setId(0);
+			}
+			return false;
+		} finally {
+			if (entityManager != null) {
+				entityManager.close();
+			}
+		}
+		committed(batch);
+		return true;
+	}
+
+	private void committed(List<QueuedEntry> batch) {
+		AuditLogJournal currentJournal;
+		synchronized (this) {
+			currentJournal = journal;
+		}
+		if (currentJournal == null) {
+			return;
+		}
+		long[] committed = new long[batch.size()];
+		for (int i = 0; i < committed.length; i++) {
+			committed[i] = batch.get(i).sequence;
+		}
+		try {
+			currentJournal.committed(committed);
+		} catch (IOException e) {
+			logger.error("log entries could not be committed in the journal",
+					e);
+		}
+	}
+
+	@Autowired
+	public void setEntityManagerFactory(
+			EntityManagerFactory entityManagerFactory) {
+		this.entityManagerFactory = entityManagerFactory;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	public void setRetryDelay(long retryDelay) {
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Sets the file of the journal, without a file no entries can be added.
+	 */
+	public void setJournalFile(String journalFile) {
+		this.journalFile = journalFile;
+	}
+
+	/**
+	 * A queued log entry with its sequence number in the journal.
+	 */
+	private static class QueuedEntry {
+
+		private final LogEntry entry;
+
+		private final long sequence;
+
+		private QueuedEntry(LogEntry entry, long sequence) {
+			this.entry = entry;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public String toString() {
+			return entry.toString();
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.utility.logging;
+
+import java.util.GregorianCalendar;
+import java.util.Set;
+
+import lombok.Data;
+
+import de.randi2.model.AbstractDomainObject;
+import de.randi2.utility.logging.LogEntry.ActionType;
+
+/**
+ * Filter of the log entries, the conditions which are not set are ignored.
+ */
+@Data
+public class LogEntryFilter {
+
+	private String username;
+
+	private Class<? extends AbstractDomainObject> clazz;
+
+	private Long identifier;
+
+	private Set<ActionType> actions;
+
+	/** The first time, inclusive. */
+	private GregorianCalendar from;
+
+	/** The last time, exclusive. */
+	private GregorianCalendar to;
+
+}
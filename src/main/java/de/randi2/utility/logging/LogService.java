@@ -17,6 +17,8 @@
  */
 package de.randi2.utility.logging;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 import de.randi2.model.AbstractDomainObject;
@@ -38,5 +40,39 @@ public interface LogService {
 	
 	public List<LogEntry> getLogEntries(Class<? extends AbstractDomainObject> clazz, long id);
 
+	/**
+	 * Returns a page of the log entries, which match the filter, the newest
+	 * entries first. The next page starts after the last entry of the previous
+	 * page, as read from the database.
+	 * 
+	 * @param filter
+	 *            The filter, null for all entries.
+	 * @param after
+	 *            The last entry of the previous page, null for the first page.
+	 * @param maxResults
+	 *            The size of the page.
+	 * @return The entries of the page.
+	 */
+	public List<LogEntry> getLogEntries(LogEntryFilter filter, LogEntry after, int maxResults);
+
+	/**
+	 * Returns the amount of log entries, which match the filter.
+	 * 
+	 * @param filter
+	 *            The filter, null for all entries.
+	 */
+	public long countLogEntries(LogEntryFilter filter);
+
+	/**
+	 * Writes the log entries, which match the filter, the newest entries first
+	 * and one entry per line. The entries are read page by page.
+	 * 
+	 * @param filter
+	 *            The filter, null for all entries.
+	 * @param writer
+	 *            The writer of the export.
+	 */
+	public void exportLogEntries(LogEntryFilter filter, Writer writer) throws IOException;
+
 	void logTrialChange(ActionType action, String username, Trial oldTrial,	Trial changedTrial);
 }
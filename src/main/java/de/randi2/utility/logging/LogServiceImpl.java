@@ -14,15 +14,21 @@
  * 
  * You should have received a copy of the GNU General Public License along with
  * RANDI2. If not, see <http://www.gnu.org/licenses/>.
- */
+ */
 package de.randi2.utility.logging;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
 
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -33,13 +39,46 @@ import de.randi2.model.TrialSubject;
 
 public class LogServiceImpl implements LogService {
 
+	/** The amount of entries read at once by the export. */
+	private static final int EXPORT_PAGE_SIZE = 1000;
+
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
 	protected EntityManager entityManager;
 
+	private AuditLogWriter auditLogWriter;
+
+	private boolean asynchronous = false;
+
 	@PersistenceContext
     public void setEntityManager(EntityManager entityManager) {
 	        this. entityManager = entityManager;
 	}
 
+	public void setAuditLogWriter(AuditLogWriter auditLogWriter) {
+		this.auditLogWriter = auditLogWriter;
+	}
+
+	/**
+	 * If the entries are written in the background by the audit log writer,
+	 * otherwise they are persisted in the current transaction. Without a
+	 * journal of the writer the entries are persisted in the current
+	 * transaction, too.
+	 */
+	public void setAsynchronous(boolean asynchronous) {
+		this.asynchronous = asynchronous;
+	}
+
+	private void save(LogEntry entry) {
+		if (asynchronous && auditLogWriter != null
+				&& auditLogWriter.isJournaled()) {
+			auditLogWriter.add(entry);
+		} else {
+			entityManager.persist(entry);
+		}
+	}
+
 	@Override
 	@Transactional(propagation = Propagation.REQUIRED)
 	public void logChange(LogEntry.ActionType action, String username,
@@ -51,7 +90,7 @@ public class LogServiceImpl implements LogService {
 		entry.setIdentifier(value.getId());
 		entry.setValue(value.toString());
 		entry.setUiName(value.getUIName());
-		entityManager.persist(entry);
+		save(entry);
 	}
 	
 	
@@ -66,7 +105,7 @@ public class LogServiceImpl implements LogService {
 		entry.setIdentifier(trial.getId());
 		entry.setValue(trialSubject.toString());
 		entry.setUiName(trialSubject.getUIName());
-		entityManager.persist(entry);
+		save(entry);
 		
 	}
 
@@ -77,7 +116,7 @@ public class LogServiceImpl implements LogService {
 		LogEntry entry = new LogEntry();
 		entry.setAction(action);
 		entry.setUsername(username);
-		entityManager.persist(entry);
+		save(entry);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -109,6 +148,127 @@ public class LogServiceImpl implements LogService {
 		return entries;
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public List<LogEntry> getLogEntries(LogEntryFilter filter, LogEntry after,
+			int maxResults) {
+		return createQuery("select entry", filter,
+				after == null ? null : after.getTime(),
+				after == null ? 0 : after.getId(), true).setMaxResults(
+				maxResults).getResultList();
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public long countLogEntries(LogEntryFilter filter) {
+		return ((Number) createQuery("select count(entry)", filter, null, 0,
+				false).getSingleResult()).longValue();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public void exportLogEntries(LogEntryFilter filter, Writer writer)
+			throws IOException {
+		// the columns are read instead of the entities, so that the
+		// persistence context does not hold the exported entries
+		GregorianCalendar afterTime = null;
+		long afterId = 0;
+		List<Object[]> rows;
+		do {
+			rows = createQuery(
+					"select entry.id, entry.time, entry.username, entry.action, entry.clazz, entry.identifier, entry.value",
+					filter, afterTime, afterId, true).setMaxResults(
+					EXPORT_PAGE_SIZE).getResultList();
+			for (Object[] row : rows) {
+				LogEntry entry = new LogEntry();
+				entry.setId((Long) row[0]);
+				GregorianCalendar time = new GregorianCalendar();
+				time.setTimeInMillis(((Calendar) row[1]).getTimeInMillis());
+				entry.setTime(time);
+				entry.setUsername((String) row[2]);
+				entry.setAction((LogEntry.ActionType) row[3]);
+				entry.setClazz((Class<? extends AbstractDomainObject>) row[4]);
+				entry.setIdentifier((Long) row[5]);
+				entry.setValue((String) row[6]);
+				writer.write(entry.toString());
+				writer.write(LINE_SEPARATOR);
+				afterTime = time;
+				afterId = entry.getId();
+			}
+		} while (rows.size() == EXPORT_PAGE_SIZE);
+		writer.flush();
+	}
+
+	/**
+	 * Creates the query of the log entries, which match the filter and which
+	 * are older than the given time and id, ordered by time and id.
+	 */
+	private Query createQuery(String select, LogEntryFilter filter,
+			GregorianCalendar afterTime, long afterId, boolean ordered) {
+		List<String> conditions = new ArrayList<String>();
+		if (filter != null) {
+			if (filter.getUsername() != null) {
+				conditions.add("entry.username = :username");
+			}
+			if (filter.getClazz() != null) {
+				conditions.add("entry.clazz = :clazz");
+			}
+			if (filter.getIdentifier() != null) {
+				conditions.add("entry.identifier = :identifier");
+			}
+			if (filter.getActions() != null && !filter.getActions().isEmpty()) {
+				conditions.add("entry.action in (:actions)");
+			}
+			if (filter.getFrom() != null) {
+				conditions.add("entry.time >= :from");
+			}
+			if (filter.getTo() != null) {
+				conditions.add("entry.time < :to");
+			}
+		}
+		if (afterTime != null) {
+			conditions
+					.add("(entry.time < :afterTime or (entry.time = :afterTime and entry.id < :afterId))");
+		}
+		StringBuilder jpql = new StringBuilder(select)
+				.append(" from LogEntry as entry");
+		for (int i = 0; i < conditions.size(); i++) {
+			jpql.append(i == 0 ? " where " : " and ").append(conditions.get(i));
+		}
+		if (ordered) {
+			jpql.append(" order by entry.time desc, entry.id desc");
+		}
+		Query query = entityManager.createQuery(jpql.toString());
+		if (filter != null) {
+			if (filter.getUsername() != null) {
+				query.setParameter("username", filter.getUsername());
+			}
+			if (filter.getClazz() != null) {
+				query.setParameter("clazz", filter.getClazz());
+			}
+			if (filter.getIdentifier() != null) {
+				query.setParameter("identifier", filter.getIdentifier());
+			}
+			if (filter.getActions() != null && !filter.getActions().isEmpty()) {
+				query.setParameter("actions", filter.getActions());
+			}
+			if (filter.getFrom() != null) {
+				query.setParameter("from", filter.getFrom(),
+						TemporalType.TIMESTAMP);
+			}
+			if (filter.getTo() != null) {
+				query.setParameter("to", filter.getTo(), TemporalType.TIMESTAMP);
+			}
+		}
+		if (afterTime != null) {
+			query.setParameter("afterTime", afterTime, TemporalType.TIMESTAMP);
+			query.setParameter("afterId", afterId);
+		}
+		return query;
+	}
+
 	public static List<String> convert(List<LogEntry> entries) {
 		List<String> strings = new ArrayList<String>();
 		for (LogEntry entry : entries) {
@@ -159,7 +319,7 @@ public class LogServiceImpl implements LogService {
 		}
 		entry.setUiName(sb.toString());
 		entry.setValue(sb.toString());
-		entityManager.persist(entry);
+		save(entry);
 	}
 
 	
@@ -0,0 +1,291 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.utility.mail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.internet.MimeMessage;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Outbox for the e-mails, which are sent in the background. A mail added
+ * within a transaction is put into the outbox after the commit of the
+ * transaction and discarded on a rollback. A worker thread sends the mails of
+ * the outbox in batches over one connection and tries to send failed mails
+ * again after a delay.
+ */
+public class MailOutbox {
+
+	private Logger logger = Logger.getLogger(MailOutbox.class);
+
+	private JavaMailSender mailSender;
+
+	private int capacity = 1000;
+
+	private int batchSize = 20;
+
+	private int maxAttempts = 5;
+
+	private long retryDelay = 60000;
+
+	private BlockingQueue<OutboxMail> queue;
+
+	private Thread worker;
+
+	/**
+	 * Adds the mail to the outbox. Within a transaction the mail is added after
+	 * the commit. If the outbox is full the mail is dropped and an error is
+	 * logged.
+	 * 
+	 * @param message
+	 *            The prepared mail.
+	 */
+	public void add(final MimeMessage message) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager
+					.registerSynchronization(new TransactionSynchronizationAdapter() {
+						@Override
+						public void afterCommit() {
+							offer(message);
+						}
+					});
+		} else {
+			offer(message);
+		}
+	}
+
+	/**
+	 * Returns the amount of mails waiting in the outbox, without the mails
+	 * waiting for a retry.
+	 */
+	public int size() {
+		return getQueue().size();
+	}
+
+	private void offer(MimeMessage message) {
+		if (!getQueue().offer(new OutboxMail(message))) {
+			logger.error("mail outbox is full, the mail is dropped");
+			return;
+		}
+		startWorker();
+	}
+
+	private synchronized BlockingQueue<OutboxMail> getQueue() {
+		if (queue == null) {
+			queue = new LinkedBlockingQueue<OutboxMail>(capacity);
+		}
+		return queue;
+	}
+
+	private synchronized void startWorker() {
+		if (worker == null) {
+			worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						drain();
+					} finally {
+						workerStopped(Thread.currentThread());
+					}
+				}
+			}, "mail-outbox");
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Forgets the stopped worker, so the next mail starts a new one.
+	 */
+	private synchronized void workerStopped(Thread thread) {
+		if (worker == thread) {
+			worker = null;
+		}
+	}
+
+	/**
+	 * Stops the worker and tries to send the mails of the outbox one last time.
+	 */
+	public void shutdown() {
+		Thread thread;
+		synchronized (this) {
+			thread = worker;
+			worker = null;
+		}
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(retryDelay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		List<OutboxMail> remaining = new ArrayList<OutboxMail>();
+		getQueue().drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			send(remaining);
+		}
+	}
+
+	/**
+	 * The loop of the worker thread. Failed mails are kept by the worker until
+	 * their retry is due.
+	 */
+	private void drain() {
+		BlockingQueue<OutboxMail> mails = getQueue();
+		List<OutboxMail> retries = new ArrayList<OutboxMail>();
+		while (!Thread.currentThread().isInterrupted()) {
+			List<OutboxMail> batch = new ArrayList<OutboxMail>(batchSize);
+			long now = System.currentTimeMillis();
+			long nextRetry = Long.MAX_VALUE;
+			for (Iterator<OutboxMail> it = retries.iterator(); it.hasNext();) {
+				OutboxMail mail = it.next();
+				if (mail.nextAttempt <= now && batch.size() < batchSize) {
+					batch.add(mail);
+					it.remove();
+				} else {
+					nextRetry = Math.min(nextRetry, mail.nextAttempt);
+				}
+			}
+			try {
+				if (batch.isEmpty()) {
+					OutboxMail mail = mails.poll(
+							nextRetry == Long.MAX_VALUE ? retryDelay
+									: nextRetry - now, TimeUnit.MILLISECONDS);
+					if (mail != null) {
+						batch.add(mail);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			mails.drainTo(batch, batchSize - batch.size());
+			if (!batch.isEmpty()) {
+				retries.addAll(send(batch));
+			}
+		}
+		// keep the failed mails for the last attempt on shutdown
+		for (OutboxMail mail : retries) {
+			if (!mails.offer(mail)) {
+				logger.error("mail outbox is full, the mail is dropped");
+			}
+		}
+	}
+
+	/**
+	 * Sends the batch and returns the failed mails, which should be sent
+	 * again.
+	 */
+	private List<OutboxMail> send(List<OutboxMail> batch) {
+		MimeMessage[] messages = new MimeMessage[batch.size()];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = batch.get(i).message;
+		}
+		Collection<OutboxMail> failed;
+		try {
+			mailSender.send(messages);
+			return new ArrayList<OutboxMail>();
+		} catch (MailSendException e) {
+			Map<?, Exception> failedMessages = e.getFailedMessages();
+			if (failedMessages == null || failedMessages.isEmpty()) {
+				failed = batch;
+			} else {
+				failed = new ArrayList<OutboxMail>();
+				for (OutboxMail mail : batch) {
+					if (failedMessages.containsKey(mail.message)) {
+						failed.add(mail);
+					}
+				}
+			}
+			logger.warn("error while sending " + failed.size() + " of "
+					+ batch.size() + " mails", e);
+		} catch (MailException e) {
+			failed = batch;
+			logger.warn("error while sending " + batch.size() + " mails", e);
+		} catch (RuntimeException e) {
+			// keep the worker alive, the mails are sent again
+			failed = batch;
+			logger.error("unexpected error while sending " + batch.size()
+					+ " mails", e);
+		}
+		List<OutboxMail> retries = new ArrayList<OutboxMail>();
+		for (OutboxMail mail : failed) {
+			mail.attempts++;
+			if (mail.attempts < maxAttempts) {
+				mail.nextAttempt = System.currentTimeMillis() + retryDelay
+						* mail.attempts;
+				retries.add(mail);
+			} else {
+				logger.error("mail could not be sent after " + mail.attempts
+						+ " attempts, the mail is dropped");
+			}
+		}
+		return retries;
+	}
+
+	@Autowired
+	public void setMailSender(JavaMailSender mailSender) {
+		this.mailSender = mailSender;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	public void setRetryDelay(long retryDelay) {
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * A mail of the outbox with its sending attempts.
+	 */
+	private static class OutboxMail {
+
+		private final MimeMessage message;
+
+		private int attempts = 0;
+
+		private long nextAttempt = 0;
+
+		private OutboxMail(MimeMessage message) {
+			this.message = message;
+		}
+	}
+}
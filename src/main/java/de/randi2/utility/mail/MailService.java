@@ -45,6 +45,8 @@ public class MailService implements MailServiceInterface {
 	private JavaMailSender mailSender;
 	@Autowired
 	private VelocityEngine velocityEngine;
+	@Autowired
+	private MailOutbox outbox;
 
 	private String from;
 	
@@ -78,37 +80,8 @@ public class MailService implements MailServiceInterface {
 			final Map<String, Object> subjectFields) throws MailErrorException {
 
 		try {
-			final Locale templateLanguage = (templateLanguageParam != null) ? templateLanguageParam : Locale.ENGLISH;
-			messageFields.put("hoster", hoster);
-			messageFields.put("url", url);
-			MimeMessagePreparator preparator = new MimeMessagePreparator() {
-				public void prepare(MimeMessage mimeMessage) throws Exception {
-					MimeMessageHelper message = new MimeMessageHelper(
-							mimeMessage);
-					message.setTo(recipient);
-					message.setFrom(from);
-					
-					
-					
-					String subject = VelocityEngineUtils
-							.mergeTemplateIntoString(velocityEngine,
-									PATH_MAIL_TEMPLATES
-											+ templateLanguage.getLanguage()
-													.toLowerCase(Locale.getDefault()) + "/"
-											+ messageTemplate + "_subject.vm",
-									subjectFields);
-					message.setSubject(subject);
-
-					String text = VelocityEngineUtils.mergeTemplateIntoString(
-							velocityEngine, PATH_MAIL_TEMPLATES
-									+ templateLanguage.getLanguage()
-											.toLowerCase(Locale.getDefault()) + "/"
-									+ messageTemplate + ".vm", messageFields);
-					message.setText(text, true);
-				}
-			};
-
-			this.mailSender.send(preparator);
+			this.mailSender.send(createPreparator(recipient, messageTemplate,
+					templateLanguageParam, messageFields, subjectFields));
 
 		} catch (Exception e) {
 			throw new MailErrorException(String.format("Error while sending mail: '%s'", e.getMessage()), e);
@@ -116,6 +89,58 @@ public class MailService implements MailServiceInterface {
 		return true;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void queueMail(final String recipient,
+			final String messageTemplate, final Locale templateLanguageParam,
+			final Map<String, Object> messageFields,
+			final Map<String, Object> subjectFields) throws MailErrorException {
+		MimeMessage mimeMessage = this.mailSender.createMimeMessage();
+		try {
+			createPreparator(recipient, messageTemplate, templateLanguageParam,
+					messageFields, subjectFields).prepare(mimeMessage);
+		} catch (Exception e) {
+			throw new MailErrorException(String.format("Error while preparing mail: '%s'", e.getMessage()), e);
+		}
+		outbox.add(mimeMessage);
+	}
+
+	private MimeMessagePreparator createPreparator(final String recipient,
+			final String messageTemplate, final Locale templateLanguageParam,
+			final Map<String, Object> messageFields,
+			final Map<String, Object> subjectFields) {
+		final Locale templateLanguage = (templateLanguageParam != null) ? templateLanguageParam : Locale.ENGLISH;
+		messageFields.put("hoster", hoster);
+		messageFields.put("url", url);
+		return new MimeMessagePreparator() {
+			public void prepare(MimeMessage mimeMessage) throws Exception {
+				MimeMessageHelper message = new MimeMessageHelper(
+						mimeMessage);
+				message.setTo(recipient);
+				message.setFrom(from);
+				
+				
+				
+				String subject = VelocityEngineUtils
+						.mergeTemplateIntoString(velocityEngine,
+								PATH_MAIL_TEMPLATES
+										+ templateLanguage.getLanguage()
+												.toLowerCase(Locale.getDefault()) + "/"
+										+ messageTemplate + "_subject.vm",
+								subjectFields);
+				message.setSubject(subject);
+
+				String text = VelocityEngineUtils.mergeTemplateIntoString(
+						velocityEngine, PATH_MAIL_TEMPLATES
+								+ templateLanguage.getLanguage()
+										.toLowerCase(Locale.getDefault()) + "/"
+								+ messageTemplate + ".vm", messageFields);
+				message.setText(text, true);
+			}
+		};
+	}
+
 	public String getFrom() {
 		return from;
 	}
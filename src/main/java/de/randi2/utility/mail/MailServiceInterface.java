@@ -60,4 +60,27 @@ public interface MailServiceInterface {
 			final Map<String, Object> messageFields,
 			final Map<String, Object> subjectFields) throws MailErrorException;
 
+	/**
+	 * Generates an E-Mail like {@link #sendMail} and adds it to the outbox,
+	 * which sends it in the background. Within a transaction the E-Mail is
+	 * added to the outbox after the commit.
+	 * 
+	 * @param recipient
+	 *            The recipient's email address. Can be multiple recipients.
+	 * @param messageTemplate
+	 *            The filename (without .vm extension) of the mail template.
+	 * @param templateLanguage
+	 *            The language of the desired template.
+	 * @param messageFields
+	 *            Fields which get parsed into the template.
+	 * @param subjectFields
+	 *            Fields which get parsed into the subject.
+	 * @throws MailErrorException
+	 *             In case of an error while generating the E-Mail.
+	 */
+	public void queueMail(final String recipient,
+			final String messageTemplate, final Locale templateLanguage,
+			final Map<String, Object> messageFields,
+			final Map<String, Object> subjectFields) throws MailErrorException;
+
 }
@@ -0,0 +1,117 @@
+/* 
+ * (c) 2008- RANDI2 Core Development Team
+ * 
+ * This file is part of RANDI2.
+ * 
+ * RANDI2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * RANDI2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * RANDI2. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.randi2.utility.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.acls.afterinvocation.AclEntryAfterInvocationCollectionFilteringProvider;
+import org.springframework.security.acls.domain.ObjectIdentityRetrievalStrategyImpl;
+import org.springframework.security.acls.domain.SidRetrievalStrategyImpl;
+import org.springframework.security.acls.model.AclService;
+import org.springframework.security.acls.model.NotFoundException;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.acls.model.ObjectIdentityRetrievalStrategy;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.acls.model.SidRetrievalStrategy;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Filters the returned collection like
+ * {@link AclEntryAfterInvocationCollectionFilteringProvider}, but reads the
+ * acls of all elements with one call of
+ * {@link AclService#readAclsById(List, List)} before. The acl service caches
+ * the read acls, so that the check of the single elements does not query the
+ * database again.
+ */
+public class BatchAclCollectionFilteringProvider extends
+		AclEntryAfterInvocationCollectionFilteringProvider {
+
+	private ObjectIdentityRetrievalStrategy objectIdentityRetrievalStrategy = new ObjectIdentityRetrievalStrategyImpl();
+
+	private SidRetrievalStrategy sidRetrievalStrategy = new SidRetrievalStrategyImpl();
+
+	public BatchAclCollectionFilteringProvider(AclService aclService,
+			List<Permission> requirePermission) {
+		super(aclService, requirePermission);
+	}
+
+	@Override
+	public Object decide(Authentication authentication, Object object,
+			Collection<ConfigAttribute> config, Object returnedObject)
+			throws AccessDeniedException {
+		if (returnedObject != null && isProcessed(config)) {
+			readAcls(authentication, returnedObject);
+		}
+		return super.decide(authentication, object, config, returnedObject);
+	}
+
+	private boolean isProcessed(Collection<ConfigAttribute> config) {
+		for (ConfigAttribute attribute : config) {
+			if (supports(attribute)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void readAcls(Authentication authentication, Object returnedObject) {
+		Collection<?> domainObjects;
+		if (returnedObject instanceof Collection<?>) {
+			domainObjects = (Collection<?>) returnedObject;
+		} else if (returnedObject.getClass().isArray()) {
+			domainObjects = Arrays.asList((Object[]) returnedObject);
+		} else {
+			return;
+		}
+		List<ObjectIdentity> objectIdentities = new ArrayList<ObjectIdentity>();
+		for (Object domainObject : domainObjects) {
+			if (domainObject != null
+					&& getProcessDomainObjectClass().isAssignableFrom(
+							domainObject.getClass())) {
+				objectIdentities.add(objectIdentityRetrievalStrategy
+						.getObjectIdentity(domainObject));
+			}
+		}
+		if (objectIdentities.size() > 1) {
+			try {
+				aclService.readAclsById(objectIdentities, sidRetrievalStrategy
+						.getSids(authentication));
+			} catch (NotFoundException e) {
+				// the elements without acl are removed by the filter
+			}
+		}
+	}
+
+	@Override
+	public void setObjectIdentityRetrievalStrategy(
+			ObjectIdentityRetrievalStrategy objectIdentityRetrievalStrategy) {
+		super.setObjectIdentityRetrievalStrategy(objectIdentityRetrievalStrategy);
+		this.objectIdentityRetrievalStrategy = objectIdentityRetrievalStrategy;
+	}
+
+	@Override
+	public void setSidRetrievalStrategy(SidRetrievalStrategy sidRetrievalStrategy) {
+		super.setSidRetrievalStrategy(sidRetrievalStrategy);
+		this.sidRetrievalStrategy = sidRetrievalStrategy;
+	}
+}
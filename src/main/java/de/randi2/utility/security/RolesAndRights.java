@@ -18,7 +18,9 @@
 package de.randi2.utility.security;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -94,23 +96,21 @@ public class RolesAndRights {
 							"login.AllLoginsWithSpecificRoleAndTrialSite")
 					.setParameter(1, r.getId()).setParameter(2, scope.getId())
 					.getResultList();
-			for (Login l : logins) {
-				if (r.isWriteOtherUser() && r.isScopeUserWrite()) {
-					/*
-					 * Grant WRITE permission on the new user to the current
-					 * user
-					 */
-					grantRightLogin(object, l.getUsername(), r.getName(),
-							PermissionHibernate.WRITE);
-				}
-				if (r.isReadOtherUser() && r.isScopeUserRead()) {
-					/*
-					 * IF there is no site-constraint (all users are shown to
-					 * the current user)
-					 */
-					grantRightLogin(object, l.getUsername(), r.getName(),
-							PermissionHibernate.READ);
-				}
+			if (r.isWriteOtherUser() && r.isScopeUserWrite()) {
+				/*
+				 * Grant WRITE permission on the new user to the current
+				 * user
+				 */
+				grantRightLogin(object, usernames(logins), r.getName(),
+						PermissionHibernate.WRITE);
+			}
+			if (r.isReadOtherUser() && r.isScopeUserRead()) {
+				/*
+				 * IF there is no site-constraint (all users are shown to
+				 * the current user)
+				 */
+				grantRightLogin(object, usernames(logins), r.getName(),
+						PermissionHibernate.READ);
 			}
 		}
 	}
@@ -137,30 +137,29 @@ public class RolesAndRights {
 			List<Login> logins = entityManager
 					.createNamedQuery("login.AllLoginsWithSpecificRole")
 					.setParameter(1, r.getId()).getResultList();
-			for (Login l : logins) {
-				if (r.isWriteOtherUser() && !r.isScopeUserWrite()) {
-					/*
-					 * IF there is no site-constraint (all users are editable to
-					 * the current user)
-					 */
-					grantRightLogin(object, l.getUsername(), r.getName(),
-							PermissionHibernate.WRITE);
-				}
-				if (r.isReadOtherUser() && !r.isScopeUserRead()) {
-					/*
-					 * IF there is no site-constraint (all users are shown to
-					 * the current user)
-					 */
-					grantRightLogin(object, l.getUsername(), r.getName(),
-							PermissionHibernate.READ);
-				}
-				if (r.isAdminOtherUser()) {
-					/*
-					 * If the current user can administrate others
-					 */
-					grantRightLogin(object, l.getUsername(), r.getName(),
-							PermissionHibernate.ADMINISTRATION);
-				}
+			List<String> usernames = usernames(logins);
+			if (r.isWriteOtherUser() && !r.isScopeUserWrite()) {
+				/*
+				 * IF there is no site-constraint (all users are editable to
+				 * the current user)
+				 */
+				grantRightLogin(object, usernames, r.getName(),
+						PermissionHibernate.WRITE);
+			}
+			if (r.isReadOtherUser() && !r.isScopeUserRead()) {
+				/*
+				 * IF there is no site-constraint (all users are shown to
+				 * the current user)
+				 */
+				grantRightLogin(object, usernames, r.getName(),
+						PermissionHibernate.READ);
+			}
+			if (r.isAdminOtherUser()) {
+				/*
+				 * If the current user can administrate others
+				 */
+				grantRightLogin(object, usernames, r.getName(),
+						PermissionHibernate.ADMINISTRATION);
 			}
 		}
 	}
@@ -173,6 +172,32 @@ public class RolesAndRights {
 				permissions, roleName);
 	}
 
+	private void grantRightLogin(Login newLogin, List<String> userNames,
+			String roleName, PermissionHibernate... permissions) {
+		aclService.createAclsWithPermissions(newLogin, userNames, permissions,
+				roleName);
+		aclService.createAclsWithPermissions(newLogin.getPerson(), userNames,
+				permissions, roleName);
+	}
+
+	/**
+	 * Grants the permission on the object to all logins with one bulk
+	 * operation.
+	 */
+	private void grantRight(AbstractDomainObject object, List<Login> logins,
+			String roleName, PermissionHibernate permission) {
+		aclService.createAclsWithPermissions(object, usernames(logins),
+				new PermissionHibernate[] { permission }, roleName);
+	}
+
+	private static List<String> usernames(List<Login> logins) {
+		List<String> usernames = new ArrayList<String>(logins.size());
+		for (Login l : logins) {
+			usernames.add(l.getUsername());
+		}
+		return usernames;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Transactional(propagation = Propagation.REQUIRED)
 	private void grantRightsTrialSiteObject(TrialSite trialSite) {
@@ -199,34 +224,20 @@ public class RolesAndRights {
 					.createNamedQuery("login.AllLoginsWithSpecificRole")
 					.setParameter(1, r.getId()).getResultList();
 			// set acls for the logins
-			for (Login l : logins) {
-				// grant administration rights
-				if (r.isAdminTrialSite()) {
-					aclService
-							.createAclwithPermissions(
-									trialSite,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.ADMINISTRATION },
-									r.getName());
-				}
-				// grant rights to read the trial site
-				if (!r.isScopeTrialSiteView() && r.isReadTrialSite()) {
-					aclService
-							.createAclwithPermissions(
-									trialSite,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.READ },
-									r.getName());
-				}
-				// grant rights to write/update the trial site
-				if (!r.isScopeTrialSiteWrite() && r.isWriteTrialSite()) {
-					aclService
-							.createAclwithPermissions(
-									trialSite,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.WRITE },
-									r.getName());
-				}
+			// grant administration rights
+			if (r.isAdminTrialSite()) {
+				grantRight(trialSite, logins, r.getName(),
+						PermissionHibernate.ADMINISTRATION);
+			}
+			// grant rights to read the trial site
+			if (!r.isScopeTrialSiteView() && r.isReadTrialSite()) {
+				grantRight(trialSite, logins, r.getName(),
+						PermissionHibernate.READ);
+			}
+			// grant rights to write/update the trial site
+			if (!r.isScopeTrialSiteWrite() && r.isWriteTrialSite()) {
+				grantRight(trialSite, logins, r.getName(),
+						PermissionHibernate.WRITE);
 			}
 		}
 	}
@@ -250,39 +261,26 @@ public class RolesAndRights {
 						"from Role r where (r.scopeTrialRead = true and r.readTrial = true ) or (r.scopeTrialWrite = true and r.writeTrial = true)")
 				.getResultList();// TODO named query
 
+		List<Long> siteIds = new ArrayList<Long>();
+		for (TrialSite site : trial.getParticipatingSites()) {
+			siteIds.add(site.getId());
+		}
+		if (siteIds.isEmpty())
+			return;
+
 		for (Role r : roles) {
-			List<Login> logins = new ArrayList<Login>();
-			List<Login> logs = entityManager.createQuery("from Login")
-					.getResultList();
-			for (Login l : logs) {
-				// every user from a participating site
-				for (TrialSite site : trial.getParticipatingSites()) {
-					site = entityManager.find(TrialSite.class, site.getId());
-					if (site.getMembers().contains(l.getPerson())
-							&& l.getRoles().contains(r)) {
-						logins.add(l);
-					}
-				}
+			// every user with the role from a participating site
+			List<Login> logins = entityManager
+					.createNamedQuery("login.AllLoginsWithSpecificRoleAndTrialSites")
+					.setParameter("role", r.getId())
+					.setParameter("sites", siteIds).getResultList();
+			// added read permission for this new trial
+			if (r.isReadTrial()) {
+				grantRight(trial, logins, r.getName(), PermissionHibernate.READ);
 			}
-			for (Login l : logins) {
-				// added read permission for this new trial
-				if (r.isReadTrial()) {
-					aclService
-							.createAclwithPermissions(
-									trial,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.READ },
-									r.getName());
-				}
-				// added write permission for this new trial
-				if (r.isWriteTrial()) {
-					aclService
-							.createAclwithPermissions(
-									trial,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.WRITE },
-									r.getName());
-				}
+			// added write permission for this new trial
+			if (r.isWriteTrial()) {
+				grantRight(trial, logins, r.getName(), PermissionHibernate.WRITE);
 			}
 		}
 		// END
@@ -309,34 +307,18 @@ public class RolesAndRights {
 			List<Login> logins = entityManager
 					.createNamedQuery("login.AllLoginsWithSpecificRole")
 					.setParameter(1, r.getId()).getResultList();
-			for (Login l : logins) {
-				// added read permission for this new trial
-				if (!r.isScopeTrialRead() && r.isReadTrial()) {
-					aclService
-							.createAclwithPermissions(
-									trial,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.READ },
-									r.getName());
-				}
-				// added write permission for this new trial
-				if (!r.isScopeTrialWrite() && r.isWriteTrial()) {
-					aclService
-							.createAclwithPermissions(
-									trial,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.WRITE },
-									r.getName());
-				}
-				// added admin permission for this new trial
-				if (r.isAdminTrial()) {
-					aclService
-							.createAclwithPermissions(
-									trial,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.ADMINISTRATION },
-									r.getName());
-				}
+			// added read permission for this new trial
+			if (!r.isScopeTrialRead() && r.isReadTrial()) {
+				grantRight(trial, logins, r.getName(), PermissionHibernate.READ);
+			}
+			// added write permission for this new trial
+			if (!r.isScopeTrialWrite() && r.isWriteTrial()) {
+				grantRight(trial, logins, r.getName(), PermissionHibernate.WRITE);
+			}
+			// added admin permission for this new trial
+			if (r.isAdminTrial()) {
+				grantRight(trial, logins, r.getName(),
+						PermissionHibernate.ADMINISTRATION);
 			}
 		}
 	}
@@ -351,32 +333,31 @@ public class RolesAndRights {
 				.setParameter(2, trialSubject.getArm().getTrial().getId())
 				.setParameter(3, PermissionHibernate.READ.getCode())
 				.getResultList();
+		// the logins grouped by their roles
+		Map<Role, List<Login>> loginsOfRole = new LinkedHashMap<Role, List<Login>>();
 		for (Login l : logins) {
 			for (Role r : l.getRoles()) {
-				if (r.isReadTrialSubject()) {
-					aclService
-							.createAclwithPermissions(
-									trialSubject,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.READ },
-									r.getName());
-				}
-				if (r.isWriteTrialSubject()) {
-					aclService
-							.createAclwithPermissions(
-									trialSubject,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.WRITE },
-									r.getName());
-				}
-				if (r.isAdminTrialSubject()) {
-					aclService
-							.createAclwithPermissions(
-									trialSubject,
-									l.getUsername(),
-									new PermissionHibernate[] { PermissionHibernate.ADMINISTRATION },
-									r.getName());
+				List<Login> list = loginsOfRole.get(r);
+				if (list == null) {
+					list = new ArrayList<Login>();
+					loginsOfRole.put(r, list);
 				}
+				list.add(l);
+			}
+		}
+		for (Map.Entry<Role, List<Login>> entry : loginsOfRole.entrySet()) {
+			Role r = entry.getKey();
+			if (r.isReadTrialSubject()) {
+				grantRight(trialSubject, entry.getValue(), r.getName(),
+						PermissionHibernate.READ);
+			}
+			if (r.isWriteTrialSubject()) {
+				grantRight(trialSubject, entry.getValue(), r.getName(),
+						PermissionHibernate.WRITE);
+			}
+			if (r.isAdminTrialSubject()) {
+				grantRight(trialSubject, entry.getValue(), r.getName(),
+						PermissionHibernate.ADMINISTRATION);
 			}
 		}
 	}
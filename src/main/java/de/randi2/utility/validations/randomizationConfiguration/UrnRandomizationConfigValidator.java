@@ -29,7 +29,7 @@ public class UrnRandomizationConfigValidator  implements ConstraintValidator<Urn
 
 	@Override
 	public boolean isValid(UrnDesignConfig urnDesignConfig, ConstraintValidatorContext constraintContext) {
-			return urnDesignConfig.getTrial().getTreatmentArms().size()==2;
+			return urnDesignConfig.getTrial().getTreatmentArms().size()>=2;
 	}
 
 }
@@ -2,8 +2,14 @@ package de.randi2.core.integration.dao;
 
 import static de.randi2.utility.security.ArrayListHelper.sidsOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -11,6 +17,8 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.acls.domain.PrincipalSid;
 import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.NotFoundException;
+import org.springframework.security.acls.model.ObjectIdentity;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,6 +30,7 @@ import de.randi2.model.TrialSite;
 import de.randi2.model.security.AclHibernate;
 import de.randi2.model.security.ObjectIdentityHibernate;
 import de.randi2.model.security.PermissionHibernate;
+import de.randi2.model.security.SidHibernate;
 import de.randi2.testUtility.utility.DomainObjectFactory;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -91,6 +100,143 @@ public class HibernateAclServiceTest extends AbstractDaoTest{
 		entityManager.flush();
 		assertEquals(0, entityManager.createQuery("from AccessControlEntryHibernate ace where ace.roleName = ? and ace.sid.sidname = ?").setParameter(1, Role.ROLE_MONITOR.getName()).setParameter(2, "monitor@trialsite1.de").getResultList().size());
 	}
-	
+
+	@Test
+	@Transactional
+	public void testAclCache(){
+		entityManager.persist(trialsite);
+		Login login = factory.getLogin();
+		entityManager.persist(login);
+		SidHibernate sid = new SidHibernate(login.getUsername());
+		entityManager.persist(sid);
+		AclHibernate acl = new AclHibernate();
+		acl.setObjectIdentity(new ObjectIdentityHibernate(TrialSite.class, trialsite.getId()));
+		acl.setOwner(sid);
+		acl.insertAce(PermissionHibernate.READ, null);
+		entityManager.persist(acl);
+		entityManager.flush();
+
+		ObjectIdentityHibernate objectIdentity = new ObjectIdentityHibernate(TrialSite.class, trialsite.getId());
+		long hits = aclService.getCacheHits();
+		long misses = aclService.getCacheMisses();
+		Acl readAcl = aclService.readAclById(objectIdentity, sidsOf(new PrincipalSid(login.getUsername())));
+		assertEquals(acl.getId(), ((AclHibernate) readAcl).getId());
+		assertEquals(hits, aclService.getCacheHits());
+		assertEquals(misses + 1, aclService.getCacheMisses());
+		assertSame(readAcl, aclService.readAclById(objectIdentity, sidsOf(new PrincipalSid(login.getUsername()))));
+		assertEquals(hits + 1, aclService.getCacheHits());
+		assertEquals(misses + 1, aclService.getCacheMisses());
+
+		// after a write the cache is not used in this transaction
+		aclService.update(acl);
+		assertEquals(0, aclService.getCacheSize());
+		aclService.readAclById(objectIdentity, sidsOf(new PrincipalSid(login.getUsername())));
+		assertEquals(0, aclService.getCacheSize());
+		assertEquals(hits + 1, aclService.getCacheHits());
+		assertEquals(misses + 1, aclService.getCacheMisses());
+	}
+
+	@Test
+	@Transactional
+	public void testAclCacheKeepsFoundAclsOnly(){
+		entityManager.persist(trialsite);
+		Login login = factory.getLogin();
+		entityManager.persist(login);
+		entityManager.persist(new SidHibernate(login.getUsername()));
+		entityManager.flush();
+		ObjectIdentityHibernate objectIdentity = new ObjectIdentityHibernate(TrialSite.class, trialsite.getId());
+		int size = aclService.getCacheSize();
+		try {
+			aclService.readAclById(objectIdentity, sidsOf(new PrincipalSid(login.getUsername())));
+			fail("the trial site has no acl");
+		} catch (NotFoundException e) {
+		}
+		assertEquals(size, aclService.getCacheSize());
+	}
+
+	@Test
+	@Transactional
+	public void testAclCacheExpires(){
+		entityManager.persist(trialsite);
+		Login login = factory.getLogin();
+		entityManager.persist(login);
+		SidHibernate sid = new SidHibernate(login.getUsername());
+		entityManager.persist(sid);
+		AclHibernate acl = new AclHibernate();
+		acl.setObjectIdentity(new ObjectIdentityHibernate(TrialSite.class, trialsite.getId()));
+		acl.setOwner(sid);
+		acl.insertAce(PermissionHibernate.READ, null);
+		entityManager.persist(acl);
+		entityManager.flush();
+
+		ObjectIdentityHibernate objectIdentity = new ObjectIdentityHibernate(TrialSite.class, trialsite.getId());
+		aclService.setCacheTimeToLive(0);
+		try {
+			aclService.readAclById(objectIdentity, sidsOf(new PrincipalSid(login.getUsername())));
+			long hits = aclService.getCacheHits();
+			long misses = aclService.getCacheMisses();
+			aclService.readAclById(objectIdentity, sidsOf(new PrincipalSid(login.getUsername())));
+			assertEquals(hits, aclService.getCacheHits());
+			assertEquals(misses + 1, aclService.getCacheMisses());
+		} finally {
+			aclService.setCacheTimeToLive(HibernateAclService.DEFAULT_CACHE_TIME_TO_LIVE);
+		}
+	}
+
+	@Test
+	@Transactional
+	public void testReadAclsById(){
+		Login login = factory.getLogin();
+		entityManager.persist(login);
+		SidHibernate sid = new SidHibernate(login.getUsername());
+		entityManager.persist(sid);
+		List<ObjectIdentity> objectIdentities = new ArrayList<ObjectIdentity>();
+		for (int i = 0; i < 3; i++) {
+			TrialSite site = factory.getTrialSite();
+			entityManager.persist(site.getContactPerson());
+			entityManager.persist(site);
+			AclHibernate acl = new AclHibernate();
+			acl.setObjectIdentity(new ObjectIdentityHibernate(TrialSite.class, site.getId()));
+			acl.setOwner(sid);
+			acl.insertAce(PermissionHibernate.READ, null);
+			entityManager.persist(acl);
+			objectIdentities.add(new ObjectIdentityHibernate(TrialSite.class, site.getId()));
+		}
+		entityManager.flush();
+
+		Map<ObjectIdentity, Acl> acls = aclService.readAclsById(objectIdentities, sidsOf(new PrincipalSid(login.getUsername())));
+		assertEquals(3, acls.size());
+		for (ObjectIdentity objectIdentity : objectIdentities) {
+			AclHibernate acl = (AclHibernate) acls.get(objectIdentity);
+			assertEquals(objectIdentity.getIdentifier(), acl.getObjectIdentity().getIdentifier());
+			assertEquals(1, acl.getAces().size());
+			// the single reads are answered by the cache
+			assertSame(acl, aclService.readAclById(objectIdentity, sidsOf(new PrincipalSid(login.getUsername()))));
+		}
+
+		entityManager.persist(trialsite);
+		objectIdentities.add(new ObjectIdentityHibernate(TrialSite.class, trialsite.getId()));
+		try {
+			aclService.readAclsById(objectIdentities, sidsOf(new PrincipalSid(login.getUsername())));
+			fail("the trial site has no acl");
+		} catch (NotFoundException e) {
+		}
+	}
+
+	@Test
+	@Transactional
+	public void testRepeatedGrantsReuseSidAndObjectIdentity(){
+		entityManager.persist(trialsite);
+		Login login = factory.getLogin();
+		entityManager.persist(login);
+
+		AclHibernate acl1 = aclService.createAclwithPermissions(trialsite, login.getUsername(), new PermissionHibernate[]{PermissionHibernate.READ});
+		AclHibernate acl2 = aclService.createAclwithPermissions(trialsite, login.getUsername(), new PermissionHibernate[]{PermissionHibernate.WRITE});
+		entityManager.flush();
+		assertEquals(acl1.getId(), acl2.getId());
+		assertEquals(2, acl2.getAces().size());
+		assertEquals(1, entityManager.createQuery("from SidHibernate sid where sid.sidname = ?").setParameter(1, login.getUsername()).getResultList().size());
+		assertEquals(1, entityManager.createQuery("from ObjectIdentityHibernate oi where oi.identifier = ? and oi.type = ?").setParameter(1, trialsite.getId()).setParameter(2, TrialSite.class.getCanonicalName()).getResultList().size());
+	}
+
 }
-	
@@ -7,10 +7,13 @@ import static junit.framework.Assert.assertTrue;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -489,6 +492,7 @@ public class ChartsServiceTest extends AbstractServiceTest {
 		assertTrue(validTrial.getId() > 0);
 		assertEquals(2, validTrial.getTreatmentArms().size());
 		authenticatAsInvestigator();
+		Map<String, Integer> subjectsPerStratum = new HashMap<String, Integer>();
 		for (int i = 0; i < randomizations; i++) {
 			TrialSubject subject = new TrialSubject();
 			subject.setIdentification("identification" + i);
@@ -528,13 +532,68 @@ public class ChartsServiceTest extends AbstractServiceTest {
 			subject.setCreatedAt(new GregorianCalendar(
 					2009 + (i >= 120 ? 1 : 0), i % 12, 1));
 			subject = entityManager.merge(subject);
-			
-		
+			Integer count = subjectsPerStratum.get(subject.getStratum());
+			subjectsPerStratum.put(subject.getStratum(), count == null ? 1
+					: count + 1);
 		}
 	  ChartData data = chartsService.generateRecruitmentChartFactors(validTrial);
 	  assertEquals(8, data.getData().size());
 	  assertEquals(8, data.getData().get(0).length);
 	  assertEquals(8, data.getXLabels().size());
+	  // the names of the strata are not unique, the counts are compared sorted
+	  List<Double> expected = new ArrayList<Double>();
+	  for (String stratum : validTrial.getAllStrataIdsAndNames().first()) {
+		  Integer count = subjectsPerStratum.remove(stratum);
+		  expected.add(count == null ? 0.0 : count);
+	  }
+	  assertTrue(subjectsPerStratum.isEmpty());
+	  List<Double> counts = new ArrayList<Double>();
+	  for (int i = 0; i < data.getData().size(); i++) {
+		  counts.add(data.getData().get(i)[i]);
+	  }
+	  Collections.sort(expected);
+	  Collections.sort(counts);
+	  assertEquals(expected, counts);
+	}
+
+
+	@Test
+	public void testGenerateArmChartCountsLaterRandomizations() throws IllegalArgumentException, TrialStateException {
+		randomizeInValidTrialOneYear();
+		ChartData chartData = chartsService.generateArmChart(validTrial);
+		assertEquals(2, chartData.getData().size());
+		assertEquals(120.0, chartData.getData().get(0)[0]
+				+ chartData.getData().get(1)[0]);
+		for (int i = 0; i < 4; i++) {
+			TrialSubject subject = new TrialSubject();
+			subject.setIdentification("later" + i);
+			subject.setTrialSite(validTrial.getLeadingSite());
+			validTrial = trialService.randomize(validTrial, subject);
+		}
+		chartData = chartsService.generateArmChart(validTrial);
+		assertEquals(124.0, chartData.getData().get(0)[0]
+				+ chartData.getData().get(1)[0]);
+	}
+
+	@Test
+	public void testGenerateArmChartCountsSubjectsAddedElsewhere() throws IllegalArgumentException, TrialStateException {
+		randomizeInValidTrialOneYear();
+		ChartData chartData = chartsService.generateArmChart(validTrial);
+		assertEquals(120.0, chartData.getData().get(0)[0]
+				+ chartData.getData().get(1)[0]);
+		// a subject, which is not added by the trial service
+		TrialSubject subject = new TrialSubject();
+		subject.setIdentification("elsewhere");
+		subject.setRandNumber("elsewhere");
+		subject.setTrialSite(entityManager.find(TrialSite.class, validTrial
+				.getLeadingSite().getId()));
+		subject.setArm(entityManager.find(TreatmentArm.class, validTrial
+				.getTreatmentArms().iterator().next().getId()));
+		entityManager.persist(subject);
+		entityManager.flush();
+		chartData = chartsService.generateArmChart(validTrial);
+		assertEquals(121.0, chartData.getData().get(0)[0]
+				+ chartData.getData().get(1)[0]);
 	}
 
 }
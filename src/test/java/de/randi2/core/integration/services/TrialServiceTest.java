@@ -143,6 +143,48 @@ public class TrialServiceTest extends AbstractServiceTest{
 		assertEquals(100, dbTrial.getSubjects().size());
 	}
 	
+	@Test
+	public void testGetSubjectsPaged() throws IllegalArgumentException, TrialStateException{
+		TreatmentArm arm1 = new TreatmentArm();
+		arm1.setPlannedSubjects(50);
+		arm1.setName("arm1");
+		arm1.setTrial(validTrial);
+		TreatmentArm arm2 = new TreatmentArm();
+		arm2.setPlannedSubjects(50);
+		arm2.setName("arm2");
+		arm2.setTrial(validTrial);
+		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
+		arms.add(arm1);
+		arms.add(arm2);
+		service.create(validTrial);
+		validTrial.setTreatmentArms(arms);
+		validTrial.setRandomizationConfiguration(new CompleteRandomizationConfig());
+		validTrial = service.update(validTrial);
+		validTrial.setStatus(TrialStatus.ACTIVE);
+		validTrial = service.update(validTrial);
+		authenticatAsInvestigator();
+		for(int i=0;i<100;i++){
+			TrialSubject subject = new TrialSubject();
+			 subject.setIdentification("identification" + i);
+			 subject.setTrialSite(validTrial.getLeadingSite());
+			service.randomize(validTrial,subject );
+		}
+		
+		Trial dbTrial = service.getObject(validTrial.getId());
+		assertEquals(100, dbTrial.getTotalSubjectAmount());
+		assertEquals(100, service.countSubjects(dbTrial));
+		List<TreatmentArm> armsDB = new ArrayList<TreatmentArm>(dbTrial.getTreatmentArms());
+		assertEquals(100, armsDB.get(0).getCurrentSubjectsAmount() + armsDB.get(1).getCurrentSubjectsAmount());
+		List<TrialSubject> page = service.getSubjects(dbTrial, 0, 30);
+		assertEquals(30, page.size());
+		for(int i=0;i<page.size();i++){
+			assertEquals(i + 1, page.get(i).getCounter());
+		}
+		page = service.getSubjects(dbTrial, 90, 30);
+		assertEquals(10, page.size());
+		assertEquals(91, page.get(0).getCounter());
+	}
+	
 	@Test
 	public void testRandomizeBlock() throws IllegalArgumentException, TrialStateException{
 		int blocksize = 4;
@@ -279,6 +279,8 @@ public class TreatmentArmTest extends AbstractDomainTest<TreatmentArm> {
 				assertTrue(map.get(key));
 			} else if (key.equals("subjects")) {
 				assertFalse(map.get(key));
+			} else if (key.equals("subjectsCount")) {
+				assertFalse(map.get(key));
 			} else if (key.equals("serialVersionUID")) {
 				assertFalse(map.get(key));
 			} else if (key.equals("$VRc")) {
@@ -289,6 +289,33 @@ public class TrialSubjectTest extends AbstractDomainTest<TrialSubject> {
 		}
 	}
 	
+	@Test
+	public void testStratumCache() throws ContraintViolatedException {
+		TrialSubject subject = new TrialSubject();
+		Set<SubjectProperty<?>> properties = new HashSet<SubjectProperty<?>>();
+		SubjectProperty<String> p1 = getEmptyDichotomProperty1();
+		p1.setValue("option1");
+		properties.add(p1);
+		subject.setProperties(properties);
+		String stratum = subject.getStratum();
+		assertSame(stratum, subject.getStratum());
+
+		p1.setValue("option2");
+		assertFalse(stratum.equals(subject.getStratum()));
+		p1.setValue("option1");
+		assertEquals(stratum, subject.getStratum());
+
+		SubjectProperty<String> p2 = getEmptyDichotomProperty2();
+		p2.setValue("option1");
+		subject.getProperties().add(p2);
+		assertFalse(stratum.equals(subject.getStratum()));
+		subject.getProperties().remove(p2);
+		assertEquals(stratum, subject.getStratum());
+
+		subject.setProperties(null);
+		assertEquals("", subject.getStratum());
+	}
+
 	@Test
 	public void testGetRequieredFields(){
 		Map<String, Boolean> map = (new TrialSubject()).getRequiredFields();
@@ -300,6 +327,7 @@ public class TrialSubjectTest extends AbstractDomainTest<TrialSubject> {
 			else if(key.equals("arm")) {assertTrue(map.get(key));} 
 			else if(key.equals("properties")) {assertFalse(map.get(key)); }
 			else if(key.equals("investigator")) {assertFalse(map.get(key));} 
+			else if(key.equals("stratumCache")) {assertFalse(map.get(key));}
 			else if(key.equals("serialVersionUID")) {assertFalse(map.get(key));}
 			else if(key.equals("$VRc")) {assertFalse(map.get(key));}
 			else fail(key + " not checked");
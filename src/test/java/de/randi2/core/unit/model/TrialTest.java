@@ -568,6 +568,8 @@ public class TrialTest extends AbstractDomainTest<Trial> {
 				assertFalse(map.get(key));
 			} else if (key.equals("serialVersionUID")) {
 				assertFalse(map.get(key));
+			} else if (key.equals("subjectsCount")) {
+				assertFalse(map.get(key));
 			} else if (key.equals("SUBJECT_COUNT_COMPERATOR")) {
 				assertFalse(map.get(key));
 			}else if (key.equals("$VRc")) {
@@ -619,7 +621,6 @@ public class TrialTest extends AbstractDomainTest<Trial> {
 		arm1.setPlannedSubjects(100);
 		TreatmentArm arm2 = new TreatmentArm();
 		arm2.setName("arm2");
-		arm2.setTrial(validTrial);
 		arm2.setPlannedSubjects(100);
 		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
 		arms.add(arm1);
@@ -644,7 +645,6 @@ public class TrialTest extends AbstractDomainTest<Trial> {
 		arm1.setPlannedSubjects(100);
 		TreatmentArm arm2 = new TreatmentArm();
 		arm2.setName("arm2");
-		arm2.setTrial(validTrial);
 		arm2.setPlannedSubjects(100);
 		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
 		arms.add(arm1);
@@ -660,6 +660,34 @@ public class TrialTest extends AbstractDomainTest<Trial> {
 		}
 	}
 
+	@Test
+	public void testTotalSubjectAmountWithChangedSubjects() {
+		TreatmentArm arm1 = new TreatmentArm();
+		arm1.setName("arm1");
+		arm1.setTrial(validTrial);
+		arm1.setPlannedSubjects(100);
+		TreatmentArm arm2 = new TreatmentArm();
+		arm2.setName("arm2");
+		arm2.setPlannedSubjects(100);
+		arm2.addSubject(new TrialSubject());
+		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
+		arms.add(arm1);
+		arms.add(arm2);
+		validTrial.setTreatmentArms(arms);
+		assertEquals(1, validTrial.getTotalSubjectAmount());
+		List<TrialSubject> subjects = new ArrayList<TrialSubject>();
+		subjects.add(new TrialSubject());
+		subjects.add(new TrialSubject());
+		arm1.setSubjects(subjects);
+		assertEquals(3, validTrial.getTotalSubjectAmount());
+		arm1.clearSubjects();
+		assertEquals(0, arm1.getCurrentSubjectsAmount());
+		assertEquals(1, validTrial.getTotalSubjectAmount());
+		arm2.setSubjects(null);
+		assertEquals(0, validTrial.getTotalSubjectAmount());
+		assertTrue(validTrial.isFresh());
+	}
+
 	@Test
 	public void testPlannedSubjectAmount() {
 		TreatmentArm arm1 = new TreatmentArm();
@@ -668,7 +696,6 @@ public class TrialTest extends AbstractDomainTest<Trial> {
 		arm1.setPlannedSubjects(100);
 		TreatmentArm arm2 = new TreatmentArm();
 		arm2.setName("arm2");
-		arm2.setTrial(validTrial);
 		arm2.setPlannedSubjects(100);
 		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
 		arms.add(arm1);
@@ -692,7 +719,6 @@ public class TrialTest extends AbstractDomainTest<Trial> {
 		arm1.setPlannedSubjects(100);
 		TreatmentArm arm2 = new TreatmentArm();
 		arm2.setName("arm2");
-		arm2.setTrial(validTrial);
 		arm2.setPlannedSubjects(100);
 		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
 		arms.add(arm1);
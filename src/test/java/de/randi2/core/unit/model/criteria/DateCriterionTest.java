@@ -90,6 +90,40 @@ public class DateCriterionTest extends AbstractDomainTest<DateCriterion>{
 	}
 	
 	
+	@Test
+	public void testStratificationWithManyStrata() throws ContraintViolatedException {
+		List<DateConstraint> temp = new ArrayList<DateConstraint>();
+		temp.add(new DateConstraint(Arrays.asList(new GregorianCalendar[]{new GregorianCalendar(2000,0,1), new GregorianCalendar(2000,11,31)})));
+		temp.add(new DateConstraint(Arrays.asList(new GregorianCalendar[]{null, new GregorianCalendar(1990,0,1)})));
+		temp.add(new DateConstraint(Arrays.asList(new GregorianCalendar[]{new GregorianCalendar(2010,0,1)})));
+		temp.add(new DateConstraint(Arrays.asList(new GregorianCalendar[]{new GregorianCalendar(1995,0,1), new GregorianCalendar(1999,11,31)})));
+		criterion.setStrata(temp);
+
+		assertEquals(temp.get(1), criterion.stratify(new GregorianCalendar(1900,0,1)));
+		assertEquals(temp.get(1), criterion.stratify(new GregorianCalendar(1990,0,1)));
+		assertEquals(temp.get(3), criterion.stratify(new GregorianCalendar(1995,0,1)));
+		assertEquals(temp.get(3), criterion.stratify(new GregorianCalendar(1999,11,31)));
+		assertEquals(temp.get(0), criterion.stratify(new GregorianCalendar(2000,0,1)));
+		assertEquals(temp.get(0), criterion.stratify(new GregorianCalendar(2000,5,15)));
+		assertEquals(temp.get(0), criterion.stratify(new GregorianCalendar(2000,11,31)));
+		assertEquals(temp.get(2), criterion.stratify(new GregorianCalendar(2010,0,1)));
+		assertEquals(temp.get(2), criterion.stratify(new GregorianCalendar(2050,0,1)));
+		for (GregorianCalendar date : new GregorianCalendar[]{new GregorianCalendar(1992,0,1), new GregorianCalendar(2005,0,1)}) {
+			try {
+				criterion.stratify(date);
+				fail("AGAIN -> WRONG!");
+			} catch (ContraintViolatedException e) {
+			}
+		}
+
+		// overlapping strata, the first matching stratum is returned
+		DateConstraint constraint = new DateConstraint(Arrays.asList(new GregorianCalendar[]{new GregorianCalendar(1998,0,1), new GregorianCalendar(2003,0,1)}));
+		criterion.addStrata(constraint);
+		assertEquals(temp.get(0), criterion.stratify(new GregorianCalendar(2000,5,15)));
+		assertEquals(temp.get(3), criterion.stratify(new GregorianCalendar(1998,5,15)));
+		assertEquals(constraint, criterion.stratify(new GregorianCalendar(2002,0,1)));
+	}
+
 	@Test
 	public void testDescriptionNull(){
 		criterion.setDescription(null);
@@ -133,6 +133,38 @@ private OrdinalCriterion criterion;
 
 	}
 	
+	@Test
+	public void testStratificationWithChangedStrata() throws ContraintViolatedException {
+		ArrayList<OrdinalConstraint> temp = new ArrayList<OrdinalConstraint>();
+		temp.add(new OrdinalConstraint(Arrays.asList(new String[]{"Value1", "Value2"})));
+		temp.add(new OrdinalConstraint(Arrays.asList(new String[]{"Value2", "Value3"})));
+		criterion.setStrata(temp);
+
+		// the first matching stratum
+		assertEquals(temp.get(0), criterion.stratify("Value1"));
+		assertEquals(temp.get(0), criterion.stratify("Value2"));
+		assertEquals(temp.get(1), criterion.stratify("Value3"));
+		try {
+			criterion.stratify("Value4");
+			fail("AGAIN -> WRONG!");
+		} catch (ContraintViolatedException e) {
+		}
+
+		OrdinalConstraint constraint = new OrdinalConstraint(Arrays.asList(new String[]{"Value4"}));
+		criterion.addStrata(constraint);
+		assertEquals(constraint, criterion.stratify("Value4"));
+
+		temp = new ArrayList<OrdinalConstraint>();
+		temp.add(new OrdinalConstraint(Arrays.asList(new String[]{"Value2", "Value3"})));
+		criterion.setStrata(temp);
+		assertEquals(temp.get(0), criterion.stratify("Value2"));
+		try {
+			criterion.stratify("Value1");
+			fail("AGAIN -> WRONG!");
+		} catch (ContraintViolatedException e) {
+		}
+	}
+
 	@Test
 	public void testDescriptionNull(){
 		criterion.setDescription(null);
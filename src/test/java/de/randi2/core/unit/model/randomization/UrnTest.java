@@ -26,7 +26,7 @@ public class UrnTest extends AbstractDomainTest<Urn> {
 		Urn urn = new Urn();
 		for (int i = 1; i <= 10; i++) {
 			urn.add(new TreatmentArm());
-			assertEquals(i, urn.getUrn().size());
+			assertEquals(i, urn.size());
 		}
 	}
 
@@ -38,10 +38,64 @@ public class UrnTest extends AbstractDomainTest<Urn> {
 		}
 		for (int i = 9; i >= 0; i--) {
 			assertNotNull(urn.drawFromUrn(new Random()));
-			assertEquals(i, urn.getUrn().size());
+			assertEquals(i, urn.size());
 		}
 	}
 
+	@Test
+	public void testAddBallCounts() {
+		Urn urn = new Urn();
+		TreatmentArm arm1 = new TreatmentArm();
+		arm1.setId(1);
+		TreatmentArm arm2 = new TreatmentArm();
+		arm2.setId(2);
+		urn.add(arm1, 3);
+		urn.add(arm2);
+		urn.add(arm1, 2);
+		assertEquals(5, urn.getCount(arm1));
+		assertEquals(1, urn.getCount(arm2));
+		assertEquals(6, urn.size());
+		assertEquals(2, urn.getBalls().size());
+	}
+
+	@Test
+	public void testDrawFromUrnDecrementsTheDrawnArm() {
+		Urn urn = new Urn();
+		TreatmentArm arm1 = new TreatmentArm();
+		arm1.setId(1);
+		TreatmentArm arm2 = new TreatmentArm();
+		arm2.setId(2);
+		urn.add(arm1, 4);
+		urn.add(arm2, 4);
+		Random rand = new Random(42);
+		int drawn1 = 0;
+		for (int i = 0; i < 8; i++) {
+			if (urn.drawFromUrn(rand).equals(arm1)) {
+				drawn1++;
+			}
+			assertEquals(4 - drawn1, urn.getCount(arm1));
+			assertEquals(4 - (i + 1 - drawn1), urn.getCount(arm2));
+		}
+		assertEquals(4, drawn1);
+		assertEquals(0, urn.size());
+	}
+
+	@Test
+	public void testAddToOtherArms() {
+		Urn urn = new Urn();
+		TreatmentArm[] arms = new TreatmentArm[3];
+		for (int i = 0; i < arms.length; i++) {
+			arms[i] = new TreatmentArm();
+			arms[i].setId(i + 1);
+			urn.add(arms[i], 2);
+		}
+		urn.addToOtherArms(arms[1], 3);
+		assertEquals(5, urn.getCount(arms[0]));
+		assertEquals(2, urn.getCount(arms[1]));
+		assertEquals(5, urn.getCount(arms[2]));
+		assertEquals(12, urn.size());
+	}
+
 	@Test
 	public void testGenerateUrn() {
 		UrnDesignConfig conf = new UrnDesignConfig();
@@ -59,7 +113,7 @@ public class UrnTest extends AbstractDomainTest<Urn> {
 		trial.setTreatmentArms(arms);
 		for(int i=1;i<10;i++){
 			conf.setInitializeCountBalls(i);
-			assertEquals(i*2, Urn.generate(conf).getUrn().size());	
+			assertEquals(i*2, Urn.generate(conf).size());	
 		}
 		
 	}
@@ -151,6 +151,56 @@ public class AclHibernateTest {
 
 	}
 	
+	@Test
+	public void testIsGrantedFirstAceDecides() {
+		SidHibernate other = new SidHibernate("other");
+		AccessControlEntryHibernate ace = new AccessControlEntryHibernate();
+		ace.setAcl(acl);
+		ace.setGranting(false);
+		ace.setPermission(PermissionHibernate.WRITE);
+		ace.setSid(acl.getOwner());
+		acl.getAces().add(ace);
+		acl.insertAce(PermissionHibernate.WRITE, "ROLE_WRITE");
+		ace = new AccessControlEntryHibernate();
+		ace.setAcl(acl);
+		ace.setPermission(PermissionHibernate.WRITE);
+		ace.setSid(other);
+		acl.getAces().add(ace);
+
+		// the first ace of the owner rejects, the other sid is not checked
+		assertFalse(acl.isGranted(permissionsOf(PermissionHibernate.WRITE), sidsOf(acl.getOwner(), other), false));
+		assertTrue(acl.isGranted(permissionsOf(PermissionHibernate.WRITE), sidsOf(other, acl.getOwner()), false));
+
+		// a later granted permission wins over the rejection
+		acl.insertAce(PermissionHibernate.READ, "ROLE_READ");
+		assertTrue(acl.isGranted(permissionsOf(PermissionHibernate.WRITE, PermissionHibernate.READ), sidsOf(acl.getOwner()), false));
+
+		// the parent decides if no ace matches
+		AclHibernate parent = new AclHibernate();
+		parent.setOwner(other);
+		parent.insertAce(PermissionHibernate.DELETE, null);
+		acl.setParentAcl(parent);
+		assertTrue(acl.isGranted(permissionsOf(PermissionHibernate.DELETE), sidsOf(other), false));
+		acl.setEntriesInheriting(false);
+		try {
+			acl.isGranted(permissionsOf(PermissionHibernate.DELETE), sidsOf(other), false);
+			fail("Acl should throw a exception");
+		} catch (NotFoundException e) {
+		}
+	}
+
+	@Test
+	public void testIsGrantedCombinedMask() {
+		PermissionHibernate readWrite = new PermissionHibernate(PermissionHibernate.READ.getMask() | PermissionHibernate.WRITE.getMask(), 'X');
+		acl.insertAce(readWrite, null);
+		assertTrue(acl.isGranted(permissionsOf(readWrite), sidsOf(acl.getOwner()), false));
+		try {
+			acl.isGranted(permissionsOf(PermissionHibernate.READ), sidsOf(acl.getOwner()), false);
+			fail("Acl should throw a exception");
+		} catch (NotFoundException e) {
+		}
+	}
+
 	@Test
 	public void testEntriesInheriting(){
 		assertTrue(acl.isEntriesInheriting());
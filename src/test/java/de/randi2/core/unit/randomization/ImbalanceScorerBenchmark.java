@@ -0,0 +1,112 @@
+package de.randi2.core.unit.randomization;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.randi2.model.randomization.MinimizationConfig.ImbalanceFunction;
+import de.randi2.randomization.AbstractImbalanceScorer;
+import de.randi2.randomization.MarginalBalanceScorer;
+
+/**
+ * Compares the cost of the imbalance scores per randomization: every
+ * randomization scores all arms over the relevant factor levels, takes the arm
+ * with the minimal score and counts the subject. The pairwise marginal
+ * balance is the formula of the former implementation. Not a unit test, run
+ * the main method.
+ */
+public class ImbalanceScorerBenchmark {
+
+	private static final int FACTORS = 4;
+	private static final int LEVELS_PER_FACTOR = 3;
+	private static final int RANDOMIZATIONS = 200000;
+
+	public static void main(String[] args) {
+		for (int arms : new int[] { 2, 4, 8, 16 }) {
+			int[] planned = new int[arms];
+			for (int i = 0; i < arms; i++) {
+				planned[i] = 10 * (1 + i % 3);
+			}
+			// warm up and measure
+			for (int round = 0; round < 2; round++) {
+				StringBuffer line = new StringBuffer("arms " + arms + ":");
+				line.append(" pairwise ").append(pairwise(planned));
+				for (ImbalanceFunction function : ImbalanceFunction.values()) {
+					line.append(", ").append(function).append(" ").append(
+							scorer(function, planned));
+				}
+				if (round == 1) {
+					System.out.println(line + " ns per randomization");
+				}
+			}
+		}
+	}
+
+	private static long scorer(ImbalanceFunction function, int[] planned) {
+		AbstractImbalanceScorer scorer = AbstractImbalanceScorer.create(
+				function, planned);
+		int[][] counts = new int[FACTORS * LEVELS_PER_FACTOR][planned.length];
+		int[] levels = new int[FACTORS];
+		double[] scores = new double[planned.length];
+		Random random = new Random(1);
+		long start = System.nanoTime();
+		for (int i = 0; i < RANDOMIZATIONS; i++) {
+			nextLevels(levels, random);
+			Arrays.fill(scores, 0.0);
+			for (int level : levels) {
+				scorer.addScores(counts[level], 1.0, scores);
+			}
+			count(counts, levels, minimum(scores));
+		}
+		return (System.nanoTime() - start) / RANDOMIZATIONS;
+	}
+
+	private static long pairwise(int[] planned) {
+		int[][] counts = new int[FACTORS * LEVELS_PER_FACTOR][planned.length];
+		int[] levels = new int[FACTORS];
+		double[] scores = new double[planned.length];
+		double[] adjustedCounts = new double[planned.length];
+		Random random = new Random(1);
+		long start = System.nanoTime();
+		for (int i = 0; i < RANDOMIZATIONS; i++) {
+			nextLevels(levels, random);
+			Arrays.fill(scores, 0.0);
+			for (int l : levels) {
+				int[] level = counts[l];
+				for (int arm = 0; arm < planned.length; arm++) {
+					for (int j = 0; j < planned.length; j++) {
+						adjustedCounts[j] = (j == arm ? level[j] + 1.0
+								: level[j])
+								/ planned[j];
+					}
+					scores[arm] += MarginalBalanceScorer
+							.marginalBalance(adjustedCounts);
+				}
+			}
+			count(counts, levels, minimum(scores));
+		}
+		return (System.nanoTime() - start) / RANDOMIZATIONS;
+	}
+
+	private static void nextLevels(int[] levels, Random random) {
+		for (int f = 0; f < levels.length; f++) {
+			levels[f] = f * LEVELS_PER_FACTOR
+					+ random.nextInt(LEVELS_PER_FACTOR);
+		}
+	}
+
+	private static int minimum(double[] scores) {
+		int minimum = 0;
+		for (int arm = 1; arm < scores.length; arm++) {
+			if (scores[arm] < scores[minimum]) {
+				minimum = arm;
+			}
+		}
+		return minimum;
+	}
+
+	private static void count(int[][] counts, int[] levels, int arm) {
+		for (int level : levels) {
+			counts[level][arm]++;
+		}
+	}
+}
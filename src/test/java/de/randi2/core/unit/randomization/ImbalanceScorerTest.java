@@ -0,0 +1,163 @@
+package de.randi2.core.unit.randomization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.randi2.model.randomization.MinimizationConfig.ImbalanceFunction;
+import de.randi2.randomization.AbstractImbalanceScorer;
+import de.randi2.randomization.MarginalBalanceScorer;
+import de.randi2.randomization.RangeScorer;
+import de.randi2.randomization.StandardDeviationScorer;
+
+public class ImbalanceScorerTest {
+
+	private static final int[][] PLANNED_SUBJECTS = { { 1 }, { 1, 1 },
+			{ 10, 20, 30 }, { 2, 4, 3 }, { 5, 5, 10, 20 },
+			{ 30, 60, 90, 30, 60, 90, 45, 15 } };
+
+	private final Random random = new Random(1);
+
+	@Test
+	public void testCreate() {
+		int[] planned = { 1, 2 };
+		assertEquals(MarginalBalanceScorer.class, AbstractImbalanceScorer
+				.create(null, planned).getClass());
+		assertEquals(MarginalBalanceScorer.class, AbstractImbalanceScorer
+				.create(ImbalanceFunction.MARGINAL_BALANCE, planned)
+				.getClass());
+		assertEquals(RangeScorer.class, AbstractImbalanceScorer.create(
+				ImbalanceFunction.RANGE, planned).getClass());
+		assertEquals(StandardDeviationScorer.class, AbstractImbalanceScorer
+				.create(ImbalanceFunction.STANDARD_DEVIATION, planned)
+				.getClass());
+	}
+
+	@Test
+	public void testRange() {
+		for (int[] planned : PLANNED_SUBJECTS) {
+			testScores(ImbalanceFunction.RANGE, planned, 0.0);
+			testPreferredArms(ImbalanceFunction.RANGE, planned);
+		}
+	}
+
+	@Test
+	public void testStandardDeviation() {
+		for (int[] planned : PLANNED_SUBJECTS) {
+			testScores(ImbalanceFunction.STANDARD_DEVIATION, planned,
+					StandardDeviationScorer.TIE_TOLERANCE / 10);
+			testPreferredArms(ImbalanceFunction.STANDARD_DEVIATION, planned);
+		}
+	}
+
+	@Test
+	public void testWeightedMarginalBalance() {
+		for (int[] planned : PLANNED_SUBJECTS) {
+			if (planned.length > 1) {
+				testScores(ImbalanceFunction.MARGINAL_BALANCE, planned,
+						MarginalBalanceScorer.TIE_TOLERANCE / 1000);
+				testPreferredArms(ImbalanceFunction.MARGINAL_BALANCE, planned);
+			}
+		}
+	}
+
+	private void testPreferredArms(ImbalanceFunction function, int[] planned) {
+		AbstractImbalanceScorer scorer = AbstractImbalanceScorer.create(
+				function, planned);
+		int[] candidates = new int[planned.length];
+		for (int run = 0; run < 5000; run++) {
+			int levels = 1 + random.nextInt(4);
+			int[][] counts = new int[levels][];
+			double[] weights = new double[levels];
+			double[] scores = new double[planned.length];
+			for (int level = 0; level < levels; level++) {
+				counts[level] = randomCounts(planned.length);
+				weights[level] = 1 + random.nextInt(3);
+				scorer.addScores(counts[level], weights[level], scores);
+			}
+			boolean[] expected = preferredArms(scorer, counts, weights,
+					planned, planned.length, null);
+			int candidateCount = scorer.nearMinimum(scores, candidates);
+			boolean[] actual = preferredArms(scorer, counts, weights,
+					planned, candidateCount, candidates);
+			for (int arm = 0; arm < planned.length; arm++) {
+				assertEquals(expected[arm], actual[arm]);
+			}
+		}
+	}
+
+	private static boolean[] preferredArms(AbstractImbalanceScorer scorer,
+			int[][] counts, double[] weights, int[] planned, int to,
+			int[] candidates) {
+		boolean[] preferred = new boolean[planned.length];
+		double minimum = Double.MAX_VALUE;
+		for (int c = 0; c < to; c++) {
+			int arm = candidates == null ? c : candidates[c];
+			double score = 0.0;
+			for (int level = 0; level < counts.length; level++) {
+				score += weights[level]
+						* scorer.imbalance(adjustedCounts(counts[level],
+								planned, arm));
+			}
+			if (score < minimum) {
+				Arrays.fill(preferred, false);
+				minimum = score;
+				preferred[arm] = true;
+			} else if (score == minimum) {
+				preferred[arm] = true;
+			}
+		}
+		return preferred;
+	}
+
+	private int[] randomCounts(int arms) {
+		int[] counts = new int[arms];
+		int max = 1 + random.nextInt(20);
+		for (int i = 0; i < arms; i++) {
+			counts[i] = random.nextInt(max);
+		}
+		return counts;
+	}
+
+	private static double[] adjustedCounts(int[] counts, int[] planned,
+			int arm) {
+		double[] adjustedCounts = new double[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			adjustedCounts[i] = (i == arm ? counts[i] + 1.0 : counts[i])
+					/ planned[i];
+		}
+		return adjustedCounts;
+	}
+
+	private void testScores(ImbalanceFunction function, int[] planned,
+			double delta) {
+		AbstractImbalanceScorer scorer = AbstractImbalanceScorer.create(
+				function, planned);
+		for (int run = 0; run < 2000; run++) {
+			int[] counts = randomCounts(planned.length);
+			double weight = 0.5 + random.nextInt(4);
+			double[] scores = new double[planned.length];
+			scorer.addScores(counts, weight, scores);
+			for (int arm = 0; arm < planned.length; arm++) {
+				assertEquals(weight
+						* direct(function, adjustedCounts(counts, planned,
+								arm)), scores[arm], delta);
+			}
+		}
+	}
+
+	private static double direct(ImbalanceFunction function,
+			double[] adjustedCounts) {
+		switch (function) {
+		case RANGE:
+			return RangeScorer.range(adjustedCounts);
+		case STANDARD_DEVIATION:
+			return StandardDeviationScorer.standardDeviation(adjustedCounts);
+		default:
+			return MarginalBalanceScorer.marginalBalance(adjustedCounts);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package de.randi2.core.unit.randomization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.randi2.randomization.MarginalBalanceScorer;
+
+public class MarginalBalanceScorerTest {
+
+	private static final int[][] PLANNED_SUBJECTS = { { 1, 1 },
+			{ 10, 20, 30 }, { 10, 10, 10 }, { 2, 4, 3 }, { 5, 5, 10, 20 },
+			{ 7, 7, 7, 7, 7, 7 }, { 30, 60, 90, 30, 60, 90, 45, 15 } };
+
+	private final Random random = new Random(1);
+
+	@Test
+	public void testScoresMatchPairwiseFormula() {
+		for (int[] planned : PLANNED_SUBJECTS) {
+			MarginalBalanceScorer scorer = new MarginalBalanceScorer(planned);
+			for (int run = 0; run < 2000; run++) {
+				int[] counts = randomCounts(planned.length);
+				double[] scores = new double[planned.length];
+				scorer.addScores(counts, 1.0, scores);
+				for (int arm = 0; arm < planned.length; arm++) {
+					assertEquals(pairwise(counts, planned, arm), scores[arm],
+							1e-12);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPreferredArmsMatchPairwiseFormula() {
+		for (int[] planned : PLANNED_SUBJECTS) {
+			MarginalBalanceScorer scorer = new MarginalBalanceScorer(planned);
+			int[] candidates = new int[planned.length];
+			for (int run = 0; run < 20000; run++) {
+				int levels = 1 + random.nextInt(4);
+				int[][] counts = new int[levels][];
+				double[] scores = new double[planned.length];
+				for (int level = 0; level < levels; level++) {
+					counts[level] = randomCounts(planned.length);
+					scorer.addScores(counts[level], 1.0, scores);
+				}
+				// the arms with the minimal score of the pairwise formula
+				boolean[] expected = preferredArms(counts, planned, 0,
+						planned.length, null);
+				int candidateCount = scorer.nearMinimum(scores, candidates);
+				boolean[] actual = preferredArms(counts, planned, 0,
+						candidateCount, candidates);
+				for (int arm = 0; arm < planned.length; arm++) {
+					assertEquals(expected[arm], actual[arm]);
+				}
+			}
+		}
+	}
+
+	private int[] randomCounts(int arms) {
+		int[] counts = new int[arms];
+		int max = 1 + random.nextInt(20);
+		for (int i = 0; i < arms; i++) {
+			counts[i] = random.nextInt(max);
+		}
+		return counts;
+	}
+
+	private static boolean[] preferredArms(int[][] counts, int[] planned,
+			int from, int to, int[] candidates) {
+		boolean[] preferred = new boolean[planned.length];
+		double minimum = Double.MAX_VALUE;
+		for (int c = from; c < to; c++) {
+			int arm = candidates == null ? c : candidates[c];
+			double score = 0.0;
+			for (int[] level : counts) {
+				score += pairwise(level, planned, arm);
+			}
+			if (score < minimum) {
+				Arrays.fill(preferred, false);
+				minimum = score;
+				preferred[arm] = true;
+			} else if (score == minimum) {
+				preferred[arm] = true;
+			}
+		}
+		return preferred;
+	}
+
+	private static double pairwise(int[] counts, int[] planned, int arm) {
+		double[] adjustedCounts = new double[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			adjustedCounts[i] = (i == arm ? counts[i] + 1.0 : counts[i])
+					/ planned[i];
+		}
+		return MarginalBalanceScorer.marginalBalance(adjustedCounts);
+	}
+}
@@ -21,6 +21,7 @@ import org.junit.Test;
 import de.randi2.model.SubjectProperty;
 import de.randi2.model.TreatmentArm;
 import de.randi2.model.Trial;
+import de.randi2.model.TrialSite;
 import de.randi2.model.TrialSubject;
 import de.randi2.model.criteria.DichotomousCriterion;
 import de.randi2.model.criteria.OrdinalCriterion;
@@ -449,6 +450,140 @@ public class MinimizationTest {
 		testSumEquals1(internalCalculatedProbabilities);
 	}
 
+	/*
+	 * The allocation sequences below were recorded with the former
+	 * implementation of the minimization, a change of the allocation fails
+	 * these tests.
+	 */
+
+	@Test
+	public void testAllocationSequenceBiasedCoinStratified()
+			throws ContraintViolatedException {
+		assertEquals(
+				arms("321122233333131232233213331223332321233332322333112331222333"),
+				allocationSequence(true, true, true, 11, 60, 10, 20, 30));
+	}
+
+	@Test
+	public void testAllocationSequenceBiasedCoinTies()
+			throws ContraintViolatedException {
+		assertEquals(
+				arms("322412124431343141132123434124334214321324433242133422433411"),
+				allocationSequence(true, true, false, 12, 60, 15, 15, 15, 15));
+	}
+
+	@Test
+	public void testAllocationSequenceBiasedCoinFiveArms()
+			throws ContraintViolatedException {
+		assertEquals(
+				arms("4225425114352443455241413341424422554123444232442235552144122443135424425444213541244454332425145244"),
+				allocationSequence(true, false, true, 13, 100, 12, 24, 12, 36,
+						16));
+	}
+
+	/**
+	 * The constraint M of SEX follows the constraint 2,3 of STAGE in the hash
+	 * map of the algorithm, the imbalance of equal arms is summed up in this
+	 * order and not in the order of the criteria.
+	 */
+	@Test
+	public void testAllocationSequenceStratifiedHashOrder()
+			throws ContraintViolatedException {
+		assertEquals(
+				arms("333111222311232213233112212133123322131133212"),
+				allocationSequence(true, true, true, 4, 45, 15, 15, 15));
+	}
+
+	@Test
+	public void testAllocationSequenceNaiveWithRandomizedSubjects()
+			throws ContraintViolatedException {
+		assertEquals(
+				arms("112222233132312211222123212232221212221333211122111312222231"),
+				allocationSequence(false, true, true, 14, 60, 20, 30, 10));
+	}
+
+	/**
+	 * Randomizes the subjects with a seeded minimization and returns the
+	 * names of the assigned arms. The trial sites and the subject properties
+	 * are drawn from seeded distributions.
+	 */
+	private List<String> allocationSequence(boolean biasedCoin,
+			boolean stratifyTrialSite, boolean withCriteria, long seed,
+			int subjects, int... plannedSubjects)
+			throws ContraintViolatedException {
+		RandomizationHelper.addArms(trial, plannedSubjects);
+		List<DistributionSubjectProperty> dProperties = new ArrayList<DistributionSubjectProperty>();
+		if (withCriteria) {
+			DichotomousCriterion cr1 = new DichotomousCriterion();
+			cr1.setName("SEX");
+			cr1.setOption1("M");
+			cr1.setOption2("F");
+			cr1.setId(nextId());
+			cr1.addStrata(new DichotomousConstraint(Arrays
+					.asList(new String[] { "M" })));
+			cr1.addStrata(new DichotomousConstraint(Arrays
+					.asList(new String[] { "F" })));
+			OrdinalCriterion cr2 = new OrdinalCriterion();
+			cr2.setName("STAGE");
+			cr2.setElements(new ArrayList<String>(Arrays.asList(new String[] {
+					"1", "2", "3", "4" })));
+			cr2.setId(nextId());
+			cr2.addStrata(new OrdinalConstraint(Arrays
+					.asList(new String[] { "1" })));
+			cr2.addStrata(new OrdinalConstraint(Arrays.asList(new String[] {
+					"2", "3" })));
+			cr2.addStrata(new OrdinalConstraint(Arrays
+					.asList(new String[] { "4" })));
+			for (DichotomousConstraint cc : cr1.getStrata())
+				cc.setId(nextId());
+			for (OrdinalConstraint cc : cr2.getStrata())
+				cc.setId(nextId());
+			trial.addCriterion(cr1);
+			trial.addCriterion(cr2);
+			dProperties.add(new DistributionSubjectProperty(cr1,
+					new UniformDistribution<String>(cr1.getConfiguredValues(),
+							seed + 1)));
+			dProperties.add(new DistributionSubjectProperty(cr2,
+					new UniformDistribution<String>(cr2.getConfiguredValues(),
+							seed + 2)));
+		}
+		List<TrialSite> sites = new ArrayList<TrialSite>();
+		for (int i = 0; i < 3; i++) {
+			TrialSite site = new TrialSite();
+			site.setId(nextId());
+			site.setName("site" + i);
+			sites.add(site);
+		}
+		trial.setStratifyTrialSite(stratifyTrialSite);
+		UniformDistribution<TrialSite> siteDistribution = new UniformDistribution<TrialSite>(
+				sites, seed + 3);
+		conf = new MinimizationConfig(seed);
+		conf.setWithRandomizedSubjects(!biasedCoin);
+		conf.setBiasedCoinMinimization(biasedCoin);
+		conf.setP(0.8);
+		trial.setRandomizationConfiguration(conf);
+		List<String> sequence = new ArrayList<String>();
+		for (int i = 0; i < subjects; i++) {
+			TrialSubject subject = generateTrialSubject(dProperties,
+					new TrialSubject());
+			subject.setTrialSite(siteDistribution.getNextValue());
+			randomize(trial, subject);
+			sequence.add(subject.getArm().getName());
+		}
+		return sequence;
+	}
+
+	/**
+	 * Returns the names of the arms with the numbers of the digits.
+	 */
+	private static List<String> arms(String digits) {
+		List<String> names = new ArrayList<String>();
+		for (char digit : digits.toCharArray()) {
+			names.add("dummy:" + digit);
+		}
+		return names;
+	}
+
 	private void testSumEquals1(
 			Map<TreatmentArm, MinimizationMapElementWrapper> internalCalculatedProbabilities) {
 		DecimalFormat df = new DecimalFormat("#0.0000000000");
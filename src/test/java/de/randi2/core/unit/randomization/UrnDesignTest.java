@@ -6,7 +6,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -85,22 +87,74 @@ public class UrnDesignTest {
 		assertEquals(100, trial.getSubjects().size());
 	}
 	
+	@Test
+	public void testFourArmAllocations() {
+		int replacedBalls = 3;
+		int initializeCount = 2;
+		RandomizationHelper.addArms(trial, 20, 20, 20, 20);
+		conf.setCountReplacedBalls(replacedBalls);
+		conf.setInitializeCountBalls(initializeCount);
+		s = new TrialSubject();
+		List<TreatmentArm> arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
+		int[] countBalls = new int[arms.size()];
+		for (int arm = 0; arm < arms.size(); arm++) {
+			countBalls[arm] = initializeCount;
+		}
+		for (int i : upto(80)) {
+			randomize(trial, s);
+			for (int arm = 0; arm < arms.size(); arm++) {
+				if (s.getArm().equals(arms.get(arm))) {
+					countBalls[arm]--;
+				} else {
+					countBalls[arm] += replacedBalls;
+				}
+			}
+			Urn urn = ((UrnDesignTempData) conf.getTempData()).getUrn(s.getStratum());
+			for (int arm = 0; arm < arms.size(); arm++) {
+				assertEquals(countBalls[arm], urn.getCount(arms.get(arm)));
+			}
+		}
+		assertEquals(80, trial.getSubjects().size());
+	}
+
+	@Test
+	public void testArmOrderIndependentOfTheArmSet() {
+		assertEquals(seededAllocations(1, 2, 3), seededAllocations(3, 1, 2));
+	}
+
+	private List<String> seededAllocations(int... armIds) {
+		Trial seededTrial = new Trial();
+		UrnDesignConfig seededConf = new UrnDesignConfig(4711);
+		seededConf.setCountReplacedBalls(2);
+		seededConf.setInitializeCountBalls(1);
+		seededTrial.setRandomizationConfiguration(seededConf);
+		Set<TreatmentArm> arms = new LinkedHashSet<TreatmentArm>();
+		for (int id : armIds) {
+			TreatmentArm arm = new TreatmentArm();
+			arm.setId(id);
+			arm.setName("dummy:" + id);
+			arm.setPlannedSubjects(10);
+			arms.add(arm);
+		}
+		seededTrial.setTreatmentArms(arms);
+		List<String> allocations = new ArrayList<String>();
+		for (int i : upto(30)) {
+			TrialSubject subject = new TrialSubject();
+			randomize(seededTrial, subject);
+			allocations.add(subject.getArm().getName());
+		}
+		return allocations;
+	}
+	
 	private boolean checkUrn(int[] countBalls){
 		String stratum = "";
 		if(trial.isStratifyTrialSite()) stratum = s.getTrialSite().getId() + "";
 		stratum += s.getStratum();
 		Urn urn = ((UrnDesignTempData)conf.getTempData()).getUrn(stratum);
 		int[] count = new int[2];
-		count[0] = 0;
-		count[1] = 0;
 		List<TreatmentArm> arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
-		for(TreatmentArm arm : urn.getUrn()){
-			if(arm.getName().equals(arms.get(0).getName())){
-				count[0]++;
-			}else{
-				count[1]++;
-			}
-		}
+		count[0] = urn.getCount(arms.get(0));
+		count[1] = urn.getCount(arms.get(1));
 		return countBalls[0]==count[0] || countBalls[1]==count[1] ;
 	}
 }
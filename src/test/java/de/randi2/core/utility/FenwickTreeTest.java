@@ -0,0 +1,87 @@
+package de.randi2.core.utility;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.randi2.utility.FenwickTree;
+
+public class FenwickTreeTest {
+
+	private final Random random = new Random(1);
+
+	@Test
+	public void testPrefixSumsAndFind() {
+		for (int size = 1; size <= 17; size++) {
+			FenwickTree tree = new FenwickTree(size);
+			int[] weights = new int[size];
+			for (int run = 0; run < 200; run++) {
+				int index = random.nextInt(size);
+				int delta = random.nextInt(5) - weights[index] / 2;
+				tree.add(index, delta);
+				weights[index] += delta;
+				int sum = 0;
+				for (int i = 0; i < size; i++) {
+					assertEquals(sum, tree.prefixSum(i));
+					assertEquals(weights[i], tree.get(i));
+					sum += weights[i];
+				}
+				assertEquals(sum, tree.total());
+				int value = 0;
+				for (int i = 0; i < size; i++) {
+					for (int w = 0; w < weights[i]; w++) {
+						assertEquals(i, tree.find(value++));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSetAndClear() {
+		FenwickTree tree = new FenwickTree(5);
+		tree.set(2, 7);
+		tree.set(4, 3);
+		tree.set(2, 1);
+		assertEquals(4, tree.total());
+		assertEquals(2, tree.find(0));
+		assertEquals(4, tree.find(1));
+		tree.clear();
+		assertEquals(0, tree.total());
+		assertEquals(0, tree.prefixSum(5));
+	}
+
+	@Test
+	public void testAddToAll() {
+		FenwickTree tree = new FenwickTree(6);
+		int[] weights = { 3, 0, 1, 4, 1, 5 };
+		for (int i = 0; i < weights.length; i++) {
+			tree.add(i, weights[i]);
+		}
+		tree.addToAll(2);
+		int sum = 0;
+		for (int i = 0; i < weights.length; i++) {
+			assertEquals(sum, tree.prefixSum(i));
+			assertEquals(weights[i] + 2, tree.get(i));
+			sum += weights[i] + 2;
+		}
+		assertEquals(sum, tree.total());
+		assertEquals(1, tree.find(5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeWeight() {
+		FenwickTree tree = new FenwickTree(3);
+		tree.add(1, 2);
+		tree.add(1, -3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFindOutOfRange() {
+		FenwickTree tree = new FenwickTree(3);
+		tree.add(1, 2);
+		tree.find(2);
+	}
+}
@@ -0,0 +1,198 @@
+package de.randi2.core.utility;
+
+import static junit.framework.Assert.*;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessagePreparator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.randi2.utility.mail.MailOutbox;
+
+public class MailOutboxTest {
+
+	private MailOutbox outbox;
+
+	private TestMailSender mailSender;
+
+	@Before
+	public void setUp() {
+		mailSender = new TestMailSender();
+		outbox = new MailOutbox();
+		outbox.setMailSender(mailSender);
+		outbox.setBatchSize(5);
+		outbox.setRetryDelay(10);
+		outbox.setMaxAttempts(3);
+	}
+
+	@After
+	public void tearDown() {
+		outbox.shutdown();
+	}
+
+	@Test
+	public void testSendInBatches() throws InterruptedException {
+		List<MimeMessage> messages = new ArrayList<MimeMessage>();
+		for (int i = 0; i < 12; i++) {
+			MimeMessage message = mailSender.createMimeMessage();
+			messages.add(message);
+			outbox.add(message);
+		}
+		mailSender.waitForSent(12);
+		assertTrue(mailSender.sent.containsAll(messages));
+		for (Integer batchSize : mailSender.batchSizes) {
+			assertTrue(batchSize <= 5);
+		}
+	}
+
+	@Test
+	public void testRetryFailedMails() throws InterruptedException {
+		mailSender.failures = 2;
+		MimeMessage message = mailSender.createMimeMessage();
+		outbox.add(message);
+		mailSender.waitForSent(1);
+		assertEquals(3, mailSender.batchSizes.size());
+		assertEquals(message, mailSender.sent.get(0));
+	}
+
+	@Test
+	public void testDropAfterMaxAttempts() throws InterruptedException {
+		mailSender.failures = 3;
+		outbox.add(mailSender.createMimeMessage());
+		Thread.sleep(500);
+		outbox.add(mailSender.createMimeMessage());
+		mailSender.waitForSent(1);
+		assertEquals(4, mailSender.batchSizes.size());
+	}
+
+	@Test
+	public void testRetryAfterUnexpectedError() throws InterruptedException {
+		mailSender.unexpectedErrors = 1;
+		MimeMessage message = mailSender.createMimeMessage();
+		outbox.add(message);
+		mailSender.waitForSent(1);
+		assertEquals(2, mailSender.batchSizes.size());
+		MimeMessage next = mailSender.createMimeMessage();
+		outbox.add(next);
+		mailSender.waitForSent(2);
+		assertEquals(next, mailSender.sent.get(1));
+	}
+
+	@Test
+	public void testAddAfterCommit() throws InterruptedException {
+		TransactionSynchronizationManager.initSynchronization();
+		List<TransactionSynchronization> synchronizations;
+		try {
+			outbox.add(mailSender.createMimeMessage());
+			assertEquals(0, outbox.size());
+			synchronizations = TransactionSynchronizationManager
+					.getSynchronizations();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(0, mailSender.batchSizes.size());
+		for (TransactionSynchronization synchronization : synchronizations) {
+			synchronization.afterCommit();
+		}
+		mailSender.waitForSent(1);
+	}
+
+	/**
+	 * Records the sent mails and fails the first sending attempts, first
+	 * with unexpected errors and then with send exceptions.
+	 */
+	private static class TestMailSender implements JavaMailSender {
+
+		private final List<MimeMessage> sent = Collections
+				.synchronizedList(new ArrayList<MimeMessage>());
+
+		private final List<Integer> batchSizes = Collections
+				.synchronizedList(new ArrayList<Integer>());
+
+		private volatile int failures = 0;
+
+		private volatile int unexpectedErrors = 0;
+
+		@Override
+		public MimeMessage createMimeMessage() {
+			return new MimeMessage((Session) null);
+		}
+
+		@Override
+		public MimeMessage createMimeMessage(InputStream contentStream) {
+			return createMimeMessage();
+		}
+
+		@Override
+		public void send(MimeMessage mimeMessage) {
+			send(new MimeMessage[] { mimeMessage });
+		}
+
+		@Override
+		public synchronized void send(MimeMessage[] mimeMessages) {
+			batchSizes.add(mimeMessages.length);
+			if (unexpectedErrors > 0) {
+				unexpectedErrors--;
+				throw new IllegalStateException("test");
+			}
+			if (failures > 0) {
+				failures--;
+				Map<Object, Exception> failed = new HashMap<Object, Exception>();
+				for (MimeMessage message : mimeMessages) {
+					failed.put(message, new Exception("test"));
+				}
+				throw new MailSendException(failed);
+			}
+			for (MimeMessage message : mimeMessages) {
+				sent.add(message);
+			}
+			notifyAll();
+		}
+
+		private synchronized void waitForSent(int amount)
+				throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000;
+			while (sent.size() < amount && System.currentTimeMillis() < end) {
+				wait(100);
+			}
+			assertEquals(amount, sent.size());
+		}
+
+		@Override
+		public void send(MimeMessagePreparator mimeMessagePreparator) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void send(MimeMessagePreparator[] mimeMessagePreparators) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void send(SimpleMailMessage simpleMessage) throws MailException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void send(SimpleMailMessage[] simpleMessages)
+				throws MailException {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package de.randi2.core.utility.logging;
+
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.randi2.testUtility.utility.InitializeDatabaseUtil;
+import de.randi2.testUtility.utility.TestStringUtil;
+import de.randi2.utility.logging.AuditLogWriter;
+import de.randi2.utility.logging.LogEntry;
+import de.randi2.utility.logging.LogEntry.ActionType;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"/META-INF/service-test.xml","/META-INF/subconfig/test.xml" })
+public class AuditLogWriterTest {
+
+	@Autowired private EntityManagerFactory entityManagerFactory;
+	@Autowired private TestStringUtil stringUtil;
+	@Autowired private InitializeDatabaseUtil databaseUtil;
+
+	private EntityManager entityManager;
+
+	private File journal;
+
+	@Before
+	public void setUp() throws Exception {
+		databaseUtil.setUpDatabaseEmpty();
+		journal = File.createTempFile("audit", ".journal");
+		journal.delete();
+	}
+
+	@After
+	public void tearDown() {
+		journal.delete();
+	}
+
+	@PersistenceContext
+	public void setEntityManager(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	private AuditLogWriter createWriter(EntityManagerFactory factory) {
+		AuditLogWriter writer = new AuditLogWriter();
+		writer.setEntityManagerFactory(factory);
+		writer.setBatchSize(4);
+		writer.setMaxAttempts(1);
+		writer.setRetryDelay(10);
+		writer.setJournalFile(journal.getAbsolutePath());
+		writer.start();
+		return writer;
+	}
+
+	private LogEntry createEntry(String username) {
+		LogEntry entry = new LogEntry();
+		entry.setAction(ActionType.LOGIN);
+		entry.setUsername(username);
+		return entry;
+	}
+
+	private int countEntries(String username) {
+		return entityManager.createQuery(
+				"from LogEntry as entry where entry.username = ?")
+				.setParameter(1, username).getResultList().size();
+	}
+
+	@Test
+	public void testWriteInBatches() {
+		String username = stringUtil.getWithLength(20);
+		AuditLogWriter writer = createWriter(entityManagerFactory);
+		for (int i = 0; i < 10; i++) {
+			writer.add(createEntry(username));
+		}
+		writer.shutdown();
+		assertEquals(10, countEntries(username));
+		assertEquals(0, writer.size());
+		// all entries are committed
+		assertEquals(0, journal.length());
+	}
+
+	@Test
+	public void testAddWithinTransaction() {
+		String username = stringUtil.getWithLength(20);
+		AuditLogWriter writer = createWriter(entityManagerFactory);
+		List<TransactionSynchronization> committed = addWithinTransaction(
+				writer, createEntry(username));
+		List<TransactionSynchronization> rolledBack = addWithinTransaction(
+				writer, createEntry(username));
+		assertEquals(0, writer.size());
+		assertEquals(0, journal.length());
+		for (TransactionSynchronization synchronization : committed) {
+			synchronization.beforeCommit(false);
+		}
+		for (TransactionSynchronization synchronization : rolledBack) {
+			synchronization.beforeCommit(false);
+		}
+		// the entries are in the journal before the commit
+		assertTrue(journal.length() > 0);
+		for (TransactionSynchronization synchronization : rolledBack) {
+			synchronization
+					.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+		}
+		for (TransactionSynchronization synchronization : committed) {
+			synchronization
+					.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+		}
+		writer.shutdown();
+		assertEquals(1, countEntries(username));
+		assertEquals(0, journal.length());
+	}
+
+	private List<TransactionSynchronization> addWithinTransaction(
+			AuditLogWriter writer, LogEntry entry) {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			writer.add(entry);
+			return TransactionSynchronizationManager.getSynchronizations();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddWithoutJournal() {
+		AuditLogWriter writer = new AuditLogWriter();
+		writer.setEntityManagerFactory(entityManagerFactory);
+		writer.start();
+		assertFalse(writer.isJournaled());
+		writer.add(createEntry(stringUtil.getWithLength(20)));
+	}
+
+	@Test
+	public void testWriteJournalOnStart() {
+		String username = stringUtil.getWithLength(20);
+		EntityManagerFactory unavailable = EasyMock
+				.createMock(EntityManagerFactory.class);
+		EasyMock.expect(unavailable.createEntityManager()).andThrow(
+				new IllegalStateException("database unavailable")).anyTimes();
+		EasyMock.replay(unavailable);
+
+		AuditLogWriter writer = createWriter(unavailable);
+		for (int i = 0; i < 6; i++) {
+			writer.add(createEntry(username));
+		}
+		writer.shutdown();
+		assertEquals(0, countEntries(username));
+		assertTrue(journal.length() > 0);
+
+		// the next start writes the entries of the journal
+		writer = createWriter(entityManagerFactory);
+		assertEquals(6, countEntries(username));
+		assertEquals(0, journal.length());
+		writer.shutdown();
+	}
+}
@@ -1,6 +1,12 @@
 package de.randi2.core.utility.logging;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.EnumSet;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -20,6 +26,8 @@ import de.randi2.model.Person;
 import de.randi2.testUtility.utility.DomainObjectFactory;
 import de.randi2.testUtility.utility.InitializeDatabaseUtil;
 import de.randi2.testUtility.utility.TestStringUtil;
+import de.randi2.utility.logging.LogEntry;
+import de.randi2.utility.logging.LogEntryFilter;
 import de.randi2.utility.logging.LogService;
 import de.randi2.utility.logging.LogEntry.ActionType;
 import static junit.framework.Assert.*;
@@ -112,5 +120,92 @@ public class LogServiceTest {
 		assertEquals(10, logService.getLogEntries(object.getClass(),id).size());
 		
 	}
-	
+
+	/**
+	 * Persists the entries of the user, two entries share a time with whole
+	 * seconds and the actions alternate between LOGIN and LOGOUT.
+	 */
+	private GregorianCalendar persistEntries(String username, int count) {
+		GregorianCalendar start = new GregorianCalendar(2010, 0, 1, 12, 0, 0);
+		for (int i = 0; i < count; i++) {
+			LogEntry entry = new LogEntry();
+			GregorianCalendar time = (GregorianCalendar) start.clone();
+			time.add(GregorianCalendar.SECOND, i / 2);
+			entry.setTime(time);
+			entry.setUsername(username);
+			entry.setAction(i % 2 == 0 ? ActionType.LOGIN : ActionType.LOGOUT);
+			entityManager.persist(entry);
+		}
+		entityManager.flush();
+		return start;
+	}
+
+	@Test
+	public void testGetLogEntriesPaged(){
+		String username = stringUtil.getWithLength(20);
+		persistEntries(username, 25);
+		LogEntryFilter filter = new LogEntryFilter();
+		filter.setUsername(username);
+		assertEquals(25, logService.countLogEntries(filter));
+
+		Set<Long> ids = new HashSet<Long>();
+		LogEntry previous = null;
+		LogEntry after = null;
+		int pages = 0;
+		List<LogEntry> page;
+		while (!(page = logService.getLogEntries(filter, after, 10)).isEmpty()) {
+			pages++;
+			for (LogEntry entry : page) {
+				assertTrue(ids.add(entry.getId()));
+				if (previous != null) {
+					// the newest entries first
+					assertTrue(previous.getTime().compareTo(entry.getTime()) >= 0);
+				}
+				previous = entry;
+			}
+			after = page.get(page.size() - 1);
+		}
+		assertEquals(3, pages);
+		assertEquals(25, ids.size());
+	}
+
+	@Test
+	public void testGetLogEntriesFilter(){
+		String username = stringUtil.getWithLength(20);
+		GregorianCalendar start = persistEntries(username, 20);
+		LogEntryFilter filter = new LogEntryFilter();
+		filter.setUsername(username);
+		filter.setActions(EnumSet.of(ActionType.LOGIN));
+		assertEquals(10, logService.getLogEntries(filter, null, 100).size());
+		for (LogEntry entry : logService.getLogEntries(filter, null, 100)) {
+			assertEquals(ActionType.LOGIN, entry.getAction());
+		}
+
+		// the seconds 2 to 4
+		GregorianCalendar from = (GregorianCalendar) start.clone();
+		from.add(GregorianCalendar.SECOND, 2);
+		GregorianCalendar to = (GregorianCalendar) start.clone();
+		to.add(GregorianCalendar.SECOND, 5);
+		filter.setActions(null);
+		filter.setFrom(from);
+		filter.setTo(to);
+		assertEquals(6, logService.countLogEntries(filter));
+		assertEquals(6, logService.getLogEntries(filter, null, 100).size());
+	}
+
+	@Test
+	public void testExportLogEntries() throws IOException{
+		String username = stringUtil.getWithLength(20);
+		persistEntries(username, 15);
+		LogEntryFilter filter = new LogEntryFilter();
+		filter.setUsername(username);
+		StringWriter writer = new StringWriter();
+		logService.exportLogEntries(filter, writer);
+		String[] lines = writer.toString().split(System.getProperty("line.separator"));
+		assertEquals(15, lines.length);
+		for (String line : lines) {
+			assertTrue(line.contains(username));
+		}
+	}
+
 }
@@ -3,8 +3,11 @@ package de.randi2.simulation.integration.service;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Before;
@@ -16,9 +19,12 @@ import de.randi2.model.TreatmentArm;
 import de.randi2.model.Trial;
 import de.randi2.model.TrialSite;
 import de.randi2.model.randomization.BlockRandomizationConfig;
+import de.randi2.model.randomization.CompleteRandomizationConfig;
 import de.randi2.simulation.distribution.UniformDistribution;
 import de.randi2.simulation.model.DistributionSubjectProperty;
+import de.randi2.simulation.model.SimulationRawData;
 import de.randi2.simulation.model.SimulationResult;
+import de.randi2.simulation.service.SimulationJob;
 import de.randi2.simulation.service.SimulationService;
 import de.randi2.simulation.service.SimulationServiceImpl;
 import de.randi2.testUtility.utility.DomainObjectFactory;
@@ -188,4 +194,131 @@ public class SimulationServiceTest extends AbstractServiceTest{
 		}
 		
 	}
+	@Test
+	public void testParallelSimulationIsReproducible(){
+		validTrial.addParticipatingSite(factory.getTrialSite());
+		validTrial.addParticipatingSite(factory.getTrialSite());
+		TreatmentArm arm1 = new TreatmentArm();
+		arm1.setPlannedSubjects(50);
+		arm1.setName("arm1");
+		arm1.setTrial(validTrial);
+		TreatmentArm arm2 = new TreatmentArm();
+		arm2.setPlannedSubjects(50);
+		arm2.setName("arm2");
+		arm2.setTrial(validTrial);
+		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
+		arms.add(arm1);
+		arms.add(arm2);
+		validTrial.setTreatmentArms(arms);
+		// the sites are stratified, so the result depends on the seeded site
+		// distribution, too
+		validTrial.setStratifyTrialSite(true);
+		BlockRandomizationConfig config = new BlockRandomizationConfig(4711);
+		config.setMinimum(2);
+		config.setMaximum(6);
+		validTrial.setRandomizationConfiguration(config);
+		UniformDistribution<TrialSite> sites = new UniformDistribution<TrialSite>(new ArrayList<TrialSite>(validTrial.getParticipatingSites()), 42);
+		SimulationResult result1 = service.simulateTrial(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 200, 10000000, false, 1);
+		SimulationResult result4 = service.simulateTrial(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 200, 10000000, false, 4);
+		SimulationResult sequential = service.simulateTrial(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 200, 10000000, false);
+		assertEquals(200, result1.getAmountRuns());
+		assertEquals(200, result4.getAmountRuns());
+		assertEquals(200, sequential.getAmountRuns());
+		for (SimulationResult result : new SimulationResult[] { result4, sequential }) {
+			assertTrue(Arrays.equals(result1.getMins(), result.getMins()));
+			assertTrue(Arrays.equals(result1.getMaxs(), result.getMaxs()));
+			assertTrue(Arrays.equals(result1.getMeans(), result.getMeans()));
+			assertTrue(Arrays.equals(result1.getMedians(), result.getMedians()));
+			assertEquals(result1.getMarginalBalanceMin(), result.getMarginalBalanceMin());
+			assertEquals(result1.getMarginalBalanceMax(), result.getMarginalBalanceMax());
+			assertEquals(result1.getMarginalBalanceMean(), result.getMarginalBalanceMean());
+		}
+	}
+
+	private void addTwoArms(int plannedSubjects){
+		validTrial.addParticipatingSite(factory.getTrialSite());
+		validTrial.addParticipatingSite(factory.getTrialSite());
+		TreatmentArm arm1 = new TreatmentArm();
+		arm1.setPlannedSubjects(plannedSubjects);
+		arm1.setName("arm1");
+		arm1.setTrial(validTrial);
+		TreatmentArm arm2 = new TreatmentArm();
+		arm2.setPlannedSubjects(plannedSubjects);
+		arm2.setName("arm2");
+		arm2.setTrial(validTrial);
+		Set<TreatmentArm> arms = new HashSet<TreatmentArm>();
+		arms.add(arm1);
+		arms.add(arm2);
+		validTrial.setTreatmentArms(arms);
+	}
+
+	@Test
+	public void testSubmittedSimulation() throws Exception{
+		addTwoArms(50);
+		validTrial.setRandomizationConfiguration(new CompleteRandomizationConfig(4711));
+		UniformDistribution<TrialSite> sites = new UniformDistribution<TrialSite>(new ArrayList<TrialSite>(validTrial.getParticipatingSites()), 42);
+		SimulationJob job = service.submitSimulation(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 200, 10000000, false, 2);
+		SimulationResult jobResult = job.getResult();
+		SimulationResult result = service.simulateTrial(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 200, 10000000, false, 2);
+		assertTrue(job.isDone());
+		assertEquals(200, job.getCompletedRuns());
+		assertEquals(100, job.getProgress());
+		assertEquals(0, job.getEstimatedRemainingTime());
+		assertEquals(200, jobResult.getAmountRuns());
+		assertTrue(Arrays.equals(result.getMins(), jobResult.getMins()));
+		assertTrue(Arrays.equals(result.getMaxs(), jobResult.getMaxs()));
+		assertTrue(Arrays.equals(result.getMeans(), jobResult.getMeans()));
+		assertTrue(Arrays.equals(result.getMedians(), jobResult.getMedians()));
+		SimulationResult snapshot = job.getSnapshot();
+		assertEquals(200, snapshot.getAmountRuns());
+		assertTrue(Arrays.equals(result.getMeans(), snapshot.getMeans()));
+	}
+
+	@Test
+	public void testSubmittedSimulationIsReproducible() throws Exception{
+		addTwoArms(50);
+		BlockRandomizationConfig config = new BlockRandomizationConfig(4711);
+		config.setMinimum(2);
+		config.setMaximum(6);
+		validTrial.setRandomizationConfiguration(config);
+		UniformDistribution<TrialSite> sites = new UniformDistribution<TrialSite>(new ArrayList<TrialSite>(validTrial.getParticipatingSites()), 42);
+		SimulationResult result1 = service.submitSimulation(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 50, 10000000, true, 1).getResult();
+		SimulationResult result2 = service.submitSimulation(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 50, 10000000, true, 2).getResult();
+		SimulationResult result = service.simulateTrial(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 50, 10000000, true, 2);
+		assertEquals(50, result1.getAmountRuns());
+		assertEquals(rawData(result), rawData(result1));
+		assertEquals(rawData(result), rawData(result2));
+		assertTrue(Arrays.equals(result1.getMeans(), result2.getMeans()));
+		assertTrue(Arrays.equals(result1.getMedians(), result2.getMedians()));
+	}
+
+	private static List<String> rawData(SimulationResult result) throws IOException{
+		final List<String> entries = new ArrayList<String>();
+		result.getRawData().forEach(new SimulationRawData.EntryHandler() {
+			@Override
+			public void handle(int run, int count, String treatmentArm,
+					String trialSite, String stratum) {
+				entries.add(run + ";" + count + ";" + treatmentArm + ";" + trialSite + ";" + stratum);
+			}
+		});
+		return entries;
+	}
+
+	@Test
+	public void testCancelSubmittedSimulation() throws Exception{
+		addTwoArms(500);
+		validTrial.setRandomizationConfiguration(new CompleteRandomizationConfig());
+		UniformDistribution<TrialSite> sites = new UniformDistribution<TrialSite>(new ArrayList<TrialSite>(validTrial.getParticipatingSites()));
+		SimulationJob job = service.submitSimulation(validTrial,new ArrayList<DistributionSubjectProperty>(), sites, 10000000, 10000000, false, 1);
+		while(job.getCompletedRuns() < 10){
+			Thread.sleep(10);
+		}
+		assertTrue(job.getEstimatedRemainingTime() > 0);
+		assertTrue(job.cancel());
+		assertTrue(job.isCancelled());
+		SimulationResult snapshot = job.getSnapshot();
+		assertTrue(snapshot.getAmountRuns() >= 10);
+		assertTrue(snapshot.getAmountRuns() < 10000000);
+	}
 }
+
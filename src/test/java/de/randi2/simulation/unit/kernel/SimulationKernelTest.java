@@ -0,0 +1,306 @@
+package de.randi2.simulation.unit.kernel;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.randi2.model.TreatmentArm;
+import de.randi2.model.Trial;
+import de.randi2.model.TrialSite;
+import de.randi2.model.TrialSubject;
+import de.randi2.model.criteria.DichotomousCriterion;
+import de.randi2.model.criteria.OrdinalCriterion;
+import de.randi2.model.criteria.constraints.DichotomousConstraint;
+import de.randi2.model.criteria.constraints.OrdinalConstraint;
+import de.randi2.model.randomization.AbstractRandomizationConfig;
+import de.randi2.model.randomization.BiasedCoinRandomizationConfig;
+import de.randi2.model.randomization.BlockRandomizationConfig;
+import de.randi2.model.randomization.CompleteRandomizationConfig;
+import de.randi2.model.randomization.MinimizationConfig;
+import de.randi2.model.randomization.MinimizationConfig.ImbalanceFunction;
+import de.randi2.model.randomization.TruncatedBinomialDesignConfig;
+import de.randi2.model.randomization.UrnDesignConfig;
+import de.randi2.randomization.RandomizationAlgorithm;
+import de.randi2.simulation.distribution.UniformDistribution;
+import de.randi2.simulation.kernel.SimulationKernel;
+import de.randi2.simulation.model.DistributionSubjectProperty;
+import de.randi2.simulation.model.SimulationRawData;
+import de.randi2.simulation.model.SimulationRun;
+import de.randi2.simulation.service.SimulationServiceImpl;
+import de.randi2.unsorted.ContraintViolatedException;
+
+public class SimulationKernelTest {
+
+	private Trial trial;
+	private List<TreatmentArm> arms;
+	private List<TrialSite> sites;
+
+	@Before
+	public void setUp() {
+		trial = new Trial();
+		HashSet<TreatmentArm> armSet = new HashSet<TreatmentArm>();
+		for (int i = 1; i <= 3; i++) {
+			TreatmentArm arm = new TreatmentArm();
+			arm.setId(i);
+			arm.setName("arm" + i);
+			arm.setPlannedSubjects(i * 20);
+			arm.setTrial(trial);
+			armSet.add(arm);
+		}
+		trial.setTreatmentArms(armSet);
+		arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
+		sites = new ArrayList<TrialSite>();
+		for (int i = 10; i < 13; i++) {
+			TrialSite site = new TrialSite();
+			site.setId(i);
+			site.setName("site" + i);
+			sites.add(site);
+			trial.addParticipatingSite(site);
+		}
+	}
+
+	/**
+	 * Simulates one run with the kernel and randomizes the same subjects with
+	 * the randomization algorithm, both have to assign the same arms.
+	 */
+	private void assertSameAssignments(AbstractRandomizationConfig config,
+			long seed) throws IOException {
+		assertSameAssignments(config, seed,
+				new ArrayList<DistributionSubjectProperty>());
+	}
+
+	/**
+	 * Like {@link #assertSameAssignments(AbstractRandomizationConfig, long)}
+	 * with subject properties, the kernel and the algorithm draw the values
+	 * from their own copies of the distributions.
+	 */
+	private void assertSameAssignments(AbstractRandomizationConfig config,
+			long seed, List<DistributionSubjectProperty> properties)
+			throws IOException {
+		for (TreatmentArm arm : arms) {
+			arm.clearSubjects();
+		}
+		trial.setRandomizationConfiguration(config);
+		config.setTrial(trial);
+		SimulationKernel kernel = SimulationKernel.compile(trial, arms,
+				copy(properties), new UniformDistribution<TrialSite>(sites,
+						4711));
+		int[] planned = new int[arms.size()];
+		for (int i = 0; i < arms.size(); i++) {
+			planned[i] = arms.get(i).getPlannedSubjects();
+		}
+		SimulationRun simRun = new SimulationRun(planned, arms,
+				new HashMap<String, String>());
+		SimulationRawData rawData = new SimulationRawData();
+		kernel.simulateRun(seed, 0, simRun, rawData);
+		assertEquals(trial.getPlannedSubjectAmount(), rawData.size());
+		final List<String> rawArms = new ArrayList<String>();
+		final List<String> rawSites = new ArrayList<String>();
+		rawData.forEach(new SimulationRawData.EntryHandler() {
+			@Override
+			public void handle(int run, int count, String treatmentArm,
+					String trialSite, String stratum) {
+				rawArms.add(treatmentArm);
+				rawSites.add(trialSite);
+			}
+		});
+
+		config.setTempData(null);
+		RandomizationAlgorithm<?> algorithm = config.createAlgorithm(seed);
+		UniformDistribution<TrialSite> siteDistribution = new UniformDistribution<TrialSite>(
+				sites, 4711);
+		List<DistributionSubjectProperty> subjectProperties = copy(properties);
+		for (int i = 0; i < trial.getPlannedSubjectAmount(); i++) {
+			TrialSubject subject = SimulationServiceImpl.generateTrialSubject(
+					subjectProperties, new TrialSubject());
+			subject.setTrialSite(siteDistribution.getNextValue());
+			TreatmentArm arm = algorithm.randomize(subject);
+			arm.addSubject(subject);
+			assertEquals(subject.getTrialSite().getName(), rawSites.get(i));
+			assertEquals(arm.getName(), rawArms.get(i));
+		}
+		for (int i = 0; i < arms.size(); i++) {
+			assertEquals(arms.get(i).getCurrentSubjectsAmount(), simRun
+					.getSubjectsPerArms()[i]);
+		}
+	}
+
+	private static List<DistributionSubjectProperty> copy(
+			List<DistributionSubjectProperty> properties) {
+		List<DistributionSubjectProperty> copy = new ArrayList<DistributionSubjectProperty>();
+		for (DistributionSubjectProperty dsp : properties) {
+			copy.add(new DistributionSubjectProperty(dsp.getCriterion(), dsp
+					.getDistribution().copy()));
+		}
+		return copy;
+	}
+
+	/**
+	 * Adds a dichotomous criterion with two strata, an ordinal criterion with
+	 * three strata and a dichotomous criterion without strata to the trial.
+	 */
+	private List<DistributionSubjectProperty> addCriteria()
+			throws ContraintViolatedException {
+		DichotomousCriterion sex = new DichotomousCriterion();
+		sex.setId(20);
+		sex.setName("sex");
+		sex.setOption1("M");
+		sex.setOption2("F");
+		sex.addStrata(new DichotomousConstraint(Arrays.asList("M")));
+		sex.addStrata(new DichotomousConstraint(Arrays.asList("F")));
+		sex.getStrata().get(0).setId(21);
+		sex.getStrata().get(1).setId(22);
+		OrdinalCriterion stage = new OrdinalCriterion();
+		stage.setId(30);
+		stage.setName("stage");
+		stage.setElements(new ArrayList<String>(Arrays.asList("I", "II",
+				"III", "IV")));
+		stage.addStrata(new OrdinalConstraint(Arrays.asList("I")));
+		stage.addStrata(new OrdinalConstraint(Arrays.asList("II", "III")));
+		stage.addStrata(new OrdinalConstraint(Arrays.asList("IV")));
+		for (int i = 0; i < stage.getStrata().size(); i++) {
+			stage.getStrata().get(i).setId(31 + i);
+		}
+		DichotomousCriterion smoker = new DichotomousCriterion();
+		smoker.setId(40);
+		smoker.setName("smoker");
+		smoker.setOption1("yes");
+		smoker.setOption2("no");
+		trial.addCriterion(sex);
+		trial.addCriterion(stage);
+		trial.addCriterion(smoker);
+		List<DistributionSubjectProperty> properties = new ArrayList<DistributionSubjectProperty>();
+		properties.add(new DistributionSubjectProperty(sex,
+				new UniformDistribution<String>(sex.getConfiguredValues(), 7)));
+		properties.add(new DistributionSubjectProperty(stage,
+				new UniformDistribution<String>(stage.getConfiguredValues(), 8)));
+		properties.add(new DistributionSubjectProperty(smoker,
+				new UniformDistribution<String>(smoker.getConfiguredValues(), 9)));
+		return properties;
+	}
+
+	@Test
+	public void testCompleteRandomization() throws IOException {
+		assertSameAssignments(new CompleteRandomizationConfig(), 1);
+	}
+
+	@Test
+	public void testBiasedCoinRandomization() throws IOException {
+		assertSameAssignments(new BiasedCoinRandomizationConfig(), 2);
+	}
+
+	@Test
+	public void testBlockRandomization() throws IOException {
+		BlockRandomizationConfig config = new BlockRandomizationConfig();
+		config.setMinimum(6);
+		config.setMaximum(18);
+		config.setType(BlockRandomizationConfig.TYPE.MULTIPLY);
+		trial.setStratifyTrialSite(true);
+		assertSameAssignments(config, 3);
+	}
+
+	@Test
+	public void testTruncatedBinomialDesign() throws IOException {
+		assertSameAssignments(new TruncatedBinomialDesignConfig(), 4);
+	}
+
+	@Test
+	public void testUrnDesign() throws IOException {
+		UrnDesignConfig config = new UrnDesignConfig();
+		config.setInitializeCountBalls(2);
+		config.setCountReplacedBalls(3);
+		assertSameAssignments(config, 5);
+	}
+
+	@Test
+	public void testNaiveMinimization() throws Exception {
+		List<DistributionSubjectProperty> properties = addCriteria();
+		MinimizationConfig config = new MinimizationConfig();
+		config.setBiasedCoinMinimization(false);
+		config.setWithRandomizedSubjects(true);
+		config.setP(0.8);
+		assertSameAssignments(config, 6, properties);
+	}
+
+	/**
+	 * The kernel has to decide the ties of the imbalance scores like the
+	 * minimization algorithm, the seeds cover many tied and nearly tied
+	 * scores.
+	 */
+	@Test
+	public void testBiasedCoinMinimization() throws Exception {
+		List<DistributionSubjectProperty> properties = addCriteria();
+		trial.setStratifyTrialSite(true);
+		for (long seed = 0; seed < 20; seed++) {
+			MinimizationConfig config = new MinimizationConfig();
+			config.setP(0.8);
+			assertSameAssignments(config, seed, properties);
+		}
+	}
+
+	@Test
+	public void testBiasedCoinMinimizationFiveArms() throws Exception {
+		HashSet<TreatmentArm> armSet = new HashSet<TreatmentArm>();
+		int[] planned = { 12, 24, 12, 36, 16 };
+		for (int i = 0; i < planned.length; i++) {
+			TreatmentArm arm = new TreatmentArm();
+			arm.setId(i + 1);
+			arm.setName("arm" + (i + 1));
+			arm.setPlannedSubjects(planned[i]);
+			armSet.add(arm);
+		}
+		trial.setTreatmentArms(armSet);
+		arms = new ArrayList<TreatmentArm>(trial.getTreatmentArms());
+		List<DistributionSubjectProperty> properties = addCriteria();
+		for (long seed = 0; seed < 20; seed++) {
+			MinimizationConfig config = new MinimizationConfig();
+			config.setP(0.8);
+			assertSameAssignments(config, seed, properties);
+		}
+	}
+
+	/**
+	 * Equal arms tie often, the algorithm sums up the constraints in the
+	 * order of a hash map, which differs from the order of the criteria.
+	 */
+	@Test
+	public void testBiasedCoinMinimizationEqualArms() throws Exception {
+		for (TreatmentArm arm : arms) {
+			arm.setPlannedSubjects(15);
+		}
+		List<DistributionSubjectProperty> properties = addCriteria();
+		trial.setStratifyTrialSite(true);
+		for (long seed = 0; seed < 50; seed++) {
+			MinimizationConfig config = new MinimizationConfig();
+			config.setP(0.8);
+			assertSameAssignments(config, seed, properties);
+		}
+	}
+
+	@Test
+	public void testWeightedMinimization() throws Exception {
+		List<DistributionSubjectProperty> properties = addCriteria();
+		trial.setStratifyTrialSite(true);
+		for (ImbalanceFunction function : ImbalanceFunction.values()) {
+			for (long seed = 0; seed < 10; seed++) {
+				MinimizationConfig config = new MinimizationConfig();
+				config.setP(0.75);
+				config.setImbalanceFunction(function);
+				config.setTrialSiteWeight(0.3);
+				config.getCriterionWeights().put(
+						properties.get(0).getCriterion(), 1.7);
+				config.getCriterionWeights().put(
+						properties.get(1).getCriterion(), 0.1);
+				assertSameAssignments(config, seed, properties);
+			}
+		}
+	}
+}
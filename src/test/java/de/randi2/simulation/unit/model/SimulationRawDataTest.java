@@ -0,0 +1,142 @@
+package de.randi2.simulation.unit.model;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.randi2.simulation.model.SimulationRawData;
+
+public class SimulationRawDataTest {
+
+	private SimulationRawData rawData;
+
+	@After
+	public void tearDown() {
+		if (rawData != null) {
+			rawData.dispose();
+		}
+	}
+
+	private static List<String> entries(SimulationRawData rawData)
+			throws IOException {
+		final List<String> entries = new ArrayList<String>();
+		rawData.forEach(new SimulationRawData.EntryHandler() {
+			@Override
+			public void handle(int run, int count, String treatmentArm,
+					String trialSite, String stratum) {
+				entries.add(run + ";" + count + ";" + treatmentArm + ";"
+						+ trialSite + ";" + stratum);
+			}
+		});
+		return entries;
+	}
+
+	@Test
+	public void testInMemory() throws IOException {
+		rawData = new SimulationRawData(100);
+		rawData.add(0, 0, "A", "Site 1", "");
+		rawData.add(0, 1, "B", "Site 2", "");
+		assertEquals(2, rawData.size());
+		assertFalse(rawData.isSpilled());
+		List<String> entries = entries(rawData);
+		assertEquals("0;0;A;Site 1;", entries.get(0));
+		assertEquals("0;1;B;Site 2;", entries.get(1));
+	}
+
+	@Test
+	public void testSpillToFile() throws IOException {
+		rawData = new SimulationRawData(7);
+		List<String> expected = new ArrayList<String>();
+		for (int run = 0; run < 5; run++) {
+			for (int count = 0; count < 10; count++) {
+				String arm = "Arm " + (count % 3);
+				String site = "Site " + (count % 2);
+				String stratum = (count % 2) + "__1_" + (count % 4) + ";";
+				rawData.add(run, count, arm, site, stratum);
+				expected.add(run + ";" + count + ";" + arm + ";" + site + ";"
+						+ stratum);
+			}
+		}
+		assertTrue(rawData.isSpilled());
+		assertEquals(50, rawData.size());
+		assertEquals(expected, entries(rawData));
+	}
+
+	@Test
+	public void testSpillBlocksLargerThanChunk() throws IOException {
+		rawData = new SimulationRawData(20000);
+		for (int i = 0; i < 50000; i++) {
+			rawData.add(i / 100, i % 100, "Arm " + (i % 3), "Site " + (i % 5),
+					"" + (i % 7));
+		}
+		assertTrue(rawData.isSpilled());
+		SimulationRawData.Cursor cursor = rawData.cursor();
+		int i = 0;
+		while (cursor.next()) {
+			assertEquals(i / 100, cursor.getRun());
+			assertEquals(i % 100, cursor.getCount());
+			assertEquals("Arm " + (i % 3), cursor.getTreatmentArm());
+			assertEquals("Site " + (i % 5), cursor.getTrialSite());
+			assertEquals("" + (i % 7), cursor.getStratum());
+			i++;
+		}
+		assertEquals(50000, i);
+		assertFalse(cursor.next());
+	}
+
+	@Test
+	public void testManyStrata() throws IOException {
+		rawData = new SimulationRawData(10000);
+		for (int i = 0; i < 40000; i++) {
+			rawData.add(i / 100, i % 100, "Arm " + (i % 3), "Site " + (i % 5),
+					"Stratum " + i);
+		}
+		assertTrue(rawData.isSpilled());
+		SimulationRawData.Cursor cursor = rawData.cursor();
+		int i = 0;
+		while (cursor.next()) {
+			assertEquals(i / 100, cursor.getRun());
+			assertEquals(i % 100, cursor.getCount());
+			assertEquals("Arm " + (i % 3), cursor.getTreatmentArm());
+			assertEquals("Site " + (i % 5), cursor.getTrialSite());
+			assertEquals("Stratum " + i, cursor.getStratum());
+			i++;
+		}
+		assertEquals(40000, i);
+	}
+
+	@Test
+	public void testAddAll() throws IOException {
+		rawData = new SimulationRawData(3);
+		SimulationRawData runData = new SimulationRawData(10);
+		rawData.add(0, 0, "A", "Site 1", "s1");
+		runData.add(1, 0, "B", "Site 2", "s2");
+		runData.add(1, 1, "A", "Site 1", "s1");
+		rawData.addAll(runData);
+		rawData.addAll(runData);
+		assertEquals(5, rawData.size());
+		List<String> entries = entries(rawData);
+		assertEquals("0;0;A;Site 1;s1", entries.get(0));
+		assertEquals("1;0;B;Site 2;s2", entries.get(3));
+		assertEquals("1;1;A;Site 1;s1", entries.get(4));
+	}
+
+	@Test
+	public void testDispose() throws IOException {
+		rawData = new SimulationRawData(2);
+		for (int i = 0; i < 5; i++) {
+			rawData.add(0, i, "A", "Site", "");
+		}
+		rawData.dispose();
+		assertEquals(0, rawData.size());
+		assertFalse(rawData.isSpilled());
+		assertTrue(entries(rawData).isEmpty());
+	}
+}
@@ -167,18 +167,51 @@ public class SimulationResultTest {
 		simResult.analyze();
 		assertEquals(8, simResult.getSimResultArms().get(0).getMin());
 		assertEquals(23, simResult.getSimResultArms().get(0).getMax());
-		assertEquals(20.0, simResult.getSimResultArms().get(0).getMedian());
+		assertEquals(17.5, simResult.getSimResultArms().get(0).getMedian());
 		roundedResult = Math
 		.round((simResult.getSimResultArms().get(0).getMean() * 100000.0)) / 100000.0;;
 		assertEquals(16.33333, roundedResult);
 		
 		assertEquals(17, simResult.getSimResultArms().get(1).getMin());
 		assertEquals(29, simResult.getSimResultArms().get(1).getMax());
-		assertEquals(23.0, simResult.getSimResultArms().get(1).getMedian());
+		assertEquals(21.0, simResult.getSimResultArms().get(1).getMedian());
 		roundedResult = Math
 		.round((simResult.getSimResultArms().get(1).getMean() * 100000.0)) / 100000.0;;
 		assertEquals(22.0, roundedResult);
 		
 
 	}
+
+	@Test
+	public void testMeasuresAfterFurtherRuns(){
+		List<TreatmentArm> arms = new ArrayList<TreatmentArm>();
+		TreatmentArm arm1 = new TreatmentArm();
+		arm1.setPlannedSubjects(20);
+		TreatmentArm arm2 = new TreatmentArm();
+		arm2.setPlannedSubjects(20);
+		arms.add(arm1);
+		arms.add(arm2);
+		HashMap<String, String> map = new HashMap<String, String>();
+		SimulationResult simResult = new SimulationResult(arms, null,  map);
+		int[][] counts = new int[][]{{8, 32}, {11, 29}, {20, 20}, {21, 19}};
+		for(int[] count : counts){
+			SimulationRun simRun = new SimulationRun(new int[] { 20, 20 }, arms, map);
+			simRun.setSubjectsPerArms(count);
+			simRun.setTime(10l);
+			simResult.addSimulationRun(simRun);
+		}
+		assertEquals(15.0, simResult.getMeans()[0]);
+		assertEquals(15.5, simResult.getMedians()[0]);
+		
+		SimulationRun simRun = new SimulationRun(new int[] { 20, 20 }, arms, map);
+		simRun.setSubjectsPerArms(new int[] { 40, 0 });
+		simRun.setTime(10l);
+		simResult.addSimulationRun(simRun);
+		assertEquals(5, simResult.getAmountRuns());
+		assertEquals(20.0, simResult.getMeans()[0]);
+		assertEquals(20.0, simResult.getMedians()[0]);
+		assertEquals(0, simResult.getMins()[1]);
+		assertEquals(40, simResult.getMaxs()[0]);
+		assertEquals(1.0, simResult.getMarginalBalanceMax());
+	}
 }
@@ -18,10 +18,15 @@ import org.dbunit.dataset.xml.FlatXmlDataSet;
 import org.dbunit.operation.DatabaseOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import de.randi2.dao.HibernateAclService;
+
 public class InitializeDatabaseUtil {
 
 	@Autowired
 	private DataSource dataSource;
+
+	@Autowired(required = false)
+	private HibernateAclService aclService;
 	
 	public void setUpDatabaseFull() throws Exception {
 		try {
@@ -74,6 +79,10 @@ public class InitializeDatabaseUtil {
 			DatabaseOperation.DELETE_ALL.execute(connection, dataSet);
 			DatabaseOperation.INSERT.execute(connection, dataSet);
 			jdbcConnection.commit();
+			// the acl tables were replaced
+			if (aclService != null) {
+				aclService.clearCaches();
+			}
 
 //			liquibase = new Liquibase(
 //					"src/test/resources/liquibase/addConstraints.xml",